@@ -0,0 +1,192 @@
+/*  Generated by CLOptionsProcessor from com.kfs.bsd.common.util.jmh.GeneratedParserBenchmark.Options.  Do not edit.
+ */
+
+package com.kfs.bsd.common.util.jmh;
+
+import com.kfs.bsd.common.util.CLArgumentError;
+import com.kfs.bsd.common.util.CLGeneratedParser;
+import com.kfs.bsd.common.util.LinearArgDesequencer;
+
+public final class GeneratedParserBenchmark_OptionsParser extends CLGeneratedParser {
+	
+	// The options, indexed by option number
+	
+	private static final String [] kKeys = { "Help", "Verbose", "port", "host", "timeout", "define", "files" };
+	private static final int [] kParcelCounts = { 0, 0, 1, 1, 1, 2, 1 };
+	private static final boolean [] kUnbounded = { false, false, false, false, false, false, true };
+	private static final int [] kRequiredOptions = { };
+	private static final Class<?> [] kNumberTypes = { null, null, int.class, null, double.class, null, null };
+	
+	// The constructor
+	
+	public GeneratedParserBenchmark_OptionsParser() {
+		
+		// Builds a parser.  Nothing else needs to be built.
+		
+		super( kKeys, kParcelCounts, kUnbounded, kRequiredOptions, kNumberTypes );
+	}
+	
+	// Parsing functions
+	
+	public CLArgumentError parse( String [] args, com.kfs.bsd.common.util.jmh.GeneratedParserBenchmark.Options target ) {
+		
+		// Parses the given argument array into the given target,
+		// and returns the error found, or null if there was none.
+		
+		begin();
+		
+		for( int index = 0 ; index < args.length ; index++ )
+			if( ! accept( index, args[ index ], target ) )
+				break;
+		
+		store( target );
+		
+		return finish();
+	}
+	
+	private boolean accept( int index, String arg, com.kfs.bsd.common.util.jmh.GeneratedParserBenchmark.Options target ) {
+		
+		// Parses one argument.
+		
+		if( arg.length() == 0 || arg.equals( "-" ) )
+			return true;
+		
+		if( arg.charAt( 0 ) != '-' || expectsNegativeNumber( arg ) ) {
+			
+			// This is a parcel, if anything is expecting one.
+			
+			if( ! expectsParcel() )
+				return fail( LinearArgDesequencer.kErrorCodeUnknownArgument, index, arg, -1, -1 );
+			
+			return parcelFound( nextParcel(), index, arg, target );
+		}
+		
+		if( arg.charAt( 1 ) == '-' ) {
+			
+			// This is a switch.
+			
+			switch( arg ) {
+				
+				case "--help":
+					target.help = true;
+					return true;
+				
+				case "--verbose":
+					target.verbosity++;
+					return true;
+				
+				case "--port":
+					expect( 2 );
+					return true;
+				
+				case "--host":
+					expect( 3 );
+					return true;
+				
+				case "--timeout":
+					expect( 4 );
+					return true;
+				
+				case "--define":
+					expect( 5 );
+					return true;
+				
+				case "--file":
+					expect( 6 );
+					return true;
+				
+				default:
+					return fail( LinearArgDesequencer.kErrorCodeUnknownArgument, index, arg, -1, -1 );
+			}
+		}
+		
+		// These are flags.
+		
+		for( int offset = 1 ; offset < arg.length() ; offset++ ) {
+			
+			switch( arg.charAt( offset ) ) {
+				
+				case 'h':
+					target.help = true;
+					break;
+				
+				case 'v':
+					target.verbosity++;
+					break;
+				
+				case 'p':
+					expect( 2 );
+					break;
+				
+				case 'H':
+					expect( 3 );
+					break;
+				
+				case 't':
+					expect( 4 );
+					break;
+				
+				case 'D':
+					expect( 5 );
+					break;
+				
+				case 'f':
+					expect( 6 );
+					break;
+				
+				default:
+					return fail( LinearArgDesequencer.kErrorCodeUnknownArgument, index, arg, offset, -1 );
+			}
+		}
+		
+		return true;
+	}
+	
+	private boolean parcelFound( int option, int index, String arg, com.kfs.bsd.common.util.jmh.GeneratedParserBenchmark.Options target ) {
+		
+		// Stores a parcel of the given option.
+		
+		try {
+			
+			switch( option ) {
+				
+				case 2:
+					target.port = parseInt( arg );
+					break;
+				
+				case 3:
+					target.host = arg;
+					break;
+				
+				case 4:
+					target.timeout = parseDouble( arg );
+					break;
+				
+				case 5:
+					collect( 5, arg );
+					break;
+				
+				case 6:
+					collect( 6, arg );
+					break;
+			}
+		}
+		catch( IllegalArgumentException e ) {
+			
+			return fail( LinearArgDesequencer.kErrorCodeInvalidValue, index, arg, -1, option );
+		}
+		
+		return true;
+	}
+	
+	private void store( com.kfs.bsd.common.util.jmh.GeneratedParserBenchmark.Options target ) {
+		
+		// Stores the parcels of each array option that was
+		// found, replacing whatever its field held before.
+		
+		if( collected( 5 ) )
+			target.defines = collectedStrings( 5 );
+		if( collected( 6 ) )
+			target.files = collectedStrings( 6 );
+	}
+}
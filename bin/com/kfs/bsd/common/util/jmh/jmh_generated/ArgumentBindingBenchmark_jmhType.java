@@ -0,0 +1,4 @@
+package com.kfs.bsd.common.util.jmh.jmh_generated;
+public class ArgumentBindingBenchmark_jmhType extends ArgumentBindingBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package com.kfs.bsd.common.util.jmh.jmh_generated;
+public class ArgumentLookupBenchmark_jmhType extends ArgumentLookupBenchmark_jmhType_B3 {
+}
+
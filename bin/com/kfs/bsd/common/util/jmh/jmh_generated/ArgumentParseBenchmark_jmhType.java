@@ -0,0 +1,4 @@
+package com.kfs.bsd.common.util.jmh.jmh_generated;
+public class ArgumentParseBenchmark_jmhType extends ArgumentParseBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package com.kfs.bsd.common.util.jmh.jmh_generated;
+public class ArgumentTableBenchmark_jmhType extends ArgumentTableBenchmark_jmhType_B3 {
+}
+
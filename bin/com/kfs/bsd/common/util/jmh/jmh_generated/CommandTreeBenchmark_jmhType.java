@@ -0,0 +1,4 @@
+package com.kfs.bsd.common.util.jmh.jmh_generated;
+public class CommandTreeBenchmark_jmhType extends CommandTreeBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package com.kfs.bsd.common.util.jmh.jmh_generated;
+public class GeneratedParserBenchmark_jmhType extends GeneratedParserBenchmark_jmhType_B3 {
+}
+
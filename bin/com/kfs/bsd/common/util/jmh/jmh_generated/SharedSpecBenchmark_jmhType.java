@@ -0,0 +1,4 @@
+package com.kfs.bsd.common.util.jmh.jmh_generated;
+public class SharedSpecBenchmark_jmhType extends SharedSpecBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,128 @@
+/*  Generated by CLOptionsProcessor from com.kfs.bsd.common.util.junit.TestCLOptionsProcessor.Required.  Do not edit.
+ */
+
+package com.kfs.bsd.common.util.junit;
+
+import com.kfs.bsd.common.util.CLArgumentError;
+import com.kfs.bsd.common.util.CLGeneratedParser;
+import com.kfs.bsd.common.util.LinearArgDesequencer;
+
+public final class RequiredOptionsParser extends CLGeneratedParser {
+	
+	// The options, indexed by option number
+	
+	private static final String [] kKeys = { "output", "quiet" };
+	private static final int [] kParcelCounts = { 1, 0 };
+	private static final boolean [] kUnbounded = { false, false };
+	private static final int [] kRequiredOptions = { 0 };
+	private static final Class<?> [] kNumberTypes = { null, null };
+	
+	// The constructor
+	
+	public RequiredOptionsParser() {
+		
+		// Builds a parser.  Nothing else needs to be built.
+		
+		super( kKeys, kParcelCounts, kUnbounded, kRequiredOptions, kNumberTypes );
+	}
+	
+	// Parsing functions
+	
+	public CLArgumentError parse( String [] args, com.kfs.bsd.common.util.junit.TestCLOptionsProcessor.Required target ) {
+		
+		// Parses the given argument array into the given target,
+		// and returns the error found, or null if there was none.
+		
+		begin();
+		
+		for( int index = 0 ; index < args.length ; index++ )
+			if( ! accept( index, args[ index ], target ) )
+				break;
+		
+		store( target );
+		
+		return finish();
+	}
+	
+	private boolean accept( int index, String arg, com.kfs.bsd.common.util.junit.TestCLOptionsProcessor.Required target ) {
+		
+		// Parses one argument.
+		
+		if( arg.length() == 0 || arg.equals( "-" ) )
+			return true;
+		
+		if( arg.charAt( 0 ) != '-' || expectsNegativeNumber( arg ) ) {
+			
+			// This is a parcel, if anything is expecting one.
+			
+			if( ! expectsParcel() )
+				return fail( LinearArgDesequencer.kErrorCodeUnknownArgument, index, arg, -1, -1 );
+			
+			return parcelFound( nextParcel(), index, arg, target );
+		}
+		
+		if( arg.charAt( 1 ) == '-' ) {
+			
+			// This is a switch.
+			
+			switch( arg ) {
+				
+				case "--output":
+					expect( 0 );
+					return true;
+				
+				default:
+					return fail( LinearArgDesequencer.kErrorCodeUnknownArgument, index, arg, -1, -1 );
+			}
+		}
+		
+		// These are flags.
+		
+		for( int offset = 1 ; offset < arg.length() ; offset++ ) {
+			
+			switch( arg.charAt( offset ) ) {
+				
+				case 'o':
+					expect( 0 );
+					break;
+				
+				case 'q':
+					target.quiet = true;
+					break;
+				
+				default:
+					return fail( LinearArgDesequencer.kErrorCodeUnknownArgument, index, arg, offset, -1 );
+			}
+		}
+		
+		return true;
+	}
+	
+	private boolean parcelFound( int option, int index, String arg, com.kfs.bsd.common.util.junit.TestCLOptionsProcessor.Required target ) {
+		
+		// Stores a parcel of the given option.
+		
+		try {
+			
+			switch( option ) {
+				
+				case 0:
+					target.output = arg;
+					break;
+			}
+		}
+		catch( IllegalArgumentException e ) {
+			
+			return fail( LinearArgDesequencer.kErrorCodeInvalidValue, index, arg, -1, option );
+		}
+		
+		return true;
+	}
+	
+	private void store( com.kfs.bsd.common.util.junit.TestCLOptionsProcessor.Required target ) {
+		
+		// Stores the parcels of each array option that was
+		// found, replacing whatever its field held before.
+		
+	}
+}
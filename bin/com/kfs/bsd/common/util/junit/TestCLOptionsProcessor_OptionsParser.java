@@ -0,0 +1,225 @@
+/*  Generated by CLOptionsProcessor from com.kfs.bsd.common.util.junit.TestCLOptionsProcessor.Options.  Do not edit.
+ */
+
+package com.kfs.bsd.common.util.junit;
+
+import com.kfs.bsd.common.util.CLArgumentError;
+import com.kfs.bsd.common.util.CLGeneratedParser;
+import com.kfs.bsd.common.util.LinearArgDesequencer;
+
+public final class TestCLOptionsProcessor_OptionsParser extends CLGeneratedParser {
+	
+	// The options, indexed by option number
+	
+	private static final String [] kKeys = { "Help", "Verbose", "port", "ratio", "force", "colour", "name", "sizes", "files", "tints" };
+	private static final int [] kParcelCounts = { 0, 0, 1, 1, 1, 1, 1, 2, 1, 1 };
+	private static final boolean [] kUnbounded = { false, false, false, false, false, false, false, false, true, false };
+	private static final int [] kRequiredOptions = { };
+	private static final Class<?> [] kNumberTypes = { null, null, int.class, double.class, null, null, null, long.class, null, null };
+	
+	// The constants of enum options
+	
+	private static final com.kfs.bsd.common.util.junit.TestCLOptionsProcessor.Colour [] kConstants5 = com.kfs.bsd.common.util.junit.TestCLOptionsProcessor.Colour.values();
+	private static final com.kfs.bsd.common.util.junit.TestCLOptionsProcessor.Colour [] kConstants9 = com.kfs.bsd.common.util.junit.TestCLOptionsProcessor.Colour.values();
+	
+	// The constructor
+	
+	public TestCLOptionsProcessor_OptionsParser() {
+		
+		// Builds a parser.  Nothing else needs to be built.
+		
+		super( kKeys, kParcelCounts, kUnbounded, kRequiredOptions, kNumberTypes );
+	}
+	
+	// Parsing functions
+	
+	public CLArgumentError parse( String [] args, com.kfs.bsd.common.util.junit.TestCLOptionsProcessor.Options target ) {
+		
+		// Parses the given argument array into the given target,
+		// and returns the error found, or null if there was none.
+		
+		begin();
+		
+		for( int index = 0 ; index < args.length ; index++ )
+			if( ! accept( index, args[ index ], target ) )
+				break;
+		
+		store( target );
+		
+		return finish();
+	}
+	
+	private boolean accept( int index, String arg, com.kfs.bsd.common.util.junit.TestCLOptionsProcessor.Options target ) {
+		
+		// Parses one argument.
+		
+		if( arg.length() == 0 || arg.equals( "-" ) )
+			return true;
+		
+		if( arg.charAt( 0 ) != '-' || expectsNegativeNumber( arg ) ) {
+			
+			// This is a parcel, if anything is expecting one.
+			
+			if( ! expectsParcel() )
+				return fail( LinearArgDesequencer.kErrorCodeUnknownArgument, index, arg, -1, -1 );
+			
+			return parcelFound( nextParcel(), index, arg, target );
+		}
+		
+		if( arg.charAt( 1 ) == '-' ) {
+			
+			// This is a switch.
+			
+			switch( arg ) {
+				
+				case "--help":
+					target.help = true;
+					return true;
+				
+				case "--verbose":
+				case "--loud":
+					target.verbosity++;
+					return true;
+				
+				case "--port":
+					expect( 2 );
+					return true;
+				
+				case "--ratio":
+					expect( 3 );
+					return true;
+				
+				case "--force":
+					expect( 4 );
+					return true;
+				
+				case "--colour":
+					expect( 5 );
+					return true;
+				
+				case "--size":
+					expect( 7 );
+					return true;
+				
+				case "--file":
+					expect( 8 );
+					return true;
+				
+				case "--tint":
+					expect( 9 );
+					return true;
+				
+				default:
+					return fail( LinearArgDesequencer.kErrorCodeUnknownArgument, index, arg, -1, -1 );
+			}
+		}
+		
+		// These are flags.
+		
+		for( int offset = 1 ; offset < arg.length() ; offset++ ) {
+			
+			switch( arg.charAt( offset ) ) {
+				
+				case 'h':
+					target.help = true;
+					break;
+				
+				case 'v':
+					target.verbosity++;
+					break;
+				
+				case 'p':
+					expect( 2 );
+					break;
+				
+				case 'r':
+					expect( 3 );
+					break;
+				
+				case 'c':
+				case 'C':
+					expect( 5 );
+					break;
+				
+				case 'n':
+					expect( 6 );
+					break;
+				
+				case 's':
+					expect( 7 );
+					break;
+				
+				case 'f':
+					expect( 8 );
+					break;
+				
+				default:
+					return fail( LinearArgDesequencer.kErrorCodeUnknownArgument, index, arg, offset, -1 );
+			}
+		}
+		
+		return true;
+	}
+	
+	private boolean parcelFound( int option, int index, String arg, com.kfs.bsd.common.util.junit.TestCLOptionsProcessor.Options target ) {
+		
+		// Stores a parcel of the given option.
+		
+		try {
+			
+			switch( option ) {
+				
+				case 2:
+					target.port = parseInt( arg );
+					break;
+				
+				case 3:
+					target.ratio = parseDouble( arg );
+					break;
+				
+				case 4:
+					target.force = parseBoolean( arg );
+					break;
+				
+				case 5:
+					target.colour = parseEnum( kConstants5, arg );
+					break;
+				
+				case 6:
+					target.name = arg;
+					break;
+				
+				case 7:
+					collect( 7, parseLong( arg ) );
+					break;
+				
+				case 8:
+					collect( 8, arg );
+					break;
+				
+				case 9:
+					collect( 9, parseEnum( kConstants9, arg ).ordinal() );
+					break;
+			}
+		}
+		catch( IllegalArgumentException e ) {
+			
+			return fail( LinearArgDesequencer.kErrorCodeInvalidValue, index, arg, -1, option );
+		}
+		
+		return true;
+	}
+	
+	private void store( com.kfs.bsd.common.util.junit.TestCLOptionsProcessor.Options target ) {
+		
+		// Stores the parcels of each array option that was
+		// found, replacing whatever its field held before.
+		
+		if( collected( 7 ) )
+			target.sizes = collectedLongs( 7 );
+		if( collected( 8 ) )
+			target.files = collectedStrings( 8 );
+		if( collected( 9 ) )
+			target.tints = collectedEnums( 9, kConstants9 );
+	}
+}
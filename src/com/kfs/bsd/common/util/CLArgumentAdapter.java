@@ -0,0 +1,34 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class CLArgumentAdapter
+ *
+ *  A CLArgumentListener that ignores every event.  Extend
+ *  this class and override only the events of interest.
+ */
+
+package com.kfs.bsd.common.util;
+
+public class CLArgumentAdapter implements CLArgumentListener {
+	
+	public void optionFound( String key ) {
+		
+		// Ignored; override to handle.
+	}
+	
+	public void parcelFound( String key, String parcel ) {
+		
+		// Ignored; override to handle.
+	}
+	
+	public void unexpectedToken( int tokenIndex, String token ) {
+		
+		// Ignored; override to handle.
+	}
+	
+	public void missingParcel( String key ) {
+		
+		// Ignored; override to handle.
+	}
+}
@@ -0,0 +1,527 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class CLArgumentBinder
+ *
+ *  Copies the results of a parse into the fields or setters of
+ *  an options object.  An argument is bound to the member whose
+ *  name matches its key, ignoring case and any characters other
+ *  than letters and digits, so that the key "dry-run" is bound to
+ *  setDryRun() or to a field named dryRun.  A setter is preferred
+ *  to a field of the same name.  Members of other types, and
+ *  arguments that match no member, are left alone, as are the
+ *  members of arguments that were not found.
+ *
+ *  The member types understood are:
+ *
+ *    boolean           - the last parcel, or true if the
+ *                        argument has no parcels
+ *    int, long         - the last parcel, or the number of times
+ *                        the argument was found if it has no parcels
+ *    double, String,
+ *    or an enum        - the last parcel
+ *    an array of any
+ *    of the above      - the relevant parcels
+ *
+ *  If an argument was declared with the type of its member, the
+ *  values converted by the parse are used as they are.  Otherwise
+ *  its parcels are converted as CLArgumentSpec converts typed
+ *  arguments; an IllegalArgumentException is thrown if one cannot be.
+ *
+ *  The members of a class are found, and turned into MethodHandles,
+ *  only once (see forClass()).  Matching them to the options of a
+ *  spec is also done once per spec, so binding is a loop over option
+ *  numbers and direct handle invocations, without reflection, without
+ *  looking up keys, and without boxing.  The matches for the last
+ *  few specs bound from are kept, so a binder shared by a handful of
+ *  specs does not match its members again on each call.
+ */
+
+package com.kfs.bsd.common.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashMap;
+
+public final class CLArgumentBinder<T> {
+	
+	// The kinds of member, each invoked through a handle of its own type
+	
+	private static final int kKindBoolean = 0;
+	private static final int kKindInt = 1;
+	private static final int kKindLong = 2;
+	private static final int kKindDouble = 3;
+	private static final int kKindObject = 4;
+	
+	// The binders made so far, one per class
+	
+	private static final ClassValue<CLArgumentBinder<?>> kBinders = new ClassValue<CLArgumentBinder<?>>() {
+		
+		protected CLArgumentBinder<?> computeValue( Class<?> type ) {
+			
+			return new CLArgumentBinder<Object>( type );
+		}
+	};
+	
+	// The class being bound to, and its members by normalized name
+	
+	private final Class<?> type;
+	private final HashMap<String,Member> members = new HashMap<String,Member>();
+	
+	// The number of plans kept, one per spec
+	
+	private static final int kMaxPlans = 8;
+	
+	// The members matched to the keys of the last few specs
+	// bound from, most recent first.  Replaced (never changed)
+	// when a plan is added, so that it can be read without locking.
+	
+	private volatile Plan [] plans = new Plan [0];
+	
+	// A member of the class being bound to
+	
+	private static final class Member {
+		
+		private final String name;
+		private final Class<?> type;
+		private final Class<?> elementType;
+		private final int kind;
+		private final MethodHandle handle;
+		private final Object [] constants;
+		
+		private Member( String name, Class<?> type, MethodHandle handle ) {
+			
+			// Records the given member, which is a field or setter of the
+			// given type.  The handle is adapted to the type of its kind,
+			// so that it can be invoked exactly.
+			
+			super();
+			
+			this.name = name;
+			this.type = type;
+			this.elementType = type.isArray() ? type.getComponentType() : type;
+			this.constants = elementType.isEnum() ? elementType.getEnumConstants() : null;
+			
+			if( type == boolean.class ) kind = kKindBoolean;
+			else if( type == int.class ) kind = kKindInt;
+			else if( type == long.class ) kind = kKindLong;
+			else if( type == double.class ) kind = kKindDouble;
+			else kind = kKindObject;
+			
+			Class<?> handleType = kind == kKindObject ? Object.class : type;
+			
+			this.handle = handle.asType( MethodType.methodType( void.class, Object.class, handleType ) );
+		}
+	}
+	
+	// The members matched to the options of one spec
+	
+	private static final class Plan {
+		
+		private final CLArgumentSpec spec;
+		private final int [] options;
+		private final Member [] members;
+		
+		// Whether or not each option was declared with the
+		// type of its member, so its values can be used as
+		// they are, rather than converted from its parcels
+		
+		private final boolean [] typed;
+		
+		private Plan( CLArgumentSpec spec, int [] options, Member [] members, boolean [] typed ) {
+			
+			super();
+			
+			this.spec = spec;
+			this.options = options;
+			this.members = members;
+			this.typed = typed;
+		}
+	}
+	
+	// The constructor
+	
+	private CLArgumentBinder( Class<?> type ) {
+		
+		// Finds the members of the given class, and its superclasses.
+		// Members of subclasses hide those of their superclasses.
+		
+		super();
+		
+		this.type = type;
+		
+		for( Class<?> row = type ; row != null && row != Object.class ; row = row.getSuperclass() ) {
+			
+			MethodHandles.Lookup lookup;
+			
+			try {
+				lookup = MethodHandles.privateLookupIn( row, MethodHandles.lookup() );
+			}
+			catch( IllegalAccessException e ) {
+				throw new IllegalArgumentException( "Cannot bind to " + row.getName(), e );
+			}
+			
+			for( Method method : row.getDeclaredMethods() ) {
+				
+				String name = method.getName();
+				
+				if( name.length() < 4 || ! name.startsWith( "set" ) || method.getParameterCount() != 1 || Modifier.isStatic( method.getModifiers() ) )
+					continue;
+				
+				if( ! isSupported( method.getParameterTypes()[ 0 ] ) || members.containsKey( normalize( name.substring( 3 ) ) ) )
+					continue;
+				
+				try {
+					members.put( normalize( name.substring( 3 ) ), new Member( name + "()", method.getParameterTypes()[ 0 ], lookup.unreflect( method ) ) );
+				}
+				catch( IllegalAccessException e ) {
+					throw new IllegalArgumentException( "Cannot bind to " + row.getName() + "." + name + "()", e );
+				}
+			}
+		}
+		
+		for( Class<?> row = type ; row != null && row != Object.class ; row = row.getSuperclass() ) {
+			
+			MethodHandles.Lookup lookup;
+			
+			try {
+				lookup = MethodHandles.privateLookupIn( row, MethodHandles.lookup() );
+			}
+			catch( IllegalAccessException e ) {
+				throw new IllegalArgumentException( "Cannot bind to " + row.getName(), e );
+			}
+			
+			for( Field field : row.getDeclaredFields() ) {
+				
+				if( Modifier.isStatic( field.getModifiers() ) || Modifier.isFinal( field.getModifiers() ) || field.isSynthetic() )
+					continue;
+				
+				if( ! isSupported( field.getType() ) || members.containsKey( normalize( field.getName() ) ) )
+					continue;
+				
+				try {
+					members.put( normalize( field.getName() ), new Member( field.getName(), field.getType(), lookup.unreflectSetter( field ) ) );
+				}
+				catch( IllegalAccessException e ) {
+					throw new IllegalArgumentException( "Cannot bind to " + row.getName() + "." + field.getName(), e );
+				}
+			}
+		}
+	}
+	
+	@SuppressWarnings( "unchecked" )
+	public static <T> CLArgumentBinder<T> forClass( Class<T> type ) {
+		
+		// Returns the binder for the given class.  The members of
+		// each class are only looked up the first time.
+		
+		return (CLArgumentBinder<T>) kBinders.get( type );
+	}
+	
+	// Binding functions
+	
+	public T bind( CLArgumentResult source, T target ) {
+		
+		// Copies the arguments found in the given result
+		// into the given object, and returns the object.
+		
+		Plan current = planFor( source.getSpec() );
+		
+		for( int row = 0 ; row < current.options.length ; row++ ) {
+			
+			int option = current.options[ row ];
+			Member member = current.members[ row ];
+			int count = source.countParcels( option );
+			
+			if( count == 0 ) continue;
+			
+			String last = null;
+			String [] parcels = null;
+			long [] values = CLArgumentValues.kNoValues;
+			
+			if( member.elementType == String.class ) {
+				
+				if( member.type.isArray() )
+					parcels = source.getRelevantParcels( option );
+				else
+					last = source.getLastParcel( option );
+			}
+			else if( current.typed[ row ] )
+				values = source.getValueBin( option );
+			
+			else
+				values = convert( current, row, member.type.isArray() ? source.getRelevantParcels( option ) : new String [] { source.getLastParcel( option ) } );
+			
+			store( current, row, target, count, last, parcels, values, values.length );
+		}
+		
+		return target;
+	}
+	
+	public T bind( LinearArgDesequencer source, T target ) {
+		
+		// Copies the arguments found by the last parse of the
+		// given desequencer into the given object, and returns
+		// the object.  This uses the spec that the parse was done
+		// with, and never compiles one; if the definitions have
+		// changed since the last parse, nothing is bound.
+		
+		LinearArgDesequencer.CLArgumentSet set = source.argSet;
+		CLArgumentSpec spec = set.getCompiledSpec();
+		
+		if( spec == null ) return target;
+		
+		Plan current = planFor( spec );
+		
+		for( int row = 0 ; row < current.options.length ; row++ ) {
+			
+			int option = current.options[ row ];
+			Member member = current.members[ row ];
+			LinearArgDesequencer.CLArgumentSet.CLArg node = set.getCompiledNode( option );
+			int count = node.parcels.size();
+			
+			if( count == 0 ) continue;
+			
+			String last = null;
+			String [] parcels = null;
+			long [] values = CLArgumentValues.kNoValues;
+			int valueCount = 0;
+			
+			if( member.elementType == String.class ) {
+				
+				if( member.type.isArray() )
+					parcels = node.getRelevantParcels();
+				else
+					last = node.getMostRelevantParcel();
+			}
+			else if( current.typed[ row ] ) {
+				
+				values = node.getValueBin();
+				valueCount = node.getValueCount();
+			}
+			else {
+				
+				values = convert( current, row, member.type.isArray() ? node.getRelevantParcels() : new String [] { node.getMostRelevantParcel() } );
+				valueCount = values.length;
+			}
+			
+			store( current, row, target, count, last, parcels, values, valueCount );
+		}
+		
+		return target;
+	}
+	
+	private Plan planFor( CLArgumentSpec spec ) {
+		
+		// Returns the members matched to the options of the given
+		// spec, matching them if the spec is not one of the last
+		// few.  Most programs only have one.
+		
+		Plan [] kept = plans;
+		
+		for( Plan current : kept )
+			if( current.spec == spec )
+				return current;
+		
+		Plan current = matchPlan( spec );
+		
+		synchronized( this ) {
+			
+			// Put the new plan first, and drop the oldest if
+			// there are too many.  Racing threads at worst
+			// match the same spec twice.
+			
+			kept = plans;
+			
+			Plan [] result = new Plan [ Math.min( kMaxPlans, kept.length + 1 ) ];
+			
+			result[ 0 ] = current;
+			System.arraycopy( kept, 0, result, 1, result.length -1 );
+			
+			plans = result;
+		}
+		
+		return current;
+	}
+	
+	private Plan matchPlan( CLArgumentSpec spec ) {
+		
+		// Matches the members to the options of the given spec.
+		
+		int count = 0;
+		
+		for( int option = 0 ; option < spec.getOptionCount() ; option++ )
+			if( members.containsKey( normalize( spec.getKey( option ) ) ) )
+				count++;
+		
+		int [] options = new int [ count ];
+		Member [] matched = new Member [ count ];
+		boolean [] typed = new boolean [ count ];
+		
+		count = 0;
+		
+		for( int option = 0 ; option < spec.getOptionCount() ; option++ ) {
+			
+			Member member = members.get( normalize( spec.getKey( option ) ) );
+			
+			if( member != null ) {
+				
+				options[ count ] = option;
+				matched[ count ] = member;
+				typed[ count++ ] = spec.getValueType( option ) == member.elementType;
+			}
+		}
+		
+		return new Plan( spec, options, matched, typed );
+	}
+	
+	private static void store( Plan plan, int row, Object target, int count, String last, String [] parcels, long [] values, int valueCount ) {
+		
+		// Stores the given argument in its member.  count is the number
+		// of parcels found, including the null ones that mark each
+		// occurrence.  A String member is given its last parcel, or
+		// (if it is an array) its relevant parcels; any other member
+		// is given the packed values of all of the non-null parcels.
+		
+		Member member = plan.members[ row ];
+		
+		try {
+			
+			switch( member.kind ) {
+				
+				case kKindBoolean:
+					
+					member.handle.invokeExact( target, valueCount == 0 || values[ valueCount -1 ] != 0 );
+					break;
+				
+				case kKindInt:
+					
+					member.handle.invokeExact( target, valueCount == 0 ? count : (int) values[ valueCount -1 ] );
+					break;
+				
+				case kKindLong:
+					
+					member.handle.invokeExact( target, valueCount == 0 ? (long) count : values[ valueCount -1 ] );
+					break;
+				
+				case kKindDouble:
+					
+					if( valueCount > 0 )
+						member.handle.invokeExact( target, Double.longBitsToDouble( values[ valueCount -1 ] ) );
+					break;
+				
+				default:
+					
+					if( parcels != null )
+						member.handle.invokeExact( target, (Object) parcels );
+					
+					else if( member.type.isArray() )
+						member.handle.invokeExact( target, toArray( plan, row, values, valueCount ) );
+					
+					else if( member.elementType == String.class ) {
+						
+						if( last != null )
+							member.handle.invokeExact( target, (Object) last );
+					}
+					else if( valueCount > 0 )
+						member.handle.invokeExact( target, member.constants[ (int) values[ valueCount -1 ] ] );
+			}
+		}
+		catch( RuntimeException e ) {
+			
+			throw e;
+		}
+		catch( Error e ) {
+			
+			throw e;
+		}
+		catch( Throwable e ) {
+			
+			// Only setters can get here, with a checked exception.
+			
+			throw new IllegalArgumentException( "Cannot bind '" + plan.spec.getKey( plan.options[ row ] ) + "' to " + member.name, e );
+		}
+	}
+	
+	private static long [] convert( Plan plan, int row, String [] bin ) {
+		
+		// Converts the non-null parcels in the given bin into packed
+		// values of the type of the given member.  Only needed when
+		// the argument was not declared with that type, and only for
+		// the parcels that are stored (the relevant ones of an array,
+		// and otherwise the last).
+		
+		Member member = plan.members[ row ];
+		long [] result = new long [ bin.length ];
+		int count = 0;
+		
+		try {
+			
+			for( String parcel : bin )
+				if( parcel != null )
+					result[ count++ ] = CLArgumentValues.parse( member.elementType, parcel );
+		}
+		catch( IllegalArgumentException e ) {
+			
+			throw new IllegalArgumentException( "Cannot bind '" + plan.spec.getKey( plan.options[ row ] ) + "' to " + member.name + ": " + e.getMessage(), e );
+		}
+		
+		return count == result.length ? result : Arrays.copyOf( result, count );
+	}
+	
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	private static Object toArray( Plan plan, int row, long [] values, int valueCount ) {
+		
+		// Returns the relevant values out of the given ones, as
+		// an array of the type of the given member.
+		
+		Member member = plan.members[ row ];
+		int option = plan.options[ row ];
+		int start = CLArgumentValues.relevantStart( valueCount, plan.spec.isArray( option ), plan.spec.getParcelCount( option ) );
+		
+		if( member.elementType == int.class ) return CLArgumentValues.toInts( values, start, valueCount );
+		if( member.elementType == long.class ) return CLArgumentValues.toLongs( values, start, valueCount );
+		if( member.elementType == double.class ) return CLArgumentValues.toDoubles( values, start, valueCount );
+		if( member.elementType == boolean.class ) return CLArgumentValues.toBooleans( values, start, valueCount );
+		
+		return CLArgumentValues.toEnums( (Class) member.elementType, member.constants, values, start, valueCount );
+	}
+	
+	// Helper functions
+	
+	private static boolean isSupported( Class<?> type ) {
+		
+		// Returns whether or not members of the given type can be bound.
+		
+		Class<?> elementType = type.isArray() ? type.getComponentType() : type;
+		
+		return elementType == String.class || CLArgumentValues.isTyped( elementType );
+	}
+	
+	private static String normalize( String name ) {
+		
+		// Returns the given key or member name, in lower case,
+		// without any characters other than letters and digits.
+		
+		StringBuilder result = new StringBuilder( name.length() );
+		
+		for( int row = 0 ; row < name.length() ; row++ )
+			if( Character.isLetterOrDigit( name.charAt( row ) ) )
+				result.append( Character.toLowerCase( name.charAt( row ) ) );
+		
+		return result.toString();
+	}
+	
+	public String toString() {
+		
+		// Standard toString.
+		
+		return "CLArgumentBinder for " + type.getName() + ": " + members.size() + " members";
+	}
+}
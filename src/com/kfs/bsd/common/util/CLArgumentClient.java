@@ -0,0 +1,367 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class CLArgumentClient
+ *
+ *  A connection to a CLArgumentDaemon.  Each call to parse()
+ *  or usage() sends one request and waits for its reply, so a
+ *  client should be used by one thread at a time.
+ *
+ *  The main() function of this class measures a daemon: it
+ *  opens many connections at once, sends the same argument
+ *  array over each of them many times, and prints the
+ *  throughput and the latency percentiles:
+ *
+ *    java com.kfs.bsd.common.util.CLArgumentClient <socket> <connections> <requests> [<arg> ...]
+ */
+
+package com.kfs.bsd.common.util;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+public final class CLArgumentClient implements AutoCloseable {
+	
+	// The connection
+	
+	private final SocketChannel channel;
+	private final ByteBuffer header = ByteBuffer.allocate( 4 );
+	private final CLArgumentDaemon.Frame request = new CLArgumentDaemon.Frame();
+	
+	// The constructor
+	
+	public CLArgumentClient( Path socket ) throws IOException {
+		
+		// Connects to the daemon listening on the given socket.
+		
+		super();
+		
+		this.channel = SocketChannel.open( StandardProtocolFamily.UNIX );
+		
+		try {
+			channel.connect( UnixDomainSocketAddress.of( socket ) );
+		}
+		catch( IOException e ) {
+			
+			CLArgumentDaemon.closeQuietly( channel );
+			throw e;
+		}
+	}
+	
+	// Request functions
+	
+	public Reply parse( String [] args ) throws IOException {
+		
+		// Asks the daemon to parse the given arguments.
+		
+		return send( CLArgumentDaemon.kRequestParse, args );
+	}
+	
+	public Reply parseWithUsage( String [] args ) throws IOException {
+		
+		// Asks the daemon to parse the given arguments,
+		// and to return the usage text along with them.
+		
+		return send( (byte) ( CLArgumentDaemon.kRequestParse | CLArgumentDaemon.kRequestUsage ), args );
+	}
+	
+	public String usage() throws IOException {
+		
+		// Asks the daemon for its usage text.
+		
+		return send( CLArgumentDaemon.kRequestUsage, new String [0] ).getUsage();
+	}
+	
+	private Reply send( byte what, String [] args ) throws IOException {
+		
+		// Sends one request, and reads its reply.
+		
+		request.clear();
+		request.put( what );
+		request.putInt( args.length );
+		
+		for( String arg : args )
+			request.putString( arg );
+		
+		request.writeTo( channel );
+		
+		ByteBuffer reply = CLArgumentDaemon.readFrame( channel, header );
+		
+		if( reply == null )
+			throw new ClosedChannelException();
+		
+		return new Reply( reply );
+	}
+	
+	public void close() throws IOException {
+		
+		// Closes the connection.
+		
+		channel.close();
+	}
+	
+	public static final class Reply {
+		
+		// The answer to one request: the error, if any, the relevant
+		// parcels of each option that was found, and the usage text,
+		// if it was asked for.  Mirrors the accessors of CLArgumentResult.
+		
+		private final int code;
+		private final int tokenIndex;
+		private final String message;
+		private final HashMap<String,String[]> parcels = new HashMap<String,String[]>();
+		private final HashMap<String,Integer> counts = new HashMap<String,Integer>();
+		private final String usage;
+		
+		private static final String [] kNoParcels = new String [0];
+		
+		Reply( ByteBuffer source ) {
+			
+			// Decodes a reply frame.
+			
+			super();
+			
+			code = source.getInt();
+			tokenIndex = source.getInt();
+			message = CLArgumentDaemon.Frame.getString( source );
+			
+			int found = source.getInt();
+			
+			for( int row = 0 ; row < found ; row++ ) {
+				
+				String key = CLArgumentDaemon.Frame.getString( source );
+				
+				counts.put( key, source.getInt() );
+				
+				String [] relevant = new String [ source.getInt() ];
+				
+				for( int column = 0 ; column < relevant.length ; column++ )
+					relevant[ column ] = CLArgumentDaemon.Frame.getString( source );
+				
+				parcels.put( key, relevant );
+			}
+			
+			usage = CLArgumentDaemon.Frame.getString( source );
+		}
+		
+		public boolean sequenceError() {
+			
+			// Returns whether or not the parse returned an error.
+			
+			return code != LinearArgDesequencer.kErrorCodeNone;
+		}
+		
+		public int sequenceErrorCode() {
+			
+			// Returns the error code returned by the parse.
+			// Zero implies no error occurred.
+			
+			return code;
+		}
+		
+		public String sequenceErrorMsg() {
+			
+			// Returns the error message returned by the parse.
+			// null implies no error code.
+			
+			return message;
+		}
+		
+		public int getErrorTokenIndex() {
+			
+			// Returns the position of the offending token in
+			// the argument array, or -1 if there was none.  A
+			// token read from a response file is reported at the
+			// position of the '@file' argument that named the file.
+			
+			return tokenIndex;
+		}
+		
+		public boolean foundHelpFlag() {
+			
+			// A convenience function that returns whether or not the help flag was found.
+			
+			return getParcelCountForKey( LinearArgDesequencer.kArgKeyHelp ) > 0;
+		}
+		
+		public int verbosity() {
+			
+			// A convenience function that returns the verbosity described by the arguments.
+			
+			return getParcelCountForKey( LinearArgDesequencer.kArgKeyVerbose );
+		}
+		
+		public String getParcelFromKey( String id ) {
+			
+			// Returns the most relevant parcel in the given argument.
+			
+			String [] relevant = parcels.get( id );
+			
+			return relevant == null || relevant.length == 0 ? null : relevant[ relevant.length -1 ];
+		}
+		
+		public String [] getParcelArrayFromKey( String id ) {
+			
+			// Returns an array of the parcels in the given argument that are
+			// relevant based on the isArray and parcelCount properties.
+			
+			String [] relevant = parcels.get( id );
+			
+			return relevant == null ? kNoParcels : relevant.clone();
+		}
+		
+		public int getParcelCountForKey( String id ) {
+			
+			// Returns the number of found parcels, including
+			// the null ones, that are in the given argument.
+			
+			Integer count = counts.get( id );
+			
+			return count == null ? 0 : count.intValue();
+		}
+		
+		public String getUsage() {
+			
+			// Returns the usage text, or null if it was not asked for.
+			
+			return usage;
+		}
+	}
+	
+	// The load-testing tool
+	
+	public static void main( String [] args ) throws Exception {
+		
+		// Opens the given number of connections to the daemon on
+		// the given socket at once, sends the given arguments the
+		// given number of times over each, and prints the results.
+		
+		if( args.length < 3 ) {
+			
+			System.err.println( "Usage: java com.kfs.bsd.common.util.CLArgumentClient <socket> <connections> <requests> [<arg> ...]" );
+			System.exit( 1 );
+		}
+		
+		final Path socket = Paths.get( args[ 0 ] );
+		final int connections = Integer.parseInt( args[ 1 ] );
+		final int requests = Integer.parseInt( args[ 2 ] );
+		final String [] sample = Arrays.copyOfRange( args, 3, args.length );
+		
+		final CountDownLatch ready = new CountDownLatch( connections );
+		final CountDownLatch go = new CountDownLatch( 1 );
+		ExecutorService executor = CLArgumentDaemon.newExecutor();
+		List<Future<long[]>> futures = new ArrayList<Future<long[]>>();
+		
+		for( int row = 0 ; row < connections ; row++ ) {
+			
+			futures.add( executor.submit( new Callable<long[]>() {
+				
+				public long [] call() throws Exception {
+					
+					// Connect, wait for everyone else, and then
+					// time each request on this connection.  A failed
+					// connect still counts as ready, so that the run
+					// starts without it; it is reported afterwards.
+					
+					long [] latencies = new long [ requests ];
+					CLArgumentClient client;
+					
+					try {
+						client = new CLArgumentClient( socket );
+					}
+					finally {
+						
+						ready.countDown();
+					}
+					
+					try {
+						
+						go.await();
+						
+						for( int request = 0 ; request < requests ; request++ ) {
+							
+							long start = System.nanoTime();
+							client.parse( sample );
+							latencies[ request ] = System.nanoTime() - start;
+						}
+					}
+					finally {
+						
+						client.close();
+					}
+					
+					return latencies;
+				}
+			} ) );
+		}
+		
+		ready.await();
+		
+		long start = System.nanoTime();
+		go.countDown();
+		
+		long [] all = new long [ connections * requests ];
+		int count = 0;
+		int failed = 0;
+		Throwable firstFailure = null;
+		
+		for( Future<long[]> future : futures ) {
+			
+			long [] latencies;
+			
+			try {
+				latencies = future.get();
+			}
+			catch( ExecutionException e ) {
+				
+				if( failed++ == 0 ) firstFailure = e.getCause();
+				continue;
+			}
+			
+			System.arraycopy( latencies, 0, all, count, latencies.length );
+			count += latencies.length;
+		}
+		
+		long elapsed = System.nanoTime() - start;
+		
+		executor.shutdown();
+		
+		all = Arrays.copyOf( all, count );
+		Arrays.sort( all );
+		
+		System.out.printf( "%d requests over %d connections in %.1f ms%n", all.length, connections - failed, elapsed / 1e6 );
+		
+		if( failed > 0 )
+			System.out.printf( "Failed connections: %d (first: %s)%n", failed, firstFailure );
+		
+		System.out.printf( "Throughput: %.0f requests/s%n", all.length / ( elapsed / 1e9 ) );
+		System.out.printf( "Latency: p50 %.1f us, p99 %.1f us, max %.1f us%n", percentile( all, 50 ) / 1e3, percentile( all, 99 ) / 1e3, all.length == 0 ? 0.0 : all[ all.length -1 ] / 1e3 );
+	}
+	
+	static long percentile( long [] sorted, double percent ) {
+		
+		// Returns the given percentile of the given sorted samples.
+		
+		if( sorted.length == 0 ) return 0;
+		
+		int rank = (int) Math.ceil( percent / 100 * sorted.length ) -1;
+		
+		return sorted[ Math.max( 0, Math.min( sorted.length -1, rank ) ) ];
+	}
+}
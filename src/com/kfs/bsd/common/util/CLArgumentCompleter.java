@@ -0,0 +1,496 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class CLArgumentCompleter
+ *
+ *  Computes the tab completions of a partial argument list,
+ *  according to a CLArgumentSpec.
+ *
+ *  The arguments before the cursor are replayed through the
+ *  same scanner as desequenceArgs(), so the completer knows
+ *  exactly what the next argument would be: a parcel of some
+ *  option (completed by a CLCompletionProvider, or from the
+ *  constants of an enum or boolean argument), or an option.
+ *  Switches are completed from the prefix trie of the spec,
+ *  so a completion costs time proportional to the length of
+ *  the prefix and the number of matches, not the number of
+ *  switches.
+ *
+ *  The values supplied by a provider are kept for a fixed
+ *  time to live, after which the provider is asked again.
+ *  Time is read from a clock in System.nanoTime() terms,
+ *  which may be given to the constructor (for testing).
+ *
+ *  Completion scripts for bash and zsh can be written with
+ *  writeBashScript() and writeZshScript().  The scripts run a
+ *  command with the cursor position and the words on the
+ *  command line, and offer each line that it prints.  The
+ *  main() function of this class is such a command for a
+ *  spec saved by CLArgumentSnapshot:
+ *
+ *    java com.kfs.bsd.common.util.CLArgumentCompleter <snapshot> <cursor> [<word> ...]
+ *    java com.kfs.bsd.common.util.CLArgumentCompleter --bash <command> <snapshot>
+ *    java com.kfs.bsd.common.util.CLArgumentCompleter --zsh <command> <snapshot>
+ */
+
+package com.kfs.bsd.common.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+public final class CLArgumentCompleter {
+	
+	// The definitions being completed
+	
+	private final CLArgumentSpec spec;
+	
+	// Every flag in the spec, in order
+	
+	private final char [] flags;
+	
+	// The registered providers, and the values they
+	// supplied, by key, each with its time to live
+	
+	private final ConcurrentHashMap<String,Provider> providers = new ConcurrentHashMap<String,Provider>();
+	private final ConcurrentHashMap<String,CachedValues> cache = new ConcurrentHashMap<String,CachedValues>();
+	
+	// The clock that times to live are measured against
+	
+	private final LongSupplier clock;
+	
+	private static final LongSupplier kSystemClock = new LongSupplier() {
+		
+		public long getAsLong() {
+			
+			// Reads the system's monotonic clock.
+			
+			return System.nanoTime();
+		}
+	};
+	
+	// Shared empty arrays
+	
+	private static final String [] kNoCompletions = new String [0];
+	
+	// The constants offered for boolean arguments
+	
+	private static final String [] kBooleanValues = { "false", "true" };
+	
+	// The constructor
+	
+	public CLArgumentCompleter( CLArgumentSpec spec ) {
+		
+		// Builds a completer for the given spec.
+		
+		this( spec, kSystemClock );
+	}
+	
+	public CLArgumentCompleter( CLArgumentSpec spec, LongSupplier clock ) {
+		
+		// Builds a completer for the given spec, whose times to
+		// live are measured by the given clock, in nanoseconds.
+		
+		super();
+		
+		this.spec = spec;
+		this.clock = clock;
+		
+		// Collect the flags that each option owns, so that
+		// a flag registered twice is only offered once.
+		
+		char [] found = new char [ 16 ];
+		int count = 0;
+		
+		for( int option = 0 ; option < spec.getOptionCount() ; option++ ) {
+			
+			for( char flag : spec.getFlags( option ) ) {
+				
+				Integer owner = spec.index.getFlag( flag );
+				
+				if( owner == null || owner.intValue() != option ) continue;
+				
+				if( count == found.length )
+					found = Arrays.copyOf( found, count * 2 );
+				
+				found[ count++ ] = flag;
+			}
+		}
+		
+		this.flags = Arrays.copyOf( found, count );
+		
+		Arrays.sort( flags );
+	}
+	
+	// Providers
+	
+	private static final class Provider {
+		
+		// A registered provider, with its time to live.
+		
+		private final CLCompletionProvider provider;
+		private final long timeToLive;
+		
+		Provider( CLCompletionProvider provider, long timeToLive ) {
+			
+			// Java requires that this be here.
+			
+			super();
+			
+			this.provider = provider;
+			this.timeToLive = timeToLive;
+		}
+	}
+	
+	private static final class CachedValues {
+		
+		// The sorted values supplied by a provider, and the
+		// time (in System.nanoTime() terms) when they expire.
+		
+		private final Provider source;
+		private final String [] values;
+		private final long expiry;
+		
+		CachedValues( Provider source, String [] values, long expiry ) {
+			
+			// Java requires that this be here.
+			
+			super();
+			
+			this.source = source;
+			this.values = values;
+			this.expiry = expiry;
+		}
+		
+		boolean isExpired( long now ) {
+			
+			// Returns whether or not these values have expired.
+			
+			return now - expiry >= 0;
+		}
+	}
+	
+	public void setProvider( String key, CLCompletionProvider provider, long timeToLive, TimeUnit unit ) {
+		
+		// Makes the given provider supply the values of the
+		// given argument.  The values it supplies are kept for
+		// the given time.  A null provider removes the provider.
+		
+		if( provider == null )
+			providers.remove( key );
+		else
+			providers.put( key, new Provider( provider, unit.toNanos( timeToLive ) ) );
+		
+		cache.remove( key );
+	}
+	
+	public void evictExpired() {
+		
+		// Forgets every cached value that has expired.  Expired
+		// values are never used in any case; this only frees them.
+		
+		long now = clock.getAsLong();
+		
+		for( String key : cache.keySet() ) {
+			
+			CachedValues cached = cache.get( key );
+			
+			if( cached != null && cached.isExpired( now ) )
+				cache.remove( key, cached );
+		}
+	}
+	
+	private String [] providedValues( String key ) {
+		
+		// Returns the sorted values of the given argument from its
+		// provider (or the cache), or null if it has no provider.
+		
+		Provider provider = providers.get( key );
+		
+		if( provider == null ) return null;
+		
+		long now = clock.getAsLong();
+		CachedValues cached = cache.get( key );
+		
+		if( cached != null && cached.source == provider && ! cached.isExpired( now ) )
+			return cached.values;
+		
+		// Ask the provider.  A broken provider must not
+		// break the shell, so it just supplies nothing.
+		
+		String [] values;
+		
+		try {
+			values = provider.provider.getValues( key );
+		}
+		catch( RuntimeException e ) {
+			
+			values = null;
+		}
+		
+		values = values == null ? kNoCompletions : values.clone();
+		Arrays.sort( values );
+		
+		cache.put( key, new CachedValues( provider, values, now + provider.timeToLive ) );
+		
+		return values;
+	}
+	
+	// Completion functions
+	
+	public CLArgumentSpec getSpec() {
+		
+		// Returns the spec being completed.
+		
+		return spec;
+	}
+	
+	public String [] complete( String [] args, int cursor ) {
+		
+		// Returns the possible completions of the argument at the
+		// given position in the given arguments (which do not include
+		// the name of the program), in order.  The cursor may be
+		// args.length, to complete an argument not yet begun.
+		
+		if( cursor < 0 || cursor > args.length )
+			throw new IndexOutOfBoundsException( "Cursor: " + cursor );
+		
+		String word = cursor < args.length ? args[ cursor ] : "";
+		
+		// Replay the arguments before the cursor.
+		
+		CLArgumentScanner scanner = new CLArgumentScanner( spec );
+		IgnoringSink sink = new IgnoringSink();
+		
+		for( int row = 0 ; row < cursor ; row++ )
+			if( ! scanner.accept( args[ row ], sink ) )
+				break;
+		
+		int expected = scanner.expectedOption();
+		
+		// Anything that starts with a dash is an option,
+		// whether or not a parcel was expected.
+		
+		if( word.startsWith( "--" ) )
+			return completeSwitch( word );
+		
+		if( word.startsWith( "-" ) )
+			return completeFlag( word );
+		
+		// Response files are left to the shell.
+		
+		if( spec.allowsResponseFiles() && word.startsWith( "@" ) && ! word.startsWith( "@@" ) )
+			return kNoCompletions;
+		
+		if( expected >= 0 )
+			return completeParcel( expected, word );
+		
+		// Nothing is expected, so only an option can come next.
+		
+		return word.isEmpty() ? completeSwitch( "--" ) : kNoCompletions;
+	}
+	
+	private String [] completeSwitch( String word ) {
+		
+		// Returns every switch that begins with the given
+		// word after its dashes, with the dashes.
+		
+		String [] result = spec.index.getSwitchesWithPrefix( word, 2 );
+		
+		for( int row = 0 ; row < result.length ; row++ )
+			result[ row ] = "--" + result[ row ];
+		
+		return result;
+	}
+	
+	private String [] completeFlag( String word ) {
+		
+		// Returns the given group of flags followed by each flag
+		// in turn, if every flag in the group so far is known.
+		
+		for( int row = 1 ; row < word.length() ; row++ )
+			if( spec.index.getFlag( word.charAt( row ) ) == null )
+				return kNoCompletions;
+		
+		// A lone dash could be the start of a switch, too.
+		
+		String [] switches = word.length() == 1 ? completeSwitch( "--" ) : kNoCompletions;
+		String [] result = new String [ flags.length + switches.length ];
+		
+		for( int row = 0 ; row < flags.length ; row++ )
+			result[ row ] = word + flags[ row ];
+		
+		System.arraycopy( switches, 0, result, flags.length, switches.length );
+		
+		return result;
+	}
+	
+	private String [] completeParcel( int option, String word ) {
+		
+		// Returns the values of the given option that
+		// begin with the given word, in order.
+		
+		String [] values = providedValues( spec.getKey( option ) );
+		
+		if( values == null ) {
+			
+			Class<?> type = spec.getValueType( option );
+			
+			if( type == boolean.class )
+				values = kBooleanValues;
+			
+			else if( type.isEnum() ) {
+				
+				Object [] constants = type.getEnumConstants();
+				values = new String [ constants.length ];
+				
+				for( int row = 0 ; row < constants.length ; row++ )
+					values[ row ] = ( (Enum<?>) constants[ row ] ).name();
+				
+				Arrays.sort( values );
+			}
+			else
+				return kNoCompletions;
+		}
+		
+		// The values are sorted, so the matches are all together.
+		
+		int start = Arrays.binarySearch( values, word );
+		
+		if( start < 0 ) start = -( start + 1 );
+		
+		int end = start;
+		
+		while( end < values.length && values[ end ].startsWith( word ) )
+			end++;
+		
+		return Arrays.copyOfRange( values, start, end );
+	}
+	
+	private static final class IgnoringSink implements CLArgumentScanner.Sink {
+		
+		// Replaying only needs the state of the scanner.
+		
+		public void optionFound( int option ) {
+			
+			// Ignored.
+		}
+		
+		public void parcelFound( int option, String parcel, long value ) {
+			
+			// Ignored.
+		}
+		
+		public void unexpectedToken( int tokenIndex, String token ) {
+			
+			// Ignored.
+		}
+		
+		public void missingParcel( int option ) {
+			
+			// Ignored.
+		}
+	}
+	
+	// Completion scripts
+	
+	public static void writeBashScript( Appendable out, String command, String completeCommand ) throws IOException {
+		
+		// Writes a bash completion script for the given command, which
+		// runs completeCommand with the cursor position and the words
+		// after the command name.  When nothing is offered, bash falls
+		// back to its default completion (such as file names).
+		
+		String function = functionName( command );
+		
+		out.append( "# bash completion for " ).append( command ).append( '\n' );
+		out.append( function ).append( "()\n{\n" );
+		out.append( "\tlocal IFS=$'\\n'\n" );
+		out.append( "\tCOMPREPLY=( $( " ).append( completeCommand ).append( " $(( COMP_CWORD - 1 )) \"${COMP_WORDS[@]:1}\" 2>/dev/null ) )\n" );
+		out.append( "}\n" );
+		out.append( "complete -o default -F " ).append( function ).append( ' ' ).append( command ).append( '\n' );
+	}
+	
+	public static void writeZshScript( Appendable out, String command, String completeCommand ) throws IOException {
+		
+		// Writes a zsh completion script for the given command, which
+		// runs completeCommand with the cursor position and the words
+		// after the command name.  When nothing is offered, file names
+		// are completed instead.
+		
+		String function = functionName( command );
+		
+		out.append( "#compdef " ).append( command ).append( '\n' );
+		out.append( function ).append( "() {\n" );
+		out.append( "\tlocal -a candidates\n" );
+		out.append( "\tcandidates=( ${(f)\"$( " ).append( completeCommand ).append( " $(( CURRENT - 2 )) \"${(@)words[2,-1]}\" 2>/dev/null )\"} )\n" );
+		out.append( "\tif (( ${#candidates} )); then\n" );
+		out.append( "\t\tcompadd -Q -- \"${candidates[@]}\"\n" );
+		out.append( "\telse\n" );
+		out.append( "\t\t_files\n" );
+		out.append( "\tfi\n" );
+		out.append( "}\n" );
+		out.append( "compdef " ).append( function ).append( ' ' ).append( command ).append( '\n' );
+	}
+	
+	private static String functionName( String command ) {
+		
+		// Returns the name of the shell function for the given command.
+		
+		StringBuilder result = new StringBuilder( "_complete_" );
+		String name = new File( command ).getName();
+		
+		for( int row = 0 ; row < name.length() ; row++ ) {
+			
+			char c = name.charAt( row );
+			
+			result.append( c < 0x80 && Character.isLetterOrDigit( c ) ? c : '_' );
+		}
+		
+		return result.toString();
+	}
+	
+	private static String quote( String word ) {
+		
+		// Returns the given word quoted for the shell.
+		
+		return "'" + word.replace( "'", "'\\''" ) + "'";
+	}
+	
+	// The command-line tool
+	
+	public static void main( String [] args ) throws IOException {
+		
+		// Prints the completions of the given words, one per line,
+		// or a completion script that runs this tool.
+		
+		if( args.length == 3 && ( args[ 0 ].equals( "--bash" ) || args[ 0 ].equals( "--zsh" ) ) ) {
+			
+			String completeCommand = "java -classpath " + quote( System.getProperty( "java.class.path" ) ) + " " + CLArgumentCompleter.class.getName() + " " + quote( new File( args[ 2 ] ).getAbsolutePath() );
+			
+			if( args[ 0 ].equals( "--bash" ) )
+				writeBashScript( System.out, args[ 1 ], completeCommand );
+			else
+				writeZshScript( System.out, args[ 1 ], completeCommand );
+			
+			return;
+		}
+		
+		if( args.length < 2 ) {
+			
+			System.err.println( "Usage: java com.kfs.bsd.common.util.CLArgumentCompleter <snapshot file> <cursor> [<word> ...]" );
+			System.err.println( "       java com.kfs.bsd.common.util.CLArgumentCompleter --bash|--zsh <command> <snapshot file>" );
+			System.exit( 1 );
+		}
+		
+		String [] words = Arrays.copyOfRange( args, 2, args.length );
+		int cursor = Math.max( 0, Math.min( words.length, Integer.parseInt( args[ 1 ] ) ) );
+		
+		for( String completion : new CLArgumentCompleter( CLArgumentSnapshot.load( new File( args[ 0 ] ) ) ).complete( words, cursor ) )
+			System.out.println( completion );
+	}
+}
@@ -0,0 +1,710 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class CLArgumentDaemon
+ *
+ *  A resident server that parses argument arrays on behalf of
+ *  short-lived processes, so that they need not start a JVM,
+ *  build their argument definitions, or wait for the JIT.
+ *  The definitions are compiled once, when the daemon is
+ *  built, and the daemon listens on a Unix domain socket.
+ *  Use CLArgumentClient to talk to it.
+ *
+ *  Each connection is served on its own thread: a virtual
+ *  thread where the JVM has them, and a pooled thread where
+ *  it does not.  A connection may carry any number of
+ *  requests, one after another.
+ *
+ *  Every message is a frame: a four-byte length (big-endian),
+ *  followed by that many bytes.  A string is a four-byte length
+ *  followed by that many bytes of UTF-8, and a length of -1 is
+ *  a null string.  A request frame is:
+ *
+ *    byte    what      kRequestParse and/or kRequestUsage
+ *    int     count     the number of arguments
+ *    string  ...       the arguments
+ *
+ *  A reply frame is:
+ *
+ *    int     code      the error code (zero if there was none)
+ *    int     index     the argument index of the error (or -1)
+ *    string  message   the error message (or null)
+ *    int     found     the number of options found
+ *    ...               for each option found: the key (a string),
+ *                      the number of parcels including the null
+ *                      ones (an int), and the number of relevant
+ *                      parcels (an int) followed by those parcels
+ *    string  usage     the usage text, if asked for (or null)
+ *
+ *  The daemon never reads response files.  Any process that can
+ *  reach the socket could otherwise have the daemon read a file
+ *  of its choosing, with the daemon's own rights (and relative
+ *  to the daemon's working directory), and send its contents
+ *  back.  When the spec allows response files, a parse request
+ *  with an '@file' argument is refused with
+ *  kErrorCodeUnreadableResponseFile at that argument; clients
+ *  expand response files themselves before sending.  ('@@'
+ *  escapes are still parsed as usual.)
+ *
+ *  The socket is only usable by the user that started the
+ *  daemon.  It is bound inside a new directory that only that
+ *  user can enter, given owner-only permissions there, and then
+ *  moved into place, so that it is never reachable with looser
+ *  permissions.  On file systems without POSIX permissions, the
+ *  socket is bound in place, and protecting it is up to the
+ *  directory that holds it.
+ *
+ *  To run a daemon for the arguments of a LinearArgDesequencer
+ *  subclass with a public no-argument constructor:
+ *
+ *    java com.kfs.bsd.common.util.CLArgumentDaemon <class> <socket>
+ */
+
+package com.kfs.bsd.common.util;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+public final class CLArgumentDaemon implements AutoCloseable {
+	
+	// Request bits
+	
+	public static final byte kRequestParse = 1;
+	public static final byte kRequestUsage = 2;
+	
+	// The largest frame accepted, so that a broken
+	// client cannot make the daemon run out of memory
+	
+	static final int kMaxFrame = 1 << 24;
+	
+	// The number of connections that may wait to be accepted
+	
+	private static final int kBacklog = 4096;
+	
+	// How long to wait after accepting a connection fails;
+	// doubled for each failure in a row, up to the maximum
+	
+	private static final long kMinAcceptBackoff = 1;
+	private static final long kMaxAcceptBackoff = 1000;
+	
+	// The definitions being served
+	
+	private final CLArgumentSpec spec;
+	private final String usage;
+	
+	// The server state
+	
+	private final Path socket;
+	private ServerSocketChannel server = null;
+	private ExecutorService executor = null;
+	private Thread acceptor = null;
+	private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+	private volatile long acceptFailures = 0;
+	private volatile IOException lastAcceptFailure = null;
+	
+	// The constructors
+	
+	public CLArgumentDaemon( LinearArgDesequencer definitions, Path socket ) {
+		
+		// Builds a daemon for the arguments of the given
+		// desequencer, which will listen on the given socket.
+		
+		this( definitions.compileArgSpec(), socket );
+	}
+	
+	public CLArgumentDaemon( CLArgumentSpec spec, Path socket ) {
+		
+		// Builds a daemon that parses with the given spec, and
+		// returns the usage of the spec, on the given socket.
+		
+		this( spec, spec.getUsage(), socket );
+	}
+	
+	public CLArgumentDaemon( CLArgumentSpec spec, String usage, Path socket ) {
+		
+		// Builds a daemon that parses with the given spec, and
+		// returns the given usage text, on the given socket.
+		
+		super();
+		
+		this.spec = spec;
+		this.usage = usage;
+		this.socket = socket;
+	}
+	
+	// Server functions
+	
+	public synchronized void start() throws IOException {
+		
+		// Starts listening on the socket, replacing any stale
+		// socket file left behind by an earlier daemon.
+		
+		if( server != null )
+			throw new IllegalStateException( "The daemon is already running" );
+		
+		Files.deleteIfExists( socket );
+		
+		server = ServerSocketChannel.open( StandardProtocolFamily.UNIX );
+		
+		try {
+			bind( server );
+		}
+		catch( IOException e ) {
+			
+			server.close();
+			server = null;
+			throw e;
+		}
+		
+		executor = newExecutor();
+		
+		acceptor = new Thread( new Runnable() {
+			
+			public void run() {
+				
+				// Hand each connection to a thread of its own.
+				
+				acceptConnections();
+			}
+		}, "CLArgumentDaemon " + socket );
+		
+		acceptor.setDaemon( true );
+		acceptor.start();
+	}
+	
+	private void bind( ServerSocketChannel server ) throws IOException {
+		
+		// Binds the given channel to the socket, with owner-only
+		// permissions where the file system has them (see above).
+		
+		Path parent = socket.toAbsolutePath().getParent();
+		
+		if( ! parent.getFileSystem().supportedFileAttributeViews().contains( "posix" ) ) {
+			
+			server.bind( UnixDomainSocketAddress.of( socket ), kBacklog );
+			return;
+		}
+		
+		Path staging = Files.createTempDirectory( parent, ".cldaemon", PosixFilePermissions.asFileAttribute( PosixFilePermissions.fromString( "rwx------" ) ) );
+		Path staged = staging.resolve( "socket" );
+		
+		try {
+			
+			server.bind( UnixDomainSocketAddress.of( staged ), kBacklog );
+			Files.setPosixFilePermissions( staged, PosixFilePermissions.fromString( "rw-------" ) );
+			Files.move( staged, socket, StandardCopyOption.ATOMIC_MOVE );
+		}
+		finally {
+			
+			Files.deleteIfExists( staged );
+			Files.delete( staging );
+		}
+	}
+	
+	public Path getSocket() {
+		
+		// Returns the path of the socket.
+		
+		return socket;
+	}
+	
+	public CLArgumentSpec getSpec() {
+		
+		// Returns the spec being served.
+		
+		return spec;
+	}
+	
+	private void acceptConnections() {
+		
+		// Accepts connections until the daemon is closed.
+		
+		ServerSocketChannel server = this.server;
+		ExecutorService executor = this.executor;
+		long backoff = kMinAcceptBackoff;
+		
+		while( server.isOpen() ) {
+			
+			final SocketChannel channel;
+			
+			try {
+				channel = server.accept();
+			}
+			catch( ClosedChannelException e ) {
+				
+				// The daemon was closed.
+				
+				break;
+			}
+			catch( IOException e ) {
+				
+				// The connection went away before it was accepted, or
+				// accept() itself is failing (say, out of descriptors).
+				// Wait before trying again, longer each time, so that a
+				// failure that does not go away does not spin the thread.
+				
+				acceptFailures++;
+				lastAcceptFailure = e;
+				
+				if( ! server.isOpen() || ! pause( backoff ) )
+					break;
+				
+				backoff = Math.min( backoff * 2, kMaxAcceptBackoff );
+				continue;
+			}
+			
+			backoff = kMinAcceptBackoff;
+			connections.add( channel );
+			
+			try {
+				executor.execute( new Runnable() {
+					
+					public void run() {
+						
+						// Serve the connection, and forget it when it is done.
+						
+						try {
+							serve( channel );
+						}
+						finally {
+							
+							connections.remove( channel );
+							closeQuietly( channel );
+						}
+					}
+				} );
+			}
+			catch( RejectedExecutionException e ) {
+				
+				// The daemon is closing.
+				
+				connections.remove( channel );
+				closeQuietly( channel );
+			}
+		}
+	}
+	
+	private static boolean pause( long millis ) {
+		
+		// Sleeps for the given time; returns false if the
+		// thread was interrupted instead.
+		
+		try {
+			Thread.sleep( millis );
+			return true;
+		}
+		catch( InterruptedException e ) {
+			
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+	
+	public long getAcceptFailures() {
+		
+		// Returns the number of times accepting a connection has failed.
+		
+		return acceptFailures;
+	}
+	
+	public IOException getLastAcceptFailure() {
+		
+		// Returns why accepting a connection last failed, or null.
+		
+		return lastAcceptFailure;
+	}
+	
+	private void serve( SocketChannel channel ) {
+		
+		// Answers the requests on the given connection until the
+		// client closes it, or sends something that is not a request.
+		
+		ByteBuffer header = ByteBuffer.allocate( 4 );
+		Frame reply = new Frame();
+		
+		try {
+			
+			for( ByteBuffer request = readFrame( channel, header ) ; request != null ; request = readFrame( channel, header ) ) {
+				
+				reply.clear();
+				answer( request, reply );
+				reply.writeTo( channel );
+			}
+		}
+		catch( IOException e ) {
+			
+			// The connection is gone; there is nothing more to do.
+		}
+		catch( RuntimeException e ) {
+			
+			// The request was malformed; drop the connection.
+		}
+	}
+	
+	void answer( ByteBuffer request, Frame reply ) {
+		
+		// Parses the given request, and builds the reply.
+		
+		byte what = request.get();
+		int count = request.getInt();
+		
+		if( count < 0 || count > request.remaining() / 4 )
+			throw new IllegalArgumentException( "Bad argument count: " + count );
+		
+		String [] args = new String [ count ];
+		
+		for( int row = 0 ; row < count ; row++ )
+			args[ row ] = Frame.getString( request );
+		
+		int refused = ( what & kRequestParse ) != 0 && spec.responseFiles ? findResponseFile( args ) : -1;
+		
+		if( refused >= 0 ) {
+			
+			// Response files are not read here (see above).
+			
+			CLArgumentError error = new CLArgumentError( LinearArgDesequencer.kErrorCodeUnreadableResponseFile, refused, args[ refused ], -1, null );
+			
+			reply.putInt( error.getCode() );
+			reply.putInt( error.getTokenIndex() );
+			reply.putString( error.getMessage() );
+			reply.putInt( 0 );
+		}
+		else if( ( what & kRequestParse ) != 0 ) {
+			
+			CLArgumentResult result = spec.parse( args );
+			CLArgumentError error = result.sequenceErrorDetail();
+			
+			reply.putInt( result.sequenceErrorCode() );
+			reply.putInt( error == null ? -1 : error.getTokenIndex() );
+			reply.putString( result.sequenceErrorMsg() );
+			
+			// Only the options that were found are sent.
+			
+			int found = 0;
+			
+			for( int option = 0 ; option < spec.getOptionCount() ; option++ )
+				if( result.isFound( option ) )
+					found++;
+			
+			reply.putInt( found );
+			
+			for( int option = 0 ; option < spec.getOptionCount() && found > 0 ; option++ ) {
+				
+				int parcelCount = result.countParcels( option );
+				
+				if( parcelCount == 0 ) continue;
+				
+				String key = spec.getKey( option );
+				String [] relevant = result.getParcelArrayFromKey( key );
+				
+				reply.putString( key );
+				reply.putInt( parcelCount );
+				reply.putInt( relevant.length );
+				
+				for( String parcel : relevant )
+					reply.putString( parcel );
+			}
+		}
+		else {
+			
+			reply.putInt( LinearArgDesequencer.kErrorCodeNone );
+			reply.putInt( -1 );
+			reply.putString( null );
+			reply.putInt( 0 );
+		}
+		
+		reply.putString( ( what & kRequestUsage ) != 0 ? usage : null );
+	}
+	
+	private static int findResponseFile( String [] args ) {
+		
+		// Returns the position of the first argument that names a
+		// response file ('@' and more, but not '@@'), or -1.
+		
+		for( int row = 0 ; row < args.length ; row++ )
+			if( args[ row ].length() > 1 && args[ row ].charAt( 0 ) == '@' && args[ row ].charAt( 1 ) != '@' )
+				return row;
+		
+		return -1;
+	}
+	
+	public synchronized void close() throws IOException {
+		
+		// Stops listening, drops every connection,
+		// and removes the socket file.
+		
+		if( server == null ) return;
+		
+		server.close();
+		executor.shutdownNow();
+		
+		// The acceptor may be waiting out a failure; wake it up.
+		
+		acceptor.interrupt();
+		
+		for( SocketChannel channel : connections )
+			closeQuietly( channel );
+		
+		try {
+			acceptor.join();
+		}
+		catch( InterruptedException e ) {
+			
+			Thread.currentThread().interrupt();
+		}
+		
+		server = null;
+		executor = null;
+		acceptor = null;
+		
+		Files.deleteIfExists( socket );
+	}
+	
+	// Shared functions
+	
+	static ExecutorService newExecutor() {
+		
+		// Returns an executor that runs each task on a new virtual
+		// thread, if this JVM has them (Java 21 and later), or on a
+		// pool of daemon threads otherwise.  Found by reflection, so
+		// that this class still compiles for older JVMs.
+		
+		try {
+			
+			Method factory = Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" );
+			
+			return (ExecutorService) factory.invoke( null );
+		}
+		catch( ReflectiveOperationException e ) {
+			
+			// Fall through to the thread pool.
+		}
+		
+		return Executors.newCachedThreadPool( new ThreadFactory() {
+			
+			public Thread newThread( Runnable task ) {
+				
+				// Pooled threads must not keep the JVM alive.
+				
+				Thread result = new Thread( task );
+				result.setDaemon( true );
+				
+				return result;
+			}
+		} );
+	}
+	
+	static ByteBuffer readFrame( SocketChannel channel, ByteBuffer header ) throws IOException {
+		
+		// Reads the next frame from the given channel, and returns its
+		// contents, or null if the channel was closed between frames.
+		
+		header.clear();
+		
+		if( ! readFully( channel, header ) ) {
+			
+			if( header.position() == 0 ) return null;
+			
+			throw new ClosedChannelException();
+		}
+		
+		int length = header.getInt( 0 );
+		
+		if( length < 0 || length > kMaxFrame )
+			throw new IOException( "Bad frame length: " + length );
+		
+		ByteBuffer result = ByteBuffer.allocate( length );
+		
+		if( ! readFully( channel, result ) )
+			throw new ClosedChannelException();
+		
+		result.flip();
+		
+		return result;
+	}
+	
+	private static boolean readFully( SocketChannel channel, ByteBuffer buffer ) throws IOException {
+		
+		// Fills the given buffer.  Returns false if the
+		// channel was closed before the buffer was full.
+		
+		while( buffer.hasRemaining() )
+			if( channel.read( buffer ) < 0 )
+				return false;
+		
+		return true;
+	}
+	
+	static void closeQuietly( SocketChannel channel ) {
+		
+		// Closes the given channel, ignoring any problem.
+		
+		try {
+			channel.close();
+		}
+		catch( IOException e ) {
+			
+			// It is closed either way.
+		}
+	}
+	
+	static final class Frame {
+		
+		// A growable buffer that builds one frame, leaving room
+		// at the front for the length, which is filled in when
+		// the frame is written.
+		
+		private ByteBuffer buffer = ByteBuffer.allocate( 256 );
+		
+		Frame() {
+			
+			// Java requires that this be here.
+			
+			super();
+			
+			clear();
+		}
+		
+		void clear() {
+			
+			// Empties this frame.
+			
+			buffer.clear();
+			buffer.position( 4 );
+		}
+		
+		private void reserve( int bytes ) {
+			
+			// Makes room for the given number of bytes.
+			
+			if( buffer.remaining() >= bytes ) return;
+			
+			ByteBuffer bigger = ByteBuffer.allocate( Math.max( buffer.capacity() * 2, buffer.position() + bytes ) );
+			
+			buffer.flip();
+			bigger.put( buffer );
+			buffer = bigger;
+		}
+		
+		void put( byte value ) {
+			
+			// Appends a byte.
+			
+			reserve( 1 );
+			buffer.put( value );
+		}
+		
+		void putInt( int value ) {
+			
+			// Appends an int.
+			
+			reserve( 4 );
+			buffer.putInt( value );
+		}
+		
+		void putString( String value ) {
+			
+			// Appends a string, or -1 for null.
+			
+			if( value == null ) {
+				
+				putInt( -1 );
+				return;
+			}
+			
+			byte [] bytes = value.getBytes( StandardCharsets.UTF_8 );
+			
+			putInt( bytes.length );
+			reserve( bytes.length );
+			buffer.put( bytes );
+		}
+		
+		static String getString( ByteBuffer source ) {
+			
+			// Reads a string written by putString().
+			
+			int length = source.getInt();
+			
+			if( length < 0 ) return null;
+			
+			if( length > source.remaining() )
+				throw new IllegalArgumentException( "Bad string length: " + length );
+			
+			String result = new String( source.array(), source.arrayOffset() + source.position(), length, StandardCharsets.UTF_8 );
+			
+			source.position( source.position() + length );
+			
+			return result;
+		}
+		
+		void writeTo( SocketChannel channel ) throws IOException {
+			
+			// Fills in the length, and writes the whole frame.
+			
+			buffer.putInt( 0, buffer.position() - 4 );
+			buffer.flip();
+			
+			while( buffer.hasRemaining() )
+				channel.write( buffer );
+		}
+	}
+	
+	// The command-line tool
+	
+	public static void main( String [] args ) throws Exception {
+		
+		// Serves the arguments of the given LinearArgDesequencer
+		// subclass on the given socket until the JVM is stopped.
+		
+		if( args.length != 2 ) {
+			
+			System.err.println( "Usage: java com.kfs.bsd.common.util.CLArgumentDaemon <LinearArgDesequencer subclass> <socket>" );
+			System.exit( 1 );
+		}
+		
+		LinearArgDesequencer definitions = (LinearArgDesequencer) Class.forName( args[ 0 ] ).getConstructor().newInstance();
+		
+		final CLArgumentDaemon daemon = new CLArgumentDaemon( definitions, Paths.get( args[ 1 ] ) );
+		
+		daemon.start();
+		
+		Runtime.getRuntime().addShutdownHook( new Thread() {
+			
+			public void run() {
+				
+				// Remove the socket file on the way out.
+				
+				try {
+					daemon.close();
+				}
+				catch( IOException e ) {
+					
+					// The JVM is stopping anyway.
+				}
+			}
+		} );
+		
+		System.err.println( "Serving " + args[ 0 ] + " on " + args[ 1 ] );
+		
+		Thread.currentThread().join();
+	}
+}
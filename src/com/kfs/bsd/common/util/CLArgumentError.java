@@ -0,0 +1,259 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class CLArgumentError
+ *
+ *  A compact record of a problem found while scanning an
+ *  argument array.  Only the facts are recorded when the
+ *  problem is found; the human-readable message is built
+ *  the first time someone asks for it.
+ *
+ *  The same goes for suggestions: an unknown option remembers
+ *  the spec it was scanned against, and only asks that spec
+ *  what it might have meant when the message (or the list of
+ *  suggestions) is wanted.
+ */
+
+package com.kfs.bsd.common.util;
+
+public final class CLArgumentError {
+	
+	// The facts about the error
+	
+	private final int code;
+	private final int tokenIndex;
+	private final String token;
+	private final int offset;
+	private final String key;
+	private final String [] candidates;
+	
+	// The spec that did not know the offending option, or null
+	
+	private final CLArgumentSpec spec;
+	
+	// The message and suggestions, once they have been worked out.
+	// Volatile, so that an error handed to another thread (say, by
+	// CLArgumentSpec.parseAll()) never sees a half-built array.
+	
+	private volatile String message = null;
+	private volatile String [] suggestions = null;
+	
+	// A shared empty list of errors
+	
+	static final CLArgumentError [] kNoErrors = new CLArgumentError [0];
+	
+	// The constructor
+	
+	CLArgumentError( int code, int tokenIndex, String token, int offset, String key ) {
+		
+		// Records an error that has no candidates.
+		
+		this( code, tokenIndex, token, offset, key, null );
+	}
+	
+	CLArgumentError( int code, int tokenIndex, String token, int offset, String key, String [] candidates ) {
+		
+		// Records an error.  tokenIndex is the position of the
+		// offending token (or of the '@file' argument it was read
+		// from) in the argument array (or -1), offset is
+		// the position of the offending flag within that token (or -1),
+		// and key is the argument the error relates to (or null).
+		// For kErrorCodeDuplicateArgument, the token is a description
+		// of the duplicate registration.  For kErrorCodeAmbiguousArgument,
+		// candidates lists the switches that the token could abbreviate.
+		
+		this( code, tokenIndex, token, offset, key, candidates, null );
+	}
+	
+	CLArgumentError( int code, int tokenIndex, String token, int offset, String key, String [] candidates, CLArgumentSpec spec ) {
+		
+		// Same as above.  For kErrorCodeUnknownArgument, spec is the
+		// spec that was asked for suggestions, or null for none.
+		
+		super();
+		
+		this.code = code;
+		this.tokenIndex = tokenIndex;
+		this.token = token;
+		this.offset = offset;
+		this.key = key;
+		this.candidates = candidates == null ? new String [0] : candidates;
+		this.spec = spec;
+	}
+	
+	// Accessors
+	
+	public int getCode() {
+		
+		// Returns the LinearArgDesequencer.kErrorCode* value of this error.
+		
+		return code;
+	}
+	
+	public int getTokenIndex() {
+		
+		// Returns the position of the offending token in
+		// the argument array, or -1 if there was none.  A
+		// token read from a response file is reported at the
+		// position of the '@file' argument that named the file.
+		
+		return tokenIndex;
+	}
+	
+	public String getToken() {
+		
+		// Returns the offending token, or null if there was none.
+		
+		return token;
+	}
+	
+	public int getOffset() {
+		
+		// Returns the position of the offending flag within the
+		// offending token, or -1 if the whole token was at fault.
+		
+		return offset;
+	}
+	
+	public String getKey() {
+		
+		// Returns the argument that this error relates to, or null.
+		
+		return key;
+	}
+	
+	public String [] getCandidates() {
+		
+		// Returns the switches that an ambiguous abbreviation could
+		// have meant, or an empty array for any other kind of error.
+		
+		return candidates.clone();
+	}
+	
+	public String [] getSuggestions() {
+		
+		// Returns the options that an unknown option was most likely
+		// meant to be, best first, or an empty array if nothing is close
+		// (or this is some other kind of error).  Worked out on first
+		// use; racing threads at worst work them out twice.
+		
+		String [] result = suggestions;
+		
+		if( result == null ) {
+			
+			if( spec == null || code != LinearArgDesequencer.kErrorCodeUnknownArgument )
+				result = new String [0];
+			else
+				result = spec.getSuggestions( token );
+			
+			suggestions = result;
+		}
+		
+		return result.clone();
+	}
+	
+	public String getMessage() {
+		
+		// Returns a human-readable description of this error.
+		// Formatted on first use; racing threads at worst
+		// format the same message twice.
+		
+		String result = message;
+		
+		if( result == null )
+			message = result = formatMessage();
+		
+		return result;
+	}
+	
+	private String formatMessage() {
+		
+		// Builds the message returned by getMessage().
+		
+		switch( code ) {
+			
+			case LinearArgDesequencer.kErrorCodeUnknownArgument:
+				
+				// Unknown flags are reported by themselves, unknown
+				// switches in full, and anything else is a parcel
+				// that nothing was expecting.  Unknown options
+				// also name anything close that does exist.
+				
+				if( offset < 0 && token.charAt( 0 ) != '-' )
+					return "Unexpected argument: '" + token + "'";
+				
+				StringBuilder unknown = new StringBuilder( "Unknown option: '" );
+				
+				if( offset >= 0 )
+					unknown.append( token.charAt( offset ) ).append( '\'' );
+				else
+					unknown.append( token ).append( '\'' );
+				
+				String [] close = getSuggestions();
+				
+				if( close.length > 0 ) {
+					
+					unknown.append( "; did you mean " );
+					appendList( unknown, close, "" );
+					unknown.append( '?' );
+				}
+				
+				return unknown.toString();
+			
+			case LinearArgDesequencer.kErrorCodeMissingArgument:
+				
+				return "Expected argument: '" + key + "'";
+			
+			case LinearArgDesequencer.kErrorCodeAmbiguousArgument:
+				
+				StringBuilder result = new StringBuilder();
+				
+				result.append( "Ambiguous option: '" ).append( token ).append( "' could be " );
+				appendList( result, candidates, "--" );
+				
+				return result.toString();
+			
+			case LinearArgDesequencer.kErrorCodeInvalidValue:
+				
+				return "Invalid value for '" + key + "': '" + token + "'";
+			
+			case LinearArgDesequencer.kErrorCodeUnreadableResponseFile:
+				
+				return "Cannot read response file: '" + token.substring( 1 ) + "'";
+			
+			case LinearArgDesequencer.kErrorCodeRecursiveResponseFile:
+				
+				return "Response file includes itself: '" + token.substring( 1 ) + "'";
+			
+			case LinearArgDesequencer.kErrorCodeDuplicateArgument:
+				
+				return "Duplicate option: " + token;
+			
+			default:
+				
+				return "Internal Error: " + token;
+		}
+	}
+	
+	private static void appendList( StringBuilder result, String [] items, String prefix ) {
+		
+		// Appends the given items to the given message, quoted,
+		// with the given prefix, as in "'a', 'b' or 'c'".
+		
+		for( int row = 0 ; row < items.length ; row++ ) {
+			
+			if( row > 0 )
+				result.append( row == items.length -1 ? " or " : ", " );
+			
+			result.append( '\'' ).append( prefix ).append( items[ row ] ).append( '\'' );
+		}
+	}
+	
+	public String toString() {
+		
+		// Standard toString.
+		
+		return getMessage();
+	}
+}
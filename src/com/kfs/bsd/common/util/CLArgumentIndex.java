@@ -0,0 +1,366 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class CLArgumentIndex
+ *
+ *  A lookup index that maps flags and switches onto
+ *  the arguments that own them, so that each token
+ *  in an argument array can be resolved in constant
+ *  time, regardless of how many arguments exist.
+ *
+ *  Flags in the ASCII range live in a direct table.
+ *  All other flags, and all switches, live in open
+ *  addressing hash tables.  Switches can be looked up
+ *  by a region of a larger String (such as the part of
+ *  "--verbose" after the dashes), so lookups never need
+ *  to allocate a substring, and flags are never boxed.
+ *
+ *  Switches are also kept in a character trie, so that an
+ *  abbreviation (such as "verb" for "verbose") can be
+ *  resolved in time proportional to its length, no matter
+ *  how many switches exist.
+ *
+ *  Lookups are declared by CLArgumentLookup, which is all that
+ *  a compiled CLArgumentSpec needs.
+ */
+
+package com.kfs.bsd.common.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+class CLArgumentIndex<T> implements CLArgumentLookup<T> {
+	
+	// The size of the direct flag table
+	
+	protected static final int kDirectFlagCount = 128;
+	
+	// The lookup tables
+	
+	private final Object [] directFlags = new Object [ kDirectFlagCount ];
+	
+	private char [] otherFlags = new char [ 8 ];
+	private Object [] otherFlagOwners = new Object [ 8 ];
+	private int otherFlagCount = 0;
+	
+	private String [] switches = new String [ 16 ];
+	private Object [] switchOwners = new Object [ 16 ];
+	private int switchCount = 0;
+	
+	private TrieNode switchTrie = new TrieNode();
+	
+	// A marker for trie nodes whose switches belong to more than one owner
+	
+	private static final Object kAmbiguous = new Object();
+	
+	// Flag functions
+	
+	@SuppressWarnings( "unchecked" )
+	public T getFlag( char flag ) {
+		
+		// Returns the owner of the given flag, or null
+		// if the given flag is not in this index.
+		
+		if( flag < kDirectFlagCount )
+			return (T) directFlags[ flag ];
+		
+		// Flags outside the direct table are never zero,
+		// so zero marks an empty slot in otherFlags.
+		
+		int mask = otherFlags.length -1;
+		
+		for( int slot = flag & mask ; otherFlags[ slot ] != 0 ; slot = ( slot + 1 ) & mask )
+			if( otherFlags[ slot ] == flag )
+				return (T) otherFlagOwners[ slot ];
+		
+		return null;
+	}
+	
+	public T putFlag( char flag, T owner ) {
+		
+		// Registers the given owner for the given flag.  If the
+		// flag already has a different owner, the existing owner
+		// is kept and returned so that the caller can report the
+		// duplicate.  Otherwise, null is returned.
+		
+		T existing = getFlag( flag );
+		
+		if( existing != null )
+			return existing.equals( owner ) ? null : existing;
+		
+		if( flag < kDirectFlagCount ) {
+			
+			directFlags[ flag ] = owner;
+			return null;
+		}
+		
+		if( ( otherFlagCount + 1 ) * 2 > otherFlags.length ) {
+			
+			char [] oldFlags = otherFlags;
+			Object [] oldOwners = otherFlagOwners;
+			
+			otherFlags = new char [ oldFlags.length * 2 ];
+			otherFlagOwners = new Object [ oldFlags.length * 2 ];
+			
+			for( int row = 0 ; row < oldFlags.length ; row++ )
+				if( oldFlags[ row ] != 0 )
+					insertOtherFlag( oldFlags[ row ], oldOwners[ row ] );
+		}
+		
+		insertOtherFlag( flag, owner );
+		otherFlagCount++;
+		
+		return null;
+	}
+	
+	private void insertOtherFlag( char flag, Object owner ) {
+		
+		// Places the given flag in the first free slot.
+		
+		int mask = otherFlags.length -1;
+		int slot = flag & mask;
+		
+		while( otherFlags[ slot ] != 0 )
+			slot = ( slot + 1 ) & mask;
+		
+		otherFlags[ slot ] = flag;
+		otherFlagOwners[ slot ] = owner;
+	}
+	
+	// Switch functions
+	
+	public T getSwitch( String sswitch ) {
+		
+		// Returns the owner of the given switch, or null
+		// if the given switch is not in this index.
+		
+		return getSwitch( sswitch, 0 );
+	}
+	
+	@SuppressWarnings( "unchecked" )
+	public T getSwitch( String token, int offset ) {
+		
+		// Returns the owner of the switch spelled by the given
+		// token from the given offset to its end, or null if
+		// that switch is not in this index.
+		
+		int length = token.length() - offset;
+		int mask = switches.length -1;
+		
+		for( int slot = hash( token, offset ) & mask ; switches[ slot ] != null ; slot = ( slot + 1 ) & mask ) {
+			
+			String candidate = switches[ slot ];
+			
+			if( candidate.length() == length && token.regionMatches( offset, candidate, 0, length ) )
+				return (T) switchOwners[ slot ];
+		}
+		
+		return null;
+	}
+	
+	public T putSwitch( String sswitch, T owner ) {
+		
+		// Registers the given owner for the given switch.  If the
+		// switch already has a different owner, the existing owner
+		// is kept and returned so that the caller can report the
+		// duplicate.  Otherwise, null is returned.
+		
+		T existing = getSwitch( sswitch );
+		
+		if( existing != null )
+			return existing.equals( owner ) ? null : existing;
+		
+		if( ( switchCount + 1 ) * 2 > switches.length ) {
+			
+			String [] oldSwitches = switches;
+			Object [] oldOwners = switchOwners;
+			
+			switches = new String [ oldSwitches.length * 2 ];
+			switchOwners = new Object [ oldSwitches.length * 2 ];
+			
+			for( int row = 0 ; row < oldSwitches.length ; row++ )
+				if( oldSwitches[ row ] != null )
+					insertSwitch( oldSwitches[ row ], oldOwners[ row ] );
+		}
+		
+		insertSwitch( sswitch, owner );
+		switchCount++;
+		
+		// Add the switch to the trie, noting along the way
+		// which prefixes now lead to more than one owner.
+		
+		TrieNode node = switchTrie;
+		
+		for( int row = 0 ; row < sswitch.length() ; row++ ) {
+			
+			node = node.makeChild( sswitch.charAt( row ) );
+			
+			if( node.owner == null )
+				node.owner = owner;
+			
+			else if( ! node.owner.equals( owner ) )
+				node.owner = kAmbiguous;
+		}
+		
+		node.sswitch = sswitch;
+		
+		return null;
+	}
+	
+	@SuppressWarnings( "unchecked" )
+	public T getSwitchAbbreviation( String token, int offset ) {
+		
+		// Returns the owner of the switch spelled by the given token
+		// from the given offset to its end, or, if there is no such
+		// switch, the owner of every switch that begins with that
+		// spelling.  Returns null if there is no such switch, or if
+		// the spelling is ambiguous or empty.
+		
+		T exact = getSwitch( token, offset );
+		
+		if( exact != null || offset >= token.length() ) return exact;
+		
+		TrieNode node = switchTrie.find( token, offset );
+		
+		return node == null || node.owner == kAmbiguous ? null : (T) node.owner;
+	}
+	
+	public String [] getSwitchesWithPrefix( String token, int offset ) {
+		
+		// Returns every switch that begins with the given token from
+		// the given offset to its end, in alphabetical order.  Only the
+		// part of the trie below that prefix is visited.
+		
+		ArrayList<String> result = new ArrayList<String>();
+		
+		TrieNode node = switchTrie.find( token, offset );
+		
+		if( node != null )
+			node.collect( result );
+		
+		return result.toArray( new String [0] );
+	}
+	
+	private static final class TrieNode {
+		
+		// A node in the switch trie.  Children are kept
+		// in parallel arrays, sorted by their label.
+		
+		private char [] labels = new char [0];
+		private TrieNode [] children = new TrieNode [0];
+		
+		// The owner of every switch at or below this node (or
+		// kAmbiguous), and the switch that ends here (or null)
+		
+		private Object owner = null;
+		private String sswitch = null;
+		
+		private TrieNode child( char label ) {
+			
+			// Returns the child with the given label, or null.
+			
+			int row = Arrays.binarySearch( labels, label );
+			
+			return row < 0 ? null : children[ row ];
+		}
+		
+		private TrieNode makeChild( char label ) {
+			
+			// Returns the child with the given label, creating it if necessary.
+			
+			int row = Arrays.binarySearch( labels, label );
+			
+			if( row >= 0 ) return children[ row ];
+			
+			row = -( row + 1 );
+			
+			char [] newLabels = new char [ labels.length + 1 ];
+			TrieNode [] newChildren = new TrieNode [ children.length + 1 ];
+			
+			System.arraycopy( labels, 0, newLabels, 0, row );
+			System.arraycopy( children, 0, newChildren, 0, row );
+			System.arraycopy( labels, row, newLabels, row + 1, labels.length - row );
+			System.arraycopy( children, row, newChildren, row + 1, children.length - row );
+			
+			newLabels[ row ] = label;
+			newChildren[ row ] = new TrieNode();
+			
+			labels = newLabels;
+			children = newChildren;
+			
+			return newChildren[ row ];
+		}
+		
+		private TrieNode find( String token, int offset ) {
+			
+			// Returns the node reached by following the given
+			// token from the given offset, or null if there is none.
+			
+			TrieNode node = this;
+			
+			for( int row = offset ; row < token.length() && node != null ; row++ )
+				node = node.child( token.charAt( row ) );
+			
+			return node;
+		}
+		
+		private void collect( ArrayList<String> result ) {
+			
+			// Adds every switch at or below this node to the given list.
+			
+			if( sswitch != null )
+				result.add( sswitch );
+			
+			for( TrieNode child : children )
+				child.collect( result );
+		}
+	}
+	
+	private void insertSwitch( String sswitch, Object owner ) {
+		
+		// Places the given switch in the first free slot.
+		
+		int mask = switches.length -1;
+		int slot = hash( sswitch, 0 ) & mask;
+		
+		while( switches[ slot ] != null )
+			slot = ( slot + 1 ) & mask;
+		
+		switches[ slot ] = sswitch;
+		switchOwners[ slot ] = owner;
+	}
+	
+	protected static int hash( String token, int offset ) {
+		
+		// Returns a hash of the given region of the given
+		// token, spread so that the low bits are usable.
+		
+		int h = 0;
+		
+		for( int row = offset ; row < token.length() ; row++ )
+			h = 31 * h + token.charAt( row );
+		
+		return h ^ ( h >>> 16 );
+	}
+	
+	// Housekeeping
+	
+	public void clear() {
+		
+		// Removes everything from this index.
+		
+		for( int row = 0 ; row < kDirectFlagCount ; row++ )
+			directFlags[ row ] = null;
+		
+		otherFlags = new char [ 8 ];
+		otherFlagOwners = new Object [ 8 ];
+		otherFlagCount = 0;
+		
+		switches = new String [ 16 ];
+		switchOwners = new Object [ 16 ];
+		switchCount = 0;
+		
+		switchTrie = new TrieNode();
+	}
+}
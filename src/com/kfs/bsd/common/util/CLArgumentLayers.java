@@ -0,0 +1,604 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class CLArgumentLayers
+ *
+ *  Merges the arguments of several sources (such as built-in
+ *  defaults, config files, the environment, and the argument
+ *  array) that are all defined by one CLArgumentSpec.  Each
+ *  source is a layer, and each layer is parsed on its own.
+ *
+ *  Layers added later take precedence over layers added earlier,
+ *  in the same way that later parcels take precedence over earlier
+ *  ones in getMostRelevantParcel().  In fact, every accessor returns
+ *  what the same accessor of CLArgumentResult would return if the
+ *  layers had been concatenated into one argument array, lowest
+ *  layer first.  So, with the usual order of defaults, then config
+ *  files, then the environment, then the argument array, the
+ *  argument array wins.  The accessors are those of
+ *  CLArgumentReader (see CLParsedArguments), answered by
+ *  reading the layers from the top down.
+ *
+ *  A layer is loaded and parsed only when a question cannot be
+ *  answered by the layers above it.  If the argument array sets
+ *  everything that is asked for, the config files are never read.
+ *
+ *  A CLArgumentLayers never changes.  Adding a layer returns a
+ *  new CLArgumentLayers that shares every existing layer (and
+ *  its parsed result, once loaded) with the original, so that
+ *  a base of defaults and config files can be loaded once and
+ *  then topped with a different argument array many times.
+ *
+ *  Required arguments are positional, so only layers added with
+ *  withArgs() fill them; the other layers are parsed without them.
+ */
+
+package com.kfs.bsd.common.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Map;
+
+public final class CLArgumentLayers extends CLArgumentReader {
+	
+	// The layer with the highest precedence, or null if there are none
+	
+	private final Layer top;
+	
+	// The constructors
+	
+	public CLArgumentLayers( CLArgumentSpec spec ) {
+		
+		// Builds an empty set of layers for the given spec.
+		
+		this( spec, null );
+	}
+	
+	private CLArgumentLayers( CLArgumentSpec spec, Layer top ) {
+		
+		// Builds a set of layers with the given top layer.
+		
+		super( spec );
+		
+		this.top = top;
+	}
+	
+	private static final class Layer {
+		
+		// One layer, linked to the layers below it.  A layer may be
+		// shared by any number of CLArgumentLayers, so it is loaded
+		// at most once, no matter which of them asks first.
+		
+		private final String name;
+		private final CLArgumentSource source;
+		private final boolean positional;
+		private final Layer below;
+		
+		private volatile CLArgumentResult result = null;
+		
+		Layer( String name, CLArgumentSource source, boolean positional, Layer below ) {
+			
+			// Java requires that this be here.
+			
+			super();
+			
+			this.name = name;
+			this.source = source;
+			this.positional = positional;
+			this.below = below;
+		}
+		
+		CLArgumentResult result( CLArgumentSpec spec ) {
+			
+			// Returns the parsed arguments of this layer,
+			// loading and parsing them on first use.
+			
+			CLArgumentResult current = result;
+			
+			if( current != null ) return current;
+			
+			synchronized( this ) {
+				
+				if( result == null )
+					result = load( spec );
+				
+				return result;
+			}
+		}
+		
+		private CLArgumentResult load( CLArgumentSpec spec ) {
+			
+			// Loads and parses the arguments of this layer.  A
+			// source that cannot be read is parsed as nothing,
+			// and reported as an unreadable response file.
+			
+			String [] args;
+			
+			try {
+				args = source.load( spec );
+			}
+			catch( IOException e ) {
+				
+				return new CLArgumentResult.Collector( spec ).toResult( new CLArgumentError( LinearArgDesequencer.kErrorCodeUnreadableResponseFile, -1, "@" + name, -1, null ) );
+			}
+			
+			return positional ? spec.parse( args ) : spec.parseOptions( args );
+		}
+		
+		boolean isLoaded() {
+			
+			// Returns whether or not this layer has been loaded.
+			
+			return result != null;
+		}
+	}
+	
+	// Layering functions
+	
+	public CLArgumentLayers withArgs( String [] args ) {
+		
+		// Returns a copy of these layers, topped with the given
+		// argument array, in a layer named "argv".
+		
+		return withArgs( "argv", args );
+	}
+	
+	public CLArgumentLayers withArgs( String name, String [] args ) {
+		
+		// Returns a copy of these layers, topped with the given argument
+		// array in a layer with the given name.  The array is parsed
+		// exactly as CLArgumentSpec.parse() would parse it.
+		
+		return new CLArgumentLayers( spec, new Layer( name, new ArgsSource( args ), true, top ) );
+	}
+	
+	public CLArgumentLayers withFile( File file ) {
+		
+		// Returns a copy of these layers, topped with the arguments in
+		// the given config file, in a layer named by the path of the file.
+		// The file has the same syntax as a response file.  A file that
+		// does not exist is an empty layer, and a file that exists but
+		// cannot be read is reported as an unreadable response file.
+		
+		return withSource( file.getPath(), new FileSource( file ) );
+	}
+	
+	public CLArgumentLayers withEnvironment( String prefix ) {
+		
+		// Returns a copy of these layers, topped with the
+		// arguments in the environment of this process, in
+		// a layer named "env".  See EnvironmentSource.
+		
+		return withEnvironment( prefix, System.getenv() );
+	}
+	
+	public CLArgumentLayers withEnvironment( String prefix, Map<String,String> environment ) {
+		
+		// Same as withEnvironment( prefix ), but reads
+		// the given variables instead of the real ones.
+		
+		return withSource( "env", new EnvironmentSource( prefix, environment ) );
+	}
+	
+	public CLArgumentLayers withSource( String name, CLArgumentSource source ) {
+		
+		// Returns a copy of these layers, topped with the arguments
+		// of the given source, in a layer with the given name.
+		// These layers are not changed.
+		
+		return new CLArgumentLayers( spec, new Layer( name, source, false, top ) );
+	}
+	
+	// Accessors for the layers
+	
+	public String [] getLayerNames() {
+		
+		// Returns the names of the layers, highest precedence first.
+		
+		ArrayList<String> result = new ArrayList<String>();
+		
+		for( Layer layer = top ; layer != null ; layer = layer.below )
+			result.add( layer.name );
+		
+		return result.toArray( new String [0] );
+	}
+	
+	public boolean isLoaded( String name ) {
+		
+		// Returns whether or not the highest layer with
+		// the given name has been loaded yet.
+		
+		Layer layer = find( name );
+		
+		return layer != null && layer.isLoaded();
+	}
+	
+	public CLArgumentResult getLayerResult( String name ) {
+		
+		// Returns the parsed arguments of the highest layer with the
+		// given name, loading them if necessary, or null if there is
+		// no such layer.
+		
+		Layer layer = find( name );
+		
+		return layer == null ? null : layer.result( spec );
+	}
+	
+	private Layer find( String name ) {
+		
+		// Returns the highest layer with the given name, or null.
+		
+		for( Layer layer = top ; layer != null ; layer = layer.below )
+			if( layer.name.equals( name ) )
+				return layer;
+		
+		return null;
+	}
+	
+	public String getSourceOfKey( String id ) {
+		
+		// Returns the name of the layer that supplies the most
+		// relevant parcel of the given argument, or null if
+		// no layer has a parcel for it.
+		
+		int option = spec.getOptionForKey( id );
+		
+		if( option < 0 ) return null;
+		
+		for( Layer layer = top ; layer != null ; layer = layer.below )
+			if( layer.result( spec ).getLastParcel( option ) != null )
+				return layer.name;
+		
+		return null;
+	}
+	
+	// Accessors for error codes
+	
+	public CLArgumentError sequenceErrorDetail() {
+		
+		// Returns the error of the highest layer that returned an error,
+		// as a structured record.  null implies no error code.  Every
+		// layer must be loaded to answer this.  The token index of the
+		// error is a position within its own layer.
+		
+		Layer layer = errorLayer();
+		
+		return layer == null ? null : layer.result( spec ).sequenceErrorDetail();
+	}
+	
+	public String getSourceOfError() {
+		
+		// Returns the name of the highest layer that returned
+		// an error, or null if no layer returned an error.
+		
+		Layer layer = errorLayer();
+		
+		return layer == null ? null : layer.name;
+	}
+	
+	private Layer errorLayer() {
+		
+		// Returns the highest layer that returned an error, or null.
+		
+		for( Layer layer = top ; layer != null ; layer = layer.below )
+			if( layer.result( spec ).sequenceError() )
+				return layer;
+		
+		return null;
+	}
+	
+	// The questions about each option
+	
+	String [] getParcelBin( int option ) {
+		
+		// Returns the parcels of the given option in every
+		// layer, as if the layers were one argument array.
+		
+		ArrayList<String> found = new ArrayList<String>();
+		
+		for( Layer layer = top ; layer != null ; layer = layer.below ) {
+			
+			String [] bin = layer.result( spec ).getParcelBin( option );
+			
+			for( int row = bin.length -1 ; row >= 0 ; row-- )
+				found.add( bin[ row ] );
+		}
+		
+		String [] result = new String [ found.size() ];
+		
+		for( int row = 0 ; row < result.length ; row++ )
+			result[ row ] = found.get( result.length -1 - row );
+		
+		return result;
+	}
+	
+	String getLastParcel( int option ) {
+		
+		// Returns the last non-null parcel of the highest layer that has one.
+		
+		for( Layer layer = top ; layer != null ; layer = layer.below ) {
+			
+			String result = layer.result( spec ).getLastParcel( option );
+			
+			if( result != null ) return result;
+		}
+		
+		return null;
+	}
+	
+	String [] getRelevantParcels( int option ) {
+		
+		// Returns the relevant parcels of the given option.  The layers
+		// are read from the top down, and only until as many parcels
+		// as can be relevant have been found, so an array argument
+		// reads them all.
+		
+		int keep = spec.getRelevantCount( option, Integer.MAX_VALUE );
+		
+		// Gather the parcels backwards, starting at the top.
+		
+		ArrayList<String> found = new ArrayList<String>();
+		
+		for( Layer layer = top ; layer != null && found.size() < keep ; layer = layer.below ) {
+			
+			String [] bin = layer.result( spec ).getParcelBin( option );
+			
+			for( int row = bin.length -1 ; row >= 0 && found.size() < keep ; row-- )
+				if( bin[ row ] != null )
+					found.add( bin[ row ] );
+		}
+		
+		String [] result = new String [ found.size() ];
+		
+		for( int row = 0 ; row < result.length ; row++ )
+			result[ row ] = found.get( result.length -1 - row );
+		
+		return result;
+	}
+	
+	int countParcels( int option ) {
+		
+		// Returns the number of found parcels, including the
+		// null ones, of the given option, across all layers.
+		
+		int result = 0;
+		
+		for( Layer layer = top ; layer != null ; layer = layer.below )
+			result += layer.result( spec ).countParcels( option );
+		
+		return result;
+	}
+	
+	boolean isFound( int option ) {
+		
+		// Returns whether or not any layer has the given option,
+		// without loading the layers below the first one that does.
+		
+		for( Layer layer = top ; layer != null ; layer = layer.below )
+			if( layer.result( spec ).isFound( option ) )
+				return true;
+		
+		return false;
+	}
+	
+	long [] getValueBin( int option ) {
+		
+		// Returns the relevant values of the given option, in order,
+		// gathered from the top down in the same way as the parcels
+		// in getRelevantParcels().
+		
+		int keep = spec.getRelevantCount( option, Integer.MAX_VALUE );
+		
+		long [] found = CLArgumentValues.kNoValues;
+		int count = 0;
+		
+		for( Layer layer = top ; layer != null && count < keep ; layer = layer.below ) {
+			
+			long [] bin = layer.result( spec ).getValueBin( option );
+			
+			for( int row = bin.length -1 ; row >= 0 && count < keep ; row-- )
+				found = CLArgumentValues.add( found, count++, bin[ row ] );
+		}
+		
+		long [] result = new long [ count ];
+		
+		for( int row = 0 ; row < count ; row++ )
+			result[ row ] = found[ count -1 - row ];
+		
+		return result;
+	}
+	
+	long [] getLastValueBin( int option ) {
+		
+		// Returns the values of the highest layer that has any.
+		
+		for( Layer layer = top ; layer != null ; layer = layer.below ) {
+			
+			long [] bin = layer.result( spec ).getValueBin( option );
+			
+			if( bin.length > 0 ) return bin;
+		}
+		
+		return CLArgumentValues.kNoValues;
+	}
+	
+	// The built-in sources
+	
+	private static final class ArgsSource implements CLArgumentSource {
+		
+		// Supplies an argument array as it is.
+		
+		private final String [] args;
+		
+		ArgsSource( String [] args ) {
+			
+			// Java requires that this be here.
+			
+			super();
+			
+			this.args = args;
+		}
+		
+		public String [] load( CLArgumentSpec spec ) {
+			
+			// The array is parsed as it is; nothing is copied.
+			
+			return args;
+		}
+	}
+	
+	private static final class FileSource implements CLArgumentSource {
+		
+		// Supplies the arguments in a config file, which
+		// has the same syntax as a response file.
+		
+		private final File file;
+		
+		FileSource( File file ) {
+			
+			// Java requires that this be here.
+			
+			super();
+			
+			this.file = file;
+		}
+		
+		public String [] load( CLArgumentSpec spec ) throws IOException {
+			
+			// A missing config file is the same as an empty one.
+			
+			if( ! file.exists() ) return kNoParcels;
+			
+			ArrayList<String> result = new ArrayList<String>();
+			CLResponseFile reader = new CLResponseFile( file );
+			
+			try {
+				
+				for( String token = reader.nextToken() ; token != null ; token = reader.nextToken() )
+					result.add( token );
+			}
+			finally {
+				
+				reader.close();
+			}
+			
+			return result.toArray( new String [0] );
+		}
+	}
+	
+	private static final class EnvironmentSource implements CLArgumentSource {
+		
+		// Supplies the arguments named by environment variables.
+		// Each switch has a variable named by the prefix followed
+		// by the switch in upper case, with every character other
+		// than a letter or digit replaced by '_' (so "dry-run"
+		// becomes FOO_DRY_RUN for the prefix "FOO_").
+		//
+		// A variable for an argument without parcels sets the
+		// argument unless it is empty, "0", "false", "no" or "off".
+		// Otherwise, the variable is split at whitespace into
+		// parcels, and the switch is repeated before each group
+		// of parcelCount parcels (or once, if it is unbounded).
+		
+		private final String prefix;
+		private final Map<String,String> environment;
+		
+		EnvironmentSource( String prefix, Map<String,String> environment ) {
+			
+			// Java requires that this be here.
+			
+			super();
+			
+			this.prefix = prefix;
+			this.environment = environment;
+		}
+		
+		public String [] load( CLArgumentSpec spec ) {
+			
+			// Look up the variable for every switch of every argument.
+			
+			ArrayList<String> result = new ArrayList<String>();
+			
+			for( int option = 0 ; option < spec.getOptionCount() ; option++ ) {
+				
+				for( String sswitch : spec.getSwitches( option ) ) {
+					
+					String value = environment.get( variableName( sswitch ) );
+					
+					if( value == null ) continue;
+					
+					value = value.trim();
+					
+					int parcelCount = spec.getParcelCount( option );
+					
+					if( parcelCount == 0 ) {
+						
+						if( isSet( value ) ) result.add( "--" + sswitch );
+						continue;
+					}
+					
+					if( value.isEmpty() ) continue;
+					
+					String [] words = value.split( "\\s+" );
+					
+					for( int row = 0 ; row < words.length ; row++ ) {
+						
+						if( row == 0 || ( ! spec.isUnbounded( option ) && row % parcelCount == 0 ) )
+							result.add( "--" + sswitch );
+						
+						result.add( words[ row ] );
+					}
+				}
+			}
+			
+			return result.toArray( new String [0] );
+		}
+		
+		private String variableName( String sswitch ) {
+			
+			// Returns the name of the variable for the given switch.
+			
+			StringBuilder result = new StringBuilder( prefix );
+			
+			for( int row = 0 ; row < sswitch.length() ; row++ ) {
+				
+				char c = sswitch.charAt( row );
+				
+				result.append( Character.isLetterOrDigit( c ) ? Character.toUpperCase( c ) : '_' );
+			}
+			
+			return result.toString();
+		}
+		
+		private static boolean isSet( String value ) {
+			
+			// Returns whether or not the given value turns an argument on.
+			
+			String lower = value.toLowerCase( Locale.ROOT );
+			
+			return ! ( lower.isEmpty() || lower.equals( "0" ) || lower.equals( "false" ) || lower.equals( "no" ) || lower.equals( "off" ) );
+		}
+	}
+	
+	// Other functions
+	
+	public String toString() {
+		
+		// Standard toString.  Lists the layers, highest
+		// precedence first, without loading any of them.
+		
+		StringBuilder result = new StringBuilder( "Layers:" );
+		
+		for( Layer layer = top ; layer != null ; layer = layer.below ) {
+			
+			result.append( layer == top ? " " : ", " ).append( layer.name );
+			
+			if( ! layer.isLoaded() ) result.append( " (not loaded)" );
+		}
+		
+		return result.toString();
+	}
+}
@@ -0,0 +1,42 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Interface CLArgumentListener
+ *
+ *  Receives the options, parcels and problems found by an
+ *  event-driven parse (see CLArgumentSpec.parse( String [],
+ *  CLArgumentListener ) and friends), one at a time, as soon
+ *  as each is recognized.  Nothing is kept on behalf of the
+ *  listener, so arguments can be processed without any
+ *  per-option storage, and a stream of any length can be
+ *  parsed in a constant amount of memory.
+ *
+ *  Extend CLArgumentAdapter to handle only some of the events.
+ */
+
+package com.kfs.bsd.common.util;
+
+public interface CLArgumentListener {
+	
+	// Called each time an option is found in the stream.
+	
+	public void optionFound( String key );
+	
+	// Called each time a parcel is bound to an option.
+	
+	public void parcelFound( String key, String parcel );
+	
+	// Called when a token is an unknown or ambiguous option, is a
+	// parcel that no option was expecting, or is a parcel that cannot
+	// be converted to the type of its option.  tokenIndex is the
+	// position of the token in the argument list (or of the '@file'
+	// argument that it was read from).  The parse stops.
+	
+	public void unexpectedToken( int tokenIndex, String token );
+	
+	// Called when the arguments end while the given
+	// option is still expecting a parcel.
+	
+	public void missingParcel( String key );
+}
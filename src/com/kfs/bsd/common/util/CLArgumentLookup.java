@@ -0,0 +1,38 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Interface CLArgumentLookup
+ *
+ *  The read-only side of a lookup index: finds the owners of
+ *  flags and switches.  CLArgumentIndex implements it with hash
+ *  tables that are filled as arguments are defined, and the
+ *  tables of a CLArgumentSnapshot implement it by searching
+ *  the image.  CLArgumentSpec, CLArgumentScanner and
+ *  CLArgumentCompleter only ever look things up.
+ */
+
+package com.kfs.bsd.common.util;
+
+interface CLArgumentLookup<T> {
+	
+	// Returns the owner of the given flag, or null.
+	
+	public T getFlag( char flag );
+	
+	// Returns the owner of the switch spelled by the given token
+	// from the given offset to its end, or null.
+	
+	public T getSwitch( String token, int offset );
+	
+	// Returns the owner of the given switch or, if there is no such
+	// switch, of every switch that begins with it.  Returns null if
+	// there is none, or if the spelling is ambiguous or empty.
+	
+	public T getSwitchAbbreviation( String token, int offset );
+	
+	// Returns every switch that begins with the given token from
+	// the given offset to its end, in alphabetical order.
+	
+	public String [] getSwitchesWithPrefix( String token, int offset );
+}
@@ -0,0 +1,394 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class CLArgumentMetrics
+ *
+ *  An optional collector of statistics about parsing: the
+ *  number of parses, the number of tokens scanned, a histogram
+ *  of parse latencies, the number of errors of each kind, and
+ *  how often each option was found.
+ *
+ *  A collector is attached to an argument set with
+ *  CLArgumentSet.setMetrics(), and is usually shared by every
+ *  LinearArgDesequencer (and CLArgumentSpec) of a long-lived
+ *  program.  All counters are LongAdders, so any number of
+ *  threads may record at once without locking or contending
+ *  on a single memory location.  Latencies are kept in
+ *  power-of-two buckets, so recording one costs a single
+ *  increment.
+ *
+ *  Parsers without a collector (the default) skip all of this:
+ *  the scanner checks for a collector once per parse and once
+ *  per option found, and records nothing.
+ *
+ *  Functions of interest:
+ *    public Snapshot snapshot()
+ *      - Returns a consistent-enough copy of every counter.
+ *    public ObjectName register( String name )
+ *      - Publishes this collector as a JMX MBean.
+ */
+
+package com.kfs.bsd.common.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+public final class CLArgumentMetrics implements CLArgumentMetricsMBean {
+	
+	// The number of error codes that are counted separately.
+	// Larger codes are counted with kErrorCodeInternal.
+	
+	private static final int kErrorCodeSlots = 32;
+	
+	// The number of latency buckets.  Bucket n counts latencies
+	// of at least 2^(n-1) and less than 2^n nanoseconds.
+	
+	private static final int kLatencyBuckets = 64;
+	
+	// The counters
+	
+	private final LongAdder parses = new LongAdder();
+	private final LongAdder tokens = new LongAdder();
+	private final LongAdder latencyTotal = new LongAdder();
+	private final LongAdder [] latencies = makeAdders( kLatencyBuckets );
+	private final LongAdder [] errors = makeAdders( kErrorCodeSlots );
+	private final ConcurrentMap<String,LongAdder> optionHits = new ConcurrentHashMap<String,LongAdder>();
+	
+	// The constructor
+	
+	public CLArgumentMetrics() {
+		
+		// Builds a collector with every counter at zero.
+		
+		super();
+	}
+	
+	private static LongAdder [] makeAdders( int count ) {
+		
+		// Returns the given number of new counters.
+		
+		LongAdder [] result = new LongAdder [ count ];
+		
+		for( int row = 0 ; row < count ; row++ )
+			result[ row ] = new LongAdder();
+		
+		return result;
+	}
+	
+	// Recording functions, used by CLArgumentSpec and CLArgumentScanner
+	
+	LongAdder [] hitCounters( String [] keys ) {
+		
+		// Returns the hit counter of each of the given keys, creating
+		// them if necessary.  Called once per compiled spec, so that
+		// each hit is a plain increment, without a map lookup.
+		
+		LongAdder [] result = new LongAdder [ keys.length ];
+		
+		for( int option = 0 ; option < keys.length ; option++ ) {
+			
+			LongAdder counter = optionHits.get( keys[ option ] );
+			
+			if( counter == null ) {
+				
+				LongAdder created = new LongAdder();
+				
+				counter = optionHits.putIfAbsent( keys[ option ], created );
+				
+				if( counter == null ) counter = created;
+			}
+			
+			result[ option ] = counter;
+		}
+		
+		return result;
+	}
+	
+	void recordParse( long nanos, int tokenCount, int errorCode ) {
+		
+		// Records one finished parse.
+		
+		parses.increment();
+		tokens.add( tokenCount );
+		latencyTotal.add( nanos );
+		latencies[ bucket( nanos ) ].increment();
+		
+		if( errorCode != LinearArgDesequencer.kErrorCodeNone )
+			errors[ errorCode > 0 && errorCode < kErrorCodeSlots ? errorCode : LinearArgDesequencer.kErrorCodeInternal ].increment();
+	}
+	
+	private static int bucket( long nanos ) {
+		
+		// Returns the latency bucket of the given duration.
+		
+		return nanos <= 0 ? 0 : Math.min( kLatencyBuckets -1, 64 - Long.numberOfLeadingZeros( nanos ) );
+	}
+	
+	// Reading functions
+	
+	public Snapshot snapshot() {
+		
+		// Returns a copy of every counter.  Counters are read one at
+		// a time while parses may be going on, so a snapshot taken
+		// under load may be off by the parses in flight.
+		
+		long [] latencyCounts = new long [ kLatencyBuckets ];
+		for( int row = 0 ; row < kLatencyBuckets ; row++ )
+			latencyCounts[ row ] = latencies[ row ].sum();
+		
+		long [] errorCounts = new long [ kErrorCodeSlots ];
+		for( int row = 0 ; row < kErrorCodeSlots ; row++ )
+			errorCounts[ row ] = errors[ row ].sum();
+		
+		Map<String,Long> hits = new LinkedHashMap<String,Long>();
+		for( Map.Entry<String,LongAdder> entry : optionHits.entrySet() )
+			hits.put( entry.getKey(), entry.getValue().sum() );
+		
+		return new Snapshot( parses.sum(), tokens.sum(), latencyTotal.sum(), latencyCounts, errorCounts, hits );
+	}
+	
+	public void reset() {
+		
+		// Sets every counter back to zero.  Options that have
+		// been seen stay in the list of option hits.
+		
+		parses.reset();
+		tokens.reset();
+		latencyTotal.reset();
+		
+		for( LongAdder counter : latencies ) counter.reset();
+		for( LongAdder counter : errors ) counter.reset();
+		for( LongAdder counter : optionHits.values() ) counter.reset();
+	}
+	
+	// JMX functions
+	
+	public ObjectName register( String name ) throws JMException {
+		
+		// Registers this collector with the platform MBean server,
+		// under the given name, and returns its ObjectName.
+		
+		ObjectName objectName = new ObjectName( "com.kfs.bsd.common.util:type=CLArgumentMetrics,name=" + ObjectName.quote( name ) );
+		
+		ManagementFactory.getPlatformMBeanServer().registerMBean( this, objectName );
+		
+		return objectName;
+	}
+	
+	public long getParseCount() {
+		
+		// Returns the number of parses finished.
+		
+		return parses.sum();
+	}
+	
+	public long getTokenCount() {
+		
+		// Returns the number of tokens scanned, including
+		// those read from response files.
+		
+		return tokens.sum();
+	}
+	
+	public long getErrorCount() {
+		
+		// Returns the number of parses that failed.
+		
+		return snapshot().getErrorCount();
+	}
+	
+	public long [] getErrorCountsByCode() {
+		
+		// Returns the number of failed parses, indexed by error code.
+		
+		return snapshot().getErrorCounts();
+	}
+	
+	public double getMeanLatencyNanos() {
+		
+		// Returns the average time taken by a parse.
+		
+		return snapshot().getMeanLatencyNanos();
+	}
+	
+	public long getMedianLatencyNanos() {
+		
+		// Returns an upper bound on the median parse latency.
+		
+		return snapshot().getLatencyPercentileNanos( 50 );
+	}
+	
+	public long get99thPercentileLatencyNanos() {
+		
+		// Returns an upper bound on the 99th percentile of parse latency.
+		
+		return snapshot().getLatencyPercentileNanos( 99 );
+	}
+	
+	public String [] getOptionHits() {
+		
+		// Returns the option hits as "key=count" strings.
+		
+		Map<String,Long> hits = snapshot().getOptionHits();
+		String [] result = new String [ hits.size() ];
+		
+		int row = 0;
+		for( Map.Entry<String,Long> entry : hits.entrySet() )
+			result[ row++ ] = entry.getKey() + "=" + entry.getValue();
+		
+		return result;
+	}
+	
+	// The snapshot
+	
+	public static final class Snapshot {
+		
+		// An immutable copy of the counters of a CLArgumentMetrics.
+		
+		private final long parseCount;
+		private final long tokenCount;
+		private final long latencyTotal;
+		private final long [] latencyCounts;
+		private final long [] errorCounts;
+		private final Map<String,Long> optionHits;
+		
+		Snapshot( long parseCount, long tokenCount, long latencyTotal, long [] latencyCounts, long [] errorCounts, Map<String,Long> optionHits ) {
+			
+			// Builds a snapshot of the given counts.  Used by snapshot().
+			
+			super();
+			
+			this.parseCount = parseCount;
+			this.tokenCount = tokenCount;
+			this.latencyTotal = latencyTotal;
+			this.latencyCounts = latencyCounts;
+			this.errorCounts = errorCounts;
+			this.optionHits = Collections.unmodifiableMap( optionHits );
+		}
+		
+		public long getParseCount() {
+			
+			// Returns the number of parses finished.
+			
+			return parseCount;
+		}
+		
+		public long getTokenCount() {
+			
+			// Returns the number of tokens scanned, including
+			// those read from response files.
+			
+			return tokenCount;
+		}
+		
+		public long getErrorCount() {
+			
+			// Returns the number of parses that failed.
+			
+			long result = 0;
+			
+			for( long count : errorCounts )
+				result += count;
+			
+			return result;
+		}
+		
+		public long getErrorCount( int errorCode ) {
+			
+			// Returns the number of parses that failed
+			// with the given LinearArgDesequencer.kErrorCode*.
+			
+			return errorCode >= 0 && errorCode < errorCounts.length ? errorCounts[ errorCode ] : 0;
+		}
+		
+		public long [] getErrorCounts() {
+			
+			// Returns the number of failed parses, indexed by error code.
+			
+			return errorCounts.clone();
+		}
+		
+		public double getMeanLatencyNanos() {
+			
+			// Returns the average time taken by a parse.
+			
+			return parseCount == 0 ? 0 : latencyTotal / (double) parseCount;
+		}
+		
+		public long [] getLatencyHistogram() {
+			
+			// Returns the latency histogram.  Element n counts the parses
+			// that took at least 2^(n-1), and less than 2^n, nanoseconds.
+			
+			return latencyCounts.clone();
+		}
+		
+		public long getLatencyPercentileNanos( double percentile ) {
+			
+			// Returns an upper bound on the given percentile (0 to 100) of
+			// parse latency: the top of the first histogram bucket at which
+			// that share of parses had finished.  Zero if there were none.
+			
+			long total = 0;
+			
+			for( long count : latencyCounts )
+				total += count;
+			
+			if( total == 0 ) return 0;
+			
+			long wanted = (long) Math.ceil( total * percentile / 100.0 );
+			long seen = 0;
+			
+			for( int row = 0 ; row < latencyCounts.length ; row++ ) {
+				
+				seen += latencyCounts[ row ];
+				
+				if( seen >= wanted && seen > 0 )
+					return row >= 63 ? Long.MAX_VALUE : ( 1L << row ) -1;
+			}
+			
+			return Long.MAX_VALUE;
+		}
+		
+		public Map<String,Long> getOptionHits() {
+			
+			// Returns the number of times each option was found, by key.
+			
+			return optionHits;
+		}
+		
+		public long getOptionHits( String key ) {
+			
+			// Returns the number of times the given option was found.
+			
+			Long result = optionHits.get( key );
+			
+			return result == null ? 0 : result;
+		}
+		
+		public String toString() {
+			
+			// Standard toString.
+			
+			StringBuilder result = new StringBuilder();
+			
+			result.append( "Parses: " ).append( parseCount );
+			result.append( "\nTokens: " ).append( tokenCount );
+			result.append( "\nErrors: " ).append( getErrorCount() );
+			result.append( "\nMean Latency (ns): " ).append( (long) getMeanLatencyNanos() );
+			result.append( "\n99th Percentile Latency (ns): " ).append( getLatencyPercentileNanos( 99 ) );
+			result.append( "\nOption Hits: " ).append( optionHits );
+			
+			return result.toString();
+		}
+	}
+}
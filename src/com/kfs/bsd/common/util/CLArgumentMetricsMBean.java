@@ -0,0 +1,32 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Interface CLArgumentMetricsMBean
+ *
+ *  The JMX management interface of CLArgumentMetrics.
+ *  Register a collector with CLArgumentMetrics.register().
+ */
+
+package com.kfs.bsd.common.util;
+
+public interface CLArgumentMetricsMBean {
+	
+	public long getParseCount();
+	
+	public long getTokenCount();
+	
+	public long getErrorCount();
+	
+	public long [] getErrorCountsByCode();
+	
+	public double getMeanLatencyNanos();
+	
+	public long getMedianLatencyNanos();
+	
+	public long get99thPercentileLatencyNanos();
+	
+	public String [] getOptionHits();
+	
+	public void reset();
+}
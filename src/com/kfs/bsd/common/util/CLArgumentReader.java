@@ -0,0 +1,424 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class CLArgumentReader
+ *
+ *  The accessors of CLParsedArguments, written once on top of a
+ *  few questions about each option that every kind of storage
+ *  answers in its own way: all of its parcels (including the
+ *  null ones that mark each occurrence of the option), and its
+ *  values.  The relevance rules (the last non-null parcel, and
+ *  the parcels kept based on the isArray and parcelCount
+ *  properties) are applied here, or by CLArgumentSpec.
+ *
+ *  Storage that can answer a question more cheaply than by
+ *  building the bin of every parcel overrides the question.
+ *  Typed values are converted from the relevant parcels unless
+ *  the storage keeps them already converted.
+ */
+
+package com.kfs.bsd.common.util;
+
+abstract class CLArgumentReader implements CLParsedArguments {
+	
+	// The spec that defines the arguments
+	
+	final CLArgumentSpec spec;
+	
+	// A shared empty bin
+	
+	static final String [] kNoParcels = new String [0];
+	
+	// The constructor
+	
+	CLArgumentReader( CLArgumentSpec spec ) {
+		
+		// Java requires that this be here.
+		
+		super();
+		
+		this.spec = spec;
+	}
+	
+	// The questions about each option
+	
+	abstract String [] getParcelBin( int option );
+	
+	String getLastParcel( int option ) {
+		
+		// Returns the last non-null parcel of the given option, or null.
+		
+		String [] bin = getParcelBin( option );
+		
+		for( int row = bin.length -1 ; row >= 0 ; row-- )
+			if( bin[ row ] != null )
+				return bin[ row ];
+		
+		return null;
+	}
+	
+	String [] getRelevantParcels( int option ) {
+		
+		// Returns an array of the parcels of the given option that are
+		// relevant based on the isArray and parcelCount properties.
+		
+		String [] bin = getParcelBin( option );
+		
+		// Count the non-null parcels, and figure out how many we are keeping.
+		
+		int found = 0;
+		
+		for( String s : bin )
+			if( s != null )
+				found++;
+		
+		int keep = spec.getRelevantCount( option, found );
+		
+		// Copy the last <keep> non-null parcels, in order.
+		
+		String [] result = new String [ keep ];
+		
+		int put = keep -1;
+		for( int look = bin.length -1 ; put >= 0 ; look-- )
+			if( bin[ look ] != null )
+				result[ put-- ] = bin[ look ];
+		
+		return result;
+	}
+	
+	int countParcels( int option ) {
+		
+		// Returns the number of found parcels of the
+		// given option, including the null ones.
+		
+		return getParcelBin( option ).length;
+	}
+	
+	int countRelevantParcels( int option ) {
+		
+		// Returns the number of relevant parcels of the given option.
+		
+		return getRelevantParcels( option ).length;
+	}
+	
+	boolean isFound( int option ) {
+		
+		// Returns whether or not the given option was found at all.
+		
+		return countParcels( option ) > 0;
+	}
+	
+	long [] getValueBin( int option ) {
+		
+		// Returns the values of the given option, packed by
+		// CLArgumentValues, of which at least the relevant ones
+		// come last.  Not to be changed.  Unless overridden, the
+		// relevant parcels are converted each time.
+		
+		String [] parcels = getRelevantParcels( option );
+		long [] result = new long [ parcels.length ];
+		
+		for( int row = 0 ; row < parcels.length ; row++ )
+			result[ row ] = CLArgumentValues.parse( spec.getValueType( option ), parcels[ row ] );
+		
+		return result;
+	}
+	
+	long [] getLastValueBin( int option ) {
+		
+		// Same as getValueBin(), for when only the last value is
+		// wanted.  Unless overridden, only the last parcel is converted.
+		
+		String parcel = getLastParcel( option );
+		
+		return parcel == null ? CLArgumentValues.kNoValues : new long [] { CLArgumentValues.parse( spec.getValueType( option ), parcel ) };
+	}
+	
+	// Accessors for error codes
+	
+	public boolean sequenceError() {
+		
+		// Returns whether or not the parse returned an error.
+		
+		return sequenceErrorDetail() != null;
+	}
+	
+	public int sequenceErrorCode() {
+		
+		// Returns the error code returned by the parse.
+		// Zero implies no error occurred.
+		
+		CLArgumentError error = sequenceErrorDetail();
+		
+		return error == null ? LinearArgDesequencer.kErrorCodeNone : error.getCode();
+	}
+	
+	public String sequenceErrorMsg() {
+		
+		// Returns the error message returned by the parse.
+		// null implies no error code.  The message is
+		// only formatted when it is first asked for.
+		
+		CLArgumentError error = sequenceErrorDetail();
+		
+		return error == null ? null : error.getMessage();
+	}
+	
+	public CLArgumentError [] sequenceErrors() {
+		
+		// Returns every error found by the parse, in the order
+		// they were found.  Unless overridden, that is at most
+		// the one described by sequenceErrorDetail().
+		
+		CLArgumentError error = sequenceErrorDetail();
+		
+		return error == null ? CLArgumentError.kNoErrors : new CLArgumentError [] { error };
+	}
+	
+	public int sequenceErrorCount() {
+		
+		// Returns the number of errors found by the parse.
+		
+		return sequenceErrors().length;
+	}
+	
+	// Accessors for the Help and Verbosity arguments
+	
+	public boolean foundHelpFlag() {
+		
+		// A convenience function that returns whether or not the help flag was found.
+		
+		int option = spec.getOptionForKey( LinearArgDesequencer.kArgKeyHelp );
+		
+		return option >= 0 && isFound( option );
+	}
+	
+	public int verbosity() {
+		
+		// A convenience function that returns the verbosity described by the arguments.
+		
+		return getParcelCountForKey( LinearArgDesequencer.kArgKeyVerbose );
+	}
+	
+	// Accessors for parcels
+	
+	public CLArgumentSpec getSpec() {
+		
+		// Returns the spec that defines the arguments.
+		
+		return spec;
+	}
+	
+	public String getParcelFromKey( String id ) {
+		
+		// Returns the most relevant (the last non-null) parcel in the given argument.
+		
+		int option = spec.getOptionForKey( id );
+		
+		return option < 0 ? null : getLastParcel( option );
+	}
+	
+	public String [] getParcelArrayFromKey( String id ) {
+		
+		// Returns an array of the parcels in the given argument that are
+		// relevant based on the isArray and parcelCount properties.
+		
+		int option = spec.getOptionForKey( id );
+		
+		return option < 0 ? kNoParcels : getRelevantParcels( option );
+	}
+	
+	public int getParcelCountForKey( String id ) {
+		
+		// Returns the number of found parcels, including
+		// the null ones, that are in the given argument.
+		
+		int option = spec.getOptionForKey( id );
+		
+		return option < 0 ? 0 : countParcels( option );
+	}
+	
+	public int getParcelCountForKey( String id, boolean prune ) {
+		
+		// Returns the number of found parcels, optionally including
+		// the null ones or not, that are in the given argument.
+		
+		int option = spec.getOptionForKey( id );
+		
+		return option < 0 ? 0 : prune ? countRelevantParcels( option ) : countParcels( option );
+	}
+	
+	// Accessors for typed values
+	
+	public int getIntFromKey( String id, int defaultValue ) {
+		
+		// Returns the most relevant value of the given int argument,
+		// or the given default if the argument was not found.
+		
+		long [] bin = lastValueBin( id, int.class );
+		
+		return bin.length == 0 ? defaultValue : (int) bin[ bin.length -1 ];
+	}
+	
+	public long getLongFromKey( String id, long defaultValue ) {
+		
+		// Returns the most relevant value of the given long argument,
+		// or the given default if the argument was not found.
+		
+		long [] bin = lastValueBin( id, long.class );
+		
+		return bin.length == 0 ? defaultValue : bin[ bin.length -1 ];
+	}
+	
+	public double getDoubleFromKey( String id, double defaultValue ) {
+		
+		// Returns the most relevant value of the given double argument,
+		// or the given default if the argument was not found.
+		
+		long [] bin = lastValueBin( id, double.class );
+		
+		return bin.length == 0 ? defaultValue : Double.longBitsToDouble( bin[ bin.length -1 ] );
+	}
+	
+	public boolean getBooleanFromKey( String id, boolean defaultValue ) {
+		
+		// Returns the most relevant value of the given boolean argument,
+		// or the given default if the argument was not found.
+		
+		long [] bin = lastValueBin( id, boolean.class );
+		
+		return bin.length == 0 ? defaultValue : bin[ bin.length -1 ] != 0;
+	}
+	
+	@SuppressWarnings( "unchecked" )
+	public <E extends Enum<E>> E getEnumFromKey( String id, Class<E> type ) {
+		
+		// Returns the most relevant value of the given enum
+		// argument, or null if the argument was not found.
+		
+		long [] bin = lastValueBin( id, type );
+		
+		return bin.length == 0 ? null : (E) spec.enumConstants[ spec.getOptionForKey( id ) ][ (int) bin[ bin.length -1 ] ];
+	}
+	
+	public int [] getIntArrayFromKey( String id ) {
+		
+		// Returns the relevant values of the given int argument.
+		
+		long [] bin = valueBin( id, int.class );
+		
+		return CLArgumentValues.toInts( bin, relevantStart( id, bin ), bin.length );
+	}
+	
+	public long [] getLongArrayFromKey( String id ) {
+		
+		// Returns the relevant values of the given long argument.
+		
+		long [] bin = valueBin( id, long.class );
+		
+		return CLArgumentValues.toLongs( bin, relevantStart( id, bin ), bin.length );
+	}
+	
+	public double [] getDoubleArrayFromKey( String id ) {
+		
+		// Returns the relevant values of the given double argument.
+		
+		long [] bin = valueBin( id, double.class );
+		
+		return CLArgumentValues.toDoubles( bin, relevantStart( id, bin ), bin.length );
+	}
+	
+	public boolean [] getBooleanArrayFromKey( String id ) {
+		
+		// Returns the relevant values of the given boolean argument.
+		
+		long [] bin = valueBin( id, boolean.class );
+		
+		return CLArgumentValues.toBooleans( bin, relevantStart( id, bin ), bin.length );
+	}
+	
+	public <E extends Enum<E>> E [] getEnumArrayFromKey( String id, Class<E> type ) {
+		
+		// Returns the relevant values of the given enum argument.
+		
+		long [] bin = valueBin( id, type );
+		int option = spec.getOptionForKey( id );
+		
+		return CLArgumentValues.toEnums( type, option < 0 ? null : spec.enumConstants[ option ], bin, relevantStart( id, bin ), bin.length );
+	}
+	
+	private long [] valueBin( String id, Class<?> type ) {
+		
+		// Returns the values found for the given argument, after making
+		// sure that the argument was declared with the given type.
+		
+		int option = checkedOption( id, type );
+		
+		return option < 0 ? CLArgumentValues.kNoValues : getValueBin( option );
+	}
+	
+	private long [] lastValueBin( String id, Class<?> type ) {
+		
+		// Same as valueBin(), for when only the last value is wanted.
+		
+		int option = checkedOption( id, type );
+		
+		return option < 0 ? CLArgumentValues.kNoValues : getLastValueBin( option );
+	}
+	
+	private int checkedOption( String id, Class<?> type ) {
+		
+		// Returns the option number of the given argument, or -1,
+		// after making sure that it was declared with the given type.
+		
+		int option = spec.getOptionForKey( id );
+		
+		if( option >= 0 )
+			CLArgumentValues.checkType( id, spec.getValueType( option ), type );
+		
+		return option;
+	}
+	
+	private int relevantStart( String id, long [] bin ) {
+		
+		// Returns the position of the first relevant value in the given bin.
+		
+		int option = spec.getOptionForKey( id );
+		
+		return option < 0 ? 0 : bin.length - spec.getRelevantCount( option, bin.length );
+	}
+	
+	// Other functions
+	
+	public String toString() {
+		
+		// Standard toString.  Uses the same format as LinearArgDesequencer.
+		
+		int optionCount = spec.getOptionCount();
+		
+		if( optionCount == 0 ) return "";
+		
+		StringBuilder result = new StringBuilder();
+		
+		for( int option = 0 ; option < optionCount ; option++ ) {
+			
+			if( option > 0 ) result.append( '\n' );
+			
+			result.append( spec.getDisplayName( option ) );
+			
+			String [] bin = getParcelBin( option );
+			
+			if( bin.length == 0 ) result.append( ": [empty]" );
+			
+			for( int row = 0 ; row < bin.length ; row++ )
+				result.append( row == 0 ? ": '" : ", '" ).append( bin[ row ] ).append( '\'' );
+		}
+		
+		result.append( "\nSequence Error: " ).append( sequenceError() );
+		result.append( "\n    Error Code: " ).append( sequenceErrorCode() );
+		result.append( "\n Error Message: " ).append( sequenceErrorMsg() );
+		
+		return result.toString();
+	}
+}
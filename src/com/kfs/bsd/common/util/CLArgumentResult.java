@@ -0,0 +1,197 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class CLArgumentResult
+ *
+ *  The immutable outcome of CLArgumentSpec.parse().  Provides
+ *  the same accessors as LinearArgDesequencer and its
+ *  CLArgumentSet (see CLParsedArguments), without carrying the
+ *  argument definitions around with it.  The accessors are
+ *  those of CLArgumentReader, answered from a bin of parcels
+ *  and a bin of converted values for each option.
+ */
+
+package com.kfs.bsd.common.util;
+
+import java.util.Arrays;
+
+public final class CLArgumentResult extends CLArgumentReader {
+	
+	// The parcels found for each option, including the null
+	// parcels that mark each occurrence of the option itself
+	
+	private final String [][] parcels;
+	
+	// The converted values of each typed option, one per non-null
+	// parcel, packed by CLArgumentValues (empty for String options)
+	
+	private final long [][] values;
+	
+	// The (first) error found, or null, and every error found
+	
+	private final CLArgumentError error;
+	private final CLArgumentError [] errors;
+	
+	// The constructor
+	
+	CLArgumentResult( CLArgumentSpec spec, String [][] parcels, int [] parcelTally, long [][] values, int [] valueTally, CLArgumentError [] errors ) {
+		
+		// Builds a result from the given parcel and value bins,
+		// trimming each bin to the number of items actually found.
+		// Used by CLArgumentSpec.parse().
+		
+		super( spec );
+		
+		this.parcels = parcels;
+		this.values = values;
+		this.error = errors.length == 0 ? null : errors[ 0 ];
+		this.errors = errors;
+		
+		for( int option = 0 ; option < parcels.length ; option++ ) {
+			
+			parcels[ option ] = parcelTally[ option ] == 0 ? kNoParcels : Arrays.copyOf( parcels[ option ], parcelTally[ option ] );
+			values[ option ] = valueTally[ option ] == 0 ? CLArgumentValues.kNoValues : Arrays.copyOf( values[ option ], valueTally[ option ] );
+		}
+	}
+	
+	static final class Collector implements CLArgumentScanner.Sink {
+		
+		// Collects the options and parcels found by a
+		// CLArgumentScanner into bins, one per option.
+		
+		private final CLArgumentSpec spec;
+		private final String [][] parcels;
+		private final int [] parcelTally;
+		private final long [][] values;
+		private final int [] valueTally;
+		
+		Collector( CLArgumentSpec spec ) {
+			
+			super();
+			
+			this.spec = spec;
+			this.parcels = new String [ spec.getOptionCount() ][];
+			this.parcelTally = new int [ spec.getOptionCount() ];
+			this.values = new long [ spec.getOptionCount() ][];
+			this.valueTally = new int [ spec.getOptionCount() ];
+		}
+		
+		public void optionFound( int option ) {
+			
+			// Each occurrence of an option is marked with a null parcel.
+			
+			addParcel( option, null );
+		}
+		
+		public void parcelFound( int option, String parcel, long value ) {
+			
+			// Adds the given parcel to the bin of the given option,
+			// along with its value if the option is typed.
+			
+			addParcel( option, parcel );
+			
+			if( spec.valueTypes[ option ] != null ) {
+				
+				int count = valueTally[ option ];
+				
+				values[ option ] = CLArgumentValues.add( values[ option ] == null ? CLArgumentValues.kNoValues : values[ option ], count, value );
+				valueTally[ option ] = count + 1;
+			}
+		}
+		
+		private void addParcel( int option, String parcel ) {
+			
+			// Adds the given parcel to the bin of the given option.
+			
+			String [] bin = parcels[ option ];
+			int count = parcelTally[ option ];
+			
+			if( bin == null )
+				parcels[ option ] = bin = new String [ 4 ];
+			
+			else if( count == bin.length )
+				parcels[ option ] = bin = Arrays.copyOf( bin, count * 2 );
+			
+			bin[ count ] = parcel;
+			parcelTally[ option ] = count + 1;
+		}
+		
+		public void unexpectedToken( int tokenIndex, String token ) {
+			
+			// Errors are kept by toResult(), not here.
+		}
+		
+		public void missingParcel( int option ) {
+			
+			// Errors are kept by toResult(), not here.
+		}
+		
+		CLArgumentResult toResult( CLArgumentError error ) {
+			
+			// Returns the collected parcels as a result.
+			
+			return toResult( error == null ? CLArgumentError.kNoErrors : new CLArgumentError [] { error } );
+		}
+		
+		CLArgumentResult toResult( CLArgumentError [] errors ) {
+			
+			// Returns the collected parcels as a result,
+			// along with every error that was found.
+			
+			return new CLArgumentResult( spec, parcels, parcelTally, values, valueTally, errors );
+		}
+	}
+	
+	// The questions about each option
+	
+	String [] getParcelBin( int option ) {
+		
+		// Returns all the parcels found for the given option, including
+		// the null ones.  Not a copy; used by CLArgumentLayers.
+		
+		return parcels[ option ];
+	}
+	
+	long [] getValueBin( int option ) {
+		
+		// Returns all the values found for the given option, which were
+		// converted by the parse.  Not a copy; used by CLArgumentLayers.
+		
+		return values[ option ];
+	}
+	
+	long [] getLastValueBin( int option ) {
+		
+		// The last value is at the end of the value bin.
+		
+		return values[ option ];
+	}
+	
+	// Accessors for error codes
+	
+	public CLArgumentError sequenceErrorDetail() {
+		
+		// Returns the error returned by the parse, as a
+		// structured record.  null implies no error code.
+		
+		return error;
+	}
+	
+	public CLArgumentError [] sequenceErrors() {
+		
+		// Returns every error found by the parse, in the order they
+		// were found.  Unless the parse collected all errors (see
+		// CLArgumentSpec.validate()), this holds at most one error.
+		// None of the messages are formatted until they are asked for.
+		
+		return errors.clone();
+	}
+	
+	public int sequenceErrorCount() {
+		
+		// Returns the number of errors found by the parse.
+		
+		return errors.length;
+	}
+}
@@ -0,0 +1,503 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class CLArgumentScanner
+ *
+ *  The state machine that turns an argument array into
+ *  options and parcels, according to a CLArgumentSpec.
+ *  Both CLArgumentSpec.parse() and desequenceArgs() in
+ *  LinearArgDesequencer are driven by this class.
+ *
+ *  A scanner can be reused for any number of scans (but by
+ *  one thread at a time).  Once its parcel queue has grown
+ *  to fit, a successful scan allocates nothing at all; the
+ *  only allocations are made by the Sink that stores the
+ *  results, and by the error record when a scan fails.
+ *
+ *  Arguments may also be fed in one at a time (see accept()),
+ *  so a scan never needs the whole argument list at once.
+ *
+ *  If the spec allows response files, an argument of the form
+ *  '@file' is replaced by the arguments stored in that file (see
+ *  CLResponseFile), which may name further response files.  A
+ *  file that includes itself, directly or not, is an error.
+ *  An argument of the form '@@text' stands for '@text'.
+ *
+ *  An argument that starts with '-' is an option, unless the
+ *  next parcel is an int, long or double and the argument is a
+ *  valid negative number, in which case it is that parcel.
+ *
+ *  Normally a scan stops at the first error.  A scanner built
+ *  to collect all errors instead records each one and carries
+ *  on: the offending token (or flag) is skipped, a parcel that
+ *  cannot be converted is dropped, and every option that is
+ *  still waiting for parcels at the end is reported.  Only a
+ *  duplicate registration in the spec stops such a scan.
+ */
+
+package com.kfs.bsd.common.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+
+final class CLArgumentScanner {
+	
+	// The receiver of the options and parcels that are found.  The
+	// value of a parcel is packed by CLArgumentValues if its option
+	// is typed, and zero otherwise.
+	
+	interface Sink {
+		
+		public void optionFound( int option );
+		
+		public void parcelFound( int option, String parcel, long value );
+		
+		public void unexpectedToken( int tokenIndex, String token );
+		
+		public void missingParcel( int option );
+	}
+	
+	// The definitions being scanned against
+	
+	private final CLArgumentSpec spec;
+	
+	// Whether or not the required parcels are queued at the start
+	// of each scan.  Sources that cannot hold positional arguments
+	// (see CLArgumentLayers) are scanned without them.
+	
+	private final boolean positional;
+	
+	// Whether or not a scan carries on past its errors
+	
+	private final boolean collectAll;
+	
+	// The scan state
+	
+	private final CLParcelQueue parcelQueue = new CLParcelQueue();
+	private int unboundedOption = -1;
+	private int tokenCount = 0;
+	private CLArgumentError error = null;
+	private boolean halted = false;
+	
+	// The number of arguments taken from the scanned array itself
+	// (rather than from response files), the position in that
+	// array of the argument being scanned, or -1 if it is not there,
+	// and the position of the argument in that array that it came
+	// from: itself, or the (outermost) '@file' that it was read from.
+	// Errors and unexpected tokens are reported at the last one, so
+	// that the reported index always refers to the scanned array.
+	
+	private int argCount = 0;
+	private int argPosition = -1;
+	private int argIndex = -1;
+	
+	// Every error found, if all of them are being collected
+	
+	private final ArrayList<CLArgumentError> errors = new ArrayList<CLArgumentError>( 0 );
+	
+	// The canonical paths of the response files being read
+	
+	private HashSet<String> openFiles = null;
+	
+	// When the scan started, if the spec has a metrics collector
+	
+	private long startTime = 0;
+	
+	// The constructor
+	
+	CLArgumentScanner( CLArgumentSpec spec ) {
+		
+		// Builds a scanner for the given spec.
+		
+		this( spec, true );
+	}
+	
+	CLArgumentScanner( CLArgumentSpec spec, boolean positional ) {
+		
+		// Builds a scanner for the given spec, which queues
+		// the required parcels only if positional is true.
+		
+		this( spec, positional, false );
+	}
+	
+	CLArgumentScanner( CLArgumentSpec spec, boolean positional, boolean collectAll ) {
+		
+		// Builds a scanner for the given spec, which queues the
+		// required parcels only if positional is true, and which
+		// carries on past each error only if collectAll is true.
+		
+		super();
+		
+		this.spec = spec;
+		this.positional = positional;
+		this.collectAll = collectAll;
+		
+		reset();
+	}
+	
+	// Scanning functions
+	
+	public void reset() {
+		
+		// Prepares this scanner for a new argument array.
+		
+		parcelQueue.clear();
+		unboundedOption = -1;
+		tokenCount = 0;
+		error = null;
+		halted = false;
+		errors.clear();
+		argCount = 0;
+		argPosition = -1;
+		argIndex = -1;
+		
+		if( spec.metrics != null )
+			startTime = System.nanoTime();
+		
+		// Refuse to parse against an ambiguous argument set.
+		
+		if( spec.duplicate != null ) {
+			
+			fail( new CLArgumentError( LinearArgDesequencer.kErrorCodeDuplicateArgument, -1, spec.duplicate, -1, null ) );
+			halted = true;
+			return;
+		}
+		
+		// Add the required parcels to the queue.
+		
+		if( positional )
+			for( int option : spec.requiredOptions )
+				parcelQueue.add( option, spec.parcelCounts[ option ] );
+	}
+	
+	public CLArgumentError scan( String [] args, Sink sink ) {
+		
+		// Scans the given argument array from the beginning,
+		// and returns the error found, or null if there was none.
+		
+		reset();
+		
+		for( int row = 0 ; row < args.length && ! halted ; row++ )
+			accept( args[ row ], sink );
+		
+		return finish( sink );
+	}
+	
+	public CLArgumentError scan( Iterator<String> args, Sink sink ) {
+		
+		// Scans the given arguments from the beginning, one at a
+		// time, and returns the error found, or null if there was
+		// none.  Arguments after an error that stops the scan
+		// are not consumed.
+		
+		reset();
+		
+		while( ! halted && args.hasNext() )
+			accept( args.next(), sink );
+		
+		return finish( sink );
+	}
+	
+	public boolean accept( String arg, Sink sink ) {
+		
+		// Scans the next argument.  Returns false if an error has
+		// stopped the scan, after which no more arguments are accepted.
+		
+		if( halted ) return false;
+		
+		tokenCount++;
+		
+		// Arguments read while a response file is open came from it,
+		// and are reported at the position of its '@file' argument.
+		
+		if( openFiles == null || openFiles.isEmpty() )
+			argPosition = argIndex = argCount++;
+		else
+			argPosition = -1;
+		
+		int index = argIndex;
+		
+		if( spec.responseFiles && arg.length() > 1 && arg.charAt( 0 ) == '@' ) {
+			
+			// This is a response file, unless the '@' is escaped.
+			
+			if( arg.charAt( 1 ) != '@' )
+				return expand( arg, index, sink );
+			
+			arg = arg.substring( 1 );
+			argPosition = -1;
+		}
+		
+		if( arg.length() > 0 ) {
+			
+			// The first character tells a lot.
+			
+			if( arg.charAt( 0 ) == '-' && ! isNegativeNumber( arg ) ) {
+				
+				// This is an option argument.
+				
+				if( arg.length() > 1 ) {
+					
+					if( arg.charAt( 1 ) == '-' ) {
+						
+						// This is a word-argument.  Look up the
+						// part after the dashes, without copying it.
+						
+						Integer option = spec.index.getSwitch( arg, 2 );
+						
+						if( option == null && spec.abbreviations ) {
+							
+							// Maybe this is an abbreviation of exactly one switch.
+							
+							option = spec.index.getSwitchAbbreviation( arg, 2 );
+							
+							if( option == null && arg.length() > 2 ) {
+								
+								String [] candidates = spec.index.getSwitchesWithPrefix( arg, 2 );
+								
+								if( candidates.length > 0 ) {
+									
+									sink.unexpectedToken( index, arg );
+									return fail( new CLArgumentError( LinearArgDesequencer.kErrorCodeAmbiguousArgument, index, arg, -1, null, candidates ) );
+								}
+							}
+						}
+						
+						if( option == null ) {
+							
+							sink.unexpectedToken( index, arg );
+							return fail( new CLArgumentError( LinearArgDesequencer.kErrorCodeUnknownArgument, index, arg, -1, null, null, spec ) );
+						}
+						
+						foundOption( option, sink );
+					}
+					else {
+						
+						// This is a character-argument.
+						
+						for( int i = 1 ; i < arg.length() ; i++ ) {
+							
+							Integer option = spec.index.getFlag( arg.charAt( i ) );
+							
+							if( option == null ) {
+								
+								sink.unexpectedToken( index, arg );
+								
+								if( ! fail( new CLArgumentError( LinearArgDesequencer.kErrorCodeUnknownArgument, index, arg, i, null, null, spec ) ) )
+									return false;
+								
+								continue;
+							}
+							
+							foundOption( option, sink );
+						}
+					}
+				}
+			}
+			else if( ! parcelQueue.isEmpty() || unboundedOption >= 0 ) {
+				
+				// We are expecting a parcel.  Which one?
+				
+				int which = parcelQueue.isEmpty() ? unboundedOption : parcelQueue.poll();
+				
+				// Set the current unbounded option
+				
+				if( spec.unbounded[ which ] ) unboundedOption = which;
+				
+				// Typed parcels are converted now, once.
+				
+				long value = 0;
+				
+				if( spec.valueTypes[ which ] != null ) {
+					
+					try {
+						value = CLArgumentValues.parse( spec.valueTypes[ which ], arg );
+					}
+					catch( IllegalArgumentException e ) {
+						
+						sink.unexpectedToken( index, arg );
+						return fail( new CLArgumentError( LinearArgDesequencer.kErrorCodeInvalidValue, index, arg, -1, spec.getKey( which ) ) );
+					}
+				}
+				
+				sink.parcelFound( which, arg, value );
+			}
+			else {
+				
+				// This is an unexpected parcel.
+				
+				sink.unexpectedToken( index, arg );
+				return fail( new CLArgumentError( LinearArgDesequencer.kErrorCodeUnknownArgument, index, arg, -1, null ) );
+			}
+		}
+		
+		return true;
+	}
+	
+	public int expectedOption() {
+		
+		// Returns the option that the next parcel would be bound to,
+		// or -1 if no parcel is expected (or an error has stopped the scan).
+		// Used by CLArgumentCompleter to replay a partial argument list.
+		
+		if( halted ) return -1;
+		
+		return parcelQueue.isEmpty() ? unboundedOption : parcelQueue.peek();
+	}
+	
+	public int argPosition() {
+		
+		// Returns the position of the argument being scanned in the
+		// scanned array, or -1 if it is not found there verbatim (it
+		// came from a response file, or had its '@' unescaped).  Used
+		// by CLPackedResult to refer to parcels instead of keeping them.
+		
+		return argPosition;
+	}
+	
+	private boolean isNegativeNumber( String arg ) {
+		
+		// Returns whether or not the given argument is a negative
+		// number, and the next parcel is a number; if so, it is taken
+		// as that parcel instead of as flags (so that "-n -5" works).
+		
+		int which = parcelQueue.isEmpty() ? unboundedOption : parcelQueue.peek();
+		
+		return which >= 0 && CLArgumentValues.isNegativeNumber( spec.valueTypes[ which ], arg );
+	}
+	
+	private boolean expand( String arg, int index, Sink sink ) {
+		
+		// Scans the arguments in the response file named by the given
+		// '@file' argument.  Returns false if an error has stopped the scan.
+		
+		File file = new File( arg.substring( 1 ) );
+		String path;
+		
+		try {
+			path = file.getCanonicalPath();
+		}
+		catch( IOException e ) {
+			
+			return fail( new CLArgumentError( LinearArgDesequencer.kErrorCodeUnreadableResponseFile, index, arg, -1, null ) );
+		}
+		
+		if( openFiles == null )
+			openFiles = new HashSet<String>();
+		
+		if( ! openFiles.add( path ) ) {
+			
+			return fail( new CLArgumentError( LinearArgDesequencer.kErrorCodeRecursiveResponseFile, index, arg, -1, null ) );
+		}
+		
+		CLResponseFile reader = null;
+		
+		try {
+			
+			reader = new CLResponseFile( file );
+			
+			for( String token = reader.nextToken() ; token != null ; token = reader.nextToken() )
+				if( ! accept( token, sink ) )
+					break;
+		}
+		catch( IOException e ) {
+			
+			fail( new CLArgumentError( LinearArgDesequencer.kErrorCodeUnreadableResponseFile, index, arg, -1, null ) );
+		}
+		finally {
+			
+			openFiles.remove( path );
+			
+			if( reader != null ) {
+				
+				try {
+					reader.close();
+				}
+				catch( IOException e ) {
+					
+					// Everything has been read; there is nothing to do.
+				}
+			}
+		}
+		
+		return ! halted;
+	}
+	
+	private boolean fail( CLArgumentError found ) {
+		
+		// Records the given error.  Returns true if the scan goes on
+		// past it, and false if it stops here (which it always does,
+		// unless all errors are being collected).
+		
+		if( error == null )
+			error = found;
+		
+		if( ! collectAll ) {
+			
+			halted = true;
+			return false;
+		}
+		
+		errors.add( found );
+		
+		return true;
+	}
+	
+	private void foundOption( int option, Sink sink ) {
+		
+		// Records an occurrence of the given option, and
+		// queues up the parcels that it expects.
+		
+		if( spec.optionHits != null )
+			spec.optionHits[ option ].increment();
+		
+		sink.optionFound( option );
+		parcelQueue.add( option, spec.parcelCounts[ option ] );
+	}
+	
+	public CLArgumentError finish( Sink sink ) {
+		
+		// Ends the scan, and returns the (first) error
+		// found, or null if there was none.
+		
+		// The queue had better be empty at this point.  When collecting,
+		// report each option still waiting for parcels (once for each
+		// run of missing parcels); otherwise, just the first one.
+		
+		int last = -1;
+		
+		while( ! halted && ! parcelQueue.isEmpty() ) {
+			
+			int option = parcelQueue.poll();
+			
+			if( option == last ) continue;
+			
+			last = option;
+			sink.missingParcel( option );
+			fail( new CLArgumentError( LinearArgDesequencer.kErrorCodeMissingArgument, -1, null, -1, spec.getKey( option ) ) );
+		}
+		
+		// Record the parse, if anyone is counting.
+		
+		if( spec.metrics != null )
+			spec.metrics.recordParse( System.nanoTime() - startTime, tokenCount, error == null ? LinearArgDesequencer.kErrorCodeNone : error.getCode() );
+		
+		return error;
+	}
+	
+	public CLArgumentError [] getErrors() {
+		
+		// Returns every error found by the last scan, in the order
+		// they were found.  Unless all errors are being collected,
+		// this is just the error that stopped the scan, if any.
+		
+		if( ! collectAll )
+			return error == null ? CLArgumentError.kNoErrors : new CLArgumentError [] { error };
+		
+		return errors.isEmpty() ? CLArgumentError.kNoErrors : errors.toArray( new CLArgumentError [ errors.size() ] );
+	}
+}
@@ -0,0 +1,730 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class CLArgumentSnapshot
+ *
+ *  A compact binary image of a CLArgumentSpec, for programs
+ *  that start often and would rather not build their argument
+ *  definitions every time.  The image is written once, at build
+ *  time, and loaded at startup with a single memory-mapped read:
+ *
+ *    java -classpath bin com.kfs.bsd.common.util.CLArgumentSnapshot com.foo.MyArgs foo.clspec
+ *
+ *    CLArgumentSpec spec = CLArgumentSnapshot.load( new File( "foo.clspec" ) );
+ *
+ *  The image holds the definitions and ready-made lookup tables
+ *  (a direct table of ASCII flags, sorted tables of other flags
+ *  and of switches, and a hash table of keys), so the loaded spec
+ *  looks everything up in place.  No per-option objects are made
+ *  at load time: a key, display name, or list of flags or switches
+ *  is only decoded when it is first asked for.
+ *
+ *  The image is big-endian, and laid out as follows (each 'ref' is
+ *  the byte offset of a list or string, or -1 for null; a string is
+ *  its length followed by its UTF-16 characters, and a list is its
+ *  length followed by its items):
+ *
+ *    header       - magic, version, option count, attributes,
+ *                   duplicate ref, required options ref, key table
+ *                   ref, other flag table ref, switch table ref
+ *    flag table   - the owner of each ASCII flag, or -1
+ *    options      - for each option: parcel count, attributes,
+ *                   type code, key ref, display name ref, flags
+ *                   ref, switches ref, enum class name ref
+ *    everything else, referred to from the above
+ */
+
+package com.kfs.bsd.common.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+public final class CLArgumentSnapshot {
+	
+	// The format of the image
+	
+	private static final int kMagic = 0x434c5353;
+	private static final int kVersion = 1;
+	
+	private static final int kHeaderOptionCount = 8;
+	private static final int kHeaderAttributes = 12;
+	private static final int kHeaderDuplicate = 16;
+	private static final int kHeaderRequired = 20;
+	private static final int kHeaderKeyTable = 24;
+	private static final int kHeaderOtherFlags = 28;
+	private static final int kHeaderSwitches = 32;
+	private static final int kFlagTable = 36;
+	private static final int kOptions = kFlagTable + 4 * CLArgumentIndex.kDirectFlagCount;
+	
+	private static final int kOptionParcelCount = 0;
+	private static final int kOptionAttributes = 4;
+	private static final int kOptionType = 8;
+	private static final int kOptionKey = 12;
+	private static final int kOptionDisplayName = 16;
+	private static final int kOptionFlags = 20;
+	private static final int kOptionSwitches = 24;
+	private static final int kOptionEnumName = 28;
+	private static final int kOptionSize = 32;
+	
+	private static final int kAllowsAbbreviations = 1;
+	private static final int kAllowsResponseFiles = 2;
+	private static final int kIsArray = 1;
+	private static final int kIsUnbounded = 2;
+	
+	// The type codes, indexed by code (an enum is kTypeEnum)
+	
+	private static final Class<?> [] kTypes = { null, int.class, long.class, double.class, boolean.class };
+	private static final int kTypeEnum = kTypes.length;
+	
+	// The image being read
+	
+	private final ByteBuffer image;
+	
+	// The constructor
+	
+	private CLArgumentSnapshot( ByteBuffer image ) throws IOException {
+		
+		// Wraps the given image, after checking that it is one.
+		
+		super();
+		
+		this.image = image;
+		
+		if( image.limit() < kOptions || image.getInt( 0 ) != kMagic )
+			throw new IOException( "Not a CLArgumentSpec snapshot" );
+		
+		if( image.getInt( 4 ) != kVersion )
+			throw new IOException( "Unsupported CLArgumentSpec snapshot version: " + image.getInt( 4 ) );
+		
+		if( image.limit() < kOptions + kOptionSize * getOptionCount() )
+			throw new IOException( "Truncated CLArgumentSpec snapshot" );
+	}
+	
+	// Loading functions
+	
+	public static CLArgumentSpec load( File file ) throws IOException {
+		
+		// Maps the given image into memory, and returns the spec it holds.
+		
+		return load( file, null );
+	}
+	
+	public static CLArgumentSpec load( File file, CLArgumentMetrics metrics ) throws IOException {
+		
+		// Maps the given image into memory, and returns the spec it
+		// holds, which records its parses in the given collector.
+		
+		FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ );
+		
+		try {
+			return load( channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() ), metrics );
+		}
+		finally {
+			channel.close();
+		}
+	}
+	
+	public static CLArgumentSpec load( ByteBuffer image, CLArgumentMetrics metrics ) throws IOException {
+		
+		// Returns the spec held by the given image, which is read in
+		// place (from its start, regardless of its position), and so
+		// must not be changed afterwards.
+		
+		try {
+			return new CLArgumentSpec( new CLArgumentSnapshot( image.duplicate() ), metrics );
+		}
+		catch( TypeNotPresentException e ) {
+			
+			throw new IOException( "Unknown enum in CLArgumentSpec snapshot: " + e.typeName(), e );
+		}
+		catch( IndexOutOfBoundsException e ) {
+			
+			throw new IOException( "Corrupt CLArgumentSpec snapshot", e );
+		}
+	}
+	
+	// Writing functions
+	
+	public static void write( CLArgumentSpec spec, File file ) throws IOException {
+		
+		// Writes the image of the given spec to the given file.
+		
+		OutputStream out = new FileOutputStream( file );
+		
+		try {
+			write( spec, out );
+		}
+		finally {
+			out.close();
+		}
+	}
+	
+	public static void write( CLArgumentSpec spec, OutputStream out ) throws IOException {
+		
+		// Writes the image of the given spec to the given stream.
+		
+		out.write( toImage( spec ) );
+	}
+	
+	static byte [] toImage( CLArgumentSpec spec ) {
+		
+		// Returns the image of the given spec.
+		
+		int count = spec.getOptionCount();
+		Output out = new Output( kOptions + kOptionSize * count );
+		
+		out.setInt( 0, kMagic );
+		out.setInt( 4, kVersion );
+		out.setInt( kHeaderOptionCount, count );
+		out.setInt( kHeaderAttributes, ( spec.allowsAbbreviations() ? kAllowsAbbreviations : 0 ) | ( spec.allowsResponseFiles() ? kAllowsResponseFiles : 0 ) );
+		out.setInt( kHeaderDuplicate, out.putString( spec.duplicate ) );
+		out.setInt( kHeaderRequired, out.putInts( spec.requiredOptions ) );
+		
+		// The options.  Flags and switches keep their first owner,
+		// just like the index of a compiled spec.
+		
+		TreeMap<Character,Integer> otherFlags = new TreeMap<Character,Integer>();
+		TreeMap<String,Integer> switches = new TreeMap<String,Integer>();
+		
+		for( int row = 0 ; row < CLArgumentIndex.kDirectFlagCount ; row++ )
+			out.setInt( kFlagTable + 4 * row, -1 );
+		
+		for( int option = 0 ; option < count ; option++ ) {
+			
+			int record = kOptions + kOptionSize * option;
+			Class<?> type = spec.valueTypes[ option ];
+			char [] flags = spec.getFlags( option );
+			String [] names = spec.getSwitches( option );
+			
+			out.setInt( record + kOptionParcelCount, spec.getParcelCount( option ) );
+			out.setInt( record + kOptionAttributes, ( spec.isArray( option ) ? kIsArray : 0 ) | ( spec.isUnbounded( option ) ? kIsUnbounded : 0 ) );
+			out.setInt( record + kOptionType, type != null && type.isEnum() ? kTypeEnum : Math.max( 0, Arrays.asList( kTypes ).indexOf( type ) ) );
+			out.setInt( record + kOptionKey, out.putString( spec.getKey( option ) ) );
+			out.setInt( record + kOptionDisplayName, out.putString( spec.getDisplayName( option ) ) );
+			out.setInt( record + kOptionFlags, out.putString( new String( flags ) ) );
+			out.setInt( record + kOptionSwitches, out.putStrings( names ) );
+			out.setInt( record + kOptionEnumName, out.putString( type != null && type.isEnum() ? type.getName() : null ) );
+			
+			for( char flag : flags ) {
+				
+				if( flag < CLArgumentIndex.kDirectFlagCount ) {
+					
+					if( out.getInt( kFlagTable + 4 * flag ) < 0 )
+						out.setInt( kFlagTable + 4 * flag, option );
+				}
+				else if( ! otherFlags.containsKey( flag ) )
+					otherFlags.put( flag, option );
+			}
+			
+			for( String sswitch : names )
+				if( ! switches.containsKey( sswitch ) )
+					switches.put( sswitch, option );
+		}
+		
+		// The sorted tables of other flags and of switches
+		
+		out.setInt( kHeaderOtherFlags, out.putInt( otherFlags.size() ) );
+		
+		for( Map.Entry<Character,Integer> entry : otherFlags.entrySet() ) {
+			
+			out.putInt( entry.getKey() );
+			out.putInt( entry.getValue() );
+		}
+		
+		int [] switchRefs = new int [ switches.size() ];
+		int [] switchOwners = new int [ switches.size() ];
+		int row = 0;
+		
+		for( Map.Entry<String,Integer> entry : switches.entrySet() ) {
+			
+			switchRefs[ row ] = out.putString( entry.getKey() );
+			switchOwners[ row++ ] = entry.getValue();
+		}
+		
+		out.setInt( kHeaderSwitches, out.putInt( switchRefs.length ) );
+		
+		for( row = 0 ; row < switchRefs.length ; row++ ) {
+			
+			out.putInt( switchRefs[ row ] );
+			out.putInt( switchOwners[ row ] );
+		}
+		
+		// The hash table of keys, which is at most half full
+		
+		int size = 2;
+		
+		while( size < count * 2 )
+			size *= 2;
+		
+		int [] slots = new int [ size ];
+		Arrays.fill( slots, -1 );
+		
+		for( int option = 0 ; option < count ; option++ ) {
+			
+			int slot = CLArgumentIndex.hash( spec.getKey( option ), 0 ) & ( size -1 );
+			
+			while( slots[ slot ] >= 0 )
+				slot = ( slot + 1 ) & ( size -1 );
+			
+			slots[ slot ] = option;
+		}
+		
+		out.setInt( kHeaderKeyTable, out.putInts( slots ) );
+		
+		return out.toByteArray();
+	}
+	
+	private static final class Output {
+		
+		// A growable, big-endian byte array, in which each
+		// distinct string is only written once.
+		
+		private ByteBuffer data;
+		private final HashMap<String,Integer> strings = new HashMap<String,Integer>();
+		
+		private Output( int reserved ) {
+			
+			// Starts with the given number of bytes reserved.
+			
+			super();
+			
+			data = ByteBuffer.allocate( Math.max( 64, reserved * 2 ) );
+			data.position( reserved );
+		}
+		
+		private void ensure( int bytes ) {
+			
+			// Makes room for the given number of bytes.
+			
+			if( data.remaining() >= bytes ) return;
+			
+			ByteBuffer bigger = ByteBuffer.allocate( Math.max( data.capacity() * 2, data.position() + bytes ) );
+			
+			data.flip();
+			bigger.put( data );
+			data = bigger;
+		}
+		
+		private int getInt( int at ) {
+			
+			// Returns the int at the given offset.
+			
+			return data.getInt( at );
+		}
+		
+		private void setInt( int at, int value ) {
+			
+			// Replaces the int at the given offset.
+			
+			data.putInt( at, value );
+		}
+		
+		private int putInt( int value ) {
+			
+			// Appends an int, and returns its offset.
+			
+			ensure( 4 );
+			
+			int at = data.position();
+			data.putInt( value );
+			
+			return at;
+		}
+		
+		private int putInts( int [] values ) {
+			
+			// Appends a list of ints, and returns its offset.
+			
+			int at = putInt( values.length );
+			
+			for( int value : values )
+				putInt( value );
+			
+			return at;
+		}
+		
+		private int putString( String value ) {
+			
+			// Appends a string (unless it has been already), and
+			// returns its offset, or -1 if the string is null.
+			
+			if( value == null ) return -1;
+			
+			Integer existing = strings.get( value );
+			
+			if( existing != null ) return existing;
+			
+			ensure( 4 + 2 * value.length() );
+			
+			int at = data.position();
+			data.putInt( value.length() );
+			
+			for( int row = 0 ; row < value.length() ; row++ )
+				data.putChar( value.charAt( row ) );
+			
+			strings.put( value, at );
+			
+			return at;
+		}
+		
+		private int putStrings( String [] values ) {
+			
+			// Appends a list of strings, and returns its offset.
+			
+			int [] refs = new int [ values.length ];
+			
+			for( int row = 0 ; row < values.length ; row++ )
+				refs[ row ] = putString( values[ row ] );
+			
+			return putInts( refs );
+		}
+		
+		private byte [] toByteArray() {
+			
+			// Returns the bytes written so far.
+			
+			return Arrays.copyOf( data.array(), data.position() );
+		}
+	}
+	
+	// Accessors used by CLArgumentSpec
+	
+	int getOptionCount() {
+		
+		// Returns the number of options in the image.
+		
+		return image.getInt( kHeaderOptionCount );
+	}
+	
+	boolean allowsAbbreviations() {
+		
+		// Returns whether or not switches may be abbreviated.
+		
+		return ( image.getInt( kHeaderAttributes ) & kAllowsAbbreviations ) != 0;
+	}
+	
+	boolean allowsResponseFiles() {
+		
+		// Returns whether or not '@file' arguments name response files.
+		
+		return ( image.getInt( kHeaderAttributes ) & kAllowsResponseFiles ) != 0;
+	}
+	
+	String getDuplicate() {
+		
+		// Returns the description of the first duplicate registration, or null.
+		
+		return readString( image.getInt( kHeaderDuplicate ) );
+	}
+	
+	int [] getRequiredOptions() {
+		
+		// Returns the options whose parcels are expected before any others.
+		
+		int ref = image.getInt( kHeaderRequired );
+		int [] result = new int [ image.getInt( ref ) ];
+		
+		for( int row = 0 ; row < result.length ; row++ )
+			result[ row ] = image.getInt( ref + 4 + 4 * row );
+		
+		return result;
+	}
+	
+	int getParcelCount( int option ) {
+		
+		// Returns the number of parcels the given option expects.
+		
+		return image.getInt( kOptions + kOptionSize * option + kOptionParcelCount );
+	}
+	
+	boolean isArray( int option ) {
+		
+		// Returns whether or not the given option keeps all of its parcels.
+		
+		return ( image.getInt( kOptions + kOptionSize * option + kOptionAttributes ) & kIsArray ) != 0;
+	}
+	
+	boolean isUnbounded( int option ) {
+		
+		// Returns whether or not the given option collects any parcels that follow it.
+		
+		return ( image.getInt( kOptions + kOptionSize * option + kOptionAttributes ) & kIsUnbounded ) != 0;
+	}
+	
+	Class<?> getValueType( int option ) {
+		
+		// Returns the type of the given option's values, or null for
+		// Strings.  Throws TypeNotPresentException if it is an enum
+		// that cannot be found.
+		
+		int code = image.getInt( kOptions + kOptionSize * option + kOptionType );
+		
+		if( code != kTypeEnum )
+			return kTypes[ code ];
+		
+		String name = readString( image.getInt( kOptions + kOptionSize * option + kOptionEnumName ) );
+		ClassLoader loader = Thread.currentThread().getContextClassLoader();
+		
+		try {
+			return Class.forName( name, false, loader == null ? CLArgumentSnapshot.class.getClassLoader() : loader );
+		}
+		catch( ClassNotFoundException e ) {
+			
+			throw new TypeNotPresentException( name, e );
+		}
+	}
+	
+	String getKey( int option ) {
+		
+		// Decodes the key of the given option.
+		
+		return readString( image.getInt( kOptions + kOptionSize * option + kOptionKey ) );
+	}
+	
+	String getDisplayName( int option ) {
+		
+		// Decodes the display name of the given option.
+		
+		return readString( image.getInt( kOptions + kOptionSize * option + kOptionDisplayName ) );
+	}
+	
+	char [] getFlags( int option ) {
+		
+		// Decodes the flags of the given option.
+		
+		return readString( image.getInt( kOptions + kOptionSize * option + kOptionFlags ) ).toCharArray();
+	}
+	
+	String [] getSwitches( int option ) {
+		
+		// Decodes the switches of the given option.
+		
+		int ref = image.getInt( kOptions + kOptionSize * option + kOptionSwitches );
+		String [] result = new String [ image.getInt( ref ) ];
+		
+		for( int row = 0 ; row < result.length ; row++ )
+			result[ row ] = readString( image.getInt( ref + 4 + 4 * row ) );
+		
+		return result;
+	}
+	
+	int getOptionForKey( String id ) {
+		
+		// Returns the option with the given key, or -1.
+		
+		int ref = image.getInt( kHeaderKeyTable );
+		int mask = image.getInt( ref ) -1;
+		
+		for( int slot = CLArgumentIndex.hash( id, 0 ) & mask ; ; slot = ( slot + 1 ) & mask ) {
+			
+			int option = image.getInt( ref + 4 + 4 * slot );
+			
+			if( option < 0 )
+				return -1;
+			
+			if( compare( id, 0, image.getInt( kOptions + kOptionSize * option + kOptionKey ), false ) == 0 )
+				return option;
+		}
+	}
+	
+	CLArgumentLookup<Integer> getIndex() {
+		
+		// Returns an index that looks flags and switches
+		// up in the tables of this image.
+		
+		return new Index();
+	}
+	
+	// Reading functions
+	
+	private String readString( int ref ) {
+		
+		// Decodes the string at the given offset.
+		
+		if( ref < 0 ) return null;
+		
+		char [] result = new char [ image.getInt( ref ) ];
+		
+		for( int row = 0 ; row < result.length ; row++ )
+			result[ row ] = image.getChar( ref + 4 + 2 * row );
+		
+		return new String( result );
+	}
+	
+	private int compare( String token, int offset, int ref, boolean prefix ) {
+		
+		// Compares the given token, from the given offset, with the
+		// string at the given offset in the image, without decoding
+		// it.  If prefix is true, only as much of the string as the
+		// token holds is compared, so 0 means that the string begins
+		// with the token.
+		
+		int tokenLength = token.length() - offset;
+		int length = image.getInt( ref );
+		int common = Math.min( tokenLength, length );
+		
+		for( int row = 0 ; row < common ; row++ ) {
+			
+			int difference = token.charAt( offset + row ) - image.getChar( ref + 4 + 2 * row );
+			
+			if( difference != 0 ) return difference;
+		}
+		
+		if( prefix )
+			return tokenLength <= length ? 0 : 1;
+		
+		return tokenLength - length;
+	}
+	
+	private final class Index implements CLArgumentLookup<Integer> {
+		
+		// The flags and switches of the image.  Switches are found
+		// by binary search; abbreviations are the range of switches
+		// that begin with them.
+		
+		public Integer getFlag( char flag ) {
+			
+			// Returns the owner of the given flag, or null.
+			
+			if( flag < CLArgumentIndex.kDirectFlagCount ) {
+				
+				int option = image.getInt( kFlagTable + 4 * flag );
+				
+				return option < 0 ? null : Integer.valueOf( option );
+			}
+			
+			int ref = image.getInt( kHeaderOtherFlags );
+			int low = 0;
+			int high = image.getInt( ref ) -1;
+			
+			while( low <= high ) {
+				
+				int middle = ( low + high ) >>> 1;
+				int found = image.getInt( ref + 4 + 8 * middle );
+				
+				if( found == flag ) return image.getInt( ref + 8 + 8 * middle );
+				
+				if( found < flag ) low = middle + 1;
+				else high = middle -1;
+			}
+			
+			return null;
+		}
+		
+		public Integer getSwitch( String token, int offset ) {
+			
+			// Returns the owner of the switch spelled by the given
+			// token from the given offset, or null.
+			
+			int ref = image.getInt( kHeaderSwitches );
+			int low = 0;
+			int high = image.getInt( ref ) -1;
+			
+			while( low <= high ) {
+				
+				int middle = ( low + high ) >>> 1;
+				int difference = compare( token, offset, image.getInt( ref + 4 + 8 * middle ), false );
+				
+				if( difference == 0 ) return image.getInt( ref + 8 + 8 * middle );
+				
+				if( difference > 0 ) low = middle + 1;
+				else high = middle -1;
+			}
+			
+			return null;
+		}
+		
+		public Integer getSwitchAbbreviation( String token, int offset ) {
+			
+			// Returns the owner of the given switch, or of every switch
+			// that begins with it, or null (as in CLArgumentIndex).
+			
+			Integer exact = getSwitch( token, offset );
+			
+			if( exact != null || offset >= token.length() ) return exact;
+			
+			int ref = image.getInt( kHeaderSwitches );
+			int start = prefixBound( token, offset, false );
+			int end = prefixBound( token, offset, true );
+			
+			if( start == end ) return null;
+			
+			int owner = image.getInt( ref + 8 + 8 * start );
+			
+			for( int row = start + 1 ; row < end ; row++ )
+				if( image.getInt( ref + 8 + 8 * row ) != owner )
+					return null;
+			
+			return owner;
+		}
+		
+		public String [] getSwitchesWithPrefix( String token, int offset ) {
+			
+			// Returns every switch that begins with the given
+			// token from the given offset, in alphabetical order.
+			
+			int ref = image.getInt( kHeaderSwitches );
+			int start = prefixBound( token, offset, false );
+			int end = prefixBound( token, offset, true );
+			
+			ArrayList<String> result = new ArrayList<String>( end - start );
+			
+			for( int row = start ; row < end ; row++ )
+				result.add( readString( image.getInt( ref + 4 + 8 * row ) ) );
+			
+			return result.toArray( new String [0] );
+		}
+		
+		private int prefixBound( String token, int offset, boolean after ) {
+			
+			// Returns the position of the first switch that begins with
+			// the given prefix (or, if after is true, the position just
+			// past the last one).
+			
+			int ref = image.getInt( kHeaderSwitches );
+			int low = 0;
+			int high = image.getInt( ref );
+			
+			while( low < high ) {
+				
+				int middle = ( low + high ) >>> 1;
+				int difference = compare( token, offset, image.getInt( ref + 4 + 8 * middle ), true );
+				
+				if( difference > 0 || ( after && difference == 0 ) ) low = middle + 1;
+				else high = middle;
+			}
+			
+			return low;
+		}
+	}
+	
+	// The build-time tool
+	
+	public static void main( String [] args ) throws Exception {
+		
+		// Writes the image of the arguments defined by the given
+		// subclass of LinearArgDesequencer, which must have a public
+		// constructor that takes no arguments.
+		
+		if( args.length != 2 ) {
+			
+			System.err.println( "Usage: java com.kfs.bsd.common.util.CLArgumentSnapshot <LinearArgDesequencer subclass> <snapshot file>" );
+			System.exit( 1 );
+		}
+		
+		LinearArgDesequencer desequencer = (LinearArgDesequencer) Class.forName( args[ 0 ] ).getConstructor().newInstance();
+		
+		write( desequencer.compileArgSpec(), new File( args[ 1 ] ) );
+	}
+}
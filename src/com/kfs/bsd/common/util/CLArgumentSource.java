@@ -0,0 +1,24 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Interface CLArgumentSource
+ *
+ *  Supplies the arguments of one layer of a CLArgumentLayers
+ *  (such as a config file, or the environment), in the same
+ *  form as an argument array.  A source is only asked for its
+ *  arguments when its layer is first needed, and only once.
+ */
+
+package com.kfs.bsd.common.util;
+
+import java.io.IOException;
+
+public interface CLArgumentSource {
+	
+	// Returns the arguments of this source, as they would appear in an
+	// argument array, for the arguments defined by the given spec.
+	// Throwing IOException marks the layer as unreadable.
+	
+	public String [] load( CLArgumentSpec spec ) throws IOException;
+}
@@ -0,0 +1,820 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class CLArgumentSpec
+ *
+ *  An immutable, compiled copy of the arguments defined
+ *  in a CLArgumentSet.  A spec is built once (usually by
+ *  LinearArgDesequencer.compileArgSpec()), and can then
+ *  parse any number of argument arrays without rebuilding
+ *  the argument definitions each time.
+ *
+ *  A spec never changes after it is compiled, and parsing
+ *  keeps all of its state on the stack and in the returned
+ *  CLArgumentResult, so one spec may be shared by any number
+ *  of threads parsing at once, without any locking.
+ *
+ *  Functions of interest:
+ *    public CLArgumentResult parse( String [] args )
+ *      - Analyzes the given arguments, using the same rules
+ *        as LinearArgDesequencer.desequenceArgs().
+ *
+ *    public CLArgumentResult [] parseAll( String [][] batch )
+ *    public List<CLArgumentResult> parseAll( List<String[]> batch )
+ *      - Analyzes many argument arrays in parallel on a fork-join
+ *        pool, and returns the results in the order given.
+ *
+ *    public CLPackedResult parsePacked( String [] args )
+ *      - Same as parse(), except that the parcels are kept as
+ *        positions in the given array, for programs that keep
+ *        the results of a great many parses.
+ *
+ *    public CLArgumentTable parseTable( String [][] batch )
+ *      - Analyzes many argument arrays into a single table, stored
+ *        by column, for questions about all of them at once.
+ *
+ *    public CLArgumentResult validate( String [] args )
+ *    public CLArgumentResult [] validateAll( String [][] batch )
+ *      - Same as parse() and parseAll(), except that every error
+ *        is collected in a single pass, rather than just the first.
+ *
+ *    public CLArgumentError parse( String [] args, CLArgumentListener listener )
+ *    public CLArgumentError parse( Iterator<String> args, CLArgumentListener listener )
+ *    public CLArgumentError parse( Reader args, CLArgumentListener listener )
+ *      - Analyzes the given arguments one at a time, handing
+ *        each option, parcel and problem to the listener as soon
+ *        as it is recognized, without keeping any of them.
+ */
+
+package com.kfs.bsd.common.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class CLArgumentSpec {
+	
+	// The argument definitions, indexed by option number.  The
+	// numeric ones are package-private so that CLArgumentScanner
+	// can read them directly.  The others are read through their
+	// accessors, because a spec loaded from a snapshot only
+	// decodes them when they are first asked for.  They are kept
+	// in AtomicReferenceArrays, so that a thread that finds one
+	// decoded by another thread sees all of it.
+	
+	private final AtomicReferenceArray<String> keys;
+	private final AtomicReferenceArray<char []> flags;
+	private final AtomicReferenceArray<String []> switches;
+	final int [] parcelCounts;
+	final boolean [] arrays;
+	final boolean [] unbounded;
+	private final AtomicReferenceArray<String> displayNames;
+	
+	// The type of each option's parcels (null for Strings),
+	// and the constants of each enum type (null otherwise)
+	
+	final Class<?> [] valueTypes;
+	final Object [][] enumConstants;
+	
+	// The options whose parcels are expected before any others
+	
+	final int [] requiredOptions;
+	
+	// Lookup tables
+	
+	final Map<String,Integer> options = new HashMap<String,Integer>();
+	final CLArgumentLookup<Integer> index;
+	
+	// The snapshot this spec was loaded from, or null
+	
+	private final CLArgumentSnapshot snapshot;
+	
+	// A description of the first duplicate registration, if any
+	
+	final String duplicate;
+	
+	// Whether or not switches may be abbreviated
+	
+	final boolean abbreviations;
+	
+	// Whether or not '@file' arguments name response files
+	
+	final boolean responseFiles;
+	
+	// The metrics collector (or null), and its hit counter for each option
+	
+	final CLArgumentMetrics metrics;
+	final LongAdder [] optionHits;
+	
+	// The usage of each option, and all of them as one block of
+	// text, rendered when first asked for.  The definitions never
+	// change, so neither does the usage once it is rendered.
+	
+	private volatile String [] usageLines = null;
+	private volatile String usageText = null;
+	
+	// The tree of switches used to make suggestions, built when
+	// first needed.  Racing threads at worst build it twice.
+	
+	private volatile CLSwitchTree switchTree = null;
+	
+	// The greatest number of suggestions made for one token
+	
+	private static final int kMaxSuggestions = 5;
+	
+	// The constructor
+	
+	CLArgumentSpec( String [] keys, char [][] flags, String [][] switches, int [] parcelCounts, boolean [] arrays, boolean [] unbounded, String [] displayNames, Class<?> [] valueTypes, int [] requiredOptions, String duplicate, boolean abbreviations, boolean responseFiles, CLArgumentMetrics metrics ) {
+		
+		// Builds a spec from the given definitions.  The arrays
+		// are adopted, not copied, so the caller must not keep
+		// them.  Used by CLArgumentSet.compile().
+		
+		super();
+		
+		this.keys = new AtomicReferenceArray<String>( keys );
+		this.flags = new AtomicReferenceArray<char []>( flags );
+		this.switches = new AtomicReferenceArray<String []>( switches );
+		this.parcelCounts = parcelCounts;
+		this.arrays = arrays;
+		this.unbounded = unbounded;
+		this.displayNames = new AtomicReferenceArray<String>( displayNames );
+		this.valueTypes = valueTypes;
+		this.enumConstants = new Object [ keys.length ][];
+		this.requiredOptions = requiredOptions;
+		this.duplicate = duplicate;
+		this.abbreviations = abbreviations;
+		this.responseFiles = responseFiles;
+		this.metrics = metrics;
+		this.optionHits = metrics == null ? null : metrics.hitCounters( keys );
+		this.snapshot = null;
+		
+		CLArgumentIndex<Integer> index = new CLArgumentIndex<Integer>();
+		
+		for( int option = 0 ; option < keys.length ; option++ ) {
+			
+			Integer boxed = option;
+			
+			options.put( keys[ option ], boxed );
+			
+			if( valueTypes[ option ] != null && valueTypes[ option ].isEnum() )
+				enumConstants[ option ] = valueTypes[ option ].getEnumConstants();
+			
+			for( char flag : flags[ option ] )
+				index.putFlag( flag, boxed );
+			
+			for( String sswitch : switches[ option ] )
+				index.putSwitch( sswitch, boxed );
+		}
+		
+		this.index = index;
+	}
+	
+	CLArgumentSpec( CLArgumentSnapshot snapshot, CLArgumentMetrics metrics ) {
+		
+		// Builds a spec that reads its definitions from the given
+		// snapshot.  Only the numeric definitions are decoded now;
+		// keys, flags, switches and display names are decoded the
+		// first time each is asked for, and lookups are made in the
+		// tables of the snapshot.  Used by CLArgumentSnapshot.load().
+		
+		super();
+		
+		int count = snapshot.getOptionCount();
+		
+		this.keys = new AtomicReferenceArray<String>( count );
+		this.flags = new AtomicReferenceArray<char []>( count );
+		this.switches = new AtomicReferenceArray<String []>( count );
+		this.parcelCounts = new int [ count ];
+		this.arrays = new boolean [ count ];
+		this.unbounded = new boolean [ count ];
+		this.displayNames = new AtomicReferenceArray<String>( count );
+		this.valueTypes = new Class<?> [ count ];
+		this.enumConstants = new Object [ count ][];
+		this.requiredOptions = snapshot.getRequiredOptions();
+		this.duplicate = snapshot.getDuplicate();
+		this.abbreviations = snapshot.allowsAbbreviations();
+		this.responseFiles = snapshot.allowsResponseFiles();
+		this.index = snapshot.getIndex();
+		this.snapshot = snapshot;
+		
+		for( int option = 0 ; option < count ; option++ ) {
+			
+			parcelCounts[ option ] = snapshot.getParcelCount( option );
+			arrays[ option ] = snapshot.isArray( option );
+			unbounded[ option ] = snapshot.isUnbounded( option );
+			valueTypes[ option ] = snapshot.getValueType( option );
+			
+			if( valueTypes[ option ] != null && valueTypes[ option ].isEnum() )
+				enumConstants[ option ] = valueTypes[ option ].getEnumConstants();
+		}
+		
+		// Hit counters are kept by key, so they need every key.
+		
+		String [] allKeys = null;
+		
+		if( metrics != null ) {
+			
+			allKeys = new String [ count ];
+			
+			for( int option = 0 ; option < count ; option++ )
+				allKeys[ option ] = getKey( option );
+		}
+		
+		this.metrics = metrics;
+		this.optionHits = metrics == null ? null : metrics.hitCounters( allKeys );
+	}
+	
+	// Accessors for the argument definitions
+	
+	public int getOptionCount() {
+		
+		// Returns the number of arguments defined in this spec.
+		
+		return parcelCounts.length;
+	}
+	
+	public int getOptionForKey( String id ) {
+		
+		// Returns the option number of the given argument,
+		// or -1 if the given argument is not in this spec.
+		
+		if( snapshot != null )
+			return snapshot.getOptionForKey( id );
+		
+		Integer option = options.get( id );
+		
+		return option == null ? -1 : option;
+	}
+	
+	public String getKey( int option ) {
+		
+		// Returns the ID of the given option.  Racing threads
+		// at worst decode the same key twice.
+		
+		String result = keys.get( option );
+		
+		if( result == null && snapshot != null ) {
+			
+			result = snapshot.getKey( option );
+			keys.set( option, result );
+		}
+		
+		return result;
+	}
+	
+	public char [] getFlags( int option ) {
+		
+		// Returns the flags that trigger the given option.
+		
+		char [] result = flags.get( option );
+		
+		if( result == null ) {
+			
+			result = snapshot.getFlags( option );
+			flags.set( option, result );
+		}
+		
+		return result.clone();
+	}
+	
+	public String [] getSwitches( int option ) {
+		
+		// Returns the switches that trigger the given option.
+		
+		String [] result = switches.get( option );
+		
+		if( result == null ) {
+			
+			result = snapshot.getSwitches( option );
+			switches.set( option, result );
+		}
+		
+		return result.clone();
+	}
+	
+	public int getParcelCount( int option ) {
+		
+		// Returns the number of parcels the given option expects.
+		
+		return parcelCounts[ option ];
+	}
+	
+	public boolean isArray( int option ) {
+		
+		// Returns whether or not the given option keeps all of its parcels.
+		
+		return arrays[ option ];
+	}
+	
+	int getRelevantCount( int option, int found ) {
+		
+		// Returns how many of the given number of parcels (or values)
+		// of the given option are relevant: all of them for an array,
+		// and otherwise at most the last parcelCount of them.
+		
+		return found - CLArgumentValues.relevantStart( found, arrays[ option ], parcelCounts[ option ] );
+	}
+	
+	public boolean isUnbounded( int option ) {
+		
+		// Returns whether or not the given option
+		// collects any parcels that follow it.
+		
+		return unbounded[ option ];
+	}
+	
+	public String getDisplayName( int option ) {
+		
+		// Returns the display name of the given option.
+		
+		String result = displayNames.get( option );
+		
+		if( result == null && snapshot != null ) {
+			
+			result = snapshot.getDisplayName( option );
+			displayNames.set( option, result );
+		}
+		
+		return result;
+	}
+	
+	public Class<?> getValueType( int option ) {
+		
+		// Returns the type of the given option's values
+		// (String.class if its parcels are not converted).
+		
+		return valueTypes[ option ] == null ? String.class : valueTypes[ option ];
+	}
+	
+	public String getArgKeyForFlag( char flag ) {
+		
+		// Returns the ID of an argument that is
+		// set to be triggered by the given flag.
+		
+		Integer option = index.getFlag( flag );
+		
+		return option == null ? null : getKey( option );
+	}
+	
+	public String getArgKeyForSwitch( String sswitch ) {
+		
+		// Returns the ID of an argument that is
+		// set to be triggered by the given switch
+		// (or by an abbreviation of it, if allowed).
+		
+		Integer option = abbreviations ? index.getSwitchAbbreviation( sswitch, 0 ) : index.getSwitch( sswitch, 0 );
+		
+		return option == null ? null : getKey( option );
+	}
+	
+	public String [] getSwitchesWithPrefix( String prefix ) {
+		
+		// Returns every switch that begins with the
+		// given prefix, in alphabetical order.
+		
+		return index.getSwitchesWithPrefix( prefix, 0 );
+	}
+	
+	public boolean allowsAbbreviations() {
+		
+		// Returns whether or not switches may be abbreviated.
+		
+		return abbreviations;
+	}
+	
+	public CLArgumentMetrics getMetrics() {
+		
+		// Returns the metrics collector that records the
+		// parses made with this spec, or null if there is none.
+		
+		return metrics;
+	}
+	
+	public boolean allowsResponseFiles() {
+		
+		// Returns whether or not '@file' arguments name response files.
+		
+		return responseFiles;
+	}
+	
+	// Suggestion functions
+	
+	public String [] getSuggestions( String token ) {
+		
+		// Returns the options that the given unknown token was most
+		// likely meant to be, as they would be typed.  A '--switch'
+		// is matched against every switch, allowing one edit for
+		// short switches and two for longer ones.  In a '-flags'
+		// token, each unknown flag whose other case is known is
+		// suggested, and if the token is a whole word, it is also
+		// matched against the switches, as if it had two dashes.
+		// Anything else has no suggestions.
+		
+		if( token.startsWith( "--" ) )
+			return prefixed( "--", nearestSwitches( token, 2 ), new ArrayList<String>() );
+		
+		if( token.length() < 2 || token.charAt( 0 ) != '-' )
+			return new String [0];
+		
+		ArrayList<String> result = new ArrayList<String>();
+		
+		for( int i = 1 ; i < token.length() ; i++ ) {
+			
+			char flag = token.charAt( i );
+			char other = Character.isUpperCase( flag ) ? Character.toLowerCase( flag ) : Character.toUpperCase( flag );
+			
+			if( other != flag && index.getFlag( flag ) == null && index.getFlag( other ) != null && ! result.contains( "-" + other ) )
+				result.add( "-" + other );
+		}
+		
+		if( token.length() > 2 )
+			prefixed( "--", nearestSwitches( token, 1 ), result );
+		
+		return result.toArray( new String [ result.size() ] );
+	}
+	
+	private String [] nearestSwitches( String token, int offset ) {
+		
+		// Returns the switches closest to the part of the
+		// given token after the given offset, if any are close.
+		
+		CLSwitchTree tree = switchTree;
+		
+		if( tree == null ) {
+			
+			// The switches go in by definition order, rather than
+			// alphabetical order, which makes for a bushier tree.
+			
+			ArrayList<String> all = new ArrayList<String>();
+			
+			for( int option = 0 ; option < parcelCounts.length ; option++ )
+				all.addAll( Arrays.asList( getSwitches( option ) ) );
+			
+			switchTree = tree = new CLSwitchTree( all.toArray( new String [ all.size() ] ) );
+		}
+		
+		int length = token.length() - offset;
+		
+		if( length == 0 ) return new String [0];
+		
+		return tree.nearest( token, offset, length <= 4 ? 1 : 2, kMaxSuggestions );
+	}
+	
+	private static String [] prefixed( String prefix, String [] items, ArrayList<String> result ) {
+		
+		// Adds each of the given items to the given list with the
+		// given prefix, and returns the whole list as an array.
+		
+		for( String item : items )
+			result.add( prefix + item );
+		
+		return result.toArray( new String [ result.size() ] );
+	}
+	
+	// Usage functions
+	
+	public String [] argsUsage() {
+		
+		// Returns the usage of each option, in the same format
+		// and order as argsUsage() in LinearArgDesequencer.
+		
+		renderUsage();
+		
+		return usageLines.clone();
+	}
+	
+	public String getUsage() {
+		
+		// Returns the usage of every option as one block
+		// of text, each followed by a newline.
+		
+		renderUsage();
+		
+		return usageText;
+	}
+	
+	public void writeUsage( Appendable out ) throws IOException {
+		
+		// Writes the text returned by getUsage() to the given
+		// Appendable.  The text is only rendered once per spec.
+		
+		renderUsage();
+		
+		out.append( usageText );
+	}
+	
+	private void renderUsage() {
+		
+		// Renders the usage of each option, unless it has been
+		// rendered already.  Racing threads at worst render the
+		// same text twice.
+		
+		if( usageText != null ) return;
+		
+		String [] lines = new String [ getOptionCount() ];
+		StringBuilder text = new StringBuilder();
+		
+		for( int option = 0 ; option < lines.length ; option++ ) {
+			
+			int start = text.length();
+			
+			char [] flags = getFlags( option );
+			String [] switches = getSwitches( option );
+			
+			if( flags.length > 0 )
+				text.append( '-' ).append( flags );
+			
+			for( int row = 0 ; row < switches.length ; row++ )
+				text.append( flags.length == 0 && row == 0 ? "--" : ", --" ).append( switches[ row ] );
+			
+			text.append( " : " ).append( getDisplayName( option ) );
+			
+			lines[ option ] = text.substring( start );
+			text.append( '\n' );
+		}
+		
+		usageLines = lines;
+		usageText = text.toString();
+	}
+	
+	// The primary parsing function
+	
+	public CLArgumentResult parse( String [] args ) {
+		
+		// Parses the given argument array, and returns the results.
+		// This follows the same rules as desequenceArgs() in
+		// LinearArgDesequencer; see that function for details.
+		
+		CLArgumentResult.Collector collector = new CLArgumentResult.Collector( this );
+		
+		CLArgumentError error = new CLArgumentScanner( this ).scan( args, collector );
+		
+		return collector.toResult( error );
+	}
+	
+	public CLPackedResult parsePacked( String [] args ) {
+		
+		// Same as parse(), except that the result refers to the parcels
+		// by their positions in the given array, rather than keeping them,
+		// so it must not be changed while the result is in use.
+		
+		CLArgumentScanner scanner = new CLArgumentScanner( this );
+		CLPackedResult.Collector collector = new CLPackedResult.Collector( this, scanner, args.length );
+		
+		CLArgumentError error = scanner.scan( args, collector );
+		
+		return collector.toResult( args, error );
+	}
+	
+	public CLArgumentResult validate( String [] args ) {
+		
+		// Same as parse(), except that the scan carries on past each
+		// error, so that the result lists every problem with the given
+		// arguments (see sequenceErrors() in CLArgumentResult).  Each
+		// error is a compact record whose message is only formatted
+		// if it is asked for.
+		
+		CLArgumentResult.Collector collector = new CLArgumentResult.Collector( this );
+		CLArgumentScanner scanner = new CLArgumentScanner( this, true, true );
+		
+		scanner.scan( args, collector );
+		
+		return collector.toResult( scanner.getErrors() );
+	}
+	
+	CLArgumentResult parseOptions( String [] args ) {
+		
+		// Same as parse(), except that no required parcels are
+		// expected, so a stray parcel is an error.  Used for the
+		// layers of a CLArgumentLayers that are not argument arrays.
+		
+		CLArgumentResult.Collector collector = new CLArgumentResult.Collector( this );
+		
+		CLArgumentError error = new CLArgumentScanner( this, false ).scan( args, collector );
+		
+		return collector.toResult( error );
+	}
+	
+	// The batch parsing functions
+	
+	// The number of argument arrays below which a batch is not split further
+	
+	private static final int kBatchGrain = 64;
+	
+	public CLArgumentResult [] parseAll( String [][] batch ) {
+		
+		// Parses every argument array in the given batch in parallel on
+		// the common fork-join pool, and returns the results in the same
+		// order.  Each result carries its own error code, if any.
+		
+		return parseAll( batch, ForkJoinPool.commonPool() );
+	}
+	
+	public CLArgumentResult [] parseAll( String [][] batch, ForkJoinPool pool ) {
+		
+		// Same as parseAll( batch ), but runs on the given pool.
+		
+		return parseAll( batch, pool, false );
+	}
+	
+	public CLArgumentResult [] validateAll( String [][] batch ) {
+		
+		// Same as parseAll( batch ), except that every error in
+		// each argument array is collected, as in validate().
+		
+		return validateAll( batch, ForkJoinPool.commonPool() );
+	}
+	
+	public CLArgumentResult [] validateAll( String [][] batch, ForkJoinPool pool ) {
+		
+		// Same as validateAll( batch ), but runs on the given pool.
+		
+		return parseAll( batch, pool, true );
+	}
+	
+	private CLArgumentResult [] parseAll( String [][] batch, ForkJoinPool pool, boolean collectAll ) {
+		
+		// Parses the given batch on the given pool, collecting every
+		// error of each argument array only if collectAll is true.
+		
+		CLArgumentResult [] results = new CLArgumentResult [ batch.length ];
+		
+		if( batch.length > 0 )
+			pool.invoke( new BatchTask( batch, results, 0, batch.length, collectAll ) );
+		
+		return results;
+	}
+	
+	public CLArgumentTable parseTable( String [][] batch ) {
+		
+		// Parses every argument array in the given batch, in order, into
+		// the rows of a new CLArgumentTable.  This keeps far less than one
+		// result per argument array, when there are a great many of them.
+		// The table is frozen, ready to be kept.
+		
+		CLArgumentTable result = new CLArgumentTable( this );
+		
+		for( String [] args : batch )
+			result.add( args );
+		
+		result.freeze();
+		
+		return result;
+	}
+	
+	public List<CLArgumentResult> parseAll( List<String[]> batch ) {
+		
+		// Same as parseAll( String [][] ), for a List of argument arrays.
+		
+		return Arrays.asList( parseAll( batch.toArray( new String [0][] ) ) );
+	}
+	
+	private final class BatchTask extends RecursiveAction {
+		
+		// Parses the part of a batch from start up to end, splitting
+		// it in half until the pieces are small enough to parse on one
+		// thread.  Every result goes into its own slot of the results
+		// array, so no ordering or locking is needed to put them back.
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final String [][] batch;
+		private final CLArgumentResult [] results;
+		private final int start;
+		private final int end;
+		private final boolean collectAll;
+		
+		BatchTask( String [][] batch, CLArgumentResult [] results, int start, int end, boolean collectAll ) {
+			
+			// Java requires that this be here.
+			
+			super();
+			
+			this.batch = batch;
+			this.results = results;
+			this.start = start;
+			this.end = end;
+			this.collectAll = collectAll;
+		}
+		
+		protected void compute() {
+			
+			// Split large pieces, and parse small ones with a
+			// scanner that is reused for the whole piece.
+			
+			if( end - start > kBatchGrain ) {
+				
+				int middle = ( start + end ) >>> 1;
+				
+				invokeAll( new BatchTask( batch, results, start, middle, collectAll ), new BatchTask( batch, results, middle, end, collectAll ) );
+				return;
+			}
+			
+			CLArgumentScanner scanner = new CLArgumentScanner( CLArgumentSpec.this, true, collectAll );
+			
+			for( int row = start ; row < end ; row++ ) {
+				
+				CLArgumentResult.Collector collector = new CLArgumentResult.Collector( CLArgumentSpec.this );
+				
+				scanner.scan( batch[ row ], collector );
+				results[ row ] = collector.toResult( scanner.getErrors() );
+			}
+		}
+	}
+	
+	// The event-driven parsing functions
+	
+	public CLArgumentError parse( String [] args, CLArgumentListener listener ) {
+		
+		// Parses the given argument array, and hands each option, parcel
+		// and problem to the given listener as soon as it is recognized.
+		// Returns the error found, or null if there was none.  No
+		// per-option storage is built.
+		
+		return new CLArgumentScanner( this ).scan( args, new ListenerSink( listener ) );
+	}
+	
+	public CLArgumentError parse( Iterator<String> args, CLArgumentListener listener ) {
+		
+		// Parses the given arguments one at a time, and hands each option,
+		// parcel and problem to the given listener as soon as it is recognized.
+		// Returns the error found, or null if there was none.  Nothing is
+		// retained, so memory use does not grow with the number of arguments.
+		
+		return new CLArgumentScanner( this ).scan( args, new ListenerSink( listener ) );
+	}
+	
+	public CLArgumentError parse( Reader args, CLArgumentListener listener ) throws IOException {
+		
+		// Parses the arguments read from the given Reader, one per line
+		// (as produced by find, ls -1 and friends), with the same rules
+		// as parse( Iterator, CLArgumentListener ).  Blank lines are
+		// ignored, just like empty arguments.  The Reader is not closed.
+		
+		BufferedReader reader = args instanceof BufferedReader ? (BufferedReader) args : new BufferedReader( args );
+		CLArgumentScanner scanner = new CLArgumentScanner( this );
+		ListenerSink sink = new ListenerSink( listener );
+		
+		for( String line = reader.readLine() ; line != null ; line = reader.readLine() )
+			if( ! scanner.accept( line, sink ) )
+				break;
+		
+		return scanner.finish( sink );
+	}
+	
+	private final class ListenerSink implements CLArgumentScanner.Sink {
+		
+		// Translates option numbers into keys for a CLArgumentListener.
+		
+		private final CLArgumentListener listener;
+		
+		ListenerSink( CLArgumentListener listener ) {
+			
+			// Java requires that this be here.
+			
+			super();
+			
+			this.listener = listener;
+		}
+		
+		public void optionFound( int option ) {
+			
+			// Forward the request to the listener.
+			
+			listener.optionFound( getKey( option ) );
+		}
+		
+		public void parcelFound( int option, String parcel, long value ) {
+			
+			// Forward the request to the listener.
+			
+			listener.parcelFound( getKey( option ), parcel );
+		}
+		
+		public void unexpectedToken( int tokenIndex, String token ) {
+			
+			// Forward the request to the listener.
+			
+			listener.unexpectedToken( tokenIndex, token );
+		}
+		
+		public void missingParcel( int option ) {
+			
+			// Forward the request to the listener.
+			
+			listener.missingParcel( getKey( option ) );
+		}
+	}
+}
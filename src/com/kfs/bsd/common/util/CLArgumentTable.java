@@ -0,0 +1,591 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class CLArgumentTable
+ *
+ *  The results of parsing many argument arrays against one
+ *  CLArgumentSpec, stored by column rather than by row, for
+ *  programs that keep millions of parsed command lines (such
+ *  as the archived command lines of batch jobs) and then ask
+ *  questions about all of them at once.
+ *
+ *  Each argument array that is added becomes a row, and each
+ *  option of the spec has a column of its own.  A column holds
+ *  a bitset of the rows in which the option was found, the
+ *  rows in which it was found (in order), where each of those
+ *  rows' entries ends, and the entries themselves.  An entry
+ *  is the code of a parcel, or kOptionMark for each occurrence
+ *  of the option itself (the null parcels of CLArgumentResult).
+ *  Each distinct parcel is stored once, in a dictionary shared
+ *  by every column, so a row that sets nothing costs nothing
+ *  but its error code, and each parcel found costs a four-byte
+ *  entry.  A distinct parcel costs its String, and while rows
+ *  are being added, an entry in a hash map from each parcel to
+ *  its code (a node and a boxed Integer, about fifty bytes).
+ *  freeze() drops that map, and sorts the dictionary instead, so
+ *  that a parcel is looked up by a binary search; adding another
+ *  row rebuilds the map.  The error record of each row that has
+ *  one is kept in a pair of parallel arrays, by row.
+ *
+ *  Questions such as "which rows set --verbose?" or "what are
+ *  all the values of --output?" are answered by scanning one
+ *  column's arrays, without visiting any row that is not part
+ *  of the answer.
+ *
+ *  Rows are added (and the table frozen) on one thread, and the
+ *  table must not be read meanwhile; once it is complete, any
+ *  number of threads may read it at once.
+ *
+ *  Functions of interest:
+ *    public int add( String [] args )
+ *      - Parses the given arguments into a new row, and returns
+ *        its number.
+ *
+ *    public void freeze()
+ *      - Shrinks the table to fit, for keeping.  CLArgumentSpec's
+ *        parseTable() returns a frozen table.
+ *
+ *    public CLParsedArguments getRow( int row )
+ *      - The accessors of CLArgumentResult, for one row.
+ *
+ *    public int [] getRowsWithKey( String id )
+ *    public String [] getValuesForKey( String id )
+ *    public int [] getRowsWithValue( String id, String value )
+ *      - Column scans over every row.
+ */
+
+package com.kfs.bsd.common.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+public final class CLArgumentTable {
+	
+	// The spec that every row is parsed against
+	
+	private final CLArgumentSpec spec;
+	
+	// The columns, indexed by option number
+	
+	private final Column [] columns;
+	
+	// The error code of each row (zero for none), and the
+	// rows that have errors (in order) with their error records
+	
+	private int [] errorCodes = new int [ 16 ];
+	private int rowCount = 0;
+	private int [] errorRows = kNoRows;
+	private CLArgumentError [] errors = CLArgumentError.kNoErrors;
+	private int errorCount = 0;
+	
+	// Every distinct parcel, by code, and the code of each,
+	// or null while the table is frozen (when the dictionary
+	// is sorted instead)
+	
+	private String [] dictionary = new String [ 16 ];
+	private int dictionarySize = 0;
+	private HashMap<String,Integer> codes = new HashMap<String,Integer>();
+	
+	// The scanner and sink used to add rows
+	
+	private final CLArgumentScanner scanner;
+	private final RowSink sink = new RowSink();
+	
+	// The entry that marks an occurrence of an option
+	
+	static final int kOptionMark = -1;
+	
+	// Shared empty arrays
+	
+	private static final String [] kNoParcels = CLArgumentReader.kNoParcels;
+	private static final int [] kNoRows = new int [0];
+	
+	// The constructor
+	
+	public CLArgumentTable( CLArgumentSpec spec ) {
+		
+		// Builds an empty table for the given spec.
+		
+		super();
+		
+		this.spec = spec;
+		this.scanner = new CLArgumentScanner( spec );
+		this.columns = new Column [ spec.getOptionCount() ];
+		
+		for( int option = 0 ; option < columns.length ; option++ )
+			columns[ option ] = new Column();
+	}
+	
+	private static final class Column {
+		
+		// The storage for one option.  rows and ends are parallel,
+		// with one item for each row in which the option was found:
+		// the number of that row, and the end of its entries.
+		
+		long [] present = new long [ 1 ];
+		int [] rows = kNoRows;
+		int [] ends = kNoRows;
+		int used = 0;
+		int [] entries = kNoRows;
+		int entryCount = 0;
+		
+		void add( int row, int entry ) {
+			
+			// Adds the given entry to the given row, which is the
+			// newest row, starting a new item for it if need be.
+			
+			if( used == 0 || rows[ used -1 ] != row ) {
+				
+				if( used == rows.length ) {
+					
+					rows = Arrays.copyOf( rows, Math.max( 4, used * 2 ) );
+					ends = Arrays.copyOf( ends, rows.length );
+				}
+				
+				if( ( row >>> 6 ) >= present.length )
+					present = Arrays.copyOf( present, Math.max( ( row >>> 6 ) + 1, present.length * 2 ) );
+				
+				present[ row >>> 6 ] |= 1L << row;
+				rows[ used++ ] = row;
+			}
+			
+			if( entryCount == entries.length )
+				entries = Arrays.copyOf( entries, Math.max( 4, entryCount * 2 ) );
+			
+			entries[ entryCount++ ] = entry;
+			ends[ used -1 ] = entryCount;
+		}
+		
+		int find( int row ) {
+			
+			// Returns the item of the given row, or -1 if the option
+			// was not found in it.  The bitset answers most misses.
+			
+			if( ( row >>> 6 ) >= present.length || ( present[ row >>> 6 ] & ( 1L << row ) ) == 0 )
+				return -1;
+			
+			return Arrays.binarySearch( rows, 0, used, row );
+		}
+		
+		int start( int item ) {
+			
+			// Returns the first entry of the given item.
+			
+			return item == 0 ? 0 : ends[ item -1 ];
+		}
+		
+		void trimToSize( int rowCount ) {
+			
+			// Drops the room left for rows that were never added.
+			
+			present = Arrays.copyOf( present, Math.max( 1, ( rowCount + 63 ) >>> 6 ) );
+			rows = Arrays.copyOf( rows, used );
+			ends = Arrays.copyOf( ends, used );
+			entries = Arrays.copyOf( entries, entryCount );
+		}
+	}
+	
+	private final class RowSink implements CLArgumentScanner.Sink {
+		
+		// Adds the options and parcels found by the
+		// scanner to the columns of the newest row.
+		
+		public void optionFound( int option ) {
+			
+			// Each occurrence of an option is marked with kOptionMark.
+			
+			columns[ option ].add( rowCount, kOptionMark );
+		}
+		
+		public void parcelFound( int option, String parcel, long value ) {
+			
+			// Adds the code of the given parcel.  The value is not kept.
+			
+			columns[ option ].add( rowCount, encode( parcel ) );
+		}
+		
+		public void unexpectedToken( int tokenIndex, String token ) {
+			
+			// Errors are kept by add(), not here.
+		}
+		
+		public void missingParcel( int option ) {
+			
+			// Errors are kept by add(), not here.
+		}
+	}
+	
+	// Building functions
+	
+	public int add( String [] args ) {
+		
+		// Parses the given argument array into a new row, and returns
+		// the number of the row.  This follows the same rules as
+		// CLArgumentSpec.parse(), so a row with an error keeps
+		// whatever was found before the error.
+		
+		if( codes == null )
+			thaw();
+		
+		CLArgumentError error = scanner.scan( args, sink );
+		
+		if( rowCount == errorCodes.length )
+			errorCodes = Arrays.copyOf( errorCodes, rowCount * 2 );
+		
+		errorCodes[ rowCount ] = error == null ? LinearArgDesequencer.kErrorCodeNone : error.getCode();
+		
+		if( error != null ) {
+			
+			if( errorCount == errorRows.length ) {
+				
+				errorRows = Arrays.copyOf( errorRows, Math.max( 4, errorCount * 2 ) );
+				errors = Arrays.copyOf( errors, errorRows.length );
+			}
+			
+			errorRows[ errorCount ] = rowCount;
+			errors[ errorCount++ ] = error;
+		}
+		
+		return rowCount++;
+	}
+	
+	public void trimToSize() {
+		
+		// Shrinks the storage of every column to fit the rows added
+		// so far.  Rows may still be added afterwards.
+		
+		errorCodes = Arrays.copyOf( errorCodes, Math.max( 1, rowCount ) );
+		errorRows = Arrays.copyOf( errorRows, errorCount );
+		errors = Arrays.copyOf( errors, errorCount );
+		dictionary = Arrays.copyOf( dictionary, Math.max( 1, dictionarySize ) );
+		
+		for( Column column : columns )
+			column.trimToSize( rowCount );
+	}
+	
+	public void freeze() {
+		
+		// Shrinks the storage to fit, and drops the map from each
+		// parcel to its code.  The dictionary is sorted instead, and
+		// every entry renumbered to match, so that a parcel can be
+		// looked up by a binary search.  Rows may still be added
+		// afterwards, which rebuilds the map.
+		
+		trimToSize();
+		
+		if( codes == null ) return;
+		
+		codes = null;
+		
+		String [] sorted = Arrays.copyOf( dictionary, dictionarySize );
+		Arrays.sort( sorted );
+		
+		// Every parcel is distinct, so each has a place of its own.
+		
+		int [] renumber = new int [ dictionarySize ];
+		
+		for( int code = 0 ; code < dictionarySize ; code++ )
+			renumber[ code ] = Arrays.binarySearch( sorted, dictionary[ code ] );
+		
+		for( Column column : columns )
+			for( int look = 0 ; look < column.entryCount ; look++ )
+				if( column.entries[ look ] != kOptionMark )
+					column.entries[ look ] = renumber[ column.entries[ look ] ];
+		
+		dictionary = Arrays.copyOf( sorted, Math.max( 1, dictionarySize ) );
+	}
+	
+	private void thaw() {
+		
+		// Rebuilds the map from each parcel to its code,
+		// so that rows can be added to a frozen table.
+		
+		codes = new HashMap<String,Integer>( Math.max( 16, dictionarySize * 2 ) );
+		
+		for( int code = 0 ; code < dictionarySize ; code++ )
+			codes.put( dictionary[ code ], code );
+	}
+	
+	private int lookup( String parcel ) {
+		
+		// Returns the code of the given parcel, or -1 if it
+		// is not in the dictionary.  Does not add it.
+		
+		if( codes == null ) {
+			
+			int code = Arrays.binarySearch( dictionary, 0, dictionarySize, parcel );
+			
+			return code < 0 ? -1 : code;
+		}
+		
+		Integer code = codes.get( parcel );
+		
+		return code == null ? -1 : code;
+	}
+	
+	private int encode( String parcel ) {
+		
+		// Returns the code of the given parcel, adding
+		// it to the dictionary if it is not there yet.
+		
+		Integer code = codes.get( parcel );
+		
+		if( code != null ) return code;
+		
+		if( dictionarySize == dictionary.length )
+			dictionary = Arrays.copyOf( dictionary, dictionarySize * 2 );
+		
+		dictionary[ dictionarySize ] = parcel;
+		codes.put( parcel, dictionarySize );
+		
+		return dictionarySize++;
+	}
+	
+	// Accessors for the table as a whole
+	
+	public CLArgumentSpec getSpec() {
+		
+		// Returns the spec that every row is parsed against.
+		
+		return spec;
+	}
+	
+	public int getRowCount() {
+		
+		// Returns the number of rows added.
+		
+		return rowCount;
+	}
+	
+	public int getDistinctParcelCount() {
+		
+		// Returns the number of distinct parcels in every row.
+		
+		return dictionarySize;
+	}
+	
+	// Accessors for a single row
+	
+	public CLParsedArguments getRow( int row ) {
+		
+		// Returns the arguments of the given row.  The row is read
+		// from the columns each time it is asked a question.
+		
+		return new Row( checkRow( row ) );
+	}
+	
+	private final class Row extends CLArgumentReader {
+		
+		// One row, read from the columns.  Typed values are
+		// not kept, so they are converted when asked for.
+		
+		private final int row;
+		
+		Row( int row ) {
+			
+			// Java requires that this be here.
+			
+			super( CLArgumentTable.this.spec );
+			
+			this.row = row;
+		}
+		
+		String [] getParcelBin( int option ) {
+			
+			// Returns the entries of the given option in this row,
+			// with a null for each occurrence of the option itself.
+			
+			Column column = columns[ option ];
+			int item = column.find( row );
+			
+			if( item < 0 ) return kNoParcels;
+			
+			int start = column.start( item );
+			String [] result = new String [ column.ends[ item ] - start ];
+			
+			for( int look = 0 ; look < result.length ; look++ )
+				if( column.entries[ start + look ] != kOptionMark )
+					result[ look ] = dictionary[ column.entries[ start + look ] ];
+			
+			return result;
+		}
+		
+		String getLastParcel( int option ) {
+			
+			// Returns the last parcel of the given option in this row, or null.
+			
+			Column column = columns[ option ];
+			int item = column.find( row );
+			
+			if( item < 0 ) return null;
+			
+			for( int look = column.ends[ item ] -1 ; look >= column.start( item ) ; look-- )
+				if( column.entries[ look ] != kOptionMark )
+					return dictionary[ column.entries[ look ] ];
+			
+			return null;
+		}
+		
+		int countParcels( int option ) {
+			
+			// Returns the number of entries of the given option in this row.
+			
+			Column column = columns[ option ];
+			int item = column.find( row );
+			
+			return item < 0 ? 0 : column.ends[ item ] - column.start( item );
+		}
+		
+		public CLArgumentError sequenceErrorDetail() {
+			
+			// Returns the error of this row, or null.
+			
+			if( errorCodes[ row ] == LinearArgDesequencer.kErrorCodeNone ) return null;
+			
+			return errors[ Arrays.binarySearch( errorRows, 0, errorCount, row ) ];
+		}
+	}
+	
+	// Column scans
+	
+	public int countRowsWithKey( String id ) {
+		
+		// Returns the number of rows in which the given argument was found.
+		
+		Column column = column( id );
+		
+		return column == null ? 0 : column.used;
+	}
+	
+	public int [] getRowsWithKey( String id ) {
+		
+		// Returns the rows in which the given argument was found, in order.
+		
+		Column column = column( id );
+		
+		return column == null ? kNoRows : Arrays.copyOf( column.rows, column.used );
+	}
+	
+	public long [] getRowSetForKey( String id ) {
+		
+		// Returns a bitset of the rows in which the given argument was
+		// found, one bit per row, in the layout of java.util.BitSet's
+		// toLongArray(), which BitSet.valueOf() accepts.  Bitsets of
+		// several arguments can be combined with & and |.
+		
+		long [] result = new long [ ( rowCount + 63 ) >>> 6 ];
+		Column column = column( id );
+		
+		if( column != null )
+			System.arraycopy( column.present, 0, result, 0, Math.min( result.length, column.present.length ) );
+		
+		return result;
+	}
+	
+	public String [] getValuesForKey( String id ) {
+		
+		// Returns every parcel of the given argument in every row, in
+		// the order the rows were added (and within each row, in the
+		// order they were found).  Unlike getParcelArrayFromKey(),
+		// parcels that a later one overrides are included.
+		
+		Column column = column( id );
+		
+		if( column == null ) return kNoParcels;
+		
+		int [] entries = column.entries;
+		int count = 0;
+		
+		for( int look = 0 ; look < column.entryCount ; look++ )
+			if( entries[ look ] != kOptionMark )
+				count++;
+		
+		String [] result = new String [ count ];
+		
+		int put = 0;
+		for( int look = 0 ; look < column.entryCount ; look++ )
+			if( entries[ look ] != kOptionMark )
+				result[ put++ ] = dictionary[ entries[ look ] ];
+		
+		return result;
+	}
+	
+	public int [] getRowsWithValue( String id, String value ) {
+		
+		// Returns the rows in which the given argument has the given
+		// parcel (relevant or not), in order.  The parcel is looked up
+		// once, and then the column is scanned for its code.
+		
+		Column column = column( id );
+		int wanted = lookup( value );
+		
+		if( column == null || wanted < 0 ) return kNoRows;
+		
+		int [] result = new int [ 8 ];
+		int count = 0;
+		int item = 0;
+		
+		for( int look = 0 ; look < column.entryCount ; look++ ) {
+			
+			if( column.entries[ look ] != wanted ) continue;
+			
+			// Find the row of this entry, which is never before the last one.
+			
+			while( column.ends[ item ] <= look )
+				item++;
+			
+			int row = column.rows[ item ];
+			
+			if( count > 0 && result[ count -1 ] == row ) continue;
+			
+			if( count == result.length )
+				result = Arrays.copyOf( result, count * 2 );
+			
+			result[ count++ ] = row;
+		}
+		
+		return Arrays.copyOf( result, count );
+	}
+	
+	public int [] getRowsWithErrors() {
+		
+		// Returns the rows that had errors, in order.
+		
+		int count = 0;
+		
+		for( int row = 0 ; row < rowCount ; row++ )
+			if( errorCodes[ row ] != LinearArgDesequencer.kErrorCodeNone )
+				count++;
+		
+		int [] result = new int [ count ];
+		
+		int put = 0;
+		for( int row = 0 ; put < count ; row++ )
+			if( errorCodes[ row ] != LinearArgDesequencer.kErrorCodeNone )
+				result[ put++ ] = row;
+		
+		return result;
+	}
+	
+	// Helper functions
+	
+	private Column column( String id ) {
+		
+		// Returns the column of the given argument, or null if there is none.
+		
+		int option = spec.getOptionForKey( id );
+		
+		return option < 0 ? null : columns[ option ];
+	}
+	
+	private int checkRow( int row ) {
+		
+		// Makes sure that the given row exists, and returns it.
+		
+		if( row < 0 || row >= rowCount )
+			throw new IndexOutOfBoundsException( "Row " + row + " of " + rowCount );
+		
+		return row;
+	}
+}
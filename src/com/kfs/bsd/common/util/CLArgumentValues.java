@@ -0,0 +1,219 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class CLArgumentValues
+ *
+ *  Conversions between parcels and the typed values of
+ *  arguments declared as int, long, double, boolean or
+ *  enum.  Every typed value is packed into a long (doubles
+ *  by their bits, booleans as 0 or 1, and enums by their
+ *  ordinal), so the values of any argument can be kept in
+ *  a single primitive array without boxing.
+ *
+ *  Values are converted once, when the parcel is found;
+ *  the accessors only unpack them.
+ */
+
+package com.kfs.bsd.common.util;
+
+import java.lang.reflect.Array;
+
+final class CLArgumentValues {
+	
+	// A shared empty value array
+	
+	static final long [] kNoValues = new long [0];
+	
+	private CLArgumentValues() {
+		
+		// This class only has static functions.
+		
+		super();
+	}
+	
+	// Declaration functions
+	
+	static boolean isTyped( Class<?> type ) {
+		
+		// Returns whether or not the given type is converted
+		// by this class.  String parcels are not converted.
+		
+		return type == int.class || type == long.class || type == double.class || type == boolean.class || ( type != null && type.isEnum() );
+	}
+	
+	static void checkSupported( Class<?> type ) {
+		
+		// Makes sure that the given type can be declared.
+		
+		if( type != String.class && ! isTyped( type ) )
+			throw new IllegalArgumentException( "Unsupported argument type: " + type );
+	}
+	
+	static void checkType( String id, Class<?> declared, Class<?> wanted ) {
+		
+		// Makes sure that an accessor for the wanted type is
+		// not used on an argument declared with another type.
+		
+		if( declared != wanted )
+			throw new IllegalArgumentException( "Argument '" + id + "' is of type " + declared.getName() + ", not " + wanted.getName() );
+	}
+	
+	// Conversion functions
+	
+	static long parse( Class<?> type, String parcel ) {
+		
+		// Converts the given parcel into a packed value of the given
+		// type.  Throws IllegalArgumentException (which includes
+		// NumberFormatException) if the parcel is not valid.
+		
+		if( type == int.class )
+			return Integer.parseInt( parcel );
+		
+		if( type == long.class )
+			return Long.parseLong( parcel );
+		
+		if( type == double.class )
+			return Double.doubleToRawLongBits( Double.parseDouble( parcel ) );
+		
+		if( type == boolean.class ) {
+			
+			if( parcel.equalsIgnoreCase( "true" ) || parcel.equalsIgnoreCase( "yes" ) || parcel.equalsIgnoreCase( "on" ) || parcel.equals( "1" ) )
+				return 1;
+			
+			if( parcel.equalsIgnoreCase( "false" ) || parcel.equalsIgnoreCase( "no" ) || parcel.equalsIgnoreCase( "off" ) || parcel.equals( "0" ) )
+				return 0;
+			
+			throw new IllegalArgumentException( "Not a boolean: " + parcel );
+		}
+		
+		// What remains is an enum.  Exact names are
+		// preferred, but any case is accepted.
+		
+		for( Object constant : type.getEnumConstants() )
+			if( ( (Enum<?>) constant ).name().equals( parcel ) )
+				return ( (Enum<?>) constant ).ordinal();
+		
+		for( Object constant : type.getEnumConstants() )
+			if( ( (Enum<?>) constant ).name().equalsIgnoreCase( parcel ) )
+				return ( (Enum<?>) constant ).ordinal();
+		
+		throw new IllegalArgumentException( "Not a " + type.getSimpleName() + ": " + parcel );
+	}
+	
+	static boolean isNegativeNumber( Class<?> type, String arg ) {
+		
+		// Returns whether or not the given argument, which would
+		// otherwise be taken for flags, is a negative number that
+		// is a valid parcel of the given type.  Only int, long and
+		// double parcels can be negative numbers, and the number
+		// must start with a digit or a point ("-Infinity" is flags).
+		
+		if( type != int.class && type != long.class && type != double.class )
+			return false;
+		
+		if( arg.length() < 2 || arg.charAt( 0 ) != '-' )
+			return false;
+		
+		char first = arg.charAt( 1 );
+		
+		if( ( first < '0' || first > '9' ) && first != '.' )
+			return false;
+		
+		try {
+			parse( type, arg );
+			return true;
+		}
+		catch( IllegalArgumentException e ) {
+			
+			return false;
+		}
+	}
+	
+	static long [] add( long [] values, int count, long value ) {
+		
+		// Appends the given value to the given array, which holds
+		// count values, and returns the array (which may be new).
+		
+		if( count == values.length ) {
+			
+			long [] newValues = new long [ Math.max( 4, count * 2 ) ];
+			System.arraycopy( values, 0, newValues, 0, count );
+			values = newValues;
+		}
+		
+		values[ count ] = value;
+		
+		return values;
+	}
+	
+	static int relevantStart( int count, boolean isArray, int parcelCount ) {
+		
+		// Returns the position of the first relevant value out of
+		// count values, based on the isArray and parcelCount rules.
+		
+		return isArray ? 0 : Math.max( 0, count - parcelCount );
+	}
+	
+	// Unpacking functions
+	
+	static int [] toInts( long [] values, int start, int end ) {
+		
+		// Returns the given range of values as ints.
+		
+		int [] result = new int [ end - start ];
+		
+		for( int row = start ; row < end ; row++ )
+			result[ row - start ] = (int) values[ row ];
+		
+		return result;
+	}
+	
+	static long [] toLongs( long [] values, int start, int end ) {
+		
+		// Returns the given range of values as longs.
+		
+		long [] result = new long [ end - start ];
+		
+		System.arraycopy( values, start, result, 0, end - start );
+		
+		return result;
+	}
+	
+	static double [] toDoubles( long [] values, int start, int end ) {
+		
+		// Returns the given range of values as doubles.
+		
+		double [] result = new double [ end - start ];
+		
+		for( int row = start ; row < end ; row++ )
+			result[ row - start ] = Double.longBitsToDouble( values[ row ] );
+		
+		return result;
+	}
+	
+	static boolean [] toBooleans( long [] values, int start, int end ) {
+		
+		// Returns the given range of values as booleans.
+		
+		boolean [] result = new boolean [ end - start ];
+		
+		for( int row = start ; row < end ; row++ )
+			result[ row - start ] = values[ row ] != 0;
+		
+		return result;
+	}
+	
+	@SuppressWarnings( "unchecked" )
+	static <E extends Enum<E>> E [] toEnums( Class<E> type, Object [] constants, long [] values, int start, int end ) {
+		
+		// Returns the given range of values as constants of the given enum.
+		
+		E [] result = (E []) Array.newInstance( type, end - start );
+		
+		for( int row = start ; row < end ; row++ )
+			result[ row - start ] = (E) constants[ (int) values[ row ] ];
+		
+		return result;
+	}
+}
@@ -0,0 +1,31 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Interface CLCommand
+ *
+ *  One subcommand of a CLCommandTree.  A command is only asked
+ *  to define its arguments when it is the command being run.
+ *  Defining and running are separate: compile() defines the
+ *  arguments without parsing anything, for CLCommandTree.parse(),
+ *  and create() defines them and parses an argument array, for
+ *  CLCommandTree.dispatch().
+ */
+
+package com.kfs.bsd.common.util;
+
+public interface CLCommand {
+	
+	// Returns the arguments of this command, compiled into a
+	// CLArgumentSpec.  Nothing should be parsed; passing
+	// LinearArgDesequencer.kDefinitionOnly to the constructor of
+	// a desequencer only populates its argument set.
+	
+	public CLArgumentSpec compile();
+	
+	// Returns a LinearArgDesequencer with the arguments of this
+	// command, that has parsed the given arguments (the ones that
+	// follow the name of the command).
+	
+	public LinearArgDesequencer create( String [] args );
+}
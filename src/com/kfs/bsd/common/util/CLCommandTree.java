@@ -0,0 +1,380 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class CLCommandTree
+ *
+ *  A tree of git-style subcommands, such as 'tool remote add',
+ *  each with its own arguments.  The leading tokens of an
+ *  argument array that name subcommands select a node of the
+ *  tree, and only that node's arguments are ever defined: the
+ *  argument set of every other command is never populated,
+ *  so unused commands cost nothing at startup.
+ *
+ *  Each node may have a CLCommand, which compiles its arguments
+ *  or builds its LinearArgDesequencer, or the name of a
+ *  LinearArgDesequencer subclass with a public constructor that
+ *  takes an argument array, which is not even loaded until it
+ *  is needed.  Compiling a spec never parses anything.  A node
+ *  without either is only a group of other commands.
+ *
+ *  The options of a command follow its name, so tokens after
+ *  the first one that does not name a subcommand are never
+ *  treated as subcommands (for example, in 'tool add remote',
+ *  'remote' is an argument of 'add').
+ *
+ *  The tree is meant to be built on one thread, before it is
+ *  used; once built, any number of threads may dispatch through
+ *  it at once.
+ *
+ *  Functions of interest:
+ *    public LinearArgDesequencer dispatch( String [] args )
+ *      - Selects the command named by the leading tokens, and
+ *        has it parse the rest of the arguments.
+ *
+ *    public CLArgumentResult parse( String [] args )
+ *      - Same, with a CLArgumentSpec that each command compiles
+ *        the first time it is used, for programs that parse
+ *        many argument arrays.
+ */
+
+package com.kfs.bsd.common.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+public final class CLCommandTree {
+	
+	// The place of this node in the tree
+	
+	private final String name;
+	private final CLCommandTree parent;
+	private final int depth;
+	
+	// The subcommands of this node, in the order they were added
+	
+	private final LinkedHashMap<String,CLCommandTree> children = new LinkedHashMap<String,CLCommandTree>();
+	
+	// The command run by this node (or null), and the spec compiled
+	// from it, when first needed.  Racing threads at worst compile
+	// the same spec twice.
+	
+	private CLCommand command = null;
+	private volatile CLArgumentSpec spec = null;
+	
+	// The constructors
+	
+	public CLCommandTree() {
+		
+		// Builds an empty tree.  The root is selected when the first
+		// argument does not name a subcommand; give it a command
+		// with setCommand() to handle that case.
+		
+		this( "", null );
+	}
+	
+	private CLCommandTree( String name, CLCommandTree parent ) {
+		
+		// Builds a node with the given name below the given parent.
+		
+		super();
+		
+		this.name = name;
+		this.parent = parent;
+		this.depth = parent == null ? 0 : parent.depth + 1;
+	}
+	
+	// Definition functions
+	
+	public CLCommandTree addCommand( String path, CLCommand command ) {
+		
+		// Adds the given command at the given path of subcommand
+		// names, separated by spaces (such as "remote add").  Any
+		// groups along the way are added as needed.  Returns the
+		// node of the command.
+		
+		CLCommandTree node = makeGet( path );
+		
+		node.setCommand( command );
+		
+		return node;
+	}
+	
+	public CLCommandTree addCommand( String path, String className ) {
+		
+		// Same as above, for the LinearArgDesequencer subclass with
+		// the given name.  The class is only loaded when it is run.
+		
+		return addCommand( path, new NamedCommand( className ) );
+	}
+	
+	public void setCommand( CLCommand command ) {
+		
+		// Sets the command run by this node.  Throws
+		// IllegalArgumentException if it already has one.
+		
+		if( this.command != null )
+			throw new IllegalArgumentException( "Duplicate command: '" + getPath() + "'" );
+		
+		this.command = command;
+	}
+	
+	private CLCommandTree makeGet( String path ) {
+		
+		// Returns the node at the given path,
+		// creating it and its groups if necessary.
+		
+		CLCommandTree node = this;
+		
+		for( String part : split( path ) ) {
+			
+			CLCommandTree child = node.children.get( part );
+			
+			if( child == null ) {
+				
+				child = new CLCommandTree( part, node );
+				node.children.put( part, child );
+			}
+			
+			node = child;
+		}
+		
+		return node;
+	}
+	
+	private static String [] split( String path ) {
+		
+		// Returns the names in the given path.
+		
+		String trimmed = path.trim();
+		
+		if( trimmed.length() == 0 )
+			throw new IllegalArgumentException( "Empty command path" );
+		
+		return trimmed.split( "\\s+" );
+	}
+	
+	// Accessors
+	
+	public String getName() {
+		
+		// Returns the name of this node ("" for the root).
+		
+		return name;
+	}
+	
+	public String getPath() {
+		
+		// Returns the names from the root down to this
+		// node, separated by spaces ("" for the root).
+		
+		if( parent == null ) return "";
+		
+		String above = parent.getPath();
+		
+		return above.length() == 0 ? name : above + " " + name;
+	}
+	
+	public int getDepth() {
+		
+		// Returns the number of names in the path of this node.
+		
+		return depth;
+	}
+	
+	public CLCommandTree getParent() {
+		
+		// Returns the node above this one, or null for the root.
+		
+		return parent;
+	}
+	
+	public CLCommandTree getCommand( String path ) {
+		
+		// Returns the node at the given path, or null if there is none.
+		
+		CLCommandTree node = this;
+		
+		for( String part : split( path ) ) {
+			
+			node = node.children.get( part );
+			
+			if( node == null ) return null;
+		}
+		
+		return node;
+	}
+	
+	public String [] getSubcommands() {
+		
+		// Returns the names of the subcommands of
+		// this node, in the order they were added.
+		
+		return children.keySet().toArray( new String [ children.size() ] );
+	}
+	
+	public boolean isRunnable() {
+		
+		// Returns whether or not this node has a command of its own,
+		// rather than only being a group of other commands.
+		
+		return command != null;
+	}
+	
+	// Dispatch functions
+	
+	public CLCommandTree select( String [] args ) {
+		
+		// Returns the node named by the leading tokens of the given
+		// argument array.  The remaining arguments, from position
+		// getDepth() (relative to this node) on, belong to it.
+		
+		CLCommandTree node = this;
+		
+		for( int row = 0 ; row < args.length ; row++ ) {
+			
+			CLCommandTree child = node.children.get( args[ row ] );
+			
+			if( child == null ) break;
+			
+			node = child;
+		}
+		
+		return node;
+	}
+	
+	public LinearArgDesequencer dispatch( String [] args ) {
+		
+		// Selects the node named by the leading tokens of the given
+		// argument array, and runs its command on the rest of them.
+		// Only the selected command's arguments are defined.  Returns
+		// null if the selected node is only a group; its subcommands
+		// are a good thing to show the user in that case.
+		
+		CLCommandTree node = select( args );
+		
+		return node.desequence( node.remainingArgs( this, args ) );
+	}
+	
+	public CLArgumentResult parse( String [] args ) {
+		
+		// Same as dispatch(), except that the rest of the arguments are
+		// parsed by the selected command's compiled spec, which is kept
+		// for next time.  Returns null if the selected node is only a group.
+		
+		CLCommandTree node = select( args );
+		CLArgumentSpec compiled = node.getSpec();
+		
+		return compiled == null ? null : compiled.parse( node.remainingArgs( this, args ) );
+	}
+	
+	public LinearArgDesequencer desequence( String [] args ) {
+		
+		// Runs the command of this node on the given arguments (which
+		// do not include its name).  Returns null if this node is only
+		// a group of other commands.
+		
+		return command == null ? null : command.create( args );
+	}
+	
+	public CLArgumentSpec getSpec() {
+		
+		// Returns the compiled arguments of this node's command, which
+		// are compiled the first time they are asked for, or null if
+		// this node is only a group of other commands.  The command
+		// only defines its arguments; it does not parse anything.
+		
+		CLArgumentSpec result = spec;
+		
+		if( result == null && command != null )
+			spec = result = command.compile();
+		
+		return result;
+	}
+	
+	private String [] remainingArgs( CLCommandTree from, String [] args ) {
+		
+		// Returns the arguments that follow the names
+		// of this node's path below the given node.
+		
+		int used = depth - from.depth;
+		
+		return used == 0 ? args : Arrays.copyOfRange( args, used, args.length );
+	}
+	
+	// Other functions
+	
+	public String [] getCommandPaths() {
+		
+		// Returns the path of every runnable node at or
+		// below this one, in the order they were added.
+		
+		ArrayList<String> result = new ArrayList<String>();
+		
+		collectPaths( result );
+		
+		return result.toArray( new String [ result.size() ] );
+	}
+	
+	private void collectPaths( ArrayList<String> result ) {
+		
+		// Adds the path of each runnable node at or below this one.
+		
+		if( command != null )
+			result.add( getPath() );
+		
+		for( CLCommandTree child : children.values() )
+			child.collectPaths( result );
+	}
+	
+	private static final class NamedCommand implements CLCommand {
+		
+		// Runs a LinearArgDesequencer subclass known only by name,
+		// through its public constructor that takes an argument array.
+		// Its arguments are compiled by giving that constructor
+		// LinearArgDesequencer.kDefinitionOnly.
+		
+		private final String className;
+		
+		NamedCommand( String className ) {
+			
+			// Java requires that this be here.
+			
+			super();
+			
+			this.className = className;
+		}
+		
+		public CLArgumentSpec compile() {
+			
+			// Builds an instance that only defines its arguments,
+			// and compiles them.
+			
+			return create( LinearArgDesequencer.kDefinitionOnly ).compileArgSpec();
+		}
+		
+		public LinearArgDesequencer create( String [] args ) {
+			
+			// Loads the class (if it has not been already), and
+			// builds an instance of it with the given arguments.
+			
+			try {
+				
+				return Class.forName( className ).asSubclass( LinearArgDesequencer.class ).getConstructor( String [].class ).newInstance( (Object) args );
+			}
+			catch( InvocationTargetException e ) {
+				
+				if( e.getCause() instanceof RuntimeException )
+					throw (RuntimeException) e.getCause();
+				
+				throw new IllegalArgumentException( "Cannot run command " + className, e.getCause() );
+			}
+			catch( ReflectiveOperationException e ) {
+				
+				throw new IllegalArgumentException( "Cannot run command " + className, e );
+			}
+		}
+	}
+}
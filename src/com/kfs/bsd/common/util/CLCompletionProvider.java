@@ -0,0 +1,24 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Interface CLCompletionProvider
+ *
+ *  Supplies the possible values of an argument to a
+ *  CLArgumentCompleter (such as the names of the hosts
+ *  that a --host argument may name).  The values are
+ *  cached by the completer for as long as it was told,
+ *  so a slow provider is not asked on every keystroke.
+ */
+
+package com.kfs.bsd.common.util;
+
+public interface CLCompletionProvider {
+	
+	// Returns every value that the argument with the given key may
+	// have, in any order.  The completer picks out the ones that
+	// match what has been typed so far.  A provider that throws
+	// a RuntimeException supplies no values.
+	
+	public String [] getValues( String key );
+}
@@ -0,0 +1,318 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class CLGeneratedParser
+ *
+ *  The superclass of the parsers generated by CLOptionsProcessor.
+ *  A generated parser dispatches flags and switches with switch
+ *  statements that are written out at compile time, and stores
+ *  parcels directly in the typed fields of its CLOptions class,
+ *  so nothing at all is built at startup.  This class keeps the
+ *  little bit of state that a scan needs (the queue of options
+ *  that are waiting for parcels, and the error), and converts
+ *  parcels exactly as CLArgumentSpec does, so that a generated
+ *  parser reports the same errors as LinearArgDesequencer.
+ *
+ *  A generated parser can be reused for any number of parses
+ *  (but by one thread at a time):
+ *
+ *    Foo_OptionsParser parser = new Foo_OptionsParser();
+ *    Foo.Options options = new Foo.Options();
+ *    CLArgumentError error = parser.parse( args, options );
+ *
+ *  Abbreviations and response files are not supported.
+ */
+
+package com.kfs.bsd.common.util;
+
+import java.util.Arrays;
+
+public abstract class CLGeneratedParser {
+	
+	// The definitions, indexed by option number
+	
+	private final String [] keys;
+	private final int [] parcelCounts;
+	private final boolean [] unbounded;
+	private final int [] requiredOptions;
+	private final Class<?> [] numberTypes;
+	
+	// The scan state
+	
+	private final CLParcelQueue parcelQueue = new CLParcelQueue();
+	private int unboundedOption = -1;
+	private CLArgumentError error = null;
+	
+	// The parcels of each array option, collected during a parse,
+	// and stored in the target once at the end.  Values are packed
+	// into longs (doubles by their bits, booleans as 0 or 1, and
+	// enums by their ordinals); Strings are kept as they are.  The
+	// buffers grow as needed, and are kept for the next parse.
+	
+	private final long [][] values;
+	private final String [][] strings;
+	private final int [] counts;
+	
+	// The constructor
+	
+	protected CLGeneratedParser( String [] keys, int [] parcelCounts, boolean [] unbounded, int [] requiredOptions, Class<?> [] numberTypes ) {
+		
+		// Builds a parser for the given definitions.  The type of
+		// each int, long or double option is in numberTypes (and
+		// null for the others).  The arrays are shared, and must
+		// not be changed.
+		
+		super();
+		
+		this.keys = keys;
+		this.parcelCounts = parcelCounts;
+		this.unbounded = unbounded;
+		this.requiredOptions = requiredOptions;
+		this.numberTypes = numberTypes;
+		
+		values = new long [ keys.length ][];
+		strings = new String [ keys.length ][];
+		counts = new int [ keys.length ];
+	}
+	
+	// Accessors
+	
+	public String getKey( int option ) {
+		
+		// Returns the key of the given option.
+		
+		return keys[ option ];
+	}
+	
+	public int getOptionCount() {
+		
+		// Returns the number of options.
+		
+		return keys.length;
+	}
+	
+	// Scanning functions for generated parsers
+	
+	protected final void begin() {
+		
+		// Prepares for a new argument array.
+		
+		parcelQueue.clear();
+		unboundedOption = -1;
+		error = null;
+		
+		// Forget the collected parcels (and let go of the Strings).
+		
+		for( int option = 0 ; option < counts.length ; option++ ) {
+			
+			if( strings[ option ] != null )
+				Arrays.fill( strings[ option ], 0, counts[ option ], null );
+			
+			counts[ option ] = 0;
+		}
+		
+		for( int option : requiredOptions )
+			parcelQueue.add( option, parcelCounts[ option ] );
+	}
+	
+	protected final void expect( int option ) {
+		
+		// Queues up the parcels of an option that has been found.
+		
+		parcelQueue.add( option, parcelCounts[ option ] );
+	}
+	
+	protected final boolean expectsParcel() {
+		
+		// Returns whether or not any option is waiting for a parcel.
+		
+		return ! parcelQueue.isEmpty() || unboundedOption >= 0;
+	}
+	
+	protected final boolean expectsNegativeNumber( String arg ) {
+		
+		// Returns whether or not the given argument is a negative
+		// number, and the next parcel is a number; if so, it is taken
+		// as that parcel instead of as flags, as in CLArgumentScanner.
+		
+		int which = parcelQueue.isEmpty() ? unboundedOption : parcelQueue.peek();
+		
+		return which >= 0 && CLArgumentValues.isNegativeNumber( numberTypes[ which ], arg );
+	}
+	
+	protected final int nextParcel() {
+		
+		// Returns the option that the next parcel belongs to.
+		
+		int which = parcelQueue.isEmpty() ? unboundedOption : parcelQueue.poll();
+		
+		if( unbounded[ which ] ) unboundedOption = which;
+		
+		return which;
+	}
+	
+	protected final boolean fail( int code, int tokenIndex, String token, int offset, int option ) {
+		
+		// Records an error, and returns false so that
+		// the generated parser can stop in one statement.
+		
+		error = new CLArgumentError( code, tokenIndex, token, offset, option < 0 ? null : keys[ option ] );
+		
+		return false;
+	}
+	
+	protected final CLArgumentError error() {
+		
+		// Returns the error found so far, or null.
+		
+		return error;
+	}
+	
+	protected final CLArgumentError finish() {
+		
+		// Ends the scan, and returns the error
+		// found, or null if there was none.
+		
+		if( error == null && ! parcelQueue.isEmpty() )
+			fail( LinearArgDesequencer.kErrorCodeMissingArgument, -1, null, -1, parcelQueue.peek() );
+		
+		return error;
+	}
+	
+	// Conversion functions for generated parsers.  Each throws
+	// IllegalArgumentException if the parcel is not valid.
+	
+	protected static int parseInt( String parcel ) {
+		
+		// Converts the given parcel into an int.
+		
+		return (int) CLArgumentValues.parse( int.class, parcel );
+	}
+	
+	protected static long parseLong( String parcel ) {
+		
+		// Converts the given parcel into a long.
+		
+		return CLArgumentValues.parse( long.class, parcel );
+	}
+	
+	protected static double parseDouble( String parcel ) {
+		
+		// Converts the given parcel into a double.
+		
+		return Double.longBitsToDouble( CLArgumentValues.parse( double.class, parcel ) );
+	}
+	
+	protected static boolean parseBoolean( String parcel ) {
+		
+		// Converts the given parcel into a boolean.
+		
+		return CLArgumentValues.parse( boolean.class, parcel ) != 0;
+	}
+	
+	protected static <E extends Enum<E>> E parseEnum( E [] constants, String parcel ) {
+		
+		// Converts the given parcel into one of the given constants.
+		// Exact names are preferred, but any case is accepted.
+		
+		for( E constant : constants )
+			if( constant.name().equals( parcel ) )
+				return constant;
+		
+		for( E constant : constants )
+			if( constant.name().equalsIgnoreCase( parcel ) )
+				return constant;
+		
+		throw new IllegalArgumentException( "Not a " + constants.getClass().getComponentType().getSimpleName() + ": " + parcel );
+	}
+	
+	// Array functions for generated parsers.  The parcels of an
+	// array option are collected one at a time, and then stored
+	// in its field, as a new array, once the parse is over.
+	
+	protected final void collect( int option, long value ) {
+		
+		// Collects a packed value of the given option.
+		
+		long [] buffer = values[ option ];
+		
+		if( buffer == null )
+			buffer = values[ option ] = new long [ 4 ];
+		
+		else if( counts[ option ] == buffer.length )
+			buffer = values[ option ] = Arrays.copyOf( buffer, buffer.length * 2 );
+		
+		buffer[ counts[ option ]++ ] = value;
+	}
+	
+	protected final void collect( int option, String value ) {
+		
+		// Collects a String of the given option.
+		
+		String [] buffer = strings[ option ];
+		
+		if( buffer == null )
+			buffer = strings[ option ] = new String [ 4 ];
+		
+		else if( counts[ option ] == buffer.length )
+			buffer = strings[ option ] = Arrays.copyOf( buffer, buffer.length * 2 );
+		
+		buffer[ counts[ option ]++ ] = value;
+	}
+	
+	protected final boolean collected( int option ) {
+		
+		// Returns whether or not any parcels of the
+		// given option were collected by this parse.
+		
+		return counts[ option ] > 0;
+	}
+	
+	protected final int [] collectedInts( int option ) {
+		
+		// Returns the collected ints.
+		
+		return CLArgumentValues.toInts( values[ option ], 0, counts[ option ] );
+	}
+	
+	protected final long [] collectedLongs( int option ) {
+		
+		// Returns the collected longs.
+		
+		return CLArgumentValues.toLongs( values[ option ], 0, counts[ option ] );
+	}
+	
+	protected final double [] collectedDoubles( int option ) {
+		
+		// Returns the collected doubles.
+		
+		return CLArgumentValues.toDoubles( values[ option ], 0, counts[ option ] );
+	}
+	
+	protected final boolean [] collectedBooleans( int option ) {
+		
+		// Returns the collected booleans.
+		
+		return CLArgumentValues.toBooleans( values[ option ], 0, counts[ option ] );
+	}
+	
+	protected final String [] collectedStrings( int option ) {
+		
+		// Returns the collected Strings.
+		
+		return Arrays.copyOf( strings[ option ], counts[ option ] );
+	}
+	
+	protected final <E extends Enum<E>> E [] collectedEnums( int option, E [] constants ) {
+		
+		// Returns the collected constants, out of the given ones.
+		
+		E [] result = Arrays.copyOf( constants, counts[ option ] );
+		
+		for( int row = 0 ; row < result.length ; row++ )
+			result[ row ] = constants[ (int) values[ option ][ row ] ];
+		
+		return result;
+	}
+}
@@ -0,0 +1,64 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Annotation CLOption
+ *
+ *  Declares a field of a CLOptions class as an argument.  The
+ *  type of the field decides what is stored in it:
+ *
+ *    boolean           - true if the option is found
+ *    int, long         - the number of times the option is found,
+ *                        if parcels is 0
+ *    int, long, double,
+ *    boolean, String,
+ *    or an enum        - the last parcel of the option
+ *    an array of any
+ *    of the above      - every parcel of the option, in order
+ *
+ *  Fields are only written when their option is found, so
+ *  whatever value a field starts with is its default.  Fields
+ *  may not be private, static or final.
+ */
+
+package com.kfs.bsd.common.util;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+@Retention( RetentionPolicy.SOURCE )
+@Target( ElementType.FIELD )
+public @interface CLOption {
+	
+	// The key of the argument, or an empty
+	// string to use the name of the field.
+	
+	String key() default "";
+	
+	// The flags and switches that introduce the argument.
+	// At least one flag or switch is required.
+	
+	char [] flags() default {};
+	
+	String [] switches() default {};
+	
+	// The number of parcels each occurrence of the option takes,
+	// or -1 to take none for a boolean field and one otherwise.
+	// Only arrays may take more than one.
+	
+	int parcels() default -1;
+	
+	// Whether or not the option takes every parcel that follows
+	// it, once its own parcels are satisfied.  Only arrays may be
+	// unbounded.
+	
+	boolean unbounded() default false;
+	
+	// Whether or not the parcels of the option are expected
+	// without the option itself being given, as with the
+	// requiredArgumentKeys of a LinearArgDesequencer.
+	
+	boolean required() default false;
+}
@@ -0,0 +1,31 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Annotation CLOptions
+ *
+ *  Marks a class whose CLOption fields describe a set of
+ *  arguments.  When the class is compiled with CLOptionsProcessor
+ *  enabled, a parser specialized for those arguments is generated
+ *  next to it (see CLGeneratedParser).  The parser is named after
+ *  the class, with 'Parser' appended; the names of enclosing
+ *  classes are joined with '_', so Foo.Options is parsed by
+ *  Foo_OptionsParser.  The name can also be given explicitly.
+ */
+
+package com.kfs.bsd.common.util;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+@Retention( RetentionPolicy.SOURCE )
+@Target( ElementType.TYPE )
+public @interface CLOptions {
+	
+	// The simple name of the generated parser, or
+	// an empty string for the default name.
+	
+	String parser() default "";
+}
@@ -0,0 +1,602 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class CLOptionsProcessor
+ *
+ *  An annotation processor that generates a parser for each
+ *  class marked with CLOptions.  The generated parser extends
+ *  CLGeneratedParser; its flags and switches are dispatched by
+ *  switch statements, and its parcels are converted and stored
+ *  straight into the fields of the class, so that parsing needs
+ *  no CLArgumentSet, no index and no maps.
+ *
+ *  Mistakes in the declarations (such as a flag used twice, or
+ *  a field that cannot hold the parcels of its option) are
+ *  reported as compile errors, rather than as the
+ *  kErrorCodeDuplicateArgument errors of LinearArgDesequencer.
+ *
+ *  To use it, put the compiled library on the processor path:
+ *
+ *    javac -processorpath lib/jckb/bin -processor com.kfs.bsd.common.util.CLOptionsProcessor ...
+ */
+
+package com.kfs.bsd.common.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+
+@SupportedAnnotationTypes( { "com.kfs.bsd.common.util.CLOptions", "com.kfs.bsd.common.util.CLOption" } )
+public class CLOptionsProcessor extends AbstractProcessor {
+	
+	// The description of one option, as found in a CLOptions class
+	
+	private static final class Option {
+		
+		private String field;
+		private String key;
+		private char [] flags;
+		private String [] switches;
+		private int parcelCount;
+		private boolean isArray;
+		private boolean isUnbounded;
+		private boolean isRequired;
+		
+		// The type of the field (or of its elements), which is a
+		// primitive name, "String", or the name of an enum
+		
+		private String type;
+		private boolean isEnum;
+	}
+	
+	// Processor functions
+	
+	public SourceVersion getSupportedSourceVersion() {
+		
+		// Any source version is fine; the generated code
+		// only needs switch statements on Strings.
+		
+		return SourceVersion.latestSupported();
+	}
+	
+	public boolean process( Set<? extends TypeElement> annotations, RoundEnvironment round ) {
+		
+		// Generates a parser for every CLOptions class in this round.
+		
+		for( Element element : round.getElementsAnnotatedWith( CLOptions.class ) ) {
+			
+			if( element.getKind() != ElementKind.CLASS ) {
+				
+				error( element, "CLOptions can only be used on a class" );
+				continue;
+			}
+			
+			TypeElement options = (TypeElement) element;
+			ArrayList<Option> found = readOptions( options );
+			
+			if( found != null )
+				writeParser( options, found );
+		}
+		
+		// A CLOption outside of a CLOptions class would be ignored.
+		
+		for( Element element : round.getElementsAnnotatedWith( CLOption.class ) )
+			if( element.getEnclosingElement().getAnnotation( CLOptions.class ) == null )
+				error( element, "CLOption can only be used in a CLOptions class" );
+		
+		return true;
+	}
+	
+	// Reading the declarations
+	
+	private ArrayList<Option> readOptions( TypeElement options ) {
+		
+		// Returns the options declared by the given class,
+		// or null if any of them is not valid.
+		
+		boolean valid = true;
+		
+		if( options.getModifiers().contains( Modifier.PRIVATE ) ) {
+			
+			error( options, "A CLOptions class cannot be private" );
+			valid = false;
+		}
+		
+		ArrayList<Option> result = new ArrayList<Option>();
+		HashMap<Character,String> flagOwners = new HashMap<Character,String>();
+		HashMap<String,String> switchOwners = new HashMap<String,String>();
+		HashMap<String,String> keyOwners = new HashMap<String,String>();
+		
+		for( Element member : options.getEnclosedElements() ) {
+			
+			CLOption declaration = member.getAnnotation( CLOption.class );
+			
+			if( declaration == null || member.getKind() != ElementKind.FIELD )
+				continue;
+			
+			Option option = readOption( member, declaration );
+			
+			if( option == null ) {
+				
+				valid = false;
+				continue;
+			}
+			
+			// No two options may share a key, flag or switch.
+			
+			String other = keyOwners.put( option.key, option.field );
+			
+			if( other != null ) {
+				
+				error( member, "Key '" + option.key + "' is also used by field '" + other + "'" );
+				valid = false;
+			}
+			
+			for( char flag : option.flags ) {
+				
+				other = flagOwners.put( flag, option.field );
+				
+				if( other != null ) {
+					
+					error( member, "Flag '" + flag + "' is also used by field '" + other + "'" );
+					valid = false;
+				}
+			}
+			
+			for( String sswitch : option.switches ) {
+				
+				other = switchOwners.put( sswitch, option.field );
+				
+				if( other != null ) {
+					
+					error( member, "Switch '" + sswitch + "' is also used by field '" + other + "'" );
+					valid = false;
+				}
+			}
+			
+			result.add( option );
+		}
+		
+		return valid ? result : null;
+	}
+	
+	private Option readOption( Element field, CLOption declaration ) {
+		
+		// Returns the option declared by the given field,
+		// or null (after reporting why) if it is not valid.
+		
+		Option option = new Option();
+		
+		option.field = field.getSimpleName().toString();
+		option.key = declaration.key().length() > 0 ? declaration.key() : option.field;
+		option.flags = declaration.flags();
+		option.switches = declaration.switches();
+		option.isUnbounded = declaration.unbounded();
+		option.isRequired = declaration.required();
+		
+		if( field.getModifiers().contains( Modifier.PRIVATE ) || field.getModifiers().contains( Modifier.STATIC ) || field.getModifiers().contains( Modifier.FINAL ) )
+			return error( field, "A CLOption field cannot be private, static or final" );
+		
+		if( option.flags.length == 0 && option.switches.length == 0 )
+			return error( field, "A CLOption needs at least one flag or switch" );
+		
+		for( char flag : option.flags )
+			if( flag == '-' )
+				return error( field, "'-' cannot be a flag" );
+		
+		for( String sswitch : option.switches )
+			if( sswitch.length() == 0 )
+				return error( field, "A switch cannot be empty" );
+		
+		// Work out what the field can hold.
+		
+		TypeMirror type = field.asType();
+		
+		if( type.getKind() == TypeKind.ARRAY ) {
+			
+			option.isArray = true;
+			type = ( (ArrayType) type ).getComponentType();
+		}
+		
+		switch( type.getKind() ) {
+			
+			case INT:
+			case LONG:
+			case DOUBLE:
+			case BOOLEAN:
+				
+				option.type = type.getKind().toString().toLowerCase();
+				break;
+			
+			case DECLARED:
+				
+				Element element = ( (DeclaredType) type ).asElement();
+				
+				if( element.getKind() == ElementKind.ENUM ) {
+					
+					option.type = ( (TypeElement) element ).getQualifiedName().toString();
+					option.isEnum = true;
+					break;
+				}
+				
+				if( ( (TypeElement) element ).getQualifiedName().contentEquals( "java.lang.String" ) ) {
+					
+					option.type = "String";
+					break;
+				}
+				
+				return error( field, "Unsupported CLOption type: " + field.asType() );
+			
+			default:
+				
+				return error( field, "Unsupported CLOption type: " + field.asType() );
+		}
+		
+		// Then, how many parcels it takes.
+		
+		option.parcelCount = declaration.parcels();
+		
+		if( option.parcelCount < 0 )
+			option.parcelCount = option.type.equals( "boolean" ) && ! option.isArray ? 0 : 1;
+		
+		if( option.parcelCount == 0 && ( option.isArray || ! ( option.type.equals( "boolean" ) || option.type.equals( "int" ) || option.type.equals( "long" ) ) ) )
+			return error( field, "Only boolean, int and long fields can take no parcels" );
+		
+		if( option.parcelCount > 1 && ! option.isArray )
+			return error( field, "Only arrays can take more than one parcel" );
+		
+		if( option.isUnbounded && ! option.isArray )
+			return error( field, "Only arrays can be unbounded" );
+		
+		if( option.isRequired && option.parcelCount == 0 )
+			return error( field, "An option that takes no parcels cannot be required" );
+		
+		return option;
+	}
+	
+	private Option error( Element element, String message ) {
+		
+		// Reports a compile error, and returns null.
+		
+		processingEnv.getMessager().printMessage( Diagnostic.Kind.ERROR, message, element );
+		
+		return null;
+	}
+	
+	// Writing the parser
+	
+	private void writeParser( TypeElement options, ArrayList<Option> found ) {
+		
+		// Writes the source of the parser for the given class.
+		
+		PackageElement pkg = processingEnv.getElementUtils().getPackageOf( options );
+		String packageName = pkg.getQualifiedName().toString();
+		String target = options.getQualifiedName().toString();
+		String parser = options.getAnnotation( CLOptions.class ).parser();
+		
+		if( parser.length() == 0 ) {
+			
+			// Join the names of the enclosing classes.
+			
+			parser = "Parser";
+			
+			for( Element row = options ; row.getKind() != ElementKind.PACKAGE ; row = row.getEnclosingElement() )
+				parser = row.getSimpleName() + ( parser.equals( "Parser" ) ? "" : "_" ) + parser;
+		}
+		
+		StringBuilder source = new StringBuilder();
+		
+		source.append( "/*  Generated by CLOptionsProcessor from " ).append( target ).append( ".  Do not edit.\n" );
+		source.append( " */\n\n" );
+		
+		if( ! pkg.isUnnamed() )
+			source.append( "package " ).append( packageName ).append( ";\n\n" );
+		
+		source.append( "import com.kfs.bsd.common.util.CLArgumentError;\n" );
+		source.append( "import com.kfs.bsd.common.util.CLGeneratedParser;\n" );
+		source.append( "import com.kfs.bsd.common.util.LinearArgDesequencer;\n\n" );
+		source.append( "public final class " ).append( parser ).append( " extends CLGeneratedParser {\n" );
+		
+		// The definitions
+		
+		StringBuilder keys = new StringBuilder();
+		StringBuilder parcelCounts = new StringBuilder();
+		StringBuilder unbounded = new StringBuilder();
+		StringBuilder required = new StringBuilder();
+		StringBuilder numberTypes = new StringBuilder();
+		
+		for( int row = 0 ; row < found.size() ; row++ ) {
+			
+			Option option = found.get( row );
+			String separator = row == 0 ? " " : ", ";
+			
+			keys.append( separator ).append( stringLiteral( option.key ) );
+			parcelCounts.append( separator ).append( option.parcelCount );
+			unbounded.append( separator ).append( option.isUnbounded );
+			numberTypes.append( separator ).append( option.parcelCount > 0 && ( option.type.equals( "int" ) || option.type.equals( "long" ) || option.type.equals( "double" ) ) ? option.type + ".class" : "null" );
+			
+			if( option.isRequired )
+				required.append( required.length() == 0 ? " " : ", " ).append( row );
+		}
+		
+		source.append( "\t\n\t// The options, indexed by option number\n\t\n" );
+		source.append( "\tprivate static final String [] kKeys = {" ).append( keys ).append( " };\n" );
+		source.append( "\tprivate static final int [] kParcelCounts = {" ).append( parcelCounts ).append( " };\n" );
+		source.append( "\tprivate static final boolean [] kUnbounded = {" ).append( unbounded ).append( " };\n" );
+		source.append( "\tprivate static final int [] kRequiredOptions = {" ).append( required ).append( " };\n" );
+		source.append( "\tprivate static final Class<?> [] kNumberTypes = {" ).append( numberTypes ).append( " };\n" );
+		
+		boolean hasEnums = false;
+		
+		for( int row = 0 ; row < found.size() ; row++ ) {
+			
+			if( ! found.get( row ).isEnum ) continue;
+			
+			if( ! hasEnums )
+				source.append( "\t\n\t// The constants of enum options\n\t\n" );
+			
+			source.append( "\tprivate static final " ).append( found.get( row ).type ).append( " [] kConstants" ).append( row ).append( " = " ).append( found.get( row ).type ).append( ".values();\n" );
+			hasEnums = true;
+		}
+		
+		// The constructor
+		
+		source.append( "\t\n\t// The constructor\n\t\n" );
+		source.append( "\tpublic " ).append( parser ).append( "() {\n" );
+		source.append( "\t\t\n\t\t// Builds a parser.  Nothing else needs to be built.\n\t\t\n" );
+		source.append( "\t\tsuper( kKeys, kParcelCounts, kUnbounded, kRequiredOptions, kNumberTypes );\n" );
+		source.append( "\t}\n" );
+		
+		// The entry point
+		
+		source.append( "\t\n\t// Parsing functions\n\t\n" );
+		source.append( "\tpublic CLArgumentError parse( String [] args, " ).append( target ).append( " target ) {\n" );
+		source.append( "\t\t\n\t\t// Parses the given argument array into the given target,\n" );
+		source.append( "\t\t// and returns the error found, or null if there was none.\n\t\t\n" );
+		source.append( "\t\tbegin();\n\t\t\n" );
+		source.append( "\t\tfor( int index = 0 ; index < args.length ; index++ )\n" );
+		source.append( "\t\t\tif( ! accept( index, args[ index ], target ) )\n" );
+		source.append( "\t\t\t\tbreak;\n\t\t\n" );
+		source.append( "\t\tstore( target );\n\t\t\n" );
+		source.append( "\t\treturn finish();\n" );
+		source.append( "\t}\n" );
+		
+		// Dispatching each argument
+		
+		String unknown = "LinearArgDesequencer.kErrorCodeUnknownArgument";
+		
+		source.append( "\t\n\tprivate boolean accept( int index, String arg, " ).append( target ).append( " target ) {\n" );
+		source.append( "\t\t\n\t\t// Parses one argument.\n\t\t\n" );
+		source.append( "\t\tif( arg.length() == 0 || arg.equals( \"-\" ) )\n" );
+		source.append( "\t\t\treturn true;\n\t\t\n" );
+		source.append( "\t\tif( arg.charAt( 0 ) != '-' || expectsNegativeNumber( arg ) ) {\n" );
+		source.append( "\t\t\t\n\t\t\t// This is a parcel, if anything is expecting one.\n\t\t\t\n" );
+		source.append( "\t\t\tif( ! expectsParcel() )\n" );
+		source.append( "\t\t\t\treturn fail( " ).append( unknown ).append( ", index, arg, -1, -1 );\n\t\t\t\n" );
+		source.append( "\t\t\treturn parcelFound( nextParcel(), index, arg, target );\n" );
+		source.append( "\t\t}\n\t\t\n" );
+		source.append( "\t\tif( arg.charAt( 1 ) == '-' ) {\n" );
+		source.append( "\t\t\t\n\t\t\t// This is a switch.\n\t\t\t\n" );
+		source.append( "\t\t\tswitch( arg ) {\n" );
+		
+		for( int row = 0 ; row < found.size() ; row++ ) {
+			
+			Option option = found.get( row );
+			
+			if( option.switches.length == 0 ) continue;
+			
+			source.append( "\t\t\t\t\n" );
+			
+			for( String sswitch : option.switches )
+				source.append( "\t\t\t\tcase " ).append( stringLiteral( "--" + sswitch ) ).append( ":\n" );
+			
+			source.append( optionFound( option, row, "\t\t\t\t\t" ) );
+			source.append( "\t\t\t\t\treturn true;\n" );
+		}
+		
+		source.append( "\t\t\t\t\n\t\t\t\tdefault:\n" );
+		source.append( "\t\t\t\t\treturn fail( " ).append( unknown ).append( ", index, arg, -1, -1 );\n" );
+		source.append( "\t\t\t}\n\t\t}\n\t\t\n" );
+		source.append( "\t\t// These are flags.\n\t\t\n" );
+		source.append( "\t\tfor( int offset = 1 ; offset < arg.length() ; offset++ ) {\n\t\t\t\n" );
+		source.append( "\t\t\tswitch( arg.charAt( offset ) ) {\n" );
+		
+		for( int row = 0 ; row < found.size() ; row++ ) {
+			
+			Option option = found.get( row );
+			
+			if( option.flags.length == 0 ) continue;
+			
+			source.append( "\t\t\t\t\n" );
+			
+			for( char flag : option.flags )
+				source.append( "\t\t\t\tcase " ).append( charLiteral( flag ) ).append( ":\n" );
+			
+			source.append( optionFound( option, row, "\t\t\t\t\t" ) );
+			source.append( "\t\t\t\t\tbreak;\n" );
+		}
+		
+		source.append( "\t\t\t\t\n\t\t\t\tdefault:\n" );
+		source.append( "\t\t\t\t\treturn fail( " ).append( unknown ).append( ", index, arg, offset, -1 );\n" );
+		source.append( "\t\t\t}\n\t\t}\n\t\t\n" );
+		source.append( "\t\treturn true;\n" );
+		source.append( "\t}\n" );
+		
+		// Storing each parcel
+		
+		source.append( "\t\n\tprivate boolean parcelFound( int option, int index, String arg, " ).append( target ).append( " target ) {\n" );
+		source.append( "\t\t\n\t\t// Stores a parcel of the given option.\n\t\t\n" );
+		source.append( "\t\ttry {\n\t\t\t\n" );
+		source.append( "\t\t\tswitch( option ) {\n" );
+		
+		for( int row = 0 ; row < found.size() ; row++ ) {
+			
+			Option option = found.get( row );
+			
+			if( option.parcelCount == 0 ) continue;
+			
+			String value = parcelValue( option, row );
+			
+			source.append( "\t\t\t\t\n\t\t\t\tcase " ).append( row ).append( ":\n" );
+			
+			if( option.isArray )
+				source.append( "\t\t\t\t\tcollect( " ).append( row ).append( ", " ).append( packedValue( option, value ) ).append( " );\n" );
+			else
+				source.append( "\t\t\t\t\ttarget." ).append( option.field ).append( " = " ).append( value ).append( ";\n" );
+			
+			source.append( "\t\t\t\t\tbreak;\n" );
+		}
+		
+		source.append( "\t\t\t}\n\t\t}\n" );
+		source.append( "\t\tcatch( IllegalArgumentException e ) {\n\t\t\t\n" );
+		source.append( "\t\t\treturn fail( LinearArgDesequencer.kErrorCodeInvalidValue, index, arg, -1, option );\n" );
+		source.append( "\t\t}\n\t\t\n" );
+		source.append( "\t\treturn true;\n" );
+		source.append( "\t}\n" );
+		
+		// Storing the arrays
+		
+		source.append( "\t\n\tprivate void store( " ).append( target ).append( " target ) {\n" );
+		source.append( "\t\t\n\t\t// Stores the parcels of each array option that was\n" );
+		source.append( "\t\t// found, replacing whatever its field held before.\n\t\t\n" );
+		
+		for( int row = 0 ; row < found.size() ; row++ ) {
+			
+			Option option = found.get( row );
+			
+			if( ! option.isArray ) continue;
+			
+			source.append( "\t\tif( collected( " ).append( row ).append( " ) )\n" );
+			source.append( "\t\t\ttarget." ).append( option.field ).append( " = " );
+			
+			if( option.isEnum )
+				source.append( "collectedEnums( " ).append( row ).append( ", kConstants" ).append( row ).append( " );\n" );
+			else
+				source.append( "collected" ).append( Character.toUpperCase( option.type.charAt( 0 ) ) ).append( option.type.substring( 1 ) ).append( "s( " ).append( row ).append( " );\n" );
+		}
+		
+		source.append( "\t}\n" );
+		source.append( "}\n" );
+		
+		// Write it out.
+		
+		String name = pkg.isUnnamed() ? parser : packageName + "." + parser;
+		
+		try {
+			
+			Writer writer = processingEnv.getFiler().createSourceFile( name, options ).openWriter();
+			
+			try {
+				writer.write( source.toString() );
+			}
+			finally {
+				writer.close();
+			}
+		}
+		catch( IOException e ) {
+			
+			error( options, "Cannot write " + name + ": " + e.getMessage() );
+		}
+	}
+	
+	private static String optionFound( Option option, int row, String indent ) {
+		
+		// Returns the statements that record an
+		// occurrence of the given option.
+		
+		if( option.parcelCount > 0 )
+			return indent + "expect( " + row + " );\n";
+		
+		if( option.type.equals( "boolean" ) )
+			return indent + "target." + option.field + " = true;\n";
+		
+		return indent + "target." + option.field + "++;\n";
+	}
+	
+	private static String parcelValue( Option option, int row ) {
+		
+		// Returns the expression that converts a parcel
+		// (named arg) into a value of the given option.
+		
+		if( option.isEnum )
+			return "parseEnum( kConstants" + row + ", arg )";
+		
+		if( option.type.equals( "String" ) )
+			return "arg";
+		
+		return "parse" + Character.toUpperCase( option.type.charAt( 0 ) ) + option.type.substring( 1 ) + "( arg )";
+	}
+	
+	private static String packedValue( Option option, String value ) {
+		
+		// Returns the expression that packs the given value of
+		// an array option, as CLGeneratedParser collects it.
+		
+		if( option.isEnum )
+			return value + ".ordinal()";
+		
+		if( option.type.equals( "double" ) )
+			return "Double.doubleToRawLongBits( " + value + " )";
+		
+		if( option.type.equals( "boolean" ) )
+			return value + " ? 1 : 0";
+		
+		return value;
+	}
+	
+	private static String stringLiteral( String text ) {
+		
+		// Returns a Java literal for the given String.
+		
+		StringBuilder result = new StringBuilder( "\"" );
+		
+		for( int row = 0 ; row < text.length() ; row++ )
+			result.append( escape( text.charAt( row ), '"' ) );
+		
+		return result.append( '"' ).toString();
+	}
+	
+	private static String charLiteral( char c ) {
+		
+		// Returns a Java literal for the given char.
+		
+		return "'" + escape( c, '\'' ) + "'";
+	}
+	
+	private static String escape( char c, char quote ) {
+		
+		// Returns the given character as it may appear
+		// inside a literal delimited by the given quote.
+		
+		if( c == quote || c == '\\' )
+			return "\\" + c;
+		
+		// Control characters are written in octal, because a
+		// unicode escape for a line break would end the line.
+		
+		if( c < 0x20 )
+			return String.format( "\\%03o", (int) c );
+		
+		if( c > 0x7e )
+			return String.format( "\\u%04x", (int) c );
+		
+		return String.valueOf( c );
+	}
+}
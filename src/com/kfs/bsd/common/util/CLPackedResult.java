@@ -0,0 +1,372 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class CLPackedResult
+ *
+ *  The outcome of CLArgumentSpec.parsePacked().  Rather than
+ *  keeping a copy of each parcel, this keeps the position of
+ *  each one in the caller's argument array, all packed into a
+ *  single int array, and only looks the parcels up when they
+ *  are asked for.  That costs four bytes per parcel, and eight
+ *  per option found (options that were not found cost nothing,
+ *  however many the spec defines), which suits programs that
+ *  hold on to the results of a great many parses.
+ *
+ *  The argument array is referred to, not copied, so it must
+ *  not be changed for as long as the result is in use.  Parcels
+ *  that are not in the array (those read from response files,
+ *  and '@@' arguments, which lose their first '@') are the only
+ *  ones kept separately.
+ *
+ *  The packed array holds the options that were found, in
+ *  ascending order (so that an option is looked up by a binary
+ *  search), then the offset of each one's entries (and the end
+ *  of the last one's), then the entries themselves, in the order
+ *  they were found.  An entry is the position of a parcel in the argument
+ *  array, kOptionMark for each occurrence of the option itself
+ *  (the null parcels of CLArgumentResult), or -2 minus the
+ *  index of a parcel that is kept separately.
+ *
+ *  The accessors are those of CLArgumentReader (see
+ *  CLParsedArguments).  Typed values are converted again each
+ *  time they are asked for; they were already checked by the
+ *  parse.
+ */
+
+package com.kfs.bsd.common.util;
+
+import java.util.Arrays;
+
+public final class CLPackedResult extends CLArgumentReader {
+	
+	// The argument array parsed
+	
+	private final String [] args;
+	
+	// The options found, their offsets and their entries (see
+	// above), the number of options found, and the parcels that
+	// are not in the argument array (or null)
+	
+	private final int [] packed;
+	private final int found;
+	private final String [] extras;
+	
+	// The error found, or null
+	
+	private final CLArgumentError error;
+	
+	// The entry that marks an occurrence of an option
+	
+	static final int kOptionMark = -1;
+	
+	// A shared empty array
+	
+	private static final int [] kNoPositions = new int [0];
+	
+	// The constructor
+	
+	CLPackedResult( CLArgumentSpec spec, String [] args, int [] packed, int found, String [] extras, CLArgumentError error ) {
+		
+		// Builds a result from the given packed entries, which
+		// start with the given number of options found.
+		// Used by CLPackedResult.Collector.
+		
+		super( spec );
+		
+		this.args = args;
+		this.packed = packed;
+		this.found = found;
+		this.extras = extras;
+		this.error = error;
+	}
+	
+	static final class Collector implements CLArgumentScanner.Sink {
+		
+		// Collects the options and parcels found by a CLArgumentScanner
+		// as (option, entry) pairs, in the order they are found, and
+		// then sorts them by option into a single packed array.  The
+		// tally of every option is only kept until then.
+		
+		private final CLArgumentSpec spec;
+		private final CLArgumentScanner scanner;
+		private final int [] tally;
+		private int [] pairs;
+		private int pairCount = 0;
+		private String [] extras = null;
+		private int extraCount = 0;
+		
+		Collector( CLArgumentSpec spec, CLArgumentScanner scanner, int argCount ) {
+			
+			// Builds a collector that asks the given scanner where in
+			// the argument array each parcel was found.  Most arguments
+			// make a single entry, and clusters of flags make a few, so
+			// there is room for half again as many pairs as arguments.
+			
+			super();
+			
+			this.spec = spec;
+			this.scanner = scanner;
+			this.tally = new int [ spec.getOptionCount() ];
+			this.pairs = new int [ 2 * Math.max( 8, argCount + ( argCount >> 1 ) ) ];
+		}
+		
+		public void optionFound( int option ) {
+			
+			// Each occurrence of an option is marked with kOptionMark.
+			
+			addEntry( option, kOptionMark );
+		}
+		
+		public void parcelFound( int option, String parcel, long value ) {
+			
+			// Records where the given parcel is, or keeps it if it is
+			// not in the argument array.  The value is not kept.
+			
+			int position = scanner.argPosition();
+			
+			if( position < 0 ) {
+				
+				if( extras == null )
+					extras = new String [ 4 ];
+				
+				else if( extraCount == extras.length )
+					extras = Arrays.copyOf( extras, extraCount * 2 );
+				
+				extras[ extraCount ] = parcel;
+				position = -2 - extraCount++;
+			}
+			
+			addEntry( option, position );
+		}
+		
+		private void addEntry( int option, int entry ) {
+			
+			// Adds the given entry for the given option.
+			
+			if( pairCount * 2 == pairs.length )
+				pairs = Arrays.copyOf( pairs, ( pairCount + ( pairCount >> 1 ) ) * 2 );
+			
+			pairs[ pairCount * 2 ] = option;
+			pairs[ pairCount * 2 + 1 ] = entry;
+			pairCount++;
+			tally[ option ]++;
+		}
+		
+		public void unexpectedToken( int tokenIndex, String token ) {
+			
+			// Errors are kept by toResult(), not here.
+		}
+		
+		public void missingParcel( int option ) {
+			
+			// Errors are kept by toResult(), not here.
+		}
+		
+		CLPackedResult toResult( String [] args, CLArgumentError error ) {
+			
+			// Returns the collected entries as a result.  Only the options
+			// that were found are listed.  The tally of each one becomes
+			// its offset, and then its insertion point, so the entries
+			// keep the order they were found in.
+			
+			int found = 0;
+			
+			for( int count : tally )
+				if( count > 0 )
+					found++;
+			
+			int [] packed = new int [ found * 2 + 1 + pairCount ];
+			int offset = found * 2 + 1;
+			int slot = 0;
+			
+			for( int option = 0 ; option < tally.length ; option++ ) {
+				
+				int count = tally[ option ];
+				
+				if( count == 0 ) continue;
+				
+				packed[ slot ] = option;
+				packed[ found + slot++ ] = tally[ option ] = offset;
+				offset += count;
+			}
+			
+			packed[ found * 2 ] = offset;
+			
+			for( int row = 0 ; row < pairCount ; row++ )
+				packed[ tally[ pairs[ row * 2 ] ]++ ] = pairs[ row * 2 + 1 ];
+			
+			return new CLPackedResult( spec, args, packed, found, extras == null ? null : Arrays.copyOf( extras, extraCount ), error );
+		}
+	}
+	
+	// The questions about each option
+	
+	String [] getParcelBin( int option ) {
+		
+		// Returns all the parcels of the given option, with
+		// a null for each occurrence of the option itself.
+		
+		int slot = slot( option );
+		int start = start( slot );
+		String [] result = new String [ end( slot ) - start ];
+		
+		for( int row = 0 ; row < result.length ; row++ )
+			if( packed[ start + row ] != kOptionMark )
+				result[ row ] = resolve( packed[ start + row ] );
+		
+		return result;
+	}
+	
+	String getLastParcel( int option ) {
+		
+		// Returns the last parcel of the given option, or null.
+		
+		int slot = slot( option );
+		
+		for( int row = end( slot ) -1 ; row >= start( slot ) ; row-- )
+			if( packed[ row ] != kOptionMark )
+				return resolve( packed[ row ] );
+		
+		return null;
+	}
+	
+	String [] getRelevantParcels( int option ) {
+		
+		// Returns the relevant parcels of the given option,
+		// resolved straight from the packed entries.
+		
+		int slot = slot( option );
+		int start = relevantStart( option, slot );
+		int end = end( slot );
+		String [] result = new String [ parcelsBetween( start, end ) ];
+		
+		int put = 0;
+		for( int row = start ; row < end ; row++ )
+			if( packed[ row ] != kOptionMark )
+				result[ put++ ] = resolve( packed[ row ] );
+		
+		return result;
+	}
+	
+	int countParcels( int option ) {
+		
+		// Returns the number of entries of the given option.
+		
+		int slot = slot( option );
+		
+		return end( slot ) - start( slot );
+	}
+	
+	int countRelevantParcels( int option ) {
+		
+		// Counts the relevant parcels without resolving them.
+		
+		int slot = slot( option );
+		
+		return parcelsBetween( relevantStart( option, slot ), end( slot ) );
+	}
+	
+	// Accessors for error codes
+	
+	public CLArgumentError sequenceErrorDetail() {
+		
+		// Returns the error returned by the parse, as a
+		// structured record.  null implies no error code.
+		
+		return error;
+	}
+	
+	// Accessors for parcels
+	
+	public String [] getArgs() {
+		
+		// Returns the argument array that was parsed.  Not a copy.
+		
+		return args;
+	}
+	
+	public int [] getParcelPositionsForKey( String id ) {
+		
+		// Same as getParcelArrayFromKey(), except that the positions of
+		// the parcels in the argument array are returned instead, with
+		// -1 for each parcel that is not in the array.
+		
+		int option = spec.getOptionForKey( id );
+		
+		if( option < 0 ) return kNoPositions;
+		
+		int slot = slot( option );
+		int start = relevantStart( option, slot );
+		int end = end( slot );
+		int [] result = new int [ parcelsBetween( start, end ) ];
+		
+		int put = 0;
+		for( int row = start ; row < end ; row++ )
+			if( packed[ row ] != kOptionMark )
+				result[ put++ ] = Math.max( -1, packed[ row ] );
+		
+		return result;
+	}
+	
+	private int slot( int option ) {
+		
+		// Returns the position of the given option among those
+		// found, or -1 if it was not found.
+		
+		int slot = Arrays.binarySearch( packed, 0, found, option );
+		
+		return slot < 0 ? -1 : slot;
+	}
+	
+	private int start( int slot ) {
+		
+		// Returns the first entry of the option in the given slot.
+		// An option that was not found has no entries at all.
+		
+		return slot < 0 ? 0 : packed[ found + slot ];
+	}
+	
+	private int end( int slot ) {
+		
+		// Returns the end of the entries of the option in the given slot.
+		
+		return slot < 0 ? 0 : packed[ found + slot + 1 ];
+	}
+	
+	private int relevantStart( int option, int slot ) {
+		
+		// Returns the first entry of the given option (in the given
+		// slot) that holds a relevant parcel (or a mark before one),
+		// counting back from the end as many parcels as can be relevant.
+		
+		int start = start( slot );
+		int row = end( slot );
+		
+		for( int keep = spec.getRelevantCount( option, Integer.MAX_VALUE ) ; keep > 0 && row > start ; )
+			if( packed[ --row ] != kOptionMark )
+				keep--;
+		
+		return row;
+	}
+	
+	private int parcelsBetween( int start, int end ) {
+		
+		// Returns the number of entries in the given range that are parcels.
+		
+		int result = 0;
+		
+		for( int row = start ; row < end ; row++ )
+			if( packed[ row ] != kOptionMark )
+				result++;
+		
+		return result;
+	}
+	
+	private String resolve( int entry ) {
+		
+		// Returns the parcel that the given entry refers to.
+		
+		return entry >= 0 ? args[ entry ] : extras[ -2 - entry ];
+	}
+}
@@ -0,0 +1,37 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class CLParcelList
+ *
+ *  The list behind CLArg.parcels.  It behaves exactly like
+ *  an ArrayList, but tells its owner how many times it has
+ *  been modified, so that the owner can tell whether or not
+ *  its cached view of the parcels is still current.
+ */
+
+package com.kfs.bsd.common.util;
+
+import java.util.ArrayList;
+
+final class CLParcelList extends ArrayList<String> {
+	
+	private static final long serialVersionUID = 1L;
+	
+	public int modifications() {
+		
+		// Returns a number that changes whenever this list changes.
+		
+		return modCount;
+	}
+	
+	public String set( int index, String parcel ) {
+		
+		// ArrayList does not count replacements as modifications,
+		// but a replaced parcel invalidates the owner's cache.
+		
+		modCount++;
+		
+		return super.set( index, parcel );
+	}
+}
@@ -0,0 +1,96 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class CLParcelQueue
+ *
+ *  A circular queue of option numbers, used to remember
+ *  which options are still waiting for parcels while an
+ *  argument array is being scanned.
+ */
+
+package com.kfs.bsd.common.util;
+
+final class CLParcelQueue {
+	
+	// The contents of the queue
+	
+	private int [] options = new int [ 8 ];
+	private int head = 0;
+	private int size = 0;
+	
+	// Queue functions
+	
+	public boolean isEmpty() {
+		
+		// Returns whether or not the queue is empty.
+		
+		return size == 0;
+	}
+	
+	public int size() {
+		
+		// Returns the number of parcels in the queue.
+		
+		return size;
+	}
+	
+	public void add( int option, int count ) {
+		
+		// Adds the given option to the end
+		// of the queue <count> times.
+		
+		for( ; count > 0 ; count-- ) {
+			
+			if( size == options.length )
+				grow();
+			
+			options[ ( head + size++ ) % options.length ] = option;
+		}
+	}
+	
+	public int peek() {
+		
+		// Returns the option at the front of the queue,
+		// or -1 if the queue is empty.
+		
+		return size == 0 ? -1 : options[ head ];
+	}
+	
+	public int poll() {
+		
+		// Removes and returns the option at the front
+		// of the queue, or -1 if the queue is empty.
+		
+		if( size == 0 ) return -1;
+		
+		int option = options[ head ];
+		
+		head = ( head + 1 ) % options.length;
+		size--;
+		
+		return option;
+	}
+	
+	public void clear() {
+		
+		// Removes everything from the queue.  The
+		// storage is kept, so that it can be reused.
+		
+		head = 0;
+		size = 0;
+	}
+	
+	private void grow() {
+		
+		// Doubles the capacity of the queue, moving the head to zero.
+		
+		int [] result = new int [ options.length * 2 ];
+		
+		for( int row = 0 ; row < size ; row++ )
+			result[ row ] = options[ ( head + row ) % options.length ];
+		
+		options = result;
+		head = 0;
+	}
+}
@@ -0,0 +1,103 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Interface CLParsedArguments
+ *
+ *  The read accessors of parsed arguments, with the same names
+ *  and rules as those of LinearArgDesequencer and its
+ *  CLArgumentSet.  CLArgumentResult, CLPackedResult,
+ *  CLArgumentLayers and each row of a CLArgumentTable all
+ *  answer them, so code that only reads arguments need not
+ *  care how they were stored.
+ */
+
+package com.kfs.bsd.common.util;
+
+public interface CLParsedArguments {
+	
+	// Returns the spec that defines the arguments.
+	
+	public CLArgumentSpec getSpec();
+	
+	// Returns whether or not the parse returned an error.
+	
+	public boolean sequenceError();
+	
+	// Returns the error code returned by the parse.
+	// Zero implies no error occurred.
+	
+	public int sequenceErrorCode();
+	
+	// Returns the error message returned by the parse.
+	// null implies no error code.
+	
+	public String sequenceErrorMsg();
+	
+	// Returns the (first) error returned by the parse, as a
+	// structured record.  null implies no error code.
+	
+	public CLArgumentError sequenceErrorDetail();
+	
+	// Returns every error found by the parse, in the order they were found.
+	
+	public CLArgumentError [] sequenceErrors();
+	
+	// Returns the number of errors found by the parse.
+	
+	public int sequenceErrorCount();
+	
+	// Returns whether or not the help flag was found.
+	
+	public boolean foundHelpFlag();
+	
+	// Returns the verbosity described by the arguments.
+	
+	public int verbosity();
+	
+	// Returns the most relevant (the last non-null) parcel in the given argument.
+	
+	public String getParcelFromKey( String id );
+	
+	// Returns an array of the parcels in the given argument that are
+	// relevant based on the isArray and parcelCount properties.
+	
+	public String [] getParcelArrayFromKey( String id );
+	
+	// Returns the number of found parcels, including
+	// the null ones, that are in the given argument.
+	
+	public int getParcelCountForKey( String id );
+	
+	// Returns the number of found parcels, optionally including
+	// the null ones or not, that are in the given argument.
+	
+	public int getParcelCountForKey( String id, boolean prune );
+	
+	// Return the most relevant value of the given argument, or the
+	// given default (null for an enum) if it was not found.  Each
+	// throws IllegalArgumentException if the argument was
+	// declared with another type.
+	
+	public int getIntFromKey( String id, int defaultValue );
+	
+	public long getLongFromKey( String id, long defaultValue );
+	
+	public double getDoubleFromKey( String id, double defaultValue );
+	
+	public boolean getBooleanFromKey( String id, boolean defaultValue );
+	
+	public <E extends Enum<E>> E getEnumFromKey( String id, Class<E> type );
+	
+	// Return the relevant values of the given argument.
+	
+	public int [] getIntArrayFromKey( String id );
+	
+	public long [] getLongArrayFromKey( String id );
+	
+	public double [] getDoubleArrayFromKey( String id );
+	
+	public boolean [] getBooleanArrayFromKey( String id );
+	
+	public <E extends Enum<E>> E [] getEnumArrayFromKey( String id, Class<E> type );
+}
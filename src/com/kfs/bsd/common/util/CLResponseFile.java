@@ -0,0 +1,149 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class CLResponseFile
+ *
+ *  Reads the arguments stored in a response file (the file
+ *  named by an '@file' argument), one at a time.  Arguments
+ *  are separated by whitespace, and may be wrapped in single
+ *  or double quotes to include whitespace.  The file is read
+ *  as UTF-8.
+ *
+ *  The file is memory-mapped a window at a time, and each
+ *  argument is cut directly out of the mapped bytes, so a
+ *  file of any size can be read without ever holding more
+ *  than one argument of it in memory.
+ */
+
+package com.kfs.bsd.common.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+
+final class CLResponseFile implements Closeable {
+	
+	// The number of bytes mapped at once
+	
+	static final int kWindowSize = 1 << 26;
+	
+	private static final Charset kCharset = Charset.forName( "UTF-8" );
+	
+	// The file being read
+	
+	private final FileChannel channel;
+	private final long size;
+	private final int windowSize;
+	private long position = 0;
+	private MappedByteBuffer window = null;
+	
+	// The bytes of the argument being read
+	
+	private byte [] token = new byte [ 64 ];
+	private int tokenLength = 0;
+	
+	// The constructors
+	
+	CLResponseFile( File file ) throws IOException {
+		
+		// Opens the given file for reading.
+		
+		this( file, kWindowSize );
+	}
+	
+	CLResponseFile( File file, int windowSize ) throws IOException {
+		
+		// Opens the given file for reading, mapping
+		// no more than windowSize bytes at a time.
+		
+		super();
+		
+		this.channel = FileChannel.open( file.toPath(), StandardOpenOption.READ );
+		this.size = channel.size();
+		this.windowSize = windowSize;
+	}
+	
+	// Reading functions
+	
+	public String nextToken() throws IOException {
+		
+		// Returns the next argument in the file, or null if there
+		// are no more.  A quote left open at the end of the file
+		// is closed by the end of the file.
+		
+		boolean inToken = false;
+		byte quote = 0;
+		
+		tokenLength = 0;
+		
+		while( true ) {
+			
+			// Map the next window when this one runs out.  An
+			// argument may straddle windows; its bytes are kept.
+			
+			if( window == null || ! window.hasRemaining() ) {
+				
+				if( position >= size ) break;
+				
+				long length = Math.min( windowSize, size - position );
+				
+				window = channel.map( FileChannel.MapMode.READ_ONLY, position, length );
+				position += length;
+			}
+			
+			byte b = window.get();
+			
+			if( quote != 0 ) {
+				
+				if( b == quote )
+					quote = 0;
+				else
+					append( b );
+			}
+			else if( b == '"' || b == '\'' ) {
+				
+				quote = b;
+				inToken = true;
+			}
+			else if( b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f' ) {
+				
+				if( inToken ) break;
+			}
+			else {
+				
+				append( b );
+				inToken = true;
+			}
+		}
+		
+		return inToken ? new String( token, 0, tokenLength, kCharset ) : null;
+	}
+	
+	private void append( byte b ) {
+		
+		// Adds the given byte to the argument being read.
+		
+		if( tokenLength == token.length ) {
+			
+			byte [] newToken = new byte [ token.length * 2 ];
+			System.arraycopy( token, 0, newToken, 0, tokenLength );
+			token = newToken;
+		}
+		
+		token[ tokenLength++ ] = b;
+	}
+	
+	public void close() throws IOException {
+		
+		// Releases the file.  The mapped windows are
+		// released when they are garbage collected.
+		
+		window = null;
+		channel.close();
+	}
+}
@@ -0,0 +1,335 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class CLSwitchTree
+ *
+ *  A BK-tree of the switches in a CLArgumentSpec, used to
+ *  suggest the switch that an unknown one was meant to be.
+ *
+ *  Each node holds one switch, and each of its children is
+ *  labeled with its edit distance from that switch.  By the
+ *  triangle inequality, a switch within distance n of a word
+ *  that is distance d from a node can only be found below the
+ *  children labeled d-n through d+n, so a lookup visits a
+ *  small part of the tree instead of every switch.  Each node
+ *  also records its largest child label, which bounds how far
+ *  the distance to that node needs to be worked out at all.
+ *
+ *  Distances are worked out with Myers' bit-parallel algorithm,
+ *  which handles a whole column of the usual dynamic programming
+ *  table at once for words of up to 64 characters.  Lookups try
+ *  one edit before two, since most typos are a single edit, and
+ *  the smaller search visits far fewer nodes.
+ *
+ *  The tree is stored in parallel arrays, with the children
+ *  of each node kept as a linked list.  It is built once, and
+ *  never changes afterwards, so any number of threads may
+ *  look things up at once.
+ */
+
+package com.kfs.bsd.common.util;
+
+import java.util.Arrays;
+
+final class CLSwitchTree {
+	
+	// The nodes of the tree.  Node 0 is the root.
+	
+	private final String [] words;
+	private final int [] edges;
+	private final int [] firstChild;
+	private final int [] nextSibling;
+	private final int [] maxEdge;
+	private int size = 0;
+	
+	// The constructor
+	
+	CLSwitchTree( String [] switches ) {
+		
+		// Builds a tree of the given switches.  Repeats are ignored.
+		
+		super();
+		
+		int count = switches.length;
+		
+		words = new String [ count ];
+		edges = new int [ count ];
+		firstChild = new int [ count ];
+		nextSibling = new int [ count ];
+		maxEdge = new int [ count ];
+		
+		Arrays.fill( firstChild, -1 );
+		Arrays.fill( nextSibling, -1 );
+		
+		for( String sswitch : switches )
+			add( sswitch );
+	}
+	
+	private void add( String sswitch ) {
+		
+		// Adds the given switch below the first node whose children
+		// do not yet have a label equal to its distance from that node.
+		
+		if( size == 0 ) {
+			
+			words[ size++ ] = sswitch;
+			return;
+		}
+		
+		long [] equalities = equalities( sswitch, 0 );
+		int node = 0;
+		
+		while( true ) {
+			
+			int distance = distance( sswitch, 0, equalities, words[ node ], Integer.MAX_VALUE );
+			
+			if( distance == 0 ) return;
+			
+			int child = firstChild[ node ];
+			
+			while( child >= 0 && edges[ child ] != distance )
+				child = nextSibling[ child ];
+			
+			if( child < 0 ) {
+				
+				child = size++;
+				
+				words[ child ] = sswitch;
+				edges[ child ] = distance;
+				nextSibling[ child ] = firstChild[ node ];
+				firstChild[ node ] = child;
+				maxEdge[ node ] = Math.max( maxEdge[ node ], distance );
+				return;
+			}
+			
+			node = child;
+		}
+	}
+	
+	// Lookup functions
+	
+	public int size() {
+		
+		// Returns the number of distinct switches in the tree.
+		
+		return size;
+	}
+	
+	public String [] nearest( String token, int offset, int maxDistance, int maxResults ) {
+		
+		// Returns the switches closest to the part of the given token
+		// after the given offset, as long as they are no more than
+		// maxDistance edits away.  Only the switches at the smallest
+		// distance found are returned, in alphabetical order, and no
+		// more than maxResults of them.
+		
+		long [] equalities = equalities( token, offset );
+		String [] result = new String [0];
+		
+		for( int distance = Math.min( 1, maxDistance ) ; distance <= maxDistance && result.length == 0 ; distance++ )
+			result = nearest( token, offset, equalities, distance, maxResults );
+		
+		return result;
+	}
+	
+	private String [] nearest( String token, int offset, long [] equalities, int maxDistance, int maxResults ) {
+		
+		// Same as above, for one maximum distance.
+		
+		String [] found = new String [ 8 ];
+		int foundCount = 0;
+		int best = maxDistance;
+		
+		int [] stack = new int [ 16 ];
+		int depth = 0;
+		
+		if( size > 0 )
+			stack[ depth++ ] = 0;
+		
+		while( depth > 0 ) {
+			
+			int node = stack[ --depth ];
+			
+			// Nothing beyond this limit can be a match, or lead to one.
+			
+			int distance = distance( token, offset, equalities, words[ node ], maxEdge[ node ] + best );
+			
+			if( distance <= best ) {
+				
+				if( distance < best ) {
+					
+					best = distance;
+					foundCount = 0;
+				}
+				
+				if( foundCount == found.length )
+					found = Arrays.copyOf( found, foundCount * 2 );
+				
+				found[ foundCount++ ] = words[ node ];
+			}
+			
+			for( int child = firstChild[ node ] ; child >= 0 ; child = nextSibling[ child ] ) {
+				
+				if( Math.abs( edges[ child ] - distance ) <= best ) {
+					
+					if( depth == stack.length )
+						stack = Arrays.copyOf( stack, depth * 2 );
+					
+					stack[ depth++ ] = child;
+				}
+			}
+		}
+		
+		// Matches found before the best distance dropped
+		// were discarded above, so every one left is a tie.
+		
+		Arrays.sort( found, 0, foundCount );
+		
+		return Arrays.copyOf( found, Math.min( foundCount, maxResults ) );
+	}
+	
+	// Distance functions
+	
+	private static final int kMaxBitParallel = 64;
+	private static final int kTableSize = 128;
+	
+	static long [] equalities( String token, int offset ) {
+		
+		// Returns, for each ASCII character, a mask of the positions
+		// in the part of the given token after the given offset where
+		// that character appears.  Other characters are looked up
+		// in the token itself, by characterMask().
+		
+		long [] result = new long [ kTableSize ];
+		int length = Math.min( token.length() - offset, kMaxBitParallel );
+		
+		for( int i = 0 ; i < length ; i++ ) {
+			
+			char c = token.charAt( offset + i );
+			
+			if( c < kTableSize )
+				result[ c ] |= 1L << i;
+		}
+		
+		return result;
+	}
+	
+	private static long characterMask( String token, int offset, long [] equalities, char c ) {
+		
+		// Returns the mask of the positions where the given
+		// character appears in the part of the given token
+		// after the given offset.
+		
+		if( c < kTableSize ) return equalities[ c ];
+		
+		long result = 0;
+		
+		for( int i = offset ; i < token.length() ; i++ )
+			if( token.charAt( i ) == c )
+				result |= 1L << ( i - offset );
+		
+		return result;
+	}
+	
+	static int distance( String token, int offset, long [] equalities, String word, int limit ) {
+		
+		// Returns the Levenshtein distance between the part of the
+		// given token after the given offset and the given word, or
+		// any number greater than limit if it is greater than limit.
+		// equalities must have come from equalities( token, offset ).
+		
+		int tokenLength = token.length() - offset;
+		int wordLength = word.length();
+		
+		if( Math.abs( tokenLength - wordLength ) > limit )
+			return limit + 1;
+		
+		if( tokenLength > kMaxBitParallel )
+			return distance( token, offset, word, limit );
+		
+		if( tokenLength == 0 )
+			return wordLength;
+		
+		// Each bit of pv (or mv) is set where a cell of the current column
+		// is one more (or less) than the cell above it.  score follows
+		// the bottom cell, which ends up as the distance.
+		
+		long last = 1L << ( tokenLength -1 );
+		long pv = last == Long.MIN_VALUE ? -1L : ( last << 1 ) -1;
+		long mv = 0;
+		int score = tokenLength;
+		
+		for( int column = 0 ; column < wordLength ; column++ ) {
+			
+			long eq = characterMask( token, offset, equalities, word.charAt( column ) );
+			long xv = eq | mv;
+			long xh = ( ( ( eq & pv ) + pv ) ^ pv ) | eq;
+			long ph = mv | ~( xh | pv );
+			long mh = pv & xh;
+			
+			if( ( ph & last ) != 0 )
+				score++;
+			else if( ( mh & last ) != 0 )
+				score--;
+			
+			// The top row counts up from zero, so a one is shifted in.
+			
+			ph = ( ph << 1 ) | 1;
+			mh = mh << 1;
+			pv = mh | ~( xv | ph );
+			mv = ph & xv;
+			
+			// The score can drop by at most one per remaining column.
+			
+			if( score - ( wordLength - column -1 ) > limit )
+				return limit + 1;
+		}
+		
+		return score;
+	}
+	
+	static int distance( String token, int offset, String word, int limit ) {
+		
+		// Same as above, one cell at a time, for
+		// tokens too long for the bit-parallel version.
+		
+		int tokenLength = token.length() - offset;
+		int wordLength = word.length();
+		
+		if( Math.abs( tokenLength - wordLength ) > limit )
+			return limit + 1;
+		
+		int [] previous = new int [ wordLength + 1 ];
+		int [] current = new int [ wordLength + 1 ];
+		
+		for( int column = 0 ; column <= wordLength ; column++ )
+			previous[ column ] = column;
+		
+		for( int row = 1 ; row <= tokenLength ; row++ ) {
+			
+			char c = token.charAt( offset + row -1 );
+			int smallest = current[ 0 ] = row;
+			
+			for( int column = 1 ; column <= wordLength ; column++ ) {
+				
+				int cost = c == word.charAt( column -1 ) ? 0 : 1;
+				int value = Math.min( Math.min( current[ column -1 ], previous[ column ] ) + 1, previous[ column -1 ] + cost );
+				
+				current[ column ] = value;
+				smallest = Math.min( smallest, value );
+			}
+			
+			// The distance never shrinks from one row to the next.
+			
+			if( smallest > limit )
+				return limit + 1;
+			
+			int [] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		
+		return previous[ wordLength ];
+	}
+}
@@ -15,10 +15,14 @@
 
 package com.kfs.bsd.common.util;
 
+import java.io.IOException;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Hashtable;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 
@@ -30,17 +34,34 @@ public class LinearArgDesequencer {
 	public static final int kErrorCodeInternal = 1;
 	public static final int kErrorCodeUnknownArgument = 2;
 	public static final int kErrorCodeMissingArgument = 3;
+	public static final int kErrorCodeDuplicateArgument = 4;
+	public static final int kErrorCodeAmbiguousArgument = 5;
+	public static final int kErrorCodeUnreadableResponseFile = 6;
+	public static final int kErrorCodeRecursiveResponseFile = 7;
+	public static final int kErrorCodeInvalidValue = 8;
 	
 	// Argument IDs for arguments submitted by this class
 	
 	protected static final String kArgKeyHelp = "Help";
 	protected static final String kArgKeyVerbose = "Verbose";
 	
+	// A shared empty parcel array
+	
+	private static final String [] kNoParcels = new String [0];
+	
+	// An argument array that, given to a constructor, only defines
+	// the arguments: populateArgSet() runs, and nothing is parsed.
+	// Used to compile a spec from a subclass without running it.
+	
+	public static final String [] kDefinitionOnly = new String [0];
+	
 	// Non-static class properties for storing results
 	
 	protected boolean _parseError = false;
 	protected int _parseErrorCode = 0;
 	protected String _parseErrorMsg = null;
+	protected CLArgumentError _parseErrorDetail = null;
+	protected CLArgumentError [] _parseErrors = CLArgumentError.kNoErrors;
 	
 	protected CLArgumentSet argSet = new CLArgumentSet();
 	protected ArrayList<String> requiredArgumentKeys = new ArrayList<String>();
@@ -104,25 +125,55 @@ public class LinearArgDesequencer {
 	public String sequenceErrorMsg() {
 		
 		// An accessor that returns the error message returned by desequenceArgs.
-		// null implies no error code.
+		// null implies no error code.  The message is formatted the first
+		// time it is asked for, and then kept in _parseErrorMsg.
+		
+		if( _parseErrorMsg == null && _parseErrorDetail != null )
+			_parseErrorMsg = _parseErrorDetail.getMessage();
 		
 		return _parseErrorMsg;
 	}
 	
+	public CLArgumentError sequenceErrorDetail() {
+		
+		// An accessor that returns the error returned by desequenceArgs,
+		// as a structured record.  null implies no error code.
+		
+		return _parseErrorDetail;
+	}
+	
+	public CLArgumentError [] sequenceErrors() {
+		
+		// An accessor that returns every error found by desequenceArgs,
+		// in the order they were found.  Unless argSet collects all
+		// errors (see setCollectsAllErrors()), this holds at most one
+		// error.  The first error is the one described by the
+		// other accessors above.
+		
+		return _parseErrors.clone();
+	}
+	
+	public int sequenceErrorCount() {
+		
+		// An accessor that returns the number of errors found by desequenceArgs.
+		
+		return _parseErrors.length;
+	}
+	
 	// Accessors for the Help and Verbosity arguments
 	
 	public boolean foundHelpFlag() {
 		
 		// A convenience function that returns whether or not the help flag was found.
 		
-		return ! argSet.makeGet( kArgKeyHelp ).parcels.isEmpty();
+		return argSet.getParcelCountForKey( kArgKeyHelp ) > 0;
 	}
 	
 	public int verbosity() {
 		
 		// A convenience function that returns the verbosity described by the arguments.
 		
-		return argSet.makeGet( kArgKeyVerbose ).parcels.size();
+		return argSet.getParcelCountForKey( kArgKeyVerbose );
 	}
 	
 	// The primary desequencing function
@@ -132,158 +183,137 @@ public class LinearArgDesequencer {
 		// This function parses the given argument array and places the
 		// results within the protected variables in this class instance.
 		
-		// Initialize the current unbounded parcel
+		// The arguments in argSet are compiled into a CLArgumentSpec
+		// (which is kept until they change), and the array is scanned
+		// by the same state machine that CLArgumentSpec.parse() uses.
+		// A successful scan allocates nothing beyond the parcels that
+		// are stored in argSet.  On failure, only a compact error
+		// record is kept; the message is formatted on request.
+		
+		if( args == kDefinitionOnly ) return;
+		
+		CLArgumentError error = argSet.desequence( args, requiredArgumentKeys );
 		
-		String unboundedParcelKey = null;
+		_parseError = error != null;
+		_parseErrorCode = error == null ? kErrorCodeNone : error.getCode();
+		_parseErrorMsg = null;
+		_parseErrorDetail = error;
+		_parseErrors = argSet.getErrors();
+	}
+	
+	// Other functions and resources
+	
+	public CLArgumentSpec compileArgSpec() {
 		
-		// Initialize the queue of parcels.
+		// Compiles the arguments defined by populateArgSet() into an
+		// immutable CLArgumentSpec.  The spec can parse any number
+		// of argument arrays without constructing another instance
+		// of this class, and can be shared freely.
 		
-		Queue<String> parcelQueue = new LinkedList<String>();
+		return argSet.compile( requiredArgumentKeys );
+	}
+	
+	public String [] argsUsage() {
 		
-		// Add the required parcels to the queue.
+		// This function returns a textual version of the
+		// arguments currently loaded in this class instance.
 		
-		for( int row = 0 ; row < requiredArgumentKeys.size() ; row++ )
-			argSet.addRequiredParcelsToQueue( parcelQueue, requiredArgumentKeys.get( row ) );
+		return argSet.argsUsage();
+	}
+	
+	public void writeUsage( Appendable out ) throws IOException {
 		
-		// Begin scanning the array.
+		// Writes the same text as argsUsage(), one line per
+		// argument, directly to the given Appendable.
 		
-		for( int index = 0 ; index < args.length ; index ++ ) {
+		argSet.writeUsage( out );
+	}
+	
+	public String toString() {
+		
+		// Standard toString.
+		
+		return argSet.toString();
+	}
+	
+	public void writeTo( Appendable out ) throws IOException {
+		
+		// Writes the same text as toString() directly
+		// to the given Appendable.
+		
+		argSet.writeTo( out );
+	}
+	
+	private static final class Found {
+		
+		// The non-null parcels of a CLArg, cached: the first count of
+		// parcels, taken from list after the given number of changes.
+		// Only changed in place while parcels are being added (which,
+		// like changing the list itself, must not overlap with reads);
+		// a cache rebuilt by a read is always a new Found.
+		
+		private String [] parcels;
+		private int count;
+		private ArrayList<String> list;
+		private int modifications;
+		
+		private Found( String [] parcels, int count, ArrayList<String> list, int modifications ) {
 			
-			String arg = args[ index ];
+			// Java requires that this be here.
 			
-			if( arg.length() > 0 ) {
-				
-				// The first character tells a lot.
-				
-				char fc = arg.charAt( 0 );
-				
-				if( fc == '-' ) {
-					
-					// This is an option argument.
-					
-					if( arg.length() > 1 ) {
-						
-						if( arg.charAt( 1 ) == '-' ) {
-							
-							// This is a word-argument.
-							
-							// Figure out which one it is
-							
-							String sswitch = arg.substring( 2 );
-							
-							String argKey = argSet.getArgKeyForSwitch( sswitch );
-							
-							if( argKey != null ) {
-								
-								argSet.foundParcel( argKey, null );
-								argSet.addRequiredParcelsToQueue( parcelQueue, argKey );
-							}
-							else {
-								
-								// This is an unknown argument.
-								
-								_parseError = true;
-								_parseErrorCode = kErrorCodeUnknownArgument;
-								_parseErrorMsg = "Unknown option: '" + arg + "'";
-								return;
-							}
-						}
-						else {
-							
-							// This is a character-argument.
-							
-							for( int i = 1 ; i < arg.length() ; i++ ) {
-								
-								char c = arg.charAt( i );
-								
-								String argKey = argSet.getArgKeyForFlag( c );
-								
-								if( argKey != null ) {
-									
-									argSet.foundParcel( argKey, null );
-									argSet.addRequiredParcelsToQueue( parcelQueue, argKey );
-								}
-								else {
-									
-									// This is an unknown argument.
-									
-									_parseError = true;
-									_parseErrorCode = kErrorCodeUnknownArgument;
-									_parseErrorMsg = "Unknown option: '" + c + "'";
-									return;
-								}
-							}
-						}
-					}
-				}
-				else if( parcelQueue.isEmpty() == false || unboundedParcelKey != null ) {
-					
-					// We are expecting a parcel.
-					
-					// Which one?
-					
-					String which = parcelQueue.isEmpty() ? unboundedParcelKey : parcelQueue.poll();
-					
-					if( which == null ) {
-						
-						_parseError = true;
-						_parseErrorCode = kErrorCodeInternal;
-						_parseErrorMsg = "Internal Error: An expected non-argument is null.";
-						return;
-					}
-					
-					// Set the current unboundedParcelKey
-					
-					if( argSet.makeGet( which ).isUnbounded ) unboundedParcelKey = which;
-					
-					// Add this parcel to the correct bin in argSet.
-					
-					if( ! argSet.foundParcel( which, arg ) ) {
-						
-						_parseError = true;
-						_parseErrorCode = kErrorCodeInternal;
-						_parseErrorMsg = "Internal Error: Unknown expected parcel: '" + which + "'";
-						return;
-					}
-				}
-				else {
-					
-					// This is an unexpected parcel.
-					
-					_parseError = true;
-					_parseErrorCode = kErrorCodeUnknownArgument;
-					_parseErrorMsg = "Unexpected argument: '" + arg + "'";
-					return;
-				}
-			}
+			super();
+			
+			this.parcels = parcels;
+			this.count = count;
+			this.list = list;
+			this.modifications = modifications;
 		}
 		
-		// The queue had better be empty at this point.
-		
-		if( ! parcelQueue.isEmpty() ) {
+		private void rebuild( ArrayList<String> list ) {
+			
+			// Fills this cache from the given parcels.
+			
+			int size = list.size();
 			
-			_parseError = true;
-			_parseErrorCode = kErrorCodeMissingArgument;
-			_parseErrorMsg = "Expected argument: '" + parcelQueue.peek() + "'";
-			return;
+			if( parcels.length < size )
+				parcels = new String [ size ];
+			
+			count = 0;
+			
+			for( int row = 0 ; row < size ; row++ )
+				if( list.get( row ) != null )
+					parcels[ count++ ] = list.get( row );
+			
+			this.list = list;
+			this.modifications = modifications( list );
 		}
 	}
 	
-	// Other functions and resources
-	
-	public String [] argsUsage() {
+	private static int modifications( ArrayList<String> list ) {
 		
-		// This function dynamically builds a textual version of
-		// the arguments currently loaded in this class instance.
+		// Returns the number of changes made to the given parcels,
+		// or -1 if the list cannot report them.
 		
-		return argSet.argsUsage();
+		return list instanceof CLParcelList ? ( (CLParcelList) list ).modifications() : -1;
 	}
 	
-	public String toString() {
+	private static final class Usage {
 		
-		// Standard toString.
+		// The rendered usage of a CLArgumentSet.
+		// Never changed once built.
 		
-		return argSet.toString();
+		private final String [] lines;
+		private final String text;
+		
+		private Usage( String [] lines, String text ) {
+			
+			// Java requires that this be here.
+			
+			super();
+			
+			this.lines = lines;
+			this.text = text;
+		}
 	}
 	
 	protected class CLArgumentSet {
@@ -291,7 +321,52 @@ public class LinearArgDesequencer {
 		// This class contains a set of arguments, and provides
 		// some convenience functions relating to them.
 		
-		private Map<String,CLArg> argSet = new Hashtable<String,CLArg>();
+		// The arguments are kept in an unsynchronized map, in the
+		// order they were defined.  None of the accessors below
+		// modify the map, so once an argument set has been filled
+		// in, any number of threads may read from it at once.
+		
+		private Map<String,CLArg> argSet = new LinkedHashMap<String,CLArg>();
+		
+		// An index of which argument owns each flag and switch,
+		// kept up to date by the mutators below, and a list of the
+		// flags and switches that more than one argument asked for.
+		
+		private CLArgumentIndex<String> index = new CLArgumentIndex<String>();
+		private ArrayList<String> duplicates = new ArrayList<String>();
+		
+		// Whether or not switches may be abbreviated (GNU style)
+		
+		private boolean allowsAbbreviations = false;
+		
+		// Whether or not '@file' arguments name response files
+		
+		private boolean allowsResponseFiles = false;
+		
+		// Whether or not desequence() carries on past each error
+		
+		private boolean collectsAllErrors = false;
+		
+		// The collector of parse metrics, or null
+		
+		private CLArgumentMetrics metrics = null;
+		
+		// The compiled form of this set used by desequence(), along
+		// with the node of each compiled option and a scanner that
+		// can be reused.  Discarded whenever the definitions change.
+		
+		private CLArgumentSpec compiled = null;
+		private ArrayList<String> compiledRequiredKeys = null;
+		private CLArg [] compiledNodes = null;
+		private CLArgumentScanner scanner = null;
+		
+		// The usage of each argument, and all of them as one
+		// block of text, rendered when first asked for.  Also
+		// discarded whenever the definitions change.  Both are
+		// published at once, so that readers never see half.
+		
+		private volatile Usage usage = null;
+		private ParcelBinder binder = new ParcelBinder();
 		
 		public class CLArg {
 			
@@ -300,6 +375,9 @@ public class LinearArgDesequencer {
 			
 			// Properties for storing argument specifications
 			
+			// Note that flags and switches should be added using the
+			// mutators in CLArgumentSet, so that they get indexed.
+			
 			public ArrayList<Character> flags = new ArrayList<Character>();
 			public ArrayList<String> switches = new ArrayList<String>();
 			public int parcelCount = 0;
@@ -307,9 +385,33 @@ public class LinearArgDesequencer {
 			public boolean isUnbounded = false;
 			public String displayName = null;
 			
+			// The type of this argument's values.  Parcels of an int, long,
+			// double, boolean or enum argument are converted when they are
+			// found; set with setArgumentValueType() in CLArgumentSet.
+			
+			public Class<?> valueType = String.class;
+			
 			// Properties for storing argument instances from an Args array
 			
-			public ArrayList<String> parcels = new ArrayList<String>();
+			public ArrayList<String> parcels = new CLParcelList();
+			
+			// The non-null parcels, in order, kept in step with parcels
+			// as they are added, so that the relevant parcels can be
+			// found without searching.  If parcels is changed directly,
+			// the cache notices and is rebuilt on the next read.  A read
+			// never changes a cache that another read may be using: it
+			// publishes a new one, so that threads reading a parsed
+			// argument at once each see a whole cache.
+			
+			private volatile Found cache = new Found( kNoParcels, 0, null, -1 );
+			private final List<String> relevantView = new RelevantView();
+			
+			// The converted values of a typed argument, one per non-null
+			// parcel, packed by CLArgumentValues.  Kept in step with
+			// parcels by foundParcel() and desequence().
+			
+			private long [] values = CLArgumentValues.kNoValues;
+			private int valueCount = 0;
 			
 			// Convenience functions
 			
@@ -317,127 +419,220 @@ public class LinearArgDesequencer {
 				
 				// Return the last non-null parcel.
 				
-				for( int row = parcels.size() -1 ; row >= 0 ; row-- )
-					if( parcels.get( row ) != null )
-						return parcels.get( row );
+				Found current = track();
 				
-				return null;
+				return current.count == 0 ? null : current.parcels[ current.count -1 ];
 			}
 			
 			public String [] getRelevantParcels() {
 				
 				// Returns an array of the parcels that are relevant
 				// based on the isArray and parcelCount properties.
+				// The array is a copy; see getRelevantParcelView()
+				// for a version that does not allocate.
+				
+				Found current = track();
+				
+				return Arrays.copyOfRange( current.parcels, relevantStart( current.count ), current.count );
+			}
+			
+			public List<String> getRelevantParcelView() {
+				
+				// Returns a read-only view of the parcels that are relevant
+				// based on the isArray and parcelCount properties.  The view
+				// is live (it follows later changes to this argument), and
+				// is the same object every time, so reading it is free.
+				
+				return relevantView;
+			}
+			
+			private int relevantStart( int count ) {
+				
+				// Returns the position of the first relevant item out of count.
+				
+				return CLArgumentValues.relevantStart( count, isArray, parcelCount );
+			}
+			
+			private void addParcel( String parcel ) {
+				
+				// Adds the given parcel (null marks an occurrence
+				// of this argument), and updates the cache in place.
+				
+				Found current = cache;
+				
+				if( parcels != current.list || ! ( parcels instanceof CLParcelList ) || modifications( parcels ) != current.modifications )
+					current.rebuild( parcels );
 				
-				String [] result;
+				parcels.add( parcel );
 				
-				if( isArray ) {
+				if( parcel != null ) {
 					
-					// Return all the parcels, minus the null slots.
+					if( current.count == current.parcels.length )
+						current.parcels = Arrays.copyOf( current.parcels, Math.max( 4, current.count * 2 ) );
 					
-					result = parcels.toArray( new String [0] );
+					current.parcels[ current.count++ ] = parcel;
 				}
-				else {
-					
-					// Return only the last <parcelCount> non-null slots.
+				
+				current.modifications = modifications( parcels );
+			}
+			
+			private Found track() {
+				
+				// Returns the cache, after making sure that it matches
+				// parcels.  If parcels was changed (or replaced) behind
+				// our back, a new cache is built and published.  A parcels
+				// list that cannot report changes is always rebuilt.
+				
+				Found current = cache;
+				
+				if( parcels == current.list && parcels instanceof CLParcelList && modifications( parcels ) == current.modifications )
+					return current;
+				
+				current = new Found( kNoParcels, 0, null, -1 );
+				current.rebuild( parcels );
+				cache = current;
+				
+				return current;
+			}
+			
+			private class RelevantView extends AbstractList<String> {
+				
+				// The read-only view returned by getRelevantParcelView().
+				
+				public String get( int index ) {
 					
-					result = new String [ parcelCount ];
+					Found current = track();
+					int start = relevantStart( current.count );
 					
-					int put = parcelCount -1;
-					for( int look = parcels.size() -1 ; look >= 0 ; look-- ) {
-						
-						if( parcels.get( look ) != null ) {
-							
-							result[ put ] = parcels.get( look );
-							
-							if( put == 0 ) return result;
-							
-							put--;
-						}
-					}
+					if( index < 0 || start + index >= current.count )
+						throw new IndexOutOfBoundsException( "Index: " + index );
 					
-					for( put = put ; put >= 0 ; put-- )
-						result[ put ] = null;
+					return current.parcels[ start + index ];
 				}
 				
-				return prune( result );
+				public int size() {
+					
+					Found current = track();
+					
+					return current.count - relevantStart( current.count );
+				}
 			}
 			
-			private String [] prune( String [] orig ) {
+			long [] getValueBin() {
 				
-				// Returns a copy of the given array without any null cells.
+				// Returns the values of this argument, of which the first
+				// getValueCount() are in use.  Not a copy; used by
+				// CLArgumentBinder.
 				
-				// First, figure out how many values we are keeping.
+				return values;
+			}
+			
+			int getValueCount() {
 				
-				int count = 0;
+				// Returns the number of values of this argument.
 				
-				for( String s : orig )
-					if( s != null )
-						count++;
+				return valueCount;
+			}
+			
+			private void addValue( long value ) {
 				
-				// Now, copy the valid values into the array.
+				// Adds the given packed value to this argument.
 				
-				String [] result = new String [ count ];
+				values = CLArgumentValues.add( values, valueCount, value );
+				valueCount++;
+			}
+			
+			public String argsUsage() {
 				
-				int row = 0;
+				// Returns a string describing the usage of this argument.
+				
+				StringBuilder result = new StringBuilder();
 				
-				for( String s : orig )
-					if( s != null )
-						result[ row++ ] = s;
+				try {
+					writeUsage( result );
+				}
+				catch( IOException e ) {
+					
+					// A StringBuilder never throws.
+				}
 				
-				return result;
+				return result.toString();
 			}
 			
-			public String argsUsage() {
+			public void writeUsage( Appendable out ) throws IOException {
 				
-				// Returns a dynamically built string
-				// describing the usage of this argument.
+				// Writes the same text as argsUsage() directly
+				// to the given Appendable, piece by piece.
 				
-				StringBuilder result = new StringBuilder();
+				boolean first = true;
 				
 				if( ! flags.isEmpty() ) {
 					
-					result.append( "-" );
+					out.append( '-' );
 					
 					int size = flags.size();
 					for( int row = 0 ; row < size ; row++ )
-						result.append( flags.get( row ) );
+						out.append( flags.get( row ) );
+					
+					first = false;
 				}
-				if( ! switches.isEmpty() ) {
+				
+				int size = switches.size();
+				for( int row = 0 ; row < size ; row++ ) {
 					
-					int size = switches.size();
-					for( int row = 0 ; row < size ; row++ ) {
-						
-						if( result.length() > 0 )
-							result.append( ", " );
-						
-						result.append( "--" + switches.get( row ) );
-					}
+					out.append( first ? "--" : ", --" ).append( switches.get( row ) );
+					first = false;
 				}
 				
-				return result.toString() + " : " + displayName;
+				out.append( " : " ).append( displayName );
 			}
 			
 			public String toString() {
 				
 				// Standard toString.
 				
-				if( parcels.isEmpty() ) return displayName + ": [empty]";
-				
 				StringBuilder result = new StringBuilder();
 				
-				result.append( displayName + ": '" + parcels.get( 0 ) + "'" );
+				try {
+					writeTo( result );
+				}
+				catch( IOException e ) {
+					
+					// A StringBuilder never throws.
+				}
+				
+				return result.toString();
+			}
+			
+			public void writeTo( Appendable out ) throws IOException {
 				
-				int count = parcels.size();
+				// Writes the same text as toString() directly
+				// to the given Appendable, piece by piece.
 				
-				for( int row = 1 ; row < count ; row ++ )
+				out.append( displayName );
+				
+				if( parcels.isEmpty() ) {
 					
-					result.append( ", '" + parcels.get( row ) + "'" );
+					out.append( ": [empty]" );
+					return;
+				}
 				
-				return result.toString();
+				int count = parcels.size();
+				
+				for( int row = 0 ; row < count ; row++ )
+					out.append( row == 0 ? ": '" : ", '" ).append( parcels.get( row ) ).append( '\'' );
 			}
 		}
 		
+		public CLArg get( String id ) {
+			
+			// An accessor that returns the CLArg in argSet at the given
+			// key, or null if there is none.  Unlike makeGet(), this
+			// never modifies the set, so it is safe for concurrent reads.
+			
+			return argSet.get( id );
+		}
+		
 		public CLArg makeGet( String id ) {
 			
 			// A convenience function that creates if necessary
@@ -449,6 +644,7 @@ public class LinearArgDesequencer {
 				
 				node = new CLArg();
 				argSet.put( id, node );
+				definitionsChanged();
 			}
 			
 			return node;
@@ -460,8 +656,12 @@ public class LinearArgDesequencer {
 			
 			CLArg node = makeGet( id );
 			
-			if( node.flags.indexOf( flag ) < 0 )
+			if( node.flags.indexOf( flag ) < 0 ) {
+				
 				node.flags.add( flag );
+				indexFlag( id, flag );
+				definitionsChanged();
+			}
 		}
 		
 		public void addArgumentSwitch( String id, String sswitch ) {
@@ -470,8 +670,152 @@ public class LinearArgDesequencer {
 			
 			CLArg node = makeGet( id );
 			
-			if( node.switches.indexOf( sswitch ) < 0 )
+			if( node.switches.indexOf( sswitch ) < 0 ) {
+				
 				node.switches.add( sswitch );
+				indexSwitch( id, sswitch );
+				definitionsChanged();
+			}
+		}
+		
+		private void indexFlag( String id, char flag ) {
+			
+			// Adds the given flag to the index, and
+			// records it if another argument owns it.
+			
+			String owner = index.putFlag( flag, id );
+			
+			if( owner != null )
+				duplicates.add( "'-" + flag + "' is used by both '" + owner + "' and '" + id + "'" );
+		}
+		
+		private void indexSwitch( String id, String sswitch ) {
+			
+			// Adds the given switch to the index, and
+			// records it if another argument owns it.
+			
+			String owner = index.putSwitch( sswitch, id );
+			
+			if( owner != null )
+				duplicates.add( "'--" + sswitch + "' is used by both '" + owner + "' and '" + id + "'" );
+		}
+		
+		private void rebuildIndex() {
+			
+			// Rebuilds the index (and the list of duplicates)
+			// from scratch, using the arguments currently in
+			// this set.  Used after an argument is removed.
+			
+			index.clear();
+			duplicates.clear();
+			
+			Iterator<String> curKey = argSet.keySet().iterator();
+			
+			while( curKey.hasNext() ) {
+				
+				String key = curKey.next();
+				
+				CLArg node = argSet.get( key );
+				
+				for( int row = 0 ; row < node.flags.size() ; row++ )
+					indexFlag( key, node.flags.get( row ) );
+				
+				for( int row = 0 ; row < node.switches.size() ; row++ )
+					indexSwitch( key, node.switches.get( row ) );
+			}
+		}
+		
+		public void setAllowsAbbreviations( boolean allowsAbbreviations ) {
+			
+			// A mutator method that sets whether or not a switch may be
+			// given as any unambiguous prefix of itself, so that, for
+			// example, '--verb' finds '--verbose'.  An exact match always
+			// wins.  A prefix of more than one argument's switches causes
+			// a kErrorCodeAmbiguousArgument error naming the candidates.
+			
+			this.allowsAbbreviations = allowsAbbreviations;
+			definitionsChanged();
+		}
+		
+		public boolean allowsAbbreviations() {
+			
+			// An accessor that returns whether or not switches may be abbreviated.
+			
+			return allowsAbbreviations;
+		}
+		
+		public void setAllowsResponseFiles( boolean allowsResponseFiles ) {
+			
+			// A mutator method that sets whether or not an argument of
+			// the form '@file' is replaced by the arguments stored in that
+			// file, separated by whitespace (quotes may group whitespace).
+			// Response files may name other response files, but not
+			// themselves.  '@@text' stands for the plain argument '@text'.
+			
+			this.allowsResponseFiles = allowsResponseFiles;
+			definitionsChanged();
+		}
+		
+		public boolean allowsResponseFiles() {
+			
+			// An accessor that returns whether or not
+			// '@file' arguments name response files.
+			
+			return allowsResponseFiles;
+		}
+		
+		public void setMetrics( CLArgumentMetrics metrics ) {
+			
+			// A mutator method that sets the collector that records
+			// statistics about each parse (see CLArgumentMetrics).  One
+			// collector is usually shared by every desequencer in a
+			// program.  null (the default) turns metrics off, which
+			// costs nothing.
+			
+			this.metrics = metrics;
+			definitionsChanged();
+		}
+		
+		public CLArgumentMetrics getMetrics() {
+			
+			// An accessor that returns the collector of parse metrics, or null.
+			
+			return metrics;
+		}
+		
+		public void setCollectsAllErrors( boolean collectsAllErrors ) {
+			
+			// A mutator method that sets whether or not parsing carries on
+			// past each error, so that every problem with the arguments is
+			// found in a single pass (see sequenceErrors()).  The offending
+			// token is skipped, and the parse goes on with the next one.
+			// Does not change the definitions, so nothing is recompiled.
+			
+			this.collectsAllErrors = collectsAllErrors;
+			scanner = null;
+		}
+		
+		public boolean collectsAllErrors() {
+			
+			// An accessor that returns whether or not parsing carries on past each error.
+			
+			return collectsAllErrors;
+		}
+		
+		public boolean hasDuplicateRegistrations() {
+			
+			// Returns whether or not a flag or switch has
+			// been registered by more than one argument.
+			
+			return ! duplicates.isEmpty();
+		}
+		
+		public String [] getDuplicateRegistrations() {
+			
+			// Returns a description of each flag or switch
+			// that has been registered by more than one argument.
+			
+			return duplicates.toArray( new String [0] );
 		}
 		
 		public void setArgumentParcelCount( String id, int parcelCount ) {
@@ -479,6 +823,7 @@ public class LinearArgDesequencer {
 			// A mutator method that adds the given information into the given argument.
 			
 			makeGet( id ).parcelCount = parcelCount;
+			definitionsChanged();
 		}
 		
 		public void setArgumentIsArray( String id, boolean isArray ) {
@@ -486,6 +831,7 @@ public class LinearArgDesequencer {
 			// A mutator method that adds the given information into the given argument.
 			
 			makeGet( id ).isArray = isArray;
+			definitionsChanged();
 		}
 		
 		public void setArgumentIsUnbounded( String id, boolean isUnbounded ) {
@@ -493,6 +839,24 @@ public class LinearArgDesequencer {
 			// A mutator method that adds the given information into the given argument.
 			
 			makeGet( id ).isUnbounded = isUnbounded;
+			definitionsChanged();
+		}
+		
+		public void setArgumentValueType( String id, Class<?> valueType ) {
+			
+			// A mutator method that sets the type of the given argument's
+			// values: int.class, long.class, double.class, boolean.class,
+			// an enum class, or String.class (the default, which is not
+			// converted).  Typed parcels are converted once, when they are
+			// found; a parcel that cannot be converted causes a
+			// kErrorCodeInvalidValue error.  Booleans accept true/false,
+			// yes/no, on/off and 1/0, and enums accept their constant
+			// names in any case.
+			
+			CLArgumentValues.checkSupported( valueType );
+			
+			makeGet( id ).valueType = valueType;
+			definitionsChanged();
 		}
 		
 		public void setArgumentDisplayName( String id, String displayName ) {
@@ -500,6 +864,7 @@ public class LinearArgDesequencer {
 			// A mutator method that adds the given information into the given argument.
 			
 			makeGet( id ).displayName = displayName;
+			definitionsChanged();
 		}
 		
 		public void addArgumentInfo( String id, char flag, String sswitch, int parcelCount, boolean isArray, boolean isUnbounded, String displayName ) {
@@ -514,6 +879,15 @@ public class LinearArgDesequencer {
 			setArgumentDisplayName( id, displayName );
 		}
 		
+		public void addArgumentInfo( String id, char flag, String sswitch, int parcelCount, boolean isArray, boolean isUnbounded, String displayName, Class<?> valueType ) {
+			
+			// A mutator function that adds a bunch of fields to the given
+			// argument at once, including the type of its values.
+			
+			addArgumentInfo( id, flag, sswitch, parcelCount, isArray, isUnbounded, displayName );
+			setArgumentValueType( id, valueType );
+		}
+		
 		public void addArgumentInfo( String id, char flag, String sswitch, int parcelCount, boolean isArray, String displayName ) {
 			
 			// A mutator function that adds a bunch of fields to the given argument at once.
@@ -549,7 +923,9 @@ public class LinearArgDesequencer {
 			
 			// An accessor function that returns the most relevant parcel in the given key.
 			
-			return makeGet( id ).getMostRelevantParcel();
+			CLArg node = argSet.get( id );
+			
+			return node == null ? null : node.getMostRelevantParcel();
 		}
 		
 		public String [] getParcelArrayFromKey( String id ) {
@@ -557,7 +933,130 @@ public class LinearArgDesequencer {
 			// An accessor function that returns an array of
 			// the most relevant parcels in the given argument.
 			
-			return makeGet( id ).getRelevantParcels();
+			CLArg node = argSet.get( id );
+			
+			return node == null ? new String [0] : node.getRelevantParcels();
+		}
+		
+		public List<String> getParcelListFromKey( String id ) {
+			
+			// An accessor function that returns a read-only view of the
+			// most relevant parcels in the given argument.  Unlike
+			// getParcelArrayFromKey(), this does not allocate.
+			
+			CLArg node = argSet.get( id );
+			
+			return node == null ? Collections.<String>emptyList() : node.getRelevantParcelView();
+		}
+		
+		public int getIntFromKey( String id, int defaultValue ) {
+			
+			// An accessor function that returns the most relevant value of
+			// the given int argument, or the given default if there is none.
+			
+			CLArg node = typedNode( id, int.class );
+			
+			return node == null || node.valueCount == 0 ? defaultValue : (int) node.values[ node.valueCount -1 ];
+		}
+		
+		public long getLongFromKey( String id, long defaultValue ) {
+			
+			// An accessor function that returns the most relevant value of
+			// the given long argument, or the given default if there is none.
+			
+			CLArg node = typedNode( id, long.class );
+			
+			return node == null || node.valueCount == 0 ? defaultValue : node.values[ node.valueCount -1 ];
+		}
+		
+		public double getDoubleFromKey( String id, double defaultValue ) {
+			
+			// An accessor function that returns the most relevant value of
+			// the given double argument, or the given default if there is none.
+			
+			CLArg node = typedNode( id, double.class );
+			
+			return node == null || node.valueCount == 0 ? defaultValue : Double.longBitsToDouble( node.values[ node.valueCount -1 ] );
+		}
+		
+		public boolean getBooleanFromKey( String id, boolean defaultValue ) {
+			
+			// An accessor function that returns the most relevant value of
+			// the given boolean argument, or the given default if there is none.
+			
+			CLArg node = typedNode( id, boolean.class );
+			
+			return node == null || node.valueCount == 0 ? defaultValue : node.values[ node.valueCount -1 ] != 0;
+		}
+		
+		public <E extends Enum<E>> E getEnumFromKey( String id, Class<E> type ) {
+			
+			// An accessor function that returns the most relevant value
+			// of the given enum argument, or null if there is none.
+			
+			CLArg node = typedNode( id, type );
+			
+			return node == null || node.valueCount == 0 ? null : type.getEnumConstants()[ (int) node.values[ node.valueCount -1 ] ];
+		}
+		
+		public int [] getIntArrayFromKey( String id ) {
+			
+			// An accessor function that returns the relevant values of the given int argument.
+			
+			CLArg node = typedNode( id, int.class );
+			
+			return node == null ? new int [0] : CLArgumentValues.toInts( node.values, node.relevantStart( node.valueCount ), node.valueCount );
+		}
+		
+		public long [] getLongArrayFromKey( String id ) {
+			
+			// An accessor function that returns the relevant values of the given long argument.
+			
+			CLArg node = typedNode( id, long.class );
+			
+			return node == null ? new long [0] : CLArgumentValues.toLongs( node.values, node.relevantStart( node.valueCount ), node.valueCount );
+		}
+		
+		public double [] getDoubleArrayFromKey( String id ) {
+			
+			// An accessor function that returns the relevant values of the given double argument.
+			
+			CLArg node = typedNode( id, double.class );
+			
+			return node == null ? new double [0] : CLArgumentValues.toDoubles( node.values, node.relevantStart( node.valueCount ), node.valueCount );
+		}
+		
+		public boolean [] getBooleanArrayFromKey( String id ) {
+			
+			// An accessor function that returns the relevant values of the given boolean argument.
+			
+			CLArg node = typedNode( id, boolean.class );
+			
+			return node == null ? new boolean [0] : CLArgumentValues.toBooleans( node.values, node.relevantStart( node.valueCount ), node.valueCount );
+		}
+		
+		public <E extends Enum<E>> E [] getEnumArrayFromKey( String id, Class<E> type ) {
+			
+			// An accessor function that returns the relevant values of the given enum argument.
+			
+			CLArg node = typedNode( id, type );
+			
+			if( node == null ) return CLArgumentValues.toEnums( type, null, CLArgumentValues.kNoValues, 0, 0 );
+			
+			return CLArgumentValues.toEnums( type, type.getEnumConstants(), node.values, node.relevantStart( node.valueCount ), node.valueCount );
+		}
+		
+		private CLArg typedNode( String id, Class<?> type ) {
+			
+			// Returns the given argument, or null if there is none, after
+			// making sure that it was declared with the given type.
+			
+			CLArg node = argSet.get( id );
+			
+			if( node != null )
+				CLArgumentValues.checkType( id, node.valueType, type );
+			
+			return node;
 		}
 		
 		public int getParcelCountForKey( String id ) {
@@ -574,20 +1073,22 @@ public class LinearArgDesequencer {
 			// found parcels, optionally including the null
 			// ones or not, that are in the given argument.
 			
-			if( prune )
-				
-				return getParcelArrayFromKey( id ).length;
+			CLArg node = argSet.get( id );
 			
-			else
-				
-				return makeGet( id ).parcels.size();
+			if( node == null ) return 0;
+			
+			return prune ? node.getRelevantParcelView().size() : node.parcels.size();
 		}
 		
 		public void removeArgument( String id ) {
 			
 			// Removes the given argument from this set.
 			
-			argSet.remove( id );
+			if( argSet.remove( id ) != null ) {
+				
+				rebuildIndex();
+				definitionsChanged();
+			}
 		}
 		
 		public void clearArgumentSet() {
@@ -595,47 +1096,73 @@ public class LinearArgDesequencer {
 			// Removes all arguments from this set.
 			
 			argSet.clear();
+			index.clear();
+			duplicates.clear();
+			definitionsChanged();
 		}
 		
 		public String [] argsUsage() {
 			
-			// Generates and returns a String array containing
-			// the usage of each argument in this set.
+			// Returns a String array containing the usage of each
+			// argument in this set, in the order they were defined.
 			
-			CLArg [] tmp = argSet.values().toArray( new CLArg [0] );
-			int size = tmp.length;
-			String [] result = new String [ size ];
+			return renderUsage().lines.clone();
+		}
+		
+		public void writeUsage( Appendable out ) throws IOException {
 			
-			for( int row = 0 ; row < size ; row++ )
-				
-				result[ row ] = tmp[ row ].argsUsage();
+			// Writes the usage of each argument in this set to the
+			// given Appendable, each followed by a newline.  The text
+			// is rendered once, and kept until the definitions change.
 			
-			return result;
+			out.append( renderUsage().text );
 		}
 		
-		public String getArgKeyForFlag( char flag ) {
+		private Usage renderUsage() {
 			
-			// Returns the ID of an argument that is
-			// set to be triggered by the given flag.
+			// Returns the usage of each argument, rendering
+			// it unless it has been since the last change.
 			
-			// If you have duplicate flags, then this
-			// function won't crash... but only one of
-			// the arguments will receive that parcel.
+			Usage current = usage;
 			
-			Iterator<String> curKey = argSet.keySet().iterator();
+			if( current != null ) return current;
 			
-			while( curKey.hasNext() ) {
+			String [] lines = new String [ argSet.size() ];
+			StringBuilder text = new StringBuilder();
+			
+			int row = 0;
+			for( CLArg node : argSet.values() ) {
 				
-				String key = curKey.next();
+				int start = text.length();
 				
-				CLArg node = argSet.get( key );
+				try {
+					node.writeUsage( text );
+				}
+				catch( IOException e ) {
+					
+					// A StringBuilder never throws.
+				}
 				
-				if( node != null )
-					if( node.flags.contains( flag ) )
-						return key;
+				lines[ row++ ] = text.substring( start );
+				text.append( '\n' );
 			}
 			
-			return null;
+			current = new Usage( lines, text.toString() );
+			usage = current;
+			
+			return current;
+		}
+		
+		public String getArgKeyForFlag( char flag ) {
+			
+			// Returns the ID of an argument that is
+			// set to be triggered by the given flag.
+			
+			// If you have duplicate flags, then this function
+			// returns the argument that registered the flag
+			// first, and hasDuplicateRegistrations() is true.
+			
+			return index.getFlag( flag );
 		}
 		
 		public String getArgKeyForSwitch( String sswitch ) {
@@ -643,24 +1170,27 @@ public class LinearArgDesequencer {
 			// Returns the ID of an argument that is
 			// set to be triggered by the given switch.
 			
-			// If you have duplicate switches, then this
-			// function won't crash... but only one of
-			// the arguments will receive that parcel.
+			// If you have duplicate switches, then this function
+			// returns the argument that registered the switch
+			// first, and hasDuplicateRegistrations() is true.
 			
-			Iterator<String> curKey = argSet.keySet().iterator();
+			// If abbreviations are allowed, then an unambiguous
+			// prefix of a switch finds that switch's argument.
 			
-			while( curKey.hasNext() ) {
-				
-				String key = curKey.next();
-				
-				CLArg node = argSet.get( key );
-				
-				if( node != null )
-					if( node.switches.contains( sswitch ) )
-						return key;
-			}
+			if( allowsAbbreviations )
+				return index.getSwitchAbbreviation( sswitch, 0 );
 			
-			return null;
+			return index.getSwitch( sswitch );
+		}
+		
+		public String [] getSwitchesWithPrefix( String prefix ) {
+			
+			// Returns every switch that begins with the given
+			// prefix, in alphabetical order.  Only switches that
+			// begin with the prefix are visited, so this is fast
+			// even in very large argument sets.
+			
+			return index.getSwitchesWithPrefix( prefix, 0 );
 		}
 		
 		public void addRequiredParcelsToQueue( Queue<String> parcelQueue, String key ) {
@@ -669,7 +1199,9 @@ public class LinearArgDesequencer {
 			// argument to the given queue.  Used when you have
 			// found an argument in an argument array.
 			
-			CLArg node = makeGet( key );
+			CLArg node = argSet.get( key );
+			
+			if( node == null ) return;
 			
 			for( int count = node.parcelCount ; count > 0 ; count-- )
 				
@@ -680,35 +1212,225 @@ public class LinearArgDesequencer {
 			
 			// Adds the given parcel to the given argument.  Used
 			// when you have found a parcel and are expecting it
-			// to match up to an argument.
+			// to match up to an argument.  Returns false (and adds
+			// nothing) if the argument is typed, and the parcel
+			// cannot be converted.
 			
-			makeGet( key ).parcels.add( parcel );
+			CLArg node = makeGet( key );
+			
+			if( parcel != null && CLArgumentValues.isTyped( node.valueType ) ) {
+				
+				try {
+					node.addValue( CLArgumentValues.parse( node.valueType, parcel ) );
+				}
+				catch( IllegalArgumentException e ) {
+					
+					return false;
+				}
+			}
+			
+			node.addParcel( parcel );
 			
 			return true;
 		}
 		
-		public String toString() {
+		private void definitionsChanged() {
 			
-			// Standard toString.
+			// Discards everything derived from the definitions.
 			
-			Object [] tmp = argSet.values().toArray();
-			int count = tmp.length;
+			compiled = null;
+			compiledRequiredKeys = null;
+			compiledNodes = null;
+			scanner = null;
+			usage = null;
+		}
+		
+		CLArgumentSpec getSpec( List<String> requiredKeys ) {
 			
-			if( count == 0 ) return "";
+			// Returns the spec that desequence() parses with for the
+			// given required keys, compiling it only if the definitions
+			// (or the keys) have changed since it was last compiled.
 			
-			StringBuilder result = new StringBuilder();
+			// Note that changes made directly to the public fields of a CLArg
+			// (rather than through the mutators above) are not noticed once
+			// this set has been compiled.
+			
+			if( compiled == null || ! requiredKeys.equals( compiledRequiredKeys ) ) {
+				
+				compiled = compile( requiredKeys );
+				compiledRequiredKeys = new ArrayList<String>( requiredKeys );
+				compiledNodes = new CLArg [ compiled.getOptionCount() ];
+				scanner = null;
+				
+				for( int option = 0 ; option < compiledNodes.length ; option++ )
+					compiledNodes[ option ] = argSet.get( compiled.getKey( option ) );
+			}
+			
+			return compiled;
+		}
+		
+		CLArgumentSpec getCompiledSpec() {
+			
+			// Returns the spec last returned by getSpec(), or null if
+			// the definitions have changed since.  Never compiles.
+			
+			return compiled;
+		}
+		
+		CLArg getCompiledNode( int option ) {
+			
+			// Returns the argument behind the given option of the
+			// spec last returned by getSpec().
+			
+			return compiledNodes[ option ];
+		}
+		
+		public CLArgumentError desequence( String [] args, List<String> requiredKeys ) {
+			
+			// Scans the given argument array, and adds the parcels found to
+			// the arguments in this set.  Returns the error found, or null.
+			
+			getSpec( requiredKeys );
+			
+			if( scanner == null )
+				scanner = new CLArgumentScanner( compiled, true, collectsAllErrors );
+			
+			return scanner.scan( args, binder );
+		}
+		
+		CLArgumentError [] getErrors() {
 			
-			result.append( tmp[ 0 ] );
+			// Returns every error found by the last desequence().
 			
-			for( int row = 1 ; row < count ; row++ )
+			return scanner == null ? CLArgumentError.kNoErrors : scanner.getErrors();
+		}
+		
+		private class ParcelBinder implements CLArgumentScanner.Sink {
+			
+			// Stores the options and parcels found by the
+			// scanner in the nodes of the compiled arguments.
+			
+			public void optionFound( int option ) {
 				
-				result.append( "\n" + tmp[ row ] );
+				compiledNodes[ option ].addParcel( null );
+			}
 			
-			result.append( "\nSequence Error: " + _parseError );
-			result.append( "\n    Error Code: " + _parseErrorCode );
-			result.append( "\n Error Message: " + _parseErrorMsg );
+			public void parcelFound( int option, String parcel, long value ) {
+				
+				CLArg node = compiledNodes[ option ];
+				
+				node.addParcel( parcel );
+				
+				if( compiled.valueTypes[ option ] != null )
+					node.addValue( value );
+			}
+			
+			public void unexpectedToken( int tokenIndex, String token ) {
+				
+				// Errors are kept by desequenceArgs(), not here.
+			}
+			
+			public void missingParcel( int option ) {
+				
+				// Errors are kept by desequenceArgs(), not here.
+			}
+		}
+		
+		public CLArgumentSpec compile( List<String> requiredKeys ) {
+			
+			// Returns an immutable copy of the arguments in this set.
+			// The given required keys have their parcels expected
+			// before any others, as in desequenceArgs().
+			
+			int count = argSet.size();
+			
+			String [] keys = new String [ count ];
+			char [][] flags = new char [ count ][];
+			String [][] switches = new String [ count ][];
+			int [] parcelCounts = new int [ count ];
+			boolean [] arrays = new boolean [ count ];
+			boolean [] unbounded = new boolean [ count ];
+			String [] displayNames = new String [ count ];
+			Class<?> [] valueTypes = new Class<?> [ count ];
+			
+			Iterator<String> curKey = argSet.keySet().iterator();
+			
+			for( int option = 0 ; option < count ; option++ ) {
+				
+				String key = curKey.next();
+				CLArg node = argSet.get( key );
+				
+				keys[ option ] = key;
+				
+				flags[ option ] = new char [ node.flags.size() ];
+				for( int row = 0 ; row < flags[ option ].length ; row++ )
+					flags[ option ][ row ] = node.flags.get( row );
+				
+				switches[ option ] = node.switches.toArray( new String [0] );
+				parcelCounts[ option ] = node.parcelCount;
+				arrays[ option ] = node.isArray;
+				unbounded[ option ] = node.isUnbounded;
+				displayNames[ option ] = node.displayName;
+				valueTypes[ option ] = CLArgumentValues.isTyped( node.valueType ) ? node.valueType : null;
+			}
+			
+			// Required keys that have no definition expect no
+			// parcels, so they can be left out of the spec.
+			
+			ArrayList<Integer> required = new ArrayList<Integer>();
+			
+			for( int row = 0 ; row < requiredKeys.size() ; row++ )
+				for( int option = 0 ; option < count ; option++ )
+					if( keys[ option ].equals( requiredKeys.get( row ) ) )
+						required.add( option );
+			
+			int [] requiredOptions = new int [ required.size() ];
+			for( int row = 0 ; row < requiredOptions.length ; row++ )
+				requiredOptions[ row ] = required.get( row );
+			
+			String duplicate = duplicates.isEmpty() ? null : duplicates.get( 0 );
+			
+			return new CLArgumentSpec( keys, flags, switches, parcelCounts, arrays, unbounded, displayNames, valueTypes, requiredOptions, duplicate, allowsAbbreviations, allowsResponseFiles, metrics );
+		}
+		
+		public String toString() {
+			
+			// Standard toString.
+			
+			StringBuilder result = new StringBuilder();
+			
+			try {
+				writeTo( result );
+			}
+			catch( IOException e ) {
+				
+				// A StringBuilder never throws.
+			}
 			
 			return result.toString();
 		}
+		
+		public void writeTo( Appendable out ) throws IOException {
+			
+			// Writes the same text as toString() directly to the given
+			// Appendable: each argument and its parcels, in the order
+			// they were defined, followed by the outcome of the parse.
+			
+			if( argSet.isEmpty() ) return;
+			
+			boolean first = true;
+			
+			for( CLArg node : argSet.values() ) {
+				
+				if( ! first ) out.append( '\n' );
+				
+				node.writeTo( out );
+				first = false;
+			}
+			
+			out.append( "\nSequence Error: " ).append( String.valueOf( _parseError ) );
+			out.append( "\n    Error Code: " ).append( String.valueOf( _parseErrorCode ) );
+			out.append( "\n Error Message: " ).append( sequenceErrorMsg() );
+		}
 	}
 }
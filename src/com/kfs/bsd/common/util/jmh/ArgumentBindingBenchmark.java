@@ -0,0 +1,148 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class ArgumentBindingBenchmark
+ *
+ *  JMH benchmarks of copying parse results into an options
+ *  object with CLArgumentBinder, against reflection that looks
+ *  up its fields on every call, and reflection with the fields
+ *  looked up in advance.
+ *
+ *  Run with 'make bench', which also reports allocation rates.
+ */
+
+package com.kfs.bsd.common.util.jmh;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.kfs.bsd.common.util.CLArgumentBinder;
+import com.kfs.bsd.common.util.CLArgumentResult;
+import com.kfs.bsd.common.util.CLArgumentSpec;
+import com.kfs.bsd.common.util.LinearArgDesequencer;
+
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ArgumentBindingBenchmark {
+	
+	// The options object, and the arguments bound to it
+	
+	public static class Settings {
+		
+		public int verbose;
+		public int port;
+		public String host;
+		public double timeout;
+		public String [] files;
+	}
+	
+	public static class Desequencer extends LinearArgDesequencer {
+		
+		protected void populateArgSet() {
+			
+			// The same arguments as Settings.
+			
+			super.populateArgSet();
+			
+			argSet.addArgumentInfo( "port", 'p', "port", 1, false, false, "Port", int.class );
+			argSet.addArgumentInfo( "host", 'H', "host", 1, false, "Host" );
+			argSet.addArgumentInfo( "timeout", 't', "timeout", 1, false, false, "Timeout", double.class );
+			argSet.addArgumentInfo( "files", 'f', "file", 1, true, true, "Files" );
+		}
+	}
+	
+	protected static final String [] kKeys = { "Verbose", "port", "host", "timeout", "files" };
+	protected static final String [] kFields = { "verbose", "port", "host", "timeout", "files" };
+	
+	protected CLArgumentResult result;
+	protected CLArgumentBinder<Settings> binder;
+	protected Field [] fields;
+	
+	@Setup( Level.Trial )
+	public void setUp() throws Exception {
+		
+		// Parses once; the benchmarks only bind.
+		
+		CLArgumentSpec spec = new Desequencer().compileArgSpec();
+		
+		result = spec.parse( new String [] { "-vv", "--host", "example.com", "-p", "8080", "--timeout", "2.5", "-f", "x", "y", "z" } );
+		binder = CLArgumentBinder.forClass( Settings.class );
+		fields = new Field [ kFields.length ];
+		
+		for( int row = 0 ; row < kFields.length ; row++ )
+			fields[ row ] = Settings.class.getField( kFields[ row ] );
+	}
+	
+	@Benchmark
+	public Settings binder() {
+		
+		return binder.bind( result, new Settings() );
+	}
+	
+	@Benchmark
+	public Settings reflection() throws Exception {
+		
+		// The usual glue, which looks up each field as it goes.
+		
+		Settings settings = new Settings();
+		
+		for( int row = 0 ; row < kKeys.length ; row++ )
+			store( Settings.class.getField( kFields[ row ] ), settings, kKeys[ row ] );
+		
+		return settings;
+	}
+	
+	@Benchmark
+	public Settings cachedReflection() throws Exception {
+		
+		// The same glue, with the fields looked up in advance.
+		
+		Settings settings = new Settings();
+		
+		for( int row = 0 ; row < kKeys.length ; row++ )
+			store( fields[ row ], settings, kKeys[ row ] );
+		
+		return settings;
+	}
+	
+	private void store( Field field, Settings settings, String key ) throws Exception {
+		
+		// Converts and stores one argument, as a reflective binder would.
+		
+		int count = result.getParcelCountForKey( key );
+		
+		if( count == 0 ) return;
+		
+		String last = result.getParcelFromKey( key );
+		Class<?> type = field.getType();
+		
+		if( type == int.class )
+			field.set( settings, last == null ? count : Integer.parseInt( last ) );
+		
+		else if( type == double.class )
+			field.set( settings, Double.parseDouble( last ) );
+		
+		else if( type == String [].class )
+			field.set( settings, result.getParcelArrayFromKey( key ) );
+		
+		else
+			field.set( settings, last );
+	}
+}
@@ -0,0 +1,168 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class ArgumentGenerator
+ *
+ *  Makes up an argument set of any size, and argument arrays
+ *  of any length that parse cleanly against it, for use by the
+ *  benchmarks.  The arrays mix clusters of flags, switches,
+ *  options with bounded parcels, and a trailing unbounded
+ *  option that collects a long run of file names.
+ *
+ *  Every argument has a switch ("opt-<n>").  The first few
+ *  arguments also have a flag, so that flag lookups are
+ *  exercised, and the last argument is always an unbounded
+ *  array, so that any number of file names can follow it.
+ */
+
+package com.kfs.bsd.common.util.jmh;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+public final class ArgumentGenerator {
+	
+	// The characters available for flags
+	
+	protected static final String kFlagCharacters = "abcdefgijklmnopqrstuwxyzABCDEFGIJKLMNOPQRSTUWXYZ0123456789";
+	
+	// The argument definitions, indexed by option number
+	
+	public final String [] keys;
+	public final char [] flags;
+	public final String [] switches;
+	public final int [] parcelCounts;
+	public final boolean [] arrays;
+	public final boolean [] unbounded;
+	
+	// The constructor
+	
+	public ArgumentGenerator( int optionCount ) {
+		
+		// Makes up definitions for the given number of arguments (at
+		// least 2).  Options cycle through 0, 1 and 2 parcels, and
+		// every fifth bounded option keeps all of its parcels.
+		
+		super();
+		
+		if( optionCount < 2 )
+			throw new IllegalArgumentException( "At least 2 options are needed; got " + optionCount );
+		
+		keys = new String [ optionCount ];
+		flags = new char [ optionCount ];
+		switches = new String [ optionCount ];
+		parcelCounts = new int [ optionCount ];
+		arrays = new boolean [ optionCount ];
+		unbounded = new boolean [ optionCount ];
+		
+		for( int option = 0 ; option < optionCount ; option++ ) {
+			
+			keys[ option ] = "opt" + option;
+			flags[ option ] = option < kFlagCharacters.length() ? kFlagCharacters.charAt( option ) : 0;
+			switches[ option ] = "opt-" + option;
+			parcelCounts[ option ] = option % 3;
+			arrays[ option ] = option % 5 == 4;
+		}
+		
+		// The last option collects file names.
+		
+		int last = optionCount -1;
+		
+		parcelCounts[ last ] = 1;
+		arrays[ last ] = true;
+		unbounded[ last ] = true;
+	}
+	
+	// Argument array functions
+	
+	public String [] makeArgs( int tokenCount, Set<String> touchedKeys ) {
+		
+		// Returns an argument array of exactly the given length that
+		// parses without error, and adds the keys of the arguments it
+		// uses to touchedKeys.  About half of the array is flags,
+		// switches and bounded parcels; the rest is file names for
+		// the trailing unbounded option.
+		
+		ArrayList<String> result = new ArrayList<String>( tokenCount );
+		int last = keys.length -1;
+		int next = 0;
+		int step = 0;
+		
+		while( result.size() < tokenCount / 2 && tokenCount - result.size() > 4 ) {
+			
+			int option = next++ % last;
+			
+			switch( step++ % 3 ) {
+				
+				case 0:
+					
+					// A cluster of up to three flags with no parcels.
+					
+					StringBuilder cluster = new StringBuilder( "-" );
+					
+					for( int look = 0 ; look < last && cluster.length() < 4 ; look++ ) {
+						
+						if( parcelCounts[ look ] == 0 && flags[ look ] != 0 ) {
+							
+							cluster.append( flags[ look ] );
+							touchedKeys.add( keys[ look ] );
+						}
+					}
+					
+					if( cluster.length() > 1 )
+						result.add( cluster.toString() );
+					
+					break;
+				
+				case 1:
+					
+					// A switch, with its parcels.
+					
+					result.add( "--" + switches[ option ] );
+					addParcels( result, option, touchedKeys );
+					break;
+				
+				default:
+					
+					// A flag (or a switch if there is no flag), with its parcels.
+					
+					result.add( flags[ option ] != 0 ? "-" + flags[ option ] : "--" + switches[ option ] );
+					addParcels( result, option, touchedKeys );
+					break;
+			}
+		}
+		
+		// Whatever room is left goes to the unbounded option.
+		
+		if( result.size() < tokenCount ) {
+			
+			result.add( "--" + switches[ last ] );
+			touchedKeys.add( keys[ last ] );
+			
+			for( int row = 0 ; result.size() < tokenCount ; row++ )
+				result.add( "file" + row + ".txt" );
+		}
+		
+		return result.toArray( new String [0] );
+	}
+	
+	public String [] makeArgs( int tokenCount ) {
+		
+		// Same as makeArgs( tokenCount, touchedKeys ), when
+		// the keys used are not of interest.
+		
+		return makeArgs( tokenCount, new LinkedHashSet<String>() );
+	}
+	
+	private void addParcels( ArrayList<String> result, int option, Set<String> touchedKeys ) {
+		
+		// Adds the parcels expected by the given option.
+		
+		touchedKeys.add( keys[ option ] );
+		
+		for( int row = 0 ; row < parcelCounts[ option ] ; row++ )
+			result.add( "value" + option + "." + row );
+	}
+}
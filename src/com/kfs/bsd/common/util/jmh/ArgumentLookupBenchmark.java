@@ -0,0 +1,111 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class ArgumentLookupBenchmark
+ *
+ *  JMH benchmarks of the LinearArgDesequencer functions that
+ *  depend only on the argument definitions: flag and switch
+ *  lookups, the usage text, and suggestions for misspelled
+ *  switches, across argument sets of 2 to 10,000 options.
+ *
+ *  Run with 'make bench', which also reports allocation rates.
+ */
+
+package com.kfs.bsd.common.util.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.kfs.bsd.common.util.CLArgumentSpec;
+
+@State( Scope.Thread )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ArgumentLookupBenchmark {
+	
+	@Param( { "2", "100", "10000" } )
+	public int options;
+	
+	protected BenchDesequencer desequencer;
+	protected char [] flags;
+	protected String [] switches;
+	protected CLArgumentSpec spec;
+	protected String [] misspellings;
+	protected int cursor = 0;
+	
+	@Setup( Level.Trial )
+	public void setUp() {
+		
+		// Builds the argument set, and the flags and switches to look
+		// up.  One in four lookups is for something that does not exist.
+		
+		ArgumentGenerator generator = new ArgumentGenerator( options );
+		
+		desequencer = new BenchDesequencer( generator );
+		
+		flags = new char [ 64 ];
+		switches = new String [ 1024 ];
+		
+		for( int row = 0 ; row < flags.length ; row++ )
+			flags[ row ] = row % 4 == 3 ? '~' : generator.flags[ row % Math.min( options, ArgumentGenerator.kFlagCharacters.length() ) ];
+		
+		for( int row = 0 ; row < switches.length ; row++ )
+			switches[ row ] = row % 4 == 3 ? "no-such-switch" : generator.switches[ ( row * 7919 ) % options ];
+		
+		// Each misspelling has one letter of a real switch changed,
+		// and the spec builds its suggestion index up front.
+		
+		spec = desequencer.compileArgSpec();
+		misspellings = new String [ 1024 ];
+		
+		for( int row = 0 ; row < misspellings.length ; row++ ) {
+			
+			char [] word = generator.switches[ ( row * 7919 ) % options ].toCharArray();
+			
+			word[ row % word.length ] = 'x';
+			misspellings[ row ] = "--" + new String( word );
+		}
+		
+		spec.getSuggestions( misspellings[ 0 ] );
+	}
+	
+	@Benchmark
+	public String getArgKeyForFlag() {
+		
+		return desequencer.getArgKeyForFlag( flags[ cursor++ & ( flags.length -1 ) ] );
+	}
+	
+	@Benchmark
+	public String getArgKeyForSwitch() {
+		
+		return desequencer.getArgKeyForSwitch( switches[ cursor++ & ( switches.length -1 ) ] );
+	}
+	
+	@Benchmark
+	public String [] getSuggestions() {
+		
+		return spec.getSuggestions( misspellings[ cursor++ & ( misspellings.length -1 ) ] );
+	}
+	
+	@Benchmark
+	public String [] argsUsage() {
+		
+		return desequencer.argsUsage();
+	}
+}
@@ -0,0 +1,112 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class ArgumentParseBenchmark
+ *
+ *  JMH benchmarks of parsing with LinearArgDesequencer, and of
+ *  reading the results, across argument sets of 2 to 10,000
+ *  options and argument arrays of 0 to 1,000,000 tokens.  The
+ *  same arguments are also parsed by a compiled CLArgumentSpec,
+ *  into both kinds of result it can build; compare their
+ *  allocation rates for the memory each result holds on to.
+ *
+ *  Run with 'make bench', which also reports allocation rates.
+ */
+
+package com.kfs.bsd.common.util.jmh;
+
+import java.util.LinkedHashSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.kfs.bsd.common.util.CLArgumentResult;
+import com.kfs.bsd.common.util.CLArgumentSpec;
+import com.kfs.bsd.common.util.CLPackedResult;
+
+@State( Scope.Thread )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ArgumentParseBenchmark {
+	
+	@Param( { "2", "100", "10000" } )
+	public int options;
+	
+	@Param( { "0", "100", "10000", "1000000" } )
+	public int tokens;
+	
+	protected BenchDesequencer desequencer;
+	protected CLArgumentSpec spec;
+	protected String [] args;
+	protected String [] touchedKeys;
+	protected int cursor = 0;
+	
+	@Setup( Level.Trial )
+	public void setUp() {
+		
+		// Builds the argument set and the argument array, and
+		// parses once so that the read benchmarks have results.
+		
+		ArgumentGenerator generator = new ArgumentGenerator( options );
+		LinkedHashSet<String> touched = new LinkedHashSet<String>();
+		
+		args = generator.makeArgs( tokens, touched );
+		touchedKeys = touched.isEmpty() ? generator.keys : touched.toArray( new String [0] );
+		
+		desequencer = new BenchDesequencer( generator );
+		desequencer.setTouchedKeys( touched );
+		desequencer.parse( args );
+		
+		if( desequencer.sequenceError() )
+			throw new IllegalStateException( "The generated arguments did not parse: " + desequencer.sequenceErrorMsg() );
+		
+		spec = desequencer.compileArgSpec();
+	}
+	
+	@Benchmark
+	public int desequenceArgs() {
+		
+		desequencer.parse( args );
+		
+		return desequencer.sequenceErrorCode();
+	}
+	
+	@Benchmark
+	public CLArgumentResult specParse() {
+		
+		return spec.parse( args );
+	}
+	
+	@Benchmark
+	public CLPackedResult specParsePacked() {
+		
+		return spec.parsePacked( args );
+	}
+	
+	@Benchmark
+	public String [] getRelevantParcels() {
+		
+		return desequencer.getRelevantParcels( touchedKeys[ cursor++ % touchedKeys.length ] );
+	}
+	
+	@Benchmark
+	public String toStringAfterParse() {
+		
+		return desequencer.toString();
+	}
+}
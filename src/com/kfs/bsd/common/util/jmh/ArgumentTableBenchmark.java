@@ -0,0 +1,149 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class ArgumentTableBenchmark
+ *
+ *  JMH benchmarks of keeping many parsed argument arrays, such
+ *  as an archive of job command lines: in a CLArgumentTable,
+ *  against one CLArgumentResult per argument array.  Both the
+ *  building, and questions about every row ("which rows have
+ *  this option?" and "what are all of its values?"), are timed.
+ *
+ *  The argument arrays vary in length, and each one has its own
+ *  copies of its Strings, as if it were read from a file.
+ *
+ *  Run with 'make bench', which also reports allocation rates.
+ */
+
+package com.kfs.bsd.common.util.jmh;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.kfs.bsd.common.util.CLArgumentResult;
+import com.kfs.bsd.common.util.CLArgumentSpec;
+import com.kfs.bsd.common.util.CLArgumentTable;
+
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ArgumentTableBenchmark {
+	
+	@Param( { "100" } )
+	public int options;
+	
+	@Param( { "10000" } )
+	public int rows;
+	
+	protected CLArgumentSpec spec;
+	protected String [][] batch;
+	protected String [] keys;
+	protected CLArgumentTable table;
+	protected CLArgumentResult [] results;
+	protected int cursor = 0;
+	
+	@Setup( Level.Trial )
+	public void setUp() {
+		
+		// Makes up the argument arrays, from 8 to 39 tokens long, and
+		// builds both stores so that the questions have something to ask.
+		
+		ArgumentGenerator generator = new ArgumentGenerator( options );
+		
+		spec = new BenchDesequencer( generator ).compileArgSpec();
+		batch = new String [ rows ][];
+		keys = generator.keys;
+		
+		for( int row = 0 ; row < rows ; row++ ) {
+			
+			String [] args = generator.makeArgs( 8 + row % 32 );
+			
+			for( int column = 0 ; column < args.length ; column++ )
+				args[ column ] = new String( args[ column ] );
+			
+			batch[ row ] = args;
+		}
+		
+		table = buildTable();
+		results = buildResults();
+	}
+	
+	@Benchmark
+	public CLArgumentTable buildTable() {
+		
+		return spec.parseTable( batch );
+	}
+	
+	@Benchmark
+	public CLArgumentResult [] buildResults() {
+		
+		CLArgumentResult [] result = new CLArgumentResult [ batch.length ];
+		
+		for( int row = 0 ; row < batch.length ; row++ )
+			result[ row ] = spec.parse( batch[ row ] );
+		
+		return result;
+	}
+	
+	@Benchmark
+	public int [] rowsWithKey() {
+		
+		return table.getRowsWithKey( keys[ cursor++ % keys.length ] );
+	}
+	
+	@Benchmark
+	public int [] rowsWithKeyByRow() {
+		
+		// The same question, asked of each result in turn.
+		
+		String key = keys[ cursor++ % keys.length ];
+		int [] found = new int [ results.length ];
+		int count = 0;
+		
+		for( int row = 0 ; row < results.length ; row++ )
+			if( results[ row ].getParcelCountForKey( key ) > 0 )
+				found[ count++ ] = row;
+		
+		return Arrays.copyOf( found, count );
+	}
+	
+	@Benchmark
+	public String [] valuesForKey() {
+		
+		return table.getValuesForKey( keys[ cursor++ % keys.length ] );
+	}
+	
+	@Benchmark
+	public String [] valuesForKeyByRow() {
+		
+		// Nearly the same question, asked of each result in turn (a
+		// result only gives out the relevant parcels of each row).
+		
+		String key = keys[ cursor++ % keys.length ];
+		ArrayList<String> found = new ArrayList<String>();
+		
+		for( CLArgumentResult result : results )
+			for( String parcel : result.getParcelArrayFromKey( key ) )
+				found.add( parcel );
+		
+		return found.toArray( new String [ found.size() ] );
+	}
+}
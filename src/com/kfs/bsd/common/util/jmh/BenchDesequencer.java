@@ -0,0 +1,90 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class BenchDesequencer
+ *
+ *  A subclass of LinearArgDesequencer whose arguments come
+ *  from an ArgumentGenerator, and which can parse again after
+ *  it has been constructed, so that the benchmarks measure the
+ *  parse rather than the construction of the argument set.
+ */
+
+package com.kfs.bsd.common.util.jmh;
+
+import java.util.Set;
+
+import com.kfs.bsd.common.util.LinearArgDesequencer;
+
+public class BenchDesequencer extends LinearArgDesequencer {
+	
+	// The keys whose parcels must be emptied before each parse
+	
+	private String [] touchedKeys = new String [0];
+	
+	public BenchDesequencer( ArgumentGenerator generator ) {
+		
+		// Builds a desequencer with the arguments
+		// described by the given generator.
+		
+		super();
+		
+		for( int option = 0 ; option < generator.keys.length ; option++ ) {
+			
+			String key = generator.keys[ option ];
+			
+			argSet.addArgumentSwitch( key, generator.switches[ option ] );
+			
+			if( generator.flags[ option ] != 0 )
+				argSet.addArgumentFlag( key, generator.flags[ option ] );
+			
+			argSet.setArgumentParcelCount( key, generator.parcelCounts[ option ] );
+			argSet.setArgumentIsArray( key, generator.arrays[ option ] );
+			argSet.setArgumentIsUnbounded( key, generator.unbounded[ option ] );
+			argSet.setArgumentDisplayName( key, "Generated option " + option );
+		}
+	}
+	
+	protected void populateArgSet() {
+		
+		// Overriding super.populateArgSet().
+		
+		// The arguments are added by the constructor instead,
+		// because this is called before the generator is known.
+	}
+	
+	public void setTouchedKeys( Set<String> touchedKeys ) {
+		
+		// Sets the keys whose parcels are emptied by parse().
+		
+		this.touchedKeys = touchedKeys.toArray( new String [0] );
+	}
+	
+	public void parse( String [] args ) {
+		
+		// Empties the parcels found by the last parse (keeping
+		// their storage), and parses the given arguments.
+		
+		for( String key : touchedKeys )
+			argSet.get( key ).parcels.clear();
+		
+		desequenceArgs( args );
+	}
+	
+	// Accessors exposed to the benchmarks
+	
+	public String getArgKeyForFlag( char flag ) {
+		
+		return argSet.getArgKeyForFlag( flag );
+	}
+	
+	public String getArgKeyForSwitch( String sswitch ) {
+		
+		return argSet.getArgKeyForSwitch( sswitch );
+	}
+	
+	public String [] getRelevantParcels( String key ) {
+		
+		return argSet.get( key ).getRelevantParcels();
+	}
+}
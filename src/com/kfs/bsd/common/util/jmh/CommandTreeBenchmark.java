@@ -0,0 +1,181 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class CommandTreeBenchmark
+ *
+ *  JMH benchmarks of the startup of a git-style tool with many
+ *  subcommands, each with hundreds of options: one that defines
+ *  every option of every command in a single LinearArgDesequencer
+ *  (with each command's switches prefixed by its name), against
+ *  a CLCommandTree that only defines the options of the command
+ *  being run.  Both include building the parser, and parsing
+ *  one command line, as a short-lived tool would.
+ *
+ *  Run with 'make bench', which also reports allocation rates.
+ */
+
+package com.kfs.bsd.common.util.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.kfs.bsd.common.util.CLArgumentSpec;
+import com.kfs.bsd.common.util.CLCommand;
+import com.kfs.bsd.common.util.CLCommandTree;
+import com.kfs.bsd.common.util.LinearArgDesequencer;
+
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class CommandTreeBenchmark {
+	
+	@Param( { "10", "40" } )
+	public int commands;
+	
+	@Param( { "250" } )
+	public int options;
+	
+	protected ArgumentGenerator [] generators;
+	protected String [] eagerArgs;
+	protected String [] treeArgs;
+	
+	public static class EagerDesequencer extends LinearArgDesequencer {
+		
+		// A desequencer that defines the options of every command,
+		// with each switch prefixed by the name of its command.
+		
+		public EagerDesequencer( ArgumentGenerator [] generators, String [] args ) {
+			
+			// Defines everything, and then parses the given arguments.
+			
+			super();
+			
+			for( int command = 0 ; command < generators.length ; command++ ) {
+				
+				ArgumentGenerator generator = generators[ command ];
+				
+				for( int option = 0 ; option < generator.keys.length ; option++ ) {
+					
+					String key = "c" + command + "." + generator.keys[ option ];
+					
+					argSet.addArgumentSwitch( key, "c" + command + "-" + generator.switches[ option ] );
+					argSet.setArgumentParcelCount( key, generator.parcelCounts[ option ] );
+					argSet.setArgumentIsArray( key, generator.arrays[ option ] );
+					argSet.setArgumentIsUnbounded( key, generator.unbounded[ option ] );
+					argSet.setArgumentDisplayName( key, "Generated option " + option );
+				}
+			}
+			
+			desequenceArgs( args );
+		}
+		
+		protected void populateArgSet() {
+			
+			// Overriding super.populateArgSet().
+			
+			// The arguments are added by the constructor instead,
+			// because this is called before the generators are known.
+		}
+	}
+	
+	protected static final class GeneratedCommand implements CLCommand {
+		
+		// A command whose options come from an ArgumentGenerator.
+		
+		private final ArgumentGenerator generator;
+		
+		GeneratedCommand( ArgumentGenerator generator ) {
+			
+			// Java requires that this be here.
+			
+			super();
+			
+			this.generator = generator;
+		}
+		
+		public CLArgumentSpec compile() {
+			
+			// Defines the options, and compiles them.
+			
+			return new BenchDesequencer( generator ).compileArgSpec();
+		}
+		
+		public LinearArgDesequencer create( String [] args ) {
+			
+			// Defines the options, and then parses the given arguments.
+			
+			BenchDesequencer result = new BenchDesequencer( generator );
+			
+			result.parse( args );
+			
+			return result;
+		}
+	}
+	
+	@Setup( Level.Trial )
+	public void setUp() {
+		
+		// Makes up the definitions of every command, and a command
+		// line for the one in the middle, written both ways: a few
+		// switches without parcels, and then some file names.
+		
+		generators = new ArgumentGenerator [ commands ];
+		
+		for( int command = 0 ; command < commands ; command++ )
+			generators[ command ] = new ArgumentGenerator( options );
+		
+		int chosen = commands / 2;
+		String [] switches = { "opt-0", "opt-3", "opt-6", "opt-9", "opt-" + ( options -1 ) };
+		
+		eagerArgs = new String [ switches.length + 2 ];
+		treeArgs = new String [ switches.length + 3 ];
+		treeArgs[ 0 ] = "c" + chosen;
+		
+		for( int row = 0 ; row < switches.length ; row++ ) {
+			
+			eagerArgs[ row ] = "--c" + chosen + "-" + switches[ row ];
+			treeArgs[ row + 1 ] = "--" + switches[ row ];
+		}
+		
+		eagerArgs[ switches.length ] = treeArgs[ switches.length + 1 ] = "a.txt";
+		eagerArgs[ switches.length + 1 ] = treeArgs[ switches.length + 2 ] = "b.txt";
+	}
+	
+	@Benchmark
+	public int eagerStartup() {
+		
+		// Defines every command, and parses one command line.
+		
+		return new EagerDesequencer( generators, eagerArgs ).sequenceErrorCode();
+	}
+	
+	@Benchmark
+	public int treeStartup() {
+		
+		// Registers every command, and parses one command line,
+		// which only defines the options of the chosen command.
+		
+		CLCommandTree tree = new CLCommandTree();
+		
+		for( int command = 0 ; command < commands ; command++ )
+			tree.addCommand( "c" + command, new GeneratedCommand( generators[ command ] ) );
+		
+		return tree.dispatch( treeArgs ).sequenceErrorCode();
+	}
+}
@@ -0,0 +1,141 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class GeneratedParserBenchmark
+ *
+ *  JMH benchmarks of a parser generated by CLOptionsProcessor,
+ *  against a compiled CLArgumentSpec and a LinearArgDesequencer
+ *  with the same arguments.  The 'startup' benchmarks include
+ *  building the parser, as a short-lived tool would.
+ *
+ *  Run with 'make bench', which also reports allocation rates.
+ */
+
+package com.kfs.bsd.common.util.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.kfs.bsd.common.util.CLArgumentError;
+import com.kfs.bsd.common.util.CLArgumentResult;
+import com.kfs.bsd.common.util.CLArgumentSpec;
+import com.kfs.bsd.common.util.CLOption;
+import com.kfs.bsd.common.util.CLOptions;
+import com.kfs.bsd.common.util.LinearArgDesequencer;
+
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class GeneratedParserBenchmark {
+	
+	// The arguments of a typical tool, declared both ways
+	
+	@CLOptions
+	public static class Options {
+		
+		@CLOption( key = "Help", flags = 'h', switches = "help" )
+		boolean help;
+		
+		@CLOption( key = "Verbose", flags = 'v', switches = "verbose", parcels = 0 )
+		int verbosity;
+		
+		@CLOption( key = "port", flags = 'p', switches = "port" )
+		int port;
+		
+		@CLOption( key = "host", flags = 'H', switches = "host" )
+		String host;
+		
+		@CLOption( key = "timeout", flags = 't', switches = "timeout" )
+		double timeout;
+		
+		@CLOption( key = "define", flags = 'D', switches = "define", parcels = 2 )
+		String [] defines;
+		
+		@CLOption( key = "files", flags = 'f', switches = "file", unbounded = true )
+		String [] files;
+	}
+	
+	public static class Desequencer extends LinearArgDesequencer {
+		
+		public Desequencer( String [] args ) {
+			
+			// Forward the request to super.
+			
+			super( args );
+		}
+		
+		protected void populateArgSet() {
+			
+			// The same arguments as Options.
+			
+			super.populateArgSet();
+			
+			argSet.addArgumentInfo( "port", 'p', "port", 1, false, false, "Port", int.class );
+			argSet.addArgumentInfo( "host", 'H', "host", 1, false, "Host" );
+			argSet.addArgumentInfo( "timeout", 't', "timeout", 1, false, false, "Timeout", double.class );
+			argSet.addArgumentInfo( "define", 'D', "define", 2, true, "Definitions" );
+			argSet.addArgumentInfo( "files", 'f', "file", 1, true, true, "Files" );
+		}
+	}
+	
+	protected final String [] args = { "-vv", "--host", "example.com", "-p", "8080", "--timeout", "2.5", "-D", "a", "1", "-D", "b", "2", "-f", "x", "y", "z" };
+	
+	protected GeneratedParserBenchmark_OptionsParser parser;
+	protected CLArgumentSpec spec;
+	
+	@Setup( Level.Trial )
+	public void setUp() {
+		
+		// Builds the parsers once, for the steady-state benchmarks.
+		
+		parser = new GeneratedParserBenchmark_OptionsParser();
+		spec = new Desequencer( new String [0] ).compileArgSpec();
+	}
+	
+	// Steady state
+	
+	@Benchmark
+	public Options generatedParse() {
+		
+		Options options = new Options();
+		
+		parser.parse( args, options );
+		
+		return options;
+	}
+	
+	@Benchmark
+	public CLArgumentResult specParse() {
+		
+		return spec.parse( args );
+	}
+	
+	// Startup, including the construction of the parser
+	
+	@Benchmark
+	public CLArgumentError generatedStartup() {
+		
+		return new GeneratedParserBenchmark_OptionsParser().parse( args, new Options() );
+	}
+	
+	@Benchmark
+	public CLArgumentError desequencerStartup() {
+		
+		return new Desequencer( args ).sequenceErrorDetail();
+	}
+}
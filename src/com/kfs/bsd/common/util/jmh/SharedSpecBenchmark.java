@@ -0,0 +1,106 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  Class SharedSpecBenchmark
+ *
+ *  JMH benchmarks of how parsing against one shared CLArgumentSpec
+ *  scales with the number of threads: parse() on one thread and on
+ *  one thread per core, and a whole batch with parseAll() against
+ *  the same batch parsed one array at a time.  On a machine with
+ *  n cores, the threaded scores should approach n times the
+ *  single-threaded ones.
+ *
+ *  Run with 'make bench', which also reports allocation rates.
+ */
+
+package com.kfs.bsd.common.util.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.kfs.bsd.common.util.CLArgumentResult;
+import com.kfs.bsd.common.util.CLArgumentSpec;
+
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class SharedSpecBenchmark {
+	
+	@Param( { "100" } )
+	public int options;
+	
+	@Param( { "10000" } )
+	public int batchSize;
+	
+	protected CLArgumentSpec spec;
+	protected String [] args;
+	protected String [][] batch;
+	
+	@Setup( Level.Trial )
+	public void setUp() {
+		
+		// Builds the spec that every thread shares, one argument array
+		// for parse(), and a batch of arrays from 8 to 39 tokens long.
+		
+		ArgumentGenerator generator = new ArgumentGenerator( options );
+		
+		spec = new BenchDesequencer( generator ).compileArgSpec();
+		args = generator.makeArgs( 32 );
+		batch = new String [ batchSize ][];
+		
+		for( int row = 0 ; row < batchSize ; row++ )
+			batch[ row ] = generator.makeArgs( 8 + row % 32 );
+	}
+	
+	@Benchmark
+	@Threads( 1 )
+	public CLArgumentResult parseOneThread() {
+		
+		return spec.parse( args );
+	}
+	
+	@Benchmark
+	@Threads( Threads.MAX )
+	public CLArgumentResult parseEveryCore() {
+		
+		return spec.parse( args );
+	}
+	
+	@Benchmark
+	@Threads( 1 )
+	public CLArgumentResult [] batchInSequence() {
+		
+		// The batch, one argument array at a time on this thread.
+		
+		CLArgumentResult [] result = new CLArgumentResult [ batch.length ];
+		
+		for( int row = 0 ; row < batch.length ; row++ )
+			result[ row ] = spec.parse( batch[ row ] );
+		
+		return result;
+	}
+	
+	@Benchmark
+	@Threads( 1 )
+	public CLArgumentResult [] batchParseAll() {
+		
+		return spec.parseAll( batch );
+	}
+}
@@ -0,0 +1,201 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  JUnit Test Case for CLArgumentBinder
+ */
+
+package com.kfs.bsd.common.util.junit;
+
+import java.util.Arrays;
+
+import junit.framework.*;
+import com.kfs.bsd.common.util.CLArgumentBinder;
+import com.kfs.bsd.common.util.CLArgumentSpec;
+import com.kfs.bsd.common.util.LinearArgDesequencer;
+
+public class TestCLArgumentBinder extends TestCase {
+	
+	// The options objects that results are bound to
+	
+	public enum Colour { RED, GREEN, BLUE }
+	
+	public static class Settings {
+		
+		boolean help;
+		int verbose;
+		int port = 80;
+		double ratio;
+		String name = "default";
+		Colour colour;
+		long [] sizes;
+		String [] files;
+		Object unsupported;
+		
+		private boolean dryRun;
+		private int dryRunCalls = 0;
+		
+		public void setDryRun( boolean dryRun ) {
+			
+			// Records the value, and the call.
+			
+			this.dryRun = dryRun;
+			dryRunCalls++;
+		}
+	}
+	
+	public static class MoreSettings extends Settings {
+		
+		boolean unused;
+	}
+	
+	public static class Mismatched {
+		
+		int name;
+	}
+	
+	// The arguments that are bound
+	
+	protected class LADsBound extends LinearArgDesequencer {
+		
+		// This is a subclass of LinearArgDesequencer that
+		// has arguments of each kind that can be bound.
+		
+		public LADsBound( String [] args ) {
+			
+			// Java requires that this be here.
+			
+			// Forward the request to super.
+			
+			super( args );
+		}
+		
+		protected void populateArgSet() {
+			
+			// Start with the default argument set.
+			
+			super.populateArgSet();
+			
+			// Add some more of our own arguments:
+			
+			argSet.addArgumentInfo( "port", 'p', "port", 1, false, false, "Port", int.class );
+			argSet.addArgumentInfo( "ratio", 'r', "ratio", 1, false, "Ratio" );
+			argSet.addArgumentInfo( "name", 'n', "name", 1, false, "Name" );
+			argSet.addArgumentInfo( "colour", 'c', "colour", 1, false, false, "Colour", Colour.class );
+			argSet.addArgumentInfo( "sizes", 's', "size", 1, true, false, "Sizes", long.class );
+			argSet.addArgumentInfo( "files", 'f', "file", 1, true, true, "Files", String.class );
+			argSet.addArgumentInfo( "dry-run", "dry-run", 0, false, "Dry run" );
+			argSet.addArgumentInfo( "unmatched", 'u', 0, false, "Unmatched" );
+		}
+		
+		public void parse( String [] args ) {
+			
+			// Parses the given arguments again.
+			
+			desequenceArgs( args );
+		}
+	}
+	
+	protected static final String [] kArgs = { "-vv", "-p", "8080", "-r", "0.5", "--name", "x", "-c", "blue", "-s", "1", "--size", "2", "--dry-run", "-u", "-f", "a", "b" };
+	
+	// Utility functions
+	
+	private static void verifySettings( Settings settings ) {
+		
+		// Makes sure that kArgs were bound to the given settings.
+		
+		assertFalse( "Help was not given.", settings.help );
+		assertEquals( "Verbose has no parcels, so it is counted.", 2, settings.verbose );
+		assertEquals( "The port should be bound.", 8080, settings.port );
+		assertEquals( "The untyped ratio should be converted.", 0.5, settings.ratio, 0.0 );
+		assertEquals( "The name should be bound.", "x", settings.name );
+		assertEquals( "The colour should be bound.", Colour.BLUE, settings.colour );
+		assertTrue( "Every size should be bound.", Arrays.equals( new long [] { 1, 2 }, settings.sizes ) );
+		assertTrue( "Every file should be bound.", Arrays.equals( new String [] { "a", "b" }, settings.files ) );
+		assertTrue( "dry-run should be bound to setDryRun().", settings.dryRun );
+		assertEquals( "The setter should be preferred to the field.", 1, settings.dryRunCalls );
+		assertNull( "Unsupported members should be left alone.", settings.unsupported );
+	}
+	
+	// Test cases
+	
+	public void testBindFromDesequencer() {
+		
+		verifySettings( CLArgumentBinder.forClass( Settings.class ).bind( new LADsBound( kArgs ), new Settings() ) );
+	}
+	
+	public void testBindFromResult() {
+		
+		CLArgumentSpec spec = new LADsBound( new String [0] ).compileArgSpec();
+		
+		verifySettings( CLArgumentBinder.forClass( Settings.class ).bind( spec.parse( kArgs ), new Settings() ) );
+	}
+	
+	public void testUnfoundArgumentsAreLeftAlone() {
+		
+		Settings settings = CLArgumentBinder.forClass( Settings.class ).bind( new LADsBound( new String [] { "-h" } ), new Settings() );
+		
+		assertTrue( "Help has no parcels, so it is true.", settings.help );
+		assertEquals( "The port should keep its default.", 80, settings.port );
+		assertEquals( "The name should keep its default.", "default", settings.name );
+		assertNull( "The files should keep their default.", settings.files );
+		assertEquals( "The setter should not be called.", 0, settings.dryRunCalls );
+	}
+	
+	public void testInheritedMembers() {
+		
+		MoreSettings settings = CLArgumentBinder.forClass( MoreSettings.class ).bind( new LADsBound( kArgs ), new MoreSettings() );
+		
+		verifySettings( settings );
+		assertFalse( "Unmatched keys should be left alone.", settings.unused );
+	}
+	
+	public void testBindersAreCached() {
+		
+		assertSame( "Each class should have one binder.", CLArgumentBinder.forClass( Settings.class ), CLArgumentBinder.forClass( Settings.class ) );
+		assertNotSame( "Each class should have its own binder.", CLArgumentBinder.forClass( Settings.class ), CLArgumentBinder.forClass( MoreSettings.class ) );
+	}
+	
+	public void testBindingAcrossSpecs() {
+		
+		CLArgumentBinder<Settings> binder = CLArgumentBinder.forClass( Settings.class );
+		LADsBound lad = new LADsBound( kArgs );
+		CLArgumentSpec spec = new LinearArgDesequencer().compileArgSpec();
+		
+		for( int row = 0 ; row < 3 ; row++ ) {
+			
+			verifySettings( binder.bind( lad, new Settings() ) );
+			
+			Settings settings = binder.bind( spec.parse( new String [] { "-v", "-p" } ), new Settings() );
+			
+			assertEquals( "The other spec has Verbose.", 1, settings.verbose );
+			assertEquals( "The other spec has no port.", 80, settings.port );
+		}
+	}
+	
+	public void testRebinding() {
+		
+		CLArgumentBinder<Settings> binder = CLArgumentBinder.forClass( Settings.class );
+		LADsBound lad = new LADsBound( kArgs );
+		Settings settings = binder.bind( lad, new Settings() );
+		
+		lad.parse( new String [] { "-p", "1" } );
+		binder.bind( lad, settings );
+		
+		assertEquals( "The new port should be bound.", 1, settings.port );
+		assertEquals( "The old name should remain.", "x", settings.name );
+	}
+	
+	public void testConversionErrors() {
+		
+		try {
+			
+			CLArgumentBinder.forClass( Mismatched.class ).bind( new LADsBound( kArgs ), new Mismatched() );
+			fail( "A name of 'x' is not an int." );
+		}
+		catch( IllegalArgumentException e ) {
+			
+			assertTrue( "The message should name the key: " + e.getMessage(), e.getMessage().startsWith( "Cannot bind 'name' to name" ) );
+		}
+	}
+}
@@ -0,0 +1,263 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  JUnit Test Case for CLArgumentCompleter
+ */
+
+package com.kfs.bsd.common.util.junit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import junit.framework.*;
+import com.kfs.bsd.common.util.CLArgumentCompleter;
+import com.kfs.bsd.common.util.CLArgumentSnapshot;
+import com.kfs.bsd.common.util.CLCompletionProvider;
+import com.kfs.bsd.common.util.LinearArgDesequencer;
+
+public class TestCLArgumentCompleter extends TestCase {
+	
+	// The completer works from a spec, which is compiled
+	// from a subclass of LinearArgDesequencer.
+	
+	public enum Mode { fast, safe, slow }
+	
+	protected class LADsCompleted extends LinearArgDesequencer {
+		
+		// This is a subclass of LinearArgDesequencer with
+		// arguments that need completing.
+		
+		public LADsCompleted() {
+			
+			// Java requires that this be here.
+			
+			// Forward the request to super.
+			
+			super();
+		}
+		
+		protected void populateArgSet() {
+			
+			// Start with the default argument set.
+			
+			super.populateArgSet();
+			
+			// Add some more of our own arguments:
+			
+			argSet.addArgumentInfo( "host", 'H', "host", 1, false, "Host" );
+			argSet.addArgumentInfo( "hosts", "host-list", 1, true, "Hosts" );
+			argSet.setArgumentIsUnbounded( "hosts", true );
+			argSet.addArgumentInfo( "mode", 'm', "mode", 1, false, false, "Mode", Mode.class );
+			argSet.addArgumentInfo( "force", 'f', "force", 1, false, false, "Force", boolean.class );
+			argSet.addArgumentInfo( "pair", "pair", 2, false, "Pair" );
+			argSet.addArgumentInfo( "target", "target", 1, false, "Target" );
+			argSet.setAllowsResponseFiles( true );
+			requiredArgumentKeys.add( "target" );
+		}
+	}
+	
+	protected static class CountingProvider implements CLCompletionProvider {
+		
+		// A provider of fixed values, which remembers
+		// how many times it has been asked.
+		
+		private final String [] values;
+		public int calls = 0;
+		
+		public CountingProvider( String ... values ) {
+			
+			// Java requires that this be here.
+			
+			super();
+			
+			this.values = values;
+		}
+		
+		public String [] getValues( String key ) {
+			
+			// Count the call, and supply the values.
+			
+			calls++;
+			
+			return values;
+		}
+	}
+	
+	protected static class ManualClock implements LongSupplier {
+		
+		// A clock that only moves when a test moves it.
+		
+		public long now = 0;
+		
+		public long getAsLong() {
+			
+			// Returns the time the test has set.
+			
+			return now;
+		}
+	}
+	
+	// Utility functions
+	
+	private CLArgumentCompleter completer() {
+		
+		// Returns a fresh completer for testing.
+		
+		return new CLArgumentCompleter( new LADsCompleted().compileArgSpec() );
+	}
+	
+	private static List<String> complete( CLArgumentCompleter completer, int cursor, String ... args ) {
+		
+		// Returns the completions at the given cursor as a list.
+		
+		return Arrays.asList( completer.complete( args, cursor ) );
+	}
+	
+	// Test cases
+	
+	public void testOptions() {
+		
+		CLArgumentCompleter completer = completer();
+		
+		assertEquals( "Switches are completed in order.", Arrays.asList( "--host", "--host-list" ), complete( completer, 1, "t", "--ho" ) );
+		assertEquals( "Switches are completed in order.", Arrays.asList( "--help" ), complete( completer, 1, "t", "--he" ) );
+		assertEquals( "Unknown prefixes have no completions.", Arrays.asList(), complete( completer, 1, "t", "--x" ) );
+		assertEquals( "Every switch starts with no prefix.", 8, complete( completer, 1, "t", "--" ).size() );
+		assertEquals( "Nothing expected means an option.", complete( completer, 1, "t", "--" ), complete( completer, 1, "t" ) );
+		assertEquals( "Nothing expected means an option.", Arrays.asList(), complete( completer, 1, "t", "x" ) );
+		assertEquals( "Flags are added to a group.", Arrays.asList( "-vH", "-vf", "-vh", "-vm", "-vv" ), complete( completer, 1, "t", "-v" ) );
+		assertEquals( "Unknown flags have no completions.", Arrays.asList(), complete( completer, 1, "t", "-vx" ) );
+		assertEquals( "A lone dash offers flags and switches.", 5 + 8, complete( completer, 1, "t", "-" ).size() );
+		assertEquals( "Options may interrupt parcels.", Arrays.asList( "--mode" ), complete( completer, 2, "t", "-H", "--mo" ) );
+	}
+	
+	public void testParcels() {
+		
+		CLArgumentCompleter completer = completer();
+		
+		assertEquals( "Enums are completed.", Arrays.asList( "fast", "safe", "slow" ), complete( completer, 2, "t", "-m" ) );
+		assertEquals( "Enums are completed.", Arrays.asList( "safe", "slow" ), complete( completer, 2, "t", "--mode", "s" ) );
+		assertEquals( "Booleans are completed.", Arrays.asList( "false", "true" ), complete( completer, 4, "t", "-m", "fast", "--force" ) );
+		assertEquals( "Strings have no completions.", Arrays.asList(), complete( completer, 2, "t", "-H" ) );
+		assertEquals( "Flag groups queue their parcels in order.", Arrays.asList( "false", "true" ), complete( completer, 3, "t", "-mf", "slow" ) );
+		assertEquals( "Response files are left to the shell.", Arrays.asList(), complete( completer, 2, "t", "-m", "@f" ) );
+		
+		CountingProvider provider = new CountingProvider( "beta", "alpha", "alpine" );
+		
+		completer.setProvider( "target", provider, 1, TimeUnit.HOURS );
+		completer.setProvider( "hosts", provider, 1, TimeUnit.HOURS );
+		
+		assertEquals( "Required parcels come first.", Arrays.asList( "alpha", "alpine", "beta" ), complete( completer, 0 ) );
+		assertEquals( "Providers are filtered.", Arrays.asList( "alpha", "alpine" ), complete( completer, 0, "al" ) );
+		assertEquals( "Unbounded parcels continue.", Arrays.asList( "beta" ), complete( completer, 4, "t", "--host-list", "a", "b", "b" ) );
+		assertEquals( "Values are cached per key.", 2, provider.calls );
+	}
+	
+	public void testTimeToLive() {
+		
+		ManualClock clock = new ManualClock();
+		CLArgumentCompleter completer = new CLArgumentCompleter( new LADsCompleted().compileArgSpec(), clock );
+		CountingProvider provider = new CountingProvider( "a", "b" );
+		
+		completer.setProvider( "host", provider, 50, TimeUnit.MILLISECONDS );
+		
+		complete( completer, 2, "t", "-H" );
+		clock.now += TimeUnit.MILLISECONDS.toNanos( 49 );
+		complete( completer, 2, "t", "-H" );
+		
+		assertEquals( "Values are cached.", 1, provider.calls );
+		
+		clock.now += TimeUnit.MILLISECONDS.toNanos( 2 );
+		completer.evictExpired();
+		
+		assertEquals( "Expired values are reloaded.", Arrays.asList( "a", "b" ), complete( completer, 2, "t", "-H" ) );
+		assertEquals( "Expired values are reloaded.", 2, provider.calls );
+		
+		completer.setProvider( "host", new CLCompletionProvider() {
+			
+			public String [] getValues( String key ) {
+				
+				// This provider is broken.
+				
+				throw new IllegalStateException( "Broken" );
+			}
+		}, 1, TimeUnit.HOURS );
+		
+		assertEquals( "Broken providers supply nothing.", Arrays.asList(), complete( completer, 2, "t", "-H" ) );
+		
+		completer.setProvider( "host", null, 0, TimeUnit.SECONDS );
+		
+		assertEquals( "Removed providers supply nothing.", Arrays.asList(), complete( completer, 2, "t", "-H" ) );
+	}
+	
+	public void testLargeSpec() {
+		
+		LinearArgDesequencer large = new LinearArgDesequencer() {
+			
+			protected void populateArgSet() {
+				
+				// For simplicity, do not add the default argument set.
+				
+				for( int row = 0 ; row < 10000 ; row++ )
+					argSet.addArgumentInfo( "key" + row, String.format( "switch-%05d", row ), 0, false, null );
+			}
+		};
+		
+		CLArgumentCompleter completer = new CLArgumentCompleter( large.compileArgSpec() );
+		
+		assertEquals( "Only the matching switches are listed.", Arrays.asList( "--switch-09990", "--switch-09991", "--switch-09992", "--switch-09993", "--switch-09994", "--switch-09995", "--switch-09996", "--switch-09997", "--switch-09998", "--switch-09999" ), complete( completer, 0, "--switch-0999" ) );
+		assertEquals( "Everything matches an empty prefix.", 10000, complete( completer, 0, "--" ).size() );
+	}
+	
+	public void testScripts() throws IOException {
+		
+		StringBuilder bash = new StringBuilder();
+		StringBuilder zsh = new StringBuilder();
+		
+		CLArgumentCompleter.writeBashScript( bash, "/usr/bin/my-tool", "my-tool --complete" );
+		CLArgumentCompleter.writeZshScript( zsh, "my-tool", "my-tool --complete" );
+		
+		assertTrue( "The bash script should call the command.", bash.toString().contains( "$( my-tool --complete $(( COMP_CWORD - 1 )) \"${COMP_WORDS[@]:1}\" 2>/dev/null )" ) );
+		assertTrue( "The bash script should register itself.", bash.toString().endsWith( "complete -o default -F _complete_my_tool /usr/bin/my-tool\n" ) );
+		assertTrue( "The zsh script should call the command.", zsh.toString().contains( "$( my-tool --complete $(( CURRENT - 2 )) \"${(@)words[2,-1]}\" 2>/dev/null )" ) );
+		assertTrue( "The zsh script should register itself.", zsh.toString().startsWith( "#compdef my-tool\n" ) );
+		assertTrue( "The zsh script should register itself.", zsh.toString().endsWith( "compdef _complete_my_tool my-tool\n" ) );
+	}
+	
+	public void testCommandLineTool() throws IOException {
+		
+		File file = File.createTempFile( "completer", ".clspec" );
+		file.deleteOnExit();
+		
+		CLArgumentSnapshot.write( new LADsCompleted().compileArgSpec(), file );
+		
+		PrintStream out = System.out;
+		ByteArrayOutputStream captured = new ByteArrayOutputStream();
+		
+		try {
+			
+			System.setOut( new PrintStream( captured, true ) );
+			
+			CLArgumentCompleter.main( new String [] { file.getPath(), "2", "t", "--mode", "s" } );
+			CLArgumentCompleter.main( new String [] { "--bash", "tool", file.getPath() } );
+		}
+		finally {
+			
+			System.setOut( out );
+		}
+		
+		String [] lines = captured.toString().split( "\n" );
+		
+		assertEquals( "The completions are printed one per line.", "safe", lines[ 0 ] );
+		assertEquals( "The completions are printed one per line.", "slow", lines[ 1 ] );
+		assertEquals( "The script follows.", "# bash completion for tool", lines[ 2 ] );
+		assertTrue( "The script runs this tool.", lines[ 6 ].contains( CLArgumentCompleter.class.getName() + " '" + file.getAbsolutePath() + "' $(( COMP_CWORD - 1 ))" ) );
+	}
+}
@@ -0,0 +1,400 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  JUnit Test Case for CLArgumentDaemon and CLArgumentClient
+ */
+
+package com.kfs.bsd.common.util.junit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.*;
+import com.kfs.bsd.common.util.CLArgumentClient;
+import com.kfs.bsd.common.util.CLArgumentDaemon;
+import com.kfs.bsd.common.util.CLArgumentResult;
+import com.kfs.bsd.common.util.CLArgumentSpec;
+import com.kfs.bsd.common.util.LinearArgDesequencer;
+
+public class TestCLArgumentDaemon extends TestCase {
+	
+	// The daemon serves the arguments of a
+	// subclass of LinearArgDesequencer.
+	
+	protected class LADsServed extends LinearArgDesequencer {
+		
+		// This is a subclass of LinearArgDesequencer
+		// with a few arguments to serve.
+		
+		public LADsServed() {
+			
+			// Java requires that this be here.
+			
+			// Forward the request to super.
+			
+			super();
+		}
+		
+		protected void populateArgSet() {
+			
+			// Start with the default argument set.
+			
+			super.populateArgSet();
+			
+			// Add some more of our own arguments:
+			
+			argSet.addArgumentInfo( "name", 'n', "name", 1, false, "Name" );
+			argSet.addArgumentInfo( "files", 'f', "file", 1, true, true, "Files", String.class );
+			argSet.addArgumentInfo( "pair", "pair", 2, false, "Pair" );
+			argSet.addArgumentInfo( "count", 'c', "count", 1, false, false, "Count", int.class );
+		}
+	}
+	
+	protected class LADsServedWithFiles extends LADsServed {
+		
+		// This is a subclass of LinearArgDesequencer
+		// that also allows response files.
+		
+		public LADsServedWithFiles() {
+			
+			// Java requires that this be here.
+			
+			// Forward the request to super.
+			
+			super();
+		}
+		
+		protected void populateArgSet() {
+			
+			// Start with the served argument set.
+			
+			super.populateArgSet();
+			
+			argSet.setAllowsResponseFiles( true );
+		}
+	}
+	
+	// The daemon under test
+	
+	private Path directory = null;
+	private CLArgumentDaemon daemon = null;
+	
+	protected void setUp() throws IOException {
+		
+		// Start a daemon on a fresh socket.
+		
+		directory = Files.createTempDirectory( "cldaemon" );
+		daemon = new CLArgumentDaemon( new LADsServed(), directory.resolve( "socket" ) );
+		daemon.start();
+	}
+	
+	protected void tearDown() throws IOException {
+		
+		// Stop the daemon, and clean up.
+		
+		daemon.close();
+		Files.deleteIfExists( directory );
+	}
+	
+	// Utility functions
+	
+	private static void assertSameResult( String [] args, CLArgumentResult expected, CLArgumentClient.Reply actual ) {
+		
+		// Makes sure that the reply matches a local parse.
+		
+		String what = Arrays.toString( args );
+		
+		assertEquals( what + " error code", expected.sequenceErrorCode(), actual.sequenceErrorCode() );
+		assertEquals( what + " error message", expected.sequenceErrorMsg(), actual.sequenceErrorMsg() );
+		assertEquals( what + " help flag", expected.foundHelpFlag(), actual.foundHelpFlag() );
+		assertEquals( what + " verbosity", expected.verbosity(), actual.verbosity() );
+		
+		for( String key : new String [] { "name", "files", "pair", "count" } ) {
+			
+			assertEquals( what + " " + key, expected.getParcelFromKey( key ), actual.getParcelFromKey( key ) );
+			assertEquals( what + " " + key, Arrays.asList( expected.getParcelArrayFromKey( key ) ), Arrays.asList( actual.getParcelArrayFromKey( key ) ) );
+			assertEquals( what + " " + key, expected.getParcelCountForKey( key ), actual.getParcelCountForKey( key ) );
+		}
+	}
+	
+	// Test cases
+	
+	public void testParse() throws IOException {
+		
+		CLArgumentSpec spec = new LADsServed().compileArgSpec();
+		
+		String [][] cases = {
+			{},
+			{ "-hvv", "--name", "\u00e9t\u00e9", "-f", "a", "b", "--pair", "1", "2", "--pair", "3", "4" },
+			{ "-c", "7", "-n", "x", "-n", "y" },
+			{ "--bogus" },
+			{ "-c", "seven" },
+			{ "--pair", "1" }
+		};
+		
+		CLArgumentClient client = new CLArgumentClient( daemon.getSocket() );
+		
+		try {
+			
+			for( String [] args : cases )
+				assertSameResult( args, spec.parse( args ), client.parse( args ) );
+			
+			CLArgumentClient.Reply reply = client.parse( new String [] { "-c", "seven" } );
+			
+			assertEquals( "The token index should be sent.", 1, reply.getErrorTokenIndex() );
+			assertNull( "Usage is only sent when asked for.", reply.getUsage() );
+		}
+		finally {
+			
+			client.close();
+		}
+	}
+	
+	public void testUsage() throws IOException {
+		
+		LADsServed definitions = new LADsServed();
+		StringBuilder expected = new StringBuilder();
+		
+		for( String line : definitions.argsUsage() )
+			expected.append( line ).append( '\n' );
+		
+		CLArgumentClient client = new CLArgumentClient( daemon.getSocket() );
+		
+		try {
+			
+			assertEquals( "The usage should be sent.", expected.toString(), client.usage() );
+			
+			CLArgumentClient.Reply reply = client.parseWithUsage( new String [] { "-h" } );
+			
+			assertTrue( "Both should be sent.", reply.foundHelpFlag() );
+			assertEquals( "Both should be sent.", expected.toString(), reply.getUsage() );
+		}
+		finally {
+			
+			client.close();
+		}
+	}
+	
+	public void testConcurrentConnections() throws Exception {
+		
+		final CLArgumentSpec spec = new LADsServed().compileArgSpec();
+		ExecutorService executor = Executors.newFixedThreadPool( 32 );
+		List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+		
+		try {
+			
+			for( int row = 0 ; row < 64 ; row++ ) {
+				
+				final int id = row;
+				
+				futures.add( executor.submit( new Callable<Integer>() {
+					
+					public Integer call() throws IOException {
+						
+						// Send a few requests of our own.
+						
+						CLArgumentClient client = new CLArgumentClient( daemon.getSocket() );
+						
+						try {
+							
+							for( int request = 0 ; request < 20 ; request++ ) {
+								
+								String [] args = { "-c", String.valueOf( id * 100 + request ), "-f", "a" + id };
+								
+								assertSameResult( args, spec.parse( args ), client.parse( args ) );
+							}
+						}
+						finally {
+							
+							client.close();
+						}
+						
+						return id;
+					}
+				} ) );
+			}
+			
+			for( int row = 0 ; row < futures.size() ; row++ )
+				assertEquals( "Every connection should finish.", row, futures.get( row ).get().intValue() );
+		}
+		finally {
+			
+			executor.shutdown();
+		}
+	}
+	
+	public void testBadRequests() throws IOException {
+		
+		SocketChannel channel = SocketChannel.open( StandardProtocolFamily.UNIX );
+		channel.connect( UnixDomainSocketAddress.of( daemon.getSocket() ) );
+		
+		ByteBuffer garbage = ByteBuffer.allocate( 9 );
+		garbage.putInt( 5 ).put( (byte) 1 ).putInt( 1000 ).flip();
+		channel.write( garbage );
+		
+		ByteBuffer reply = ByteBuffer.allocate( 4 );
+		
+		assertEquals( "A bad request should drop the connection.", -1, channel.read( reply ) );
+		channel.close();
+		
+		CLArgumentClient client = new CLArgumentClient( daemon.getSocket() );
+		
+		try {
+			assertFalse( "The daemon should survive.", client.parse( new String [] { "-v" } ).sequenceError() );
+		}
+		finally {
+			
+			client.close();
+		}
+	}
+	
+	public void testResponseFilesRefused() throws IOException {
+		
+		Path file = Files.write( directory.resolve( "args.txt" ), "-v\n".getBytes( "UTF-8" ) );
+		CLArgumentDaemon served = new CLArgumentDaemon( new LADsServedWithFiles(), directory.resolve( "files" ) );
+		
+		served.start();
+		
+		try {
+			
+			CLArgumentClient client = new CLArgumentClient( served.getSocket() );
+			
+			try {
+				
+				// The daemon must not read files on behalf of its clients.
+				
+				CLArgumentClient.Reply reply = client.parse( new String [] { "-v", "@" + file } );
+				
+				assertEquals( "The response file should be refused.", LinearArgDesequencer.kErrorCodeUnreadableResponseFile, reply.sequenceErrorCode() );
+				assertEquals( "The refusal should point at the '@file' argument.", 1, reply.getErrorTokenIndex() );
+				assertEquals( "Nothing should be sent back.", 0, reply.verbosity() );
+				
+				// An escaped '@' is still a plain parcel.
+				
+				reply = client.parse( new String [] { "-f", "@@home" } );
+				
+				assertFalse( "An escaped '@' should parse.", reply.sequenceError() );
+				assertEquals( "'@@' should stand for a plain '@'.", "@home", reply.getParcelFromKey( "files" ) );
+			}
+			finally {
+				
+				client.close();
+			}
+		}
+		finally {
+			
+			served.close();
+			Files.delete( file );
+		}
+	}
+	
+	public void testSocketPermissions() throws IOException {
+		
+		// Only the owner may connect, and nothing is left behind
+		// in the directory but the socket itself.
+		
+		assertEquals( "The socket should be owner-only.", PosixFilePermissions.fromString( "rw-------" ), Files.getPosixFilePermissions( daemon.getSocket() ) );
+		assertEquals( "Only the socket should be in the directory.", 1, directory.toFile().list().length );
+	}
+	
+	public void testLoadToolWithFailedConnects() throws Exception {
+		
+		// Every connection fails, because nothing listens on the
+		// socket.  The tool should still finish, and report them.
+		
+		final String [] args = { directory.resolve( "nobody" ).toString(), "4", "2", "-v" };
+		final Throwable [] thrown = new Throwable [ 1 ];
+		PrintStream out = System.out;
+		ByteArrayOutputStream captured = new ByteArrayOutputStream();
+		
+		Thread tool = new Thread() {
+			
+			public void run() {
+				
+				try {
+					CLArgumentClient.main( args );
+				}
+				catch( Throwable e ) {
+					
+					thrown[ 0 ] = e;
+				}
+			}
+		};
+		
+		System.setOut( new PrintStream( captured, true ) );
+		
+		try {
+			tool.start();
+			tool.join( 10000 );
+		}
+		finally {
+			
+			System.setOut( out );
+		}
+		
+		assertFalse( "The tool should not wait for failed connections.", tool.isAlive() );
+		assertNull( "The tool should not fail.", thrown[ 0 ] );
+		assertTrue( "The failures should be reported.", captured.toString().contains( "Failed connections: 4" ) );
+	}
+	
+	public void testClose() throws IOException {
+		
+		CLArgumentClient client = new CLArgumentClient( daemon.getSocket() );
+		
+		daemon.close();
+		
+		assertFalse( "The socket file should be removed.", Files.exists( daemon.getSocket() ) );
+		
+		try {
+			
+			client.parse( new String [0] );
+			fail( "The connection should be dropped." );
+		}
+		catch( IOException e ) {
+			
+			// This is expected.
+		}
+		finally {
+			
+			client.close();
+		}
+		
+		try {
+			
+			new CLArgumentClient( daemon.getSocket() );
+			fail( "Nothing should be listening." );
+		}
+		catch( IOException e ) {
+			
+			// This is expected.
+		}
+		
+		daemon.start();
+		
+		client = new CLArgumentClient( daemon.getSocket() );
+		
+		try {
+			assertEquals( "The daemon can be restarted.", 1, client.parse( new String [] { "-v" } ).verbosity() );
+		}
+		finally {
+			
+			client.close();
+		}
+	}
+}
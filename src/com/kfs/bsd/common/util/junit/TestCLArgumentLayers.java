@@ -0,0 +1,288 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  JUnit Test Case for CLArgumentLayers
+ */
+
+package com.kfs.bsd.common.util.junit;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import junit.framework.*;
+import com.kfs.bsd.common.util.CLArgumentLayers;
+import com.kfs.bsd.common.util.CLArgumentResult;
+import com.kfs.bsd.common.util.CLArgumentSource;
+import com.kfs.bsd.common.util.CLArgumentSpec;
+import com.kfs.bsd.common.util.LinearArgDesequencer;
+
+public class TestCLArgumentLayers extends TestCase {
+	
+	// The layers are defined by a spec, which is
+	// compiled from a subclass of LinearArgDesequencer.
+	
+	protected class LADsLayered extends LinearArgDesequencer {
+		
+		// This is a subclass of LinearArgDesequencer with arguments
+		// that might come from a config file or the environment.
+		
+		public LADsLayered() {
+			
+			// Java requires that this be here.
+			
+			// Forward the request to super.
+			
+			super();
+		}
+		
+		protected void populateArgSet() {
+			
+			// Start with the default argument set.
+			
+			super.populateArgSet();
+			
+			// Add some more of our own arguments:
+			
+			argSet.addArgumentInfo( "port", 'p', "port", 1, false, false, "Port", int.class );
+			argSet.addArgumentInfo( "name", 'n', "name", 1, false, "Name" );
+			argSet.addArgumentInfo( "files", 'f', "file", 1, true, true, "Files", String.class );
+			argSet.addArgumentInfo( "pair", "pair", 2, false, "Pair" );
+			argSet.addArgumentInfo( "dry-run", "dry-run", 0, false, "Dry Run" );
+			argSet.addArgumentInfo( "target", "target", 1, false, "Target" );
+			requiredArgumentKeys.add( "target" );
+		}
+	}
+	
+	protected static class CountingSource implements CLArgumentSource {
+		
+		// A source that supplies a fixed argument array, and
+		// remembers how many times it has been loaded.
+		
+		private final String [] args;
+		public int loads = 0;
+		
+		public CountingSource( String ... args ) {
+			
+			// Java requires that this be here.
+			
+			super();
+			
+			this.args = args;
+		}
+		
+		public String [] load( CLArgumentSpec spec ) {
+			
+			// Count the load, and supply the arguments.
+			
+			loads++;
+			
+			return args;
+		}
+	}
+	
+	// Utility functions
+	
+	private CLArgumentSpec spec() {
+		
+		// Returns a fresh spec for testing.
+		
+		return new LADsLayered().compileArgSpec();
+	}
+	
+	// Test cases
+	
+	public void testMatchesConcatenation() {
+		
+		CLArgumentSpec spec = spec();
+		
+		String [] defaults = { "--port", "1", "-f", "a", "--pair", "d1", "d2" };
+		String [] config = { "--port", "2", "--name", "x", "-f", "b", "c", "-v" };
+		String [] args = { "t", "-f", "d", "-v", "--pair", "a1", "a2" };
+		
+		CLArgumentLayers layers = new CLArgumentLayers( spec ).withSource( "defaults", new CountingSource( defaults ) ).withSource( "config", new CountingSource( config ) ).withArgs( args );
+		
+		ArrayList<String> all = new ArrayList<String>();
+		all.add( "t" );
+		all.addAll( Arrays.asList( defaults ) );
+		all.addAll( Arrays.asList( config ) );
+		all.addAll( Arrays.asList( args ).subList( 1, args.length ) );
+		
+		CLArgumentResult concatenated = spec.parse( all.toArray( new String [0] ) );
+		
+		assertFalse( "The concatenation should parse.", concatenated.sequenceError() );
+		assertFalse( "The layers should parse.", layers.sequenceError() );
+		
+		for( String key : new String [] { "port", "name", "files", "pair", "dry-run", "target", "Help", "Verbose" } ) {
+			
+			assertEquals( key + " should be the same.", concatenated.getParcelFromKey( key ), layers.getParcelFromKey( key ) );
+			assertEquals( key + " should be the same.", Arrays.asList( concatenated.getParcelArrayFromKey( key ) ), Arrays.asList( layers.getParcelArrayFromKey( key ) ) );
+			assertEquals( key + " should be the same.", concatenated.getParcelCountForKey( key ), layers.getParcelCountForKey( key ) );
+			assertEquals( key + " should be the same.", concatenated.getParcelCountForKey( key, true ), layers.getParcelCountForKey( key, true ) );
+		}
+		
+		assertEquals( "The argument array wins.", "d", layers.getParcelFromKey( "files" ) );
+		assertEquals( "Config files beat defaults.", 2, layers.getIntFromKey( "port", 0 ) );
+		assertEquals( "Typed values should be the same.", concatenated.getIntFromKey( "port", 0 ), layers.getIntFromKey( "port", 0 ) );
+		assertTrue( "Typed arrays should be the same.", Arrays.equals( concatenated.getIntArrayFromKey( "port" ), layers.getIntArrayFromKey( "port" ) ) );
+		assertEquals( "Verbosity counts every layer.", concatenated.verbosity(), layers.verbosity() );
+		assertEquals( "Help was not asked for.", concatenated.foundHelpFlag(), layers.foundHelpFlag() );
+		assertEquals( "The source of a key should be known.", "config", layers.getSourceOfKey( "name" ) );
+		assertEquals( "The source of a key should be known.", "argv", layers.getSourceOfKey( "pair" ) );
+		assertNull( "Missing keys have no source.", layers.getSourceOfKey( "dry-run" ) );
+	}
+	
+	public void testLazyLoading() {
+		
+		CountingSource defaults = new CountingSource( "--port", "1", "--name", "n", "-f", "a" );
+		CountingSource config = new CountingSource( "--name", "x" );
+		
+		CLArgumentLayers layers = new CLArgumentLayers( spec() ).withSource( "defaults", defaults ).withSource( "config", config ).withArgs( new String [] { "t", "-p", "3" } );
+		
+		assertEquals( "Nothing is loaded up front.", "Layers: argv (not loaded), config (not loaded), defaults (not loaded)", layers.toString() );
+		
+		assertEquals( "The argument array should answer.", 3, layers.getIntFromKey( "port", 0 ) );
+		assertEquals( "Lower layers are not needed.", 0, config.loads );
+		assertFalse( "Lower layers are not needed.", layers.isLoaded( "config" ) );
+		
+		assertEquals( "The config file should answer.", "x", layers.getParcelFromKey( "name" ) );
+		assertEquals( "The config file is now needed.", 1, config.loads );
+		assertEquals( "The defaults are still not needed.", 0, defaults.loads );
+		
+		assertEquals( "Arrays need every layer.", Arrays.asList( "a" ), Arrays.asList( layers.getParcelArrayFromKey( "files" ) ) );
+		assertEquals( "Every layer is loaded once.", 1, config.loads );
+		assertEquals( "Every layer is loaded once.", 1, defaults.loads );
+		assertEquals( "Everything is loaded now.", "Layers: argv, config, defaults", layers.toString() );
+	}
+	
+	public void testSharing() {
+		
+		CountingSource config = new CountingSource( "--name", "x", "--port", "8" );
+		
+		CLArgumentLayers base = new CLArgumentLayers( spec() ).withSource( "config", config );
+		CLArgumentLayers first = base.withArgs( new String [] { "one", "-p", "1" } );
+		CLArgumentLayers second = base.withArgs( new String [] { "two" } );
+		
+		assertEquals( "The base is not changed.", Arrays.asList( "config" ), Arrays.asList( base.getLayerNames() ) );
+		assertEquals( "Layers are listed from the top.", Arrays.asList( "argv", "config" ), Arrays.asList( first.getLayerNames() ) );
+		
+		assertEquals( "Each view has its own top.", 1, first.getIntFromKey( "port", 0 ) );
+		assertEquals( "Each view has its own top.", 8, second.getIntFromKey( "port", 0 ) );
+		assertEquals( "Each view has its own top.", "one", first.getParcelFromKey( "target" ) );
+		assertEquals( "Each view has its own top.", "two", second.getParcelFromKey( "target" ) );
+		assertEquals( "The shared layer should answer.", "x", first.getParcelFromKey( "name" ) );
+		assertEquals( "The shared layer should answer.", "x", second.getParcelFromKey( "name" ) );
+		
+		assertEquals( "The shared layer is loaded once.", 1, config.loads );
+		assertTrue( "The base sees the loaded layer.", base.isLoaded( "config" ) );
+		assertSame( "The parsed layer is shared.", first.getLayerResult( "config" ), second.getLayerResult( "config" ) );
+	}
+	
+	public void testEnvironment() {
+		
+		HashMap<String,String> environment = new HashMap<String,String>();
+		
+		environment.put( "APP_PORT", "8080" );
+		environment.put( "APP_DRY_RUN", "yes" );
+		environment.put( "APP_FILE", " x  y " );
+		environment.put( "APP_PAIR", "a b c d" );
+		environment.put( "APP_NAME", "" );
+		environment.put( "PORT", "1" );
+		
+		CLArgumentLayers layers = new CLArgumentLayers( spec() ).withEnvironment( "APP_", environment ).withArgs( new String [] { "t" } );
+		
+		assertFalse( "The environment should parse.", layers.sequenceError() );
+		assertEquals( "Variables should be found by switch.", 8080, layers.getIntFromKey( "port", 0 ) );
+		assertEquals( "Dashes become underscores.", 1, layers.getParcelCountForKey( "dry-run" ) );
+		assertEquals( "Values are split at whitespace.", Arrays.asList( "x", "y" ), Arrays.asList( layers.getParcelArrayFromKey( "files" ) ) );
+		assertEquals( "Groups of parcels repeat the switch.", Arrays.asList( "c", "d" ), Arrays.asList( layers.getParcelArrayFromKey( "pair" ) ) );
+		assertEquals( "Groups of parcels repeat the switch.", 6, layers.getParcelCountForKey( "pair" ) );
+		assertNull( "Empty values are not parcels.", layers.getParcelFromKey( "name" ) );
+		assertEquals( "The environment is named.", "env", layers.getSourceOfKey( "port" ) );
+		
+		for( String off : new String [] { "", "0", "false", "No", "OFF" } ) {
+			
+			environment.put( "APP_DRY_RUN", off );
+			
+			assertEquals( "'" + off + "' should not set the argument.", 0, new CLArgumentLayers( spec() ).withEnvironment( "APP_", environment ).getParcelCountForKey( "dry-run" ) );
+		}
+		
+		environment.put( "APP_PAIR", "a b c" );
+		
+		assertEquals( "An incomplete group is an error.", LinearArgDesequencer.kErrorCodeMissingArgument, new CLArgumentLayers( spec() ).withEnvironment( "APP_", environment ).sequenceErrorCode() );
+	}
+	
+	public void testFiles() throws IOException {
+		
+		File file = File.createTempFile( "layers", ".conf" );
+		file.deleteOnExit();
+		
+		FileWriter writer = new FileWriter( file );
+		writer.write( "--port 9\n--name 'a b'\n" );
+		writer.close();
+		
+		CLArgumentLayers layers = new CLArgumentLayers( spec() ).withFile( new File( "/no/such/file.conf" ) ).withFile( file ).withArgs( new String [] { "t" } );
+		
+		assertFalse( "A missing config file is empty.", layers.sequenceError() );
+		assertEquals( "The config file should be read.", 9, layers.getIntFromKey( "port", 0 ) );
+		assertEquals( "The config file should be read.", "a b", layers.getParcelFromKey( "name" ) );
+		assertEquals( "The layer is named by the file.", file.getPath(), layers.getSourceOfKey( "name" ) );
+	}
+	
+	public void testErrors() {
+		
+		CLArgumentSource broken = new CLArgumentSource() {
+			
+			public String [] load( CLArgumentSpec spec ) throws IOException {
+				
+				// This source can never be read.
+				
+				throw new IOException( "Broken" );
+			}
+		};
+		
+		CLArgumentLayers layers = new CLArgumentLayers( spec() ).withSource( "broken", broken ).withSource( "config", new CountingSource( "--port", "x" ) );
+		
+		assertEquals( "The highest error wins.", LinearArgDesequencer.kErrorCodeInvalidValue, layers.sequenceErrorCode() );
+		assertEquals( "The highest error wins.", "config", layers.getSourceOfError() );
+		assertEquals( "The highest error wins.", "Invalid value for 'port': 'x'", layers.sequenceErrorMsg() );
+		
+		layers = new CLArgumentLayers( spec() ).withSource( "broken", broken ).withArgs( new String [] { "t" } );
+		
+		assertEquals( "An unreadable source is reported.", LinearArgDesequencer.kErrorCodeUnreadableResponseFile, layers.sequenceErrorCode() );
+		assertEquals( "An unreadable source is reported.", "Cannot read response file: 'broken'", layers.sequenceErrorMsg() );
+		assertEquals( "An unreadable source is reported.", "broken", layers.getSourceOfError() );
+		
+		layers = new CLArgumentLayers( spec() ).withSource( "config", new CountingSource( "stray" ) );
+		
+		assertEquals( "Only argument arrays have positional arguments.", LinearArgDesequencer.kErrorCodeUnknownArgument, layers.sequenceErrorCode() );
+		
+		layers = new CLArgumentLayers( spec() ).withSource( "config", new CountingSource( "--name", "x" ) ).withArgs( new String [0] );
+		
+		assertEquals( "Required arguments come from the argument array.", LinearArgDesequencer.kErrorCodeMissingArgument, layers.sequenceErrorCode() );
+		assertEquals( "Required arguments come from the argument array.", "argv", layers.getSourceOfError() );
+		
+		layers = new CLArgumentLayers( spec() );
+		
+		assertFalse( "No layers, no errors.", layers.sequenceError() );
+		assertNull( "No layers, no parcels.", layers.getParcelFromKey( "name" ) );
+		assertEquals( "No layers, no parcels.", 0, layers.getParcelArrayFromKey( "files" ).length );
+		assertEquals( "No layers, use the default.", 5, layers.getIntFromKey( "port", 5 ) );
+		assertNull( "Unknown keys have no parcels.", layers.getParcelFromKey( "bogus" ) );
+		
+		try {
+			
+			layers.getIntFromKey( "name", 0 );
+			fail( "The type of an argument should be checked." );
+		}
+		catch( IllegalArgumentException e ) {
+			
+			// This is expected.
+		}
+	}
+}
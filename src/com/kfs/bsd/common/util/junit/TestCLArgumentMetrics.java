@@ -0,0 +1,164 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  JUnit Test Case for CLArgumentMetrics
+ */
+
+package com.kfs.bsd.common.util.junit;
+
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import junit.framework.*;
+import com.kfs.bsd.common.util.CLArgumentMetrics;
+import com.kfs.bsd.common.util.CLArgumentSpec;
+import com.kfs.bsd.common.util.LinearArgDesequencer;
+
+public class TestCLArgumentMetrics extends TestCase {
+	
+	// Metrics are attached to the argument set of a
+	// LinearArgDesequencer, so we will need one for testing.
+	
+	protected class LADsMetered extends LinearArgDesequencer {
+		
+		// This is a subclass of LinearArgDesequencer that
+		// records its parses in the given collector.
+		
+		private final CLArgumentMetrics metrics;
+		
+		public LADsMetered( CLArgumentMetrics metrics ) {
+			
+			// Java requires that this be here.
+			
+			// Forward the request to super.
+			
+			super();
+			
+			this.metrics = metrics;
+			
+			argSet.setMetrics( metrics );
+		}
+		
+		protected void populateArgSet() {
+			
+			// Start with the default argument set.
+			
+			super.populateArgSet();
+			
+			// Add some more of our own arguments:
+			
+			argSet.addArgumentInfo( "arg1", '1', "argOne", 1, false, "Argument with 1 parcel" );
+		}
+		
+		public void parse( String [] args ) {
+			
+			// Parses the given arguments again.
+			
+			desequenceArgs( args );
+		}
+	}
+	
+	// Test cases
+	
+	public void testDisabledByDefault() {
+		
+		CLArgumentSpec spec = new LinearArgDesequencer().compileArgSpec();
+		
+		assertNull( "Metrics should be off by default.", spec.getMetrics() );
+	}
+	
+	public void testCounts() {
+		
+		CLArgumentMetrics metrics = new CLArgumentMetrics();
+		LADsMetered lad = new LADsMetered( metrics );
+		
+		String [] good = { "-vv", "--argOne", "foo" };
+		String [] unknown = { "-x" };
+		String [] missing = { "-1" };
+		
+		lad.parse( good );
+		lad.parse( good );
+		lad.parse( unknown );
+		lad.parse( missing );
+		
+		CLArgumentMetrics.Snapshot snapshot = metrics.snapshot();
+		
+		assertEquals( "Every parse should be counted.", 4, snapshot.getParseCount() );
+		assertEquals( "Every token should be counted.", 8, snapshot.getTokenCount() );
+		assertEquals( "Two parses failed.", 2, snapshot.getErrorCount() );
+		assertEquals( "One parse found an unknown option.", 1, snapshot.getErrorCount( LinearArgDesequencer.kErrorCodeUnknownArgument ) );
+		assertEquals( "One parse was missing a parcel.", 1, snapshot.getErrorCount( LinearArgDesequencer.kErrorCodeMissingArgument ) );
+		assertEquals( "The verbose flag was found four times.", 4, snapshot.getOptionHits( "Verbose" ) );
+		assertEquals( "arg1 was found three times.", 3, snapshot.getOptionHits( "arg1" ) );
+		assertEquals( "Help was never found.", 0, snapshot.getOptionHits( "Help" ) );
+		
+		long latencies = 0;
+		
+		for( long count : snapshot.getLatencyHistogram() )
+			latencies += count;
+		
+		assertEquals( "Every parse should have a latency.", 4, latencies );
+		assertTrue( "The percentiles should be ordered.", snapshot.getLatencyPercentileNanos( 50 ) <= snapshot.getLatencyPercentileNanos( 99 ) );
+		assertTrue( "The mean latency should be positive.", snapshot.getMeanLatencyNanos() > 0 );
+	}
+	
+	public void testSharedAcrossSpecs() {
+		
+		CLArgumentMetrics metrics = new CLArgumentMetrics();
+		CLArgumentSpec first = new LADsMetered( metrics ).compileArgSpec();
+		CLArgumentSpec second = new LADsMetered( metrics ).compileArgSpec();
+		
+		String [] args = { "-h" };
+		
+		first.parse( args );
+		second.parse( args );
+		second.parseAll( new String [][] { args, args } );
+		
+		assertEquals( "Both specs should record into the same collector.", 4, metrics.snapshot().getOptionHits( "Help" ) );
+	}
+	
+	public void testSnapshotAndReset() {
+		
+		CLArgumentMetrics metrics = new CLArgumentMetrics();
+		LADsMetered lad = new LADsMetered( metrics );
+		
+		String [] args = { "-v" };
+		lad.parse( args );
+		
+		CLArgumentMetrics.Snapshot before = metrics.snapshot();
+		
+		metrics.reset();
+		lad.parse( args );
+		
+		assertEquals( "A snapshot should not change.", 1, before.getParseCount() );
+		assertEquals( "A reset should start over.", 1, metrics.snapshot().getParseCount() );
+		assertEquals( "A reset should start over.", 1, metrics.snapshot().getOptionHits( "Verbose" ) );
+	}
+	
+	public void testMBean() throws Exception {
+		
+		CLArgumentMetrics metrics = new CLArgumentMetrics();
+		LADsMetered lad = new LADsMetered( metrics );
+		
+		String [] args = { "-x" };
+		lad.parse( args );
+		
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = metrics.register( "testMBean" );
+		
+		try {
+			
+			assertEquals( "The parse count should be published.", 1L, server.getAttribute( name, "ParseCount" ) );
+			assertEquals( "The error count should be published.", 1L, server.getAttribute( name, "ErrorCount" ) );
+			
+			server.invoke( name, "reset", null, null );
+			
+			assertEquals( "Reset should be published.", 0L, server.getAttribute( name, "ParseCount" ) );
+		}
+		finally {
+			
+			server.unregisterMBean( name );
+		}
+	}
+}
@@ -0,0 +1,281 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  JUnit Test Case for CLArgumentSnapshot
+ */
+
+package com.kfs.bsd.common.util.junit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import junit.framework.*;
+import com.kfs.bsd.common.util.CLArgumentMetrics;
+import com.kfs.bsd.common.util.CLArgumentSnapshot;
+import com.kfs.bsd.common.util.CLArgumentSpec;
+import com.kfs.bsd.common.util.LinearArgDesequencer;
+
+public class TestCLArgumentSnapshot extends TestCase {
+	
+	// The arguments that are written to snapshots.  This class is
+	// static, so that the build-time tool can construct it.
+	
+	public enum Colour { RED, GREEN, BLUE }
+	
+	public static class LADsSnapshot extends LinearArgDesequencer {
+		
+		// This is a subclass of LinearArgDesequencer that has
+		// arguments of every kind that a snapshot records.
+		
+		public LADsSnapshot() {
+			
+			// Java requires that this be here.
+			
+			// Forward the request to super.
+			
+			super();
+		}
+		
+		protected void populateArgSet() {
+			
+			// Start with the default argument set.
+			
+			super.populateArgSet();
+			
+			// Add some more of our own arguments:
+			
+			argSet.addArgumentInfo( "port", 'p', "port", 1, false, false, "Port", int.class );
+			argSet.addArgumentInfo( "colour", 'c', "colour", 1, false, false, "Colour", Colour.class );
+			argSet.addArgumentInfo( "name", '\u00f1', "nombre", 1, false, "Name" );
+			argSet.addArgumentSwitch( "name", "name" );
+			argSet.addArgumentInfo( "files", 'f', "file", 1, true, true, "Files", String.class );
+			argSet.addArgumentInfo( "verbatim", "verbatim", 0, false, null );
+			argSet.addArgumentInfo( "target", "target", 1, false, "Target" );
+			argSet.setAllowsAbbreviations( true );
+			argSet.setAllowsResponseFiles( true );
+			requiredArgumentKeys.add( "target" );
+		}
+	}
+	
+	protected class LADsDuplicate extends LinearArgDesequencer {
+		
+		// This is a subclass of LinearArgDesequencer
+		// that registers a flag twice.
+		
+		public LADsDuplicate() {
+			
+			// Java requires that this be here.
+			
+			// Forward the request to super.
+			
+			super();
+		}
+		
+		protected void populateArgSet() {
+			
+			// Start with the default argument set.
+			
+			super.populateArgSet();
+			
+			// Add a second owner of the help flag.
+			
+			argSet.addArgumentInfo( "hat", 'h', 0, false, "Hat" );
+		}
+	}
+	
+	protected class LADsLarge extends LinearArgDesequencer {
+		
+		// This is a subclass of LinearArgDesequencer
+		// that has thousands of arguments.
+		
+		public LADsLarge() {
+			
+			// Java requires that this be here.
+			
+			// Forward the request to super.
+			
+			super();
+		}
+		
+		protected void populateArgSet() {
+			
+			// For simplicity, do not add the default argument set.
+			
+			for( int row = 0 ; row < 10000 ; row++ )
+				argSet.addArgumentInfo( "key" + row, "switch-" + Integer.toString( row, 36 ), row % 3, row % 2 == 0, "Option " + row );
+		}
+	}
+	
+	// Utility functions
+	
+	private static File makeFile() throws IOException {
+		
+		// Returns a temporary file that is deleted on exit.
+		
+		File result = File.createTempFile( "clspec", ".clspec" );
+		result.deleteOnExit();
+		
+		return result;
+	}
+	
+	private static CLArgumentSpec roundTrip( CLArgumentSpec spec ) throws IOException {
+		
+		// Writes the given spec to a file, and loads it again.
+		
+		File file = makeFile();
+		
+		CLArgumentSnapshot.write( spec, file );
+		
+		return CLArgumentSnapshot.load( file );
+	}
+	
+	private static void assertSameDefinitions( CLArgumentSpec expected, CLArgumentSpec actual ) {
+		
+		// Makes sure that the given specs define the same arguments.
+		
+		assertEquals( "The option count should survive.", expected.getOptionCount(), actual.getOptionCount() );
+		assertEquals( "Abbreviations should survive.", expected.allowsAbbreviations(), actual.allowsAbbreviations() );
+		assertEquals( "Response files should survive.", expected.allowsResponseFiles(), actual.allowsResponseFiles() );
+		
+		for( int option = 0 ; option < expected.getOptionCount() ; option++ ) {
+			
+			String key = expected.getKey( option );
+			
+			assertEquals( "The key should survive.", key, actual.getKey( option ) );
+			assertEquals( "The key should be found.", option, actual.getOptionForKey( key ) );
+			assertTrue( key + " flags should survive.", Arrays.equals( expected.getFlags( option ), actual.getFlags( option ) ) );
+			assertTrue( key + " switches should survive.", Arrays.equals( expected.getSwitches( option ), actual.getSwitches( option ) ) );
+			assertEquals( key + " parcel count should survive.", expected.getParcelCount( option ), actual.getParcelCount( option ) );
+			assertEquals( key + " isArray should survive.", expected.isArray( option ), actual.isArray( option ) );
+			assertEquals( key + " isUnbounded should survive.", expected.isUnbounded( option ), actual.isUnbounded( option ) );
+			assertEquals( key + " display name should survive.", expected.getDisplayName( option ), actual.getDisplayName( option ) );
+			assertEquals( key + " value type should survive.", expected.getValueType( option ), actual.getValueType( option ) );
+			
+			for( char flag : expected.getFlags( option ) )
+				assertEquals( key + " should own its flags.", expected.getArgKeyForFlag( flag ), actual.getArgKeyForFlag( flag ) );
+			
+			for( String sswitch : expected.getSwitches( option ) )
+				assertEquals( key + " should own its switches.", expected.getArgKeyForSwitch( sswitch ), actual.getArgKeyForSwitch( sswitch ) );
+		}
+		
+		assertEquals( "Unknown keys should not be found.", -1, actual.getOptionForKey( "no such key" ) );
+		assertNull( "Unknown flags should not be found.", actual.getArgKeyForFlag( 'Z' ) );
+		assertNull( "Unknown flags should not be found.", actual.getArgKeyForFlag( '\u00e9' ) );
+		assertNull( "Unknown switches should not be found.", actual.getArgKeyForSwitch( "no-such-switch" ) );
+	}
+	
+	// Test cases
+	
+	public void testDefinitionsSurvive() throws IOException {
+		
+		CLArgumentSpec spec = new LADsSnapshot().compileArgSpec();
+		CLArgumentSpec loaded = roundTrip( spec );
+		
+		assertSameDefinitions( spec, loaded );
+		
+		assertEquals( "Prefixes should be listed in order.", Arrays.asList( "verbatim", "verbose" ), Arrays.asList( loaded.getSwitchesWithPrefix( "verb" ) ) );
+		assertEquals( "Every switch has the empty prefix.", Arrays.asList( spec.getSwitchesWithPrefix( "" ) ), Arrays.asList( loaded.getSwitchesWithPrefix( "" ) ) );
+		assertEquals( "Unique abbreviations should be found.", "colour", loaded.getArgKeyForSwitch( "col" ) );
+		assertNull( "Ambiguous abbreviations should not be found.", loaded.getArgKeyForSwitch( "verb" ) );
+		assertEquals( "Abbreviations owned by one key are not ambiguous.", "name", loaded.getArgKeyForSwitch( "n" ) );
+	}
+	
+	public void testParsesAgree() throws IOException {
+		
+		CLArgumentSpec spec = new LADsSnapshot().compileArgSpec();
+		CLArgumentSpec loaded = roundTrip( spec );
+		
+		String [][] cases = {
+			{},
+			{ "t" },
+			{ "t", "-hv", "--port", "80", "-c", "green", "-\u00f1", "x", "--name", "y", "-f", "a", "b" },
+			{ "t", "--verbat", "--col", "blue", "--nom", "z" },
+			{ "t", "--verb" },
+			{ "t", "--bogus" },
+			{ "t", "-x" },
+			{ "t", "-p", "eighty" },
+			{ "t", "-c", "purple" },
+			{ "t", "-p" },
+			{ "t", "stray" },
+			{ "t", "@/no/such/file" }
+		};
+		
+		for( String [] args : cases )
+			assertEquals( Arrays.toString( args ) + " should parse the same.", spec.parse( args ).toString(), loaded.parse( args ).toString() );
+	}
+	
+	public void testDuplicatesSurvive() throws IOException {
+		
+		CLArgumentSpec loaded = roundTrip( new LADsDuplicate().compileArgSpec() );
+		
+		assertEquals( "The duplicate should still be reported.", LinearArgDesequencer.kErrorCodeDuplicateArgument, loaded.parse( new String [0] ).sequenceErrorCode() );
+		assertEquals( "The first owner should keep the flag.", "Help", loaded.getArgKeyForFlag( 'h' ) );
+	}
+	
+	public void testLargeSpec() throws IOException {
+		
+		CLArgumentSpec spec = new LADsLarge().compileArgSpec();
+		CLArgumentSpec loaded = roundTrip( spec );
+		
+		assertSameDefinitions( spec, loaded );
+		
+		String [] args = { "--switch-0", "--switch-1", "a", "--switch-2", "b", "c", "--switch-7ps" };
+		
+		assertEquals( "Large specs should parse the same.", spec.parse( args ).toString(), loaded.parse( args ).toString() );
+	}
+	
+	public void testMetrics() throws IOException {
+		
+		File file = makeFile();
+		CLArgumentMetrics metrics = new CLArgumentMetrics();
+		
+		CLArgumentSnapshot.write( new LADsSnapshot().compileArgSpec(), file );
+		CLArgumentSnapshot.load( file, metrics ).parse( new String [] { "-v", "t" } );
+		
+		assertEquals( "A loaded spec should record its parses.", 1, metrics.snapshot().getParseCount() );
+		assertEquals( "A loaded spec should count its options.", 1, metrics.snapshot().getOptionHits( "Verbose" ) );
+	}
+	
+	public void testBuildTool() throws Exception {
+		
+		File file = makeFile();
+		
+		CLArgumentSnapshot.main( new String [] { LADsSnapshot.class.getName(), file.getPath() } );
+		
+		assertSameDefinitions( new LADsSnapshot().compileArgSpec(), CLArgumentSnapshot.load( file ) );
+	}
+	
+	public void testBadImages() throws IOException {
+		
+		byte [] image = new byte [ 1000 ];
+		
+		try {
+			
+			CLArgumentSnapshot.load( ByteBuffer.wrap( image ), null );
+			fail( "Zeroes are not a snapshot." );
+		}
+		catch( IOException e ) {
+			
+			assertEquals( "Not a CLArgumentSpec snapshot", e.getMessage() );
+		}
+		
+		File file = makeFile();
+		CLArgumentSnapshot.write( new LADsSnapshot().compileArgSpec(), file );
+		
+		image = Files.readAllBytes( file.toPath() );
+		
+		try {
+			
+			CLArgumentSnapshot.load( ByteBuffer.wrap( Arrays.copyOf( image, 600 ) ), null );
+			fail( "A truncated image is not a snapshot." );
+		}
+		catch( IOException e ) {
+			
+			assertEquals( "Truncated CLArgumentSpec snapshot", e.getMessage() );
+		}
+	}
+}
@@ -0,0 +1,978 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  JUnit Test Case for CLArgumentSpec
+ */
+
+package com.kfs.bsd.common.util.junit;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import junit.framework.*;
+import com.kfs.bsd.common.util.CLArgumentAdapter;
+import com.kfs.bsd.common.util.CLArgumentError;
+import com.kfs.bsd.common.util.CLArgumentLayers;
+import com.kfs.bsd.common.util.CLArgumentListener;
+import com.kfs.bsd.common.util.CLArgumentResult;
+import com.kfs.bsd.common.util.CLArgumentSpec;
+import com.kfs.bsd.common.util.CLArgumentTable;
+import com.kfs.bsd.common.util.CLPackedResult;
+import com.kfs.bsd.common.util.CLParsedArguments;
+import com.kfs.bsd.common.util.LinearArgDesequencer;
+
+public class TestCLArgumentSpec extends TestCase {
+	
+	// A CLArgumentSpec is compiled from a subclass of
+	// LinearArgDesequencer, so we will need one for testing.
+	
+	protected class LADsMixed extends LinearArgDesequencer {
+		
+		// This is a subclass of LinearArgDesequencer that has
+		// a little bit of everything, so that a compiled spec
+		// can be compared against the original class.
+		
+		public LADsMixed() {
+			
+			// Java requires that this be here.
+			
+			// Forward the request to super.
+			
+			super();
+		}
+		
+		public LADsMixed( String [] args ) {
+			
+			// Java requires that this be here.
+			
+			// Forward the request to super.
+			
+			super( args );
+		}
+		
+		protected void populateArgSet() {
+			
+			// Start with the default argument set.
+			
+			super.populateArgSet();
+			
+			// Add some more of our own arguments:
+			
+			argSet.addArgumentInfo( "arg1", '1', "argOne", 1, false, "Argument with 1 parcel" );
+			argSet.addArgumentInfo( "arg2", '2', "argTwo", 2, false, true, "Argument with 2 parcels (unbounded)" );
+			argSet.addArgumentInfo( "ary1", 'q', "arrayOne", 1, true, "Array argument with 1 parcel" );
+			argSet.addArgumentInfo( "ary2", 'w', "arrayTwo", 2, true, true, "Array argument with 2 parcels (unbounded)" );
+			argSet.setArgumentParcelCount( "input", 1 );
+			argSet.setArgumentDisplayName( "input", "Input file" );
+			
+			requiredArgumentKeys.add( "input" );
+		}
+		
+		public String [] parcelsForKey( String id ) {
+			
+			// Exposes the argument set to the test cases.
+			
+			return argSet.getParcelArrayFromKey( id );
+		}
+		
+		public int parcelCountForKey( String id ) {
+			
+			// Exposes the argument set to the test cases.
+			
+			return argSet.getParcelCountForKey( id );
+		}
+	}
+	
+	// Typed arguments need a subclass of their own.
+	
+	protected enum Level { LOW, HIGH }
+	
+	protected class LADsTyped extends LinearArgDesequencer {
+		
+		// This is a subclass of LinearArgDesequencer that has
+		// an argument of each type that can be converted.
+		
+		public LADsTyped() {
+			
+			// Java requires that this be here.
+			
+			// Forward the request to super.
+			
+			super();
+		}
+		
+		protected void populateArgSet() {
+			
+			// Start with the default argument set.
+			
+			super.populateArgSet();
+			
+			// Add some more of our own arguments:
+			
+			argSet.addArgumentInfo( "count", 'c', "count", 1, false, false, "Count", int.class );
+			argSet.addArgumentInfo( "offsets", 'o', "offset", 1, true, true, "Offsets", long.class );
+			argSet.addArgumentInfo( "scale", 's', "scale", 1, false, false, "Scale", double.class );
+			argSet.addArgumentInfo( "dry", 'd', "dry-run", 1, false, false, "Dry run", boolean.class );
+			argSet.addArgumentInfo( "level", 'l', "level", 1, false, false, "Level", Level.class );
+			argSet.setAllowsResponseFiles( true );
+		}
+	}
+	
+	protected class LADsWords extends LinearArgDesequencer {
+		
+		// This is a subclass of LinearArgDesequencer that has
+		// thousands of arguments with made-up switches.
+		
+		public LADsWords() {
+			
+			// Java requires that this be here.
+			
+			// Forward the request to super.
+			
+			super();
+		}
+		
+		protected void populateArgSet() {
+			
+			// For simplicity, do not add the default argument set.
+			
+			for( int row = 0 ; row < kWordSwitches.length ; row++ )
+				argSet.addArgumentInfo( "key" + row, kWordSwitches[ row ], 0, false, "Option " + row );
+		}
+	}
+	
+	protected static final String [] kWordSwitches = makeWords( 10000 );
+	
+	protected static String [] makeWords( int count ) {
+		
+		// Returns the given number of distinct made-up words,
+		// from 6 to 15 letters long, some with a dash in them.
+		
+		Random random = new Random( 42 );
+		LinkedHashSet<String> result = new LinkedHashSet<String>();
+		
+		while( result.size() < count ) {
+			
+			char [] word = new char [ 6 + random.nextInt( 10 ) ];
+			
+			for( int i = 0 ; i < word.length ; i++ )
+				word[ i ] = (char) ( 'a' + random.nextInt( 26 ) );
+			
+			if( word.length > 8 && random.nextBoolean() )
+				word[ 3 + random.nextInt( word.length -6 ) ] = '-';
+			
+			result.add( new String( word ) );
+		}
+		
+		return result.toArray( new String [0] );
+	}
+	
+	// A listener that records what it is told, and
+	// an iterator that makes up arguments as it goes
+	
+	protected class RecordingListener implements CLArgumentListener {
+		
+		// Keeps every event, in order, as "key", "key=parcel",
+		// "!index:token" (unexpected) or "?key" (missing).
+		
+		public ArrayList<String> events = new ArrayList<String>();
+		
+		public void optionFound( String key ) {
+			
+			events.add( key );
+		}
+		
+		public void parcelFound( String key, String parcel ) {
+			
+			events.add( key + "=" + parcel );
+		}
+		
+		public void unexpectedToken( int tokenIndex, String token ) {
+			
+			events.add( "!" + tokenIndex + ":" + token );
+		}
+		
+		public void missingParcel( String key ) {
+			
+			events.add( "?" + key );
+		}
+	}
+	
+	protected class CountingListener extends CLArgumentAdapter {
+		
+		// Keeps nothing but the number of events.
+		
+		public int options = 0;
+		public int parcels = 0;
+		
+		public void optionFound( String key ) {
+			
+			options++;
+		}
+		
+		public void parcelFound( String key, String parcel ) {
+			
+			parcels++;
+		}
+	}
+	
+	protected class GeneratedArgs implements Iterator<String> {
+		
+		// Produces the given prefix, followed by <count>
+		// made-up file names, without storing any of them.
+		
+		private final String [] prefix;
+		private final int count;
+		private int row = 0;
+		
+		public GeneratedArgs( String [] prefix, int count ) {
+			
+			// Java requires that this be here.
+			
+			super();
+			
+			this.prefix = prefix;
+			this.count = count;
+		}
+		
+		public boolean hasNext() {
+			
+			return row < prefix.length + count;
+		}
+		
+		public String next() {
+			
+			if( ! hasNext() ) throw new NoSuchElementException();
+			
+			int which = row++;
+			
+			return which < prefix.length ? prefix[ which ] : "file" + which + ".txt";
+		}
+		
+		public void remove() {
+			
+			throw new UnsupportedOperationException();
+		}
+	}
+	
+	// Common testing code
+	
+	protected static final String [] kKeys = { "Help", "Verbose", "arg1", "arg2", "ary1", "ary2", "input", "missing" };
+	
+	public void verifySameAsDesequencer( String [] args ) {
+		
+		// Parses the given arguments with both a compiled spec
+		// and a LADsMixed, and makes sure the results agree.
+		
+		CLArgumentSpec spec = new LADsMixed().compileArgSpec();
+		CLArgumentResult result = spec.parse( args );
+		LADsMixed lad = new LADsMixed( args );
+		
+		assertEquals( "The error flags should agree.", lad.sequenceError(), result.sequenceError() );
+		assertEquals( "The error codes should agree.", lad.sequenceErrorCode(), result.sequenceErrorCode() );
+		assertEquals( "The error messages should agree.", lad.sequenceErrorMsg(), result.sequenceErrorMsg() );
+		assertEquals( "The help flags should agree.", lad.foundHelpFlag(), result.foundHelpFlag() );
+		assertEquals( "The verbosity should agree.", lad.verbosity(), result.verbosity() );
+		
+		for( String key : kKeys ) {
+			
+			String [] expected = lad.parcelsForKey( key );
+			String [] actual = result.getParcelArrayFromKey( key );
+			
+			assertEquals( "The number of parcels for '" + key + "' should agree.", expected.length, actual.length );
+			
+			for( int row = 0 ; row < expected.length ; row++ )
+				assertEquals( "Parcel[ " + row + " ] of '" + key + "' should agree.", expected[ row ], actual[ row ] );
+			
+			assertEquals( "The parcel counts for '" + key + "' should agree.", lad.parcelCountForKey( key ), result.getParcelCountForKey( key ) );
+		}
+	}
+	
+	// Test cases comparing CLArgumentSpec to LinearArgDesequencer
+	
+	public void testNoArgs() {
+		
+		verifySameAsDesequencer( new String [0] );
+	}
+	
+	public void testRequiredOnly() {
+		
+		String [] cmdl_args = { "in.txt" };
+		verifySameAsDesequencer( cmdl_args );
+	}
+	
+	public void testFlags() {
+		
+		String [] cmdl_args = { "-hvv", "in.txt", "--verbose" };
+		verifySameAsDesequencer( cmdl_args );
+	}
+	
+	public void testParcels() {
+		
+		String [] cmdl_args = { "-12", "in.txt", "foo", "bar", "fish" };
+		verifySameAsDesequencer( cmdl_args );
+	}
+	
+	public void testUnbounded() {
+		
+		String [] cmdl_args = { "--argTwo", "in.txt", "foo", "bar", "fish", "cat", "-1", "dog" };
+		verifySameAsDesequencer( cmdl_args );
+	}
+	
+	public void testArrays() {
+		
+		String [] cmdl_args = { "-qw", "in.txt", "foo", "bar", "fish", "-q", "cat", "--arrayOne", "dog" };
+		verifySameAsDesequencer( cmdl_args );
+	}
+	
+	public void testEmptyAndLoneDash() {
+		
+		String [] cmdl_args = { "", "-", "in.txt", "" };
+		verifySameAsDesequencer( cmdl_args );
+	}
+	
+	public void testUnknownSwitch() {
+		
+		String [] cmdl_args = { "-1", "foo", "--fish", "in.txt" };
+		verifySameAsDesequencer( cmdl_args );
+	}
+	
+	public void testUnknownFlag() {
+		
+		String [] cmdl_args = { "-vx", "in.txt" };
+		verifySameAsDesequencer( cmdl_args );
+	}
+	
+	public void testUnexpectedParcel() {
+		
+		String [] cmdl_args = { "in.txt", "foo" };
+		verifySameAsDesequencer( cmdl_args );
+	}
+	
+	public void testMissingParcel() {
+		
+		String [] cmdl_args = { "-2", "in.txt", "foo" };
+		verifySameAsDesequencer( cmdl_args );
+	}
+	
+	public void testMissingRequired() {
+		
+		String [] cmdl_args = { "-v" };
+		verifySameAsDesequencer( cmdl_args );
+	}
+	
+	// Test cases on CLArgumentSpec itself
+	
+	public void testSpecDefinitions() {
+		
+		CLArgumentSpec spec = new LADsMixed().compileArgSpec();
+		
+		assertEquals( "The spec should contain every argument.", 7, spec.getOptionCount() );
+		assertEquals( "The flag '-w' should belong to 'ary2'.", "ary2", spec.getArgKeyForFlag( 'w' ) );
+		assertEquals( "The switch '--argOne' should belong to 'arg1'.", "arg1", spec.getArgKeyForSwitch( "argOne" ) );
+		assertNull( "The flag '-x' should not belong to anything.", spec.getArgKeyForFlag( 'x' ) );
+		assertEquals( "There should be no option for an unknown key.", -1, spec.getOptionForKey( "missing" ) );
+		
+		int option = spec.getOptionForKey( "ary2" );
+		
+		assertEquals( "The key of an option should round-trip.", "ary2", spec.getKey( option ) );
+		assertEquals( "'ary2' should expect 2 parcels.", 2, spec.getParcelCount( option ) );
+		assertTrue( "'ary2' should be an array.", spec.isArray( option ) );
+		assertTrue( "'ary2' should be unbounded.", spec.isUnbounded( option ) );
+	}
+	
+	public void testSpecIsReusable() {
+		
+		CLArgumentSpec spec = new LADsMixed().compileArgSpec();
+		
+		String [] first = { "in.txt", "-1", "foo" };
+		String [] second = { "in.txt", "-1", "bar" };
+		
+		CLArgumentResult a = spec.parse( first );
+		CLArgumentResult b = spec.parse( second );
+		
+		assertEquals( "The first result should keep its own parcel.", "foo", a.getParcelFromKey( "arg1" ) );
+		assertEquals( "The second result should keep its own parcel.", "bar", b.getParcelFromKey( "arg1" ) );
+		assertSame( "Each result should refer back to its spec.", spec, a.getSpec() );
+	}
+	
+	public void testSpecUsage() throws IOException {
+		
+		LADsMixed lad = new LADsMixed();
+		CLArgumentSpec spec = lad.compileArgSpec();
+		
+		assertEquals( "The spec should render the same usage as its LinearArgDesequencer.", Arrays.asList( lad.argsUsage() ), Arrays.asList( spec.argsUsage() ) );
+		assertSame( "The usage text should be rendered only once.", spec.getUsage(), spec.getUsage() );
+		
+		StringWriter out = new StringWriter();
+		lad.writeUsage( out );
+		assertEquals( "The usage text should match the LinearArgDesequencer.", out.toString(), spec.getUsage() );
+		
+		out = new StringWriter();
+		spec.writeUsage( out );
+		assertEquals( "writeUsage() should write the usage text.", spec.getUsage(), out.toString() );
+	}
+	
+	// Test cases on the streaming parse functions
+	
+	public void testStreamingEvents() {
+		
+		CLArgumentSpec spec = new LADsMixed().compileArgSpec();
+		String [] cmdl_args = { "in.txt", "-1v", "foo", "--argTwo", "bar", "fish", "cat" };
+		RecordingListener listener = new RecordingListener();
+		
+		CLArgumentError error = spec.parse( Arrays.asList( cmdl_args ).iterator(), listener );
+		
+		assertNull( "The stream should parse cleanly.", error );
+		assertEquals( "The events should arrive in order.", Arrays.asList( "input=in.txt", "arg1", "Verbose", "arg1=foo", "arg2", "arg2=bar", "arg2=fish", "arg2=cat" ), listener.events );
+	}
+	
+	public void testStreamingAgreesWithParse() {
+		
+		CLArgumentSpec spec = new LADsMixed().compileArgSpec();
+		String [][] vectors = { {}, { "in.txt" }, { "-2", "in.txt", "foo" }, { "in.txt", "foo" }, { "-vx", "in.txt" }, { "--fish" } };
+		
+		for( String [] cmdl_args : vectors ) {
+			
+			CLArgumentResult result = spec.parse( cmdl_args );
+			CLArgumentError error = spec.parse( Arrays.asList( cmdl_args ).iterator(), new RecordingListener() );
+			
+			assertEquals( "The error codes should agree.", result.sequenceErrorCode(), error == null ? LinearArgDesequencer.kErrorCodeNone : error.getCode() );
+			assertEquals( "The error messages should agree.", result.sequenceErrorMsg(), error == null ? null : error.getMessage() );
+		}
+	}
+	
+	public void testStreamingStopsAtError() {
+		
+		CLArgumentSpec spec = new LADsMixed().compileArgSpec();
+		Iterator<String> args = Arrays.asList( "in.txt", "--fish", "-v" ).iterator();
+		RecordingListener listener = new RecordingListener();
+		
+		CLArgumentError error = spec.parse( args, listener );
+		
+		assertEquals( "The unknown switch should be reported.", LinearArgDesequencer.kErrorCodeUnknownArgument, error.getCode() );
+		assertEquals( "The error should know where it happened.", 1, error.getTokenIndex() );
+		assertTrue( "Arguments after the error should not be consumed.", args.hasNext() );
+		assertEquals( "Nothing after the error should arrive.", Arrays.asList( "input=in.txt", "!1:--fish" ), listener.events );
+	}
+	
+	public void testStreamingReader() throws IOException {
+		
+		CLArgumentSpec spec = new LADsMixed().compileArgSpec();
+		RecordingListener listener = new RecordingListener();
+		
+		CLArgumentError error = spec.parse( new StringReader( "in.txt\n-q\n\nmy file.txt\n" ), listener );
+		
+		assertNull( "The stream should parse cleanly.", error );
+		assertEquals( "Each line should be one argument.", Arrays.asList( "input=in.txt", "ary1", "ary1=my file.txt" ), listener.events );
+		
+		error = spec.parse( new StringReader( "-2\nin.txt\nfoo" ), new RecordingListener() );
+		
+		assertEquals( "A short stream should report the missing parcel.", LinearArgDesequencer.kErrorCodeMissingArgument, error.getCode() );
+	}
+	
+	public void testStreamingLongStream() {
+		
+		CLArgumentSpec spec = new LADsMixed().compileArgSpec();
+		String [] prefix = { "in.txt", "-w" };
+		CountingListener listener = new CountingListener();
+		
+		// A million file names go to the unbounded array
+		// argument without any of them being kept.
+		
+		CLArgumentError error = spec.parse( new GeneratedArgs( prefix, 1000000 ), listener );
+		
+		assertNull( "The stream should parse cleanly.", error );
+		assertEquals( "Only one option was given.", 1, listener.options );
+		assertEquals( "Every file name should be bound.", 1000001, listener.parcels );
+	}
+	
+	// Test cases on the event-driven parse functions
+	
+	public void testEventsUnexpectedToken() {
+		
+		CLArgumentSpec spec = new LADsMixed().compileArgSpec();
+		RecordingListener listener = new RecordingListener();
+		
+		String [] unknown = { "in.txt", "-vx" };
+		spec.parse( unknown, listener );
+		
+		String [] stray = { "in.txt", "foo" };
+		spec.parse( stray, listener );
+		
+		assertEquals( "Unknown flags and stray parcels should both be reported.", Arrays.asList( "input=in.txt", "Verbose", "!1:-vx", "input=in.txt", "!1:foo" ), listener.events );
+	}
+	
+	public void testEventsMissingParcel() {
+		
+		CLArgumentSpec spec = new LADsMixed().compileArgSpec();
+		RecordingListener listener = new RecordingListener();
+		
+		String [] cmdl_args = { "-2", "in.txt", "foo" };
+		CLArgumentError error = spec.parse( cmdl_args, listener );
+		
+		assertEquals( "The missing parcel should be returned.", LinearArgDesequencer.kErrorCodeMissingArgument, error.getCode() );
+		assertEquals( "The missing parcel should be reported last.", Arrays.asList( "arg2", "input=in.txt", "arg2=foo", "?arg2" ), listener.events );
+	}
+	
+	public void testEventsAdapter() {
+		
+		CLArgumentSpec spec = new LADsMixed().compileArgSpec();
+		final ArrayList<String> inputs = new ArrayList<String>();
+		
+		// Only the events of interest need be handled.
+		
+		CLArgumentListener listener = new CLArgumentAdapter() {
+			
+			public void parcelFound( String key, String parcel ) {
+				
+				if( key.equals( "input" ) ) inputs.add( parcel );
+			}
+		};
+		
+		String [] cmdl_args = { "in.txt", "-hvq", "foo", "--fish" };
+		CLArgumentError error = spec.parse( cmdl_args, listener );
+		
+		assertEquals( "The unknown switch should still be returned.", LinearArgDesequencer.kErrorCodeUnknownArgument, error.getCode() );
+		assertEquals( "Only the input should be seen.", Arrays.asList( "in.txt" ), inputs );
+	}
+	
+	// Test cases on the batch parse functions
+	
+	protected static final String [][] kBatchArgs = {
+		{ "in.txt" },
+		{ "-hvv", "in.txt", "--verbose" },
+		{ "-vx", "in.txt" },
+		{ "-2", "in.txt", "foo" },
+		{ "--argTwo", "in.txt", "foo", "bar", "fish", "cat", "-1", "dog" },
+		{ "in.txt", "foo" },
+		{},
+		{ "-qw", "in.txt", "foo", "bar", "fish", "-q", "cat", "--arrayOne", "dog" }
+	};
+	
+	protected String [][] makeBatch( int count ) {
+		
+		// Returns a batch of the given size, cycling through kBatchArgs.
+		
+		String [][] result = new String [ count ][];
+		
+		for( int row = 0 ; row < count ; row++ )
+			result[ row ] = kBatchArgs[ row % kBatchArgs.length ];
+		
+		return result;
+	}
+	
+	public void verifySameAsParse( CLArgumentSpec spec, String [] args, CLArgumentResult actual ) {
+		
+		// Makes sure that a result from a batch matches
+		// the result of parsing the same arguments alone.
+		
+		CLArgumentResult expected = spec.parse( args );
+		
+		assertEquals( "The error codes should agree.", expected.sequenceErrorCode(), actual.sequenceErrorCode() );
+		assertEquals( "The error messages should agree.", expected.sequenceErrorMsg(), actual.sequenceErrorMsg() );
+		assertEquals( "The results should agree.", expected.toString(), actual.toString() );
+	}
+	
+	public void testBatchInOrder() {
+		
+		CLArgumentSpec spec = new LADsMixed().compileArgSpec();
+		String [][] batch = makeBatch( 10000 );
+		
+		CLArgumentResult [] results = spec.parseAll( batch );
+		
+		assertEquals( "There should be one result per argument array.", batch.length, results.length );
+		
+		for( int row = 0 ; row < batch.length ; row++ )
+			verifySameAsParse( spec, batch[ row ], results[ row ] );
+	}
+	
+	public void testBatchErrorCodes() {
+		
+		CLArgumentSpec spec = new LADsMixed().compileArgSpec();
+		CLArgumentResult [] results = spec.parseAll( makeBatch( kBatchArgs.length ) );
+		
+		assertEquals( "The first array should parse.", LinearArgDesequencer.kErrorCodeNone, results[ 0 ].sequenceErrorCode() );
+		assertEquals( "The third array has an unknown flag.", LinearArgDesequencer.kErrorCodeUnknownArgument, results[ 2 ].sequenceErrorCode() );
+		assertEquals( "The fourth array is missing a parcel.", LinearArgDesequencer.kErrorCodeMissingArgument, results[ 3 ].sequenceErrorCode() );
+		assertEquals( "The seventh array is missing the input.", LinearArgDesequencer.kErrorCodeMissingArgument, results[ 6 ].sequenceErrorCode() );
+	}
+	
+	public void testBatchList() {
+		
+		CLArgumentSpec spec = new LADsMixed().compileArgSpec();
+		List<String[]> batch = Arrays.asList( makeBatch( 1000 ) );
+		ForkJoinPool pool = new ForkJoinPool( 3 );
+		
+		try {
+			
+			List<CLArgumentResult> results = spec.parseAll( batch );
+			CLArgumentResult [] pooled = spec.parseAll( batch.toArray( new String [0][] ), pool );
+			
+			assertEquals( "There should be one result per argument array.", batch.size(), results.size() );
+			
+			for( int row = 0 ; row < batch.size() ; row++ ) {
+				
+				verifySameAsParse( spec, batch.get( row ), results.get( row ) );
+				verifySameAsParse( spec, batch.get( row ), pooled[ row ] );
+			}
+		}
+		finally {
+			
+			pool.shutdown();
+		}
+	}
+	
+	public void testBatchEmpty() {
+		
+		CLArgumentSpec spec = new LADsMixed().compileArgSpec();
+		
+		assertEquals( "An empty batch should have no results.", 0, spec.parseAll( new String [0][] ).length );
+	}
+	
+	// Test cases on typed values
+	
+	public void testTypedValues() {
+		
+		CLArgumentSpec spec = new LADsTyped().compileArgSpec();
+		String [] cmdl_args = { "-c", "3", "-ooo", "1", "2", "3", "--scale", "1e3", "-d", "off", "--level", "high", "-c", "4" };
+		
+		CLArgumentResult result = spec.parse( cmdl_args );
+		
+		assertFalse( "The arguments should parse.", result.sequenceError() );
+		assertEquals( "The last count should win.", 4, result.getIntFromKey( "count", 0 ) );
+		assertEquals( "The scale should be converted.", 1000.0, result.getDoubleFromKey( "scale", 0 ), 0.0 );
+		assertFalse( "'off' should be false.", result.getBooleanFromKey( "dry", true ) );
+		assertEquals( "Enums should ignore case.", Level.HIGH, result.getEnumFromKey( "level", Level.class ) );
+		assertEquals( "The type should be recorded.", int.class, spec.getValueType( spec.getOptionForKey( "count" ) ) );
+		assertEquals( "Untyped arguments are Strings.", String.class, spec.getValueType( spec.getOptionForKey( "Help" ) ) );
+		
+		long [] offsets = result.getLongArrayFromKey( "offsets" );
+		
+		assertEquals( "Every offset should be kept.", 3, offsets.length );
+		assertEquals( "Offsets should be in order.", 2L, offsets[ 1 ] );
+		
+		int [] counts = result.getIntArrayFromKey( "count" );
+		
+		assertEquals( "Only the last count is relevant.", 1, counts.length );
+	}
+	
+	public void testTypedInvalid() {
+		
+		CLArgumentSpec spec = new LADsTyped().compileArgSpec();
+		String [] cmdl_args = { "-s", "big" };
+		
+		CLArgumentResult result = spec.parse( cmdl_args );
+		
+		assertEquals( "The conversion should fail.", LinearArgDesequencer.kErrorCodeInvalidValue, result.sequenceErrorCode() );
+		assertEquals( "The error should name the argument.", "scale", result.sequenceErrorDetail().getKey() );
+		assertEquals( "The error should know where it happened.", 1, result.sequenceErrorDetail().getTokenIndex() );
+	}
+	
+	public void testTypedValuesEverywhere() {
+		
+		// Every kind of storage answers the same typed questions, even
+		// the ones that convert the parcels again when asked.
+		
+		CLArgumentSpec spec = new LADsTyped().compileArgSpec();
+		String [] cmdl_args = { "-c", "3", "-ooo", "1", "2", "3", "--scale", "1e3", "-d", "off", "--level", "high", "-c", "4" };
+		
+		CLArgumentTable table = new CLArgumentTable( spec );
+		
+		table.add( cmdl_args );
+		
+		CLParsedArguments [] stores = { spec.parse( cmdl_args ), spec.parsePacked( cmdl_args ), table.getRow( 0 ), new CLArgumentLayers( spec ).withArgs( cmdl_args ) };
+		
+		for( CLParsedArguments store : stores ) {
+			
+			String name = store.getClass().getSimpleName();
+			
+			assertEquals( name + " should find the last count.", 4, store.getIntFromKey( "count", 0 ) );
+			assertEquals( name + " should convert the scale.", 1000.0, store.getDoubleFromKey( "scale", 0 ), 0.0 );
+			assertFalse( name + " should read 'off' as false.", store.getBooleanFromKey( "dry", true ) );
+			assertEquals( name + " should find the level.", Level.HIGH, store.getEnumFromKey( "level", Level.class ) );
+			assertEquals( name + " should keep every offset.", Arrays.toString( new long [] { 1, 2, 3 } ), Arrays.toString( store.getLongArrayFromKey( "offsets" ) ) );
+			assertEquals( name + " should keep only the last count.", Arrays.toString( new int [] { 4 } ), Arrays.toString( store.getIntArrayFromKey( "count" ) ) );
+			
+			try {
+				store.getIntFromKey( "scale", 0 );
+				fail( name + " should check the type." );
+			}
+			catch( IllegalArgumentException e ) {
+				
+				// Expected.
+			}
+		}
+	}
+	
+	// Test cases on packed results
+	
+	public void testPackedAgreesWithParse() {
+		
+		CLArgumentSpec spec = new LADsMixed().compileArgSpec();
+		
+		for( String [] cmdl_args : kBatchArgs ) {
+			
+			CLArgumentResult expected = spec.parse( cmdl_args );
+			CLPackedResult actual = spec.parsePacked( cmdl_args );
+			
+			assertEquals( "The error codes should agree.", expected.sequenceErrorCode(), actual.sequenceErrorCode() );
+			assertEquals( "The error messages should agree.", expected.sequenceErrorMsg(), actual.sequenceErrorMsg() );
+			assertEquals( "The results should agree.", expected.toString(), actual.toString() );
+			
+			for( String key : kKeys ) {
+				
+				assertEquals( "The parcels of '" + key + "' should agree.", Arrays.asList( expected.getParcelArrayFromKey( key ) ), Arrays.asList( actual.getParcelArrayFromKey( key ) ) );
+				assertEquals( "The last parcel of '" + key + "' should agree.", expected.getParcelFromKey( key ), actual.getParcelFromKey( key ) );
+				assertEquals( "The parcel count of '" + key + "' should agree.", expected.getParcelCountForKey( key ), actual.getParcelCountForKey( key ) );
+				assertEquals( "The pruned count of '" + key + "' should agree.", expected.getParcelCountForKey( key, true ), actual.getParcelCountForKey( key, true ) );
+			}
+		}
+	}
+	
+	public void testPackedPositions() {
+		
+		CLArgumentSpec spec = new LADsMixed().compileArgSpec();
+		String [] cmdl_args = { "-qw", "in.txt", "foo", "bar", "fish", "-q", "cat", "--arrayOne", "dog", "-1", "x", "-1", "y" };
+		
+		CLPackedResult result = spec.parsePacked( cmdl_args );
+		
+		assertFalse( "The arguments should parse.", result.sequenceError() );
+		assertSame( "The argument array should not be copied.", cmdl_args, result.getArgs() );
+		assertEquals( "Array parcels should point into the arguments.", Arrays.asList( 2, 6, 8 ), toList( result.getParcelPositionsForKey( "ary1" ) ) );
+		assertEquals( "Only the last relevant parcel should be listed.", Arrays.asList( 12 ), toList( result.getParcelPositionsForKey( "arg1" ) ) );
+		assertSame( "Parcels should come from the arguments themselves.", cmdl_args[ 1 ], result.getParcelFromKey( "input" ) );
+		assertEquals( "Unknown keys have no parcels.", 0, result.getParcelPositionsForKey( "nothing" ).length );
+	}
+	
+	public void testPackedResponseFiles() throws IOException {
+		
+		CLArgumentSpec spec = new LADsTyped().compileArgSpec();
+		File file = File.createTempFile( "packed", ".args" );
+		
+		try {
+			
+			FileWriter writer = new FileWriter( file );
+			writer.write( "-c 7 --level low\n" );
+			writer.close();
+			
+			String [] cmdl_args = { "-o", "5", "@" + file.getPath(), "-o", "6", "-d", "yes" };
+			CLPackedResult result = spec.parsePacked( cmdl_args );
+			
+			assertFalse( "The arguments should parse.", result.sequenceError() );
+			assertEquals( "Parcels from the file should be kept.", 7, result.getIntFromKey( "count", 0 ) );
+			assertEquals( "Parcels from the file have no position.", Arrays.asList( -1 ), toList( result.getParcelPositionsForKey( "count" ) ) );
+			assertEquals( "Enums should be converted.", Level.LOW, result.getEnumFromKey( "level", Level.class ) );
+			assertEquals( "Positions should count the response file once.", Arrays.asList( 1, 4 ), toList( result.getParcelPositionsForKey( "offsets" ) ) );
+			assertEquals( "The last offset should win.", 6L, result.getLongFromKey( "offsets", 0 ) );
+			assertTrue( "'yes' should be true.", result.getBooleanFromKey( "dry", false ) );
+			assertEquals( "Missing values should take the default.", 0.5, result.getDoubleFromKey( "scale", 0.5 ), 0.0 );
+			
+			try {
+				result.getIntFromKey( "scale", 0 );
+				fail( "The type of the argument should be checked." );
+			}
+			catch( IllegalArgumentException e ) {
+				
+				// Expected.
+			}
+		}
+		finally {
+			
+			file.delete();
+		}
+	}
+	
+	protected static List<Integer> toList( int [] values ) {
+		
+		// Returns the given values as a List, for comparisons.
+		
+		List<Integer> result = new ArrayList<Integer>();
+		
+		for( int value : values )
+			result.add( value );
+		
+		return result;
+	}
+	
+	// Test cases on collecting every error
+	
+	public void testValidateCollectsEveryError() {
+		
+		CLArgumentSpec spec = new LADsMixed().compileArgSpec();
+		String [] cmdl_args = { "in.txt", "--bogus", "-1", "x", "stray", "-z1", "y", "-2", "a" };
+		
+		CLArgumentResult result = spec.validate( cmdl_args );
+		CLArgumentError [] errors = result.sequenceErrors();
+		
+		assertEquals( "Every error should be found.", 4, result.sequenceErrorCount() );
+		assertEquals( "There should be one record per error.", 4, errors.length );
+		
+		assertEquals( "The unknown switch comes first.", LinearArgDesequencer.kErrorCodeUnknownArgument, errors[ 0 ].getCode() );
+		assertEquals( "The unknown switch is the second token.", 1, errors[ 0 ].getTokenIndex() );
+		assertEquals( "The stray parcel is the fifth token.", 4, errors[ 1 ].getTokenIndex() );
+		assertEquals( "The stray parcel should be described.", "Unexpected argument: 'stray'", errors[ 1 ].getMessage() );
+		assertEquals( "The unknown flag is the sixth token.", 5, errors[ 2 ].getTokenIndex() );
+		assertEquals( "The unknown flag should be pointed at.", 1, errors[ 2 ].getOffset() );
+		assertEquals( "The missing parcel comes last.", LinearArgDesequencer.kErrorCodeMissingArgument, errors[ 3 ].getCode() );
+		assertEquals( "The missing parcel should name its argument.", "arg2", errors[ 3 ].getKey() );
+		
+		assertEquals( "The first error should be the one reported.", LinearArgDesequencer.kErrorCodeUnknownArgument, result.sequenceErrorCode() );
+		assertEquals( "The first message should be the one reported.", "Unknown option: '--bogus'", result.sequenceErrorMsg() );
+		assertSame( "The first record should be the one reported.", errors[ 0 ], result.sequenceErrorDetail() );
+		
+		assertEquals( "The parcels around the errors should be kept.", "y", result.getParcelFromKey( "arg1" ) );
+		assertEquals( "The parcels after the errors should be kept.", "a", result.getParcelFromKey( "arg2" ) );
+		assertEquals( "The input should be kept.", "in.txt", result.getParcelFromKey( "input" ) );
+	}
+	
+	public void testValidateAgreesWithParse() {
+		
+		CLArgumentSpec spec = new LADsMixed().compileArgSpec();
+		String [] cmdl_args = { "in.txt", "--bogus", "-1", "x", "stray" };
+		
+		CLArgumentResult parsed = spec.parse( cmdl_args );
+		CLArgumentResult validated = spec.validate( cmdl_args );
+		
+		assertEquals( "parse() should stop at the first error.", 1, parsed.sequenceErrorCount() );
+		assertEquals( "validate() should carry on.", 2, validated.sequenceErrorCount() );
+		assertEquals( "The first errors should agree.", parsed.sequenceErrorMsg(), validated.sequenceErrorMsg() );
+		
+		for( String [] args : kBatchArgs ) {
+			
+			CLArgumentResult expected = spec.parse( args );
+			CLArgumentResult actual = spec.validate( args );
+			
+			if( expected.sequenceErrorCount() == 0 ) {
+				
+				assertEquals( "Arguments without errors should parse the same.", expected.toString(), actual.toString() );
+				assertEquals( "Arguments without errors should have no records.", 0, actual.sequenceErrors().length );
+			}
+			else
+				assertEquals( "The first errors should agree.", expected.sequenceErrorMsg(), actual.sequenceErrorMsg() );
+		}
+	}
+	
+	public void testValidateInvalidValues() {
+		
+		CLArgumentSpec spec = new LADsTyped().compileArgSpec();
+		String [] cmdl_args = { "-c", "x", "-s", "1.5", "-l", "medium", "-d", "yes" };
+		
+		CLArgumentResult result = spec.validate( cmdl_args );
+		CLArgumentError [] errors = result.sequenceErrors();
+		
+		assertEquals( "Both bad values should be found.", 2, errors.length );
+		assertEquals( "The count should be rejected.", "count", errors[ 0 ].getKey() );
+		assertEquals( "The level should be rejected.", "level", errors[ 1 ].getKey() );
+		assertEquals( "The level should be described.", "Invalid value for 'level': 'medium'", errors[ 1 ].getMessage() );
+		assertEquals( "The good values should be kept.", 1.5, result.getDoubleFromKey( "scale", 0 ), 0.0 );
+		assertTrue( "The good values should be kept.", result.getBooleanFromKey( "dry", false ) );
+		assertEquals( "The bad values should be dropped.", 0, result.getIntFromKey( "count", 0 ) );
+	}
+	
+	public void testValidateAll() {
+		
+		CLArgumentSpec spec = new LADsMixed().compileArgSpec();
+		String [][] batch = makeBatch( 1000 );
+		
+		CLArgumentResult [] results = spec.validateAll( batch );
+		
+		assertEquals( "There should be one result per argument array.", batch.length, results.length );
+		
+		for( int row = 0 ; row < batch.length ; row++ ) {
+			
+			CLArgumentResult expected = spec.validate( batch[ row ] );
+			
+			assertEquals( "The error counts should agree.", expected.sequenceErrorCount(), results[ row ].sequenceErrorCount() );
+			assertEquals( "The results should agree.", expected.toString(), results[ row ].toString() );
+		}
+	}
+	
+	// Test cases on suggestions for unknown options
+	
+	public void testSuggestSwitches() {
+		
+		CLArgumentSpec spec = new LADsMixed().compileArgSpec();
+		
+		assertEquals( "A swapped pair should be found.", Arrays.asList( "--argOne" ), Arrays.asList( spec.getSuggestions( "--argOen" ) ) );
+		assertEquals( "A wrong letter should be found.", Arrays.asList( "--arrayTwo" ), Arrays.asList( spec.getSuggestions( "--arrayTwp" ) ) );
+		assertEquals( "A missing letter should be found.", Arrays.asList( "--verbose" ), Arrays.asList( spec.getSuggestions( "--verbse" ) ) );
+		assertEquals( "Short switches allow one edit.", Arrays.asList( "--help" ), Arrays.asList( spec.getSuggestions( "--hlp" ) ) );
+		assertEquals( "Nothing is close to gibberish.", 0, spec.getSuggestions( "--zzzzzzzz" ).length );
+		assertEquals( "Parcels have no suggestions.", 0, spec.getSuggestions( "verbose" ).length );
+	}
+	
+	public void testSuggestFlags() {
+		
+		CLArgumentSpec spec = new LADsMixed().compileArgSpec();
+		
+		assertEquals( "The other case should be suggested.", Arrays.asList( "-h" ), Arrays.asList( spec.getSuggestions( "-H" ) ) );
+		assertEquals( "Each unknown flag should be considered.", Arrays.asList( "-q", "-w" ), Arrays.asList( spec.getSuggestions( "-vQW" ) ) );
+		assertEquals( "A word after one dash should be matched as a switch.", Arrays.asList( "--verbose" ), Arrays.asList( spec.getSuggestions( "-verbos" ) ) );
+		assertEquals( "Nothing is close to an unused letter.", 0, spec.getSuggestions( "-x" ).length );
+	}
+	
+	public void testSuggestionsInMessages() {
+		
+		CLArgumentSpec spec = new LADsMixed().compileArgSpec();
+		
+		CLArgumentResult result = spec.parse( new String [] { "in.txt", "--verbos" } );
+		
+		assertEquals( "The message should make a suggestion.", "Unknown option: '--verbos'; did you mean '--verbose'?", result.sequenceErrorMsg() );
+		assertEquals( "The record should make a suggestion.", Arrays.asList( "--verbose" ), Arrays.asList( result.sequenceErrorDetail().getSuggestions() ) );
+		
+		result = spec.parse( new String [] { "in.txt", "-vH" } );
+		
+		assertEquals( "The message should make a suggestion.", "Unknown option: 'H'; did you mean '-h'?", result.sequenceErrorMsg() );
+		
+		result = spec.parse( new String [] { "in.txt", "--zzzzzzzz" } );
+		
+		assertEquals( "The message should be unchanged without a suggestion.", "Unknown option: '--zzzzzzzz'", result.sequenceErrorMsg() );
+		assertEquals( "Other errors have no suggestions.", 0, spec.parse( new String [] { "in.txt", "-1" } ).sequenceErrorDetail().getSuggestions().length );
+		
+		verifySameAsDesequencer( new String [] { "in.txt", "--verbos" } );
+		verifySameAsDesequencer( new String [] { "in.txt", "-H" } );
+	}
+	
+	public void testSuggestionsAtScale() {
+		
+		CLArgumentSpec spec = new LADsWords().compileArgSpec();
+		Random random = new Random( 7 );
+		String [] queries = new String [ 1000 ];
+		String [] expected = new String [ queries.length ];
+		
+		// Misspell a switch in each query by changing one letter.
+		
+		for( int row = 0 ; row < queries.length ; row++ ) {
+			
+			expected[ row ] = kWordSwitches[ random.nextInt( kWordSwitches.length ) ];
+			
+			char [] word = expected[ row ].toCharArray();
+			
+			word[ random.nextInt( word.length ) ] = (char) ( 'z' - random.nextInt( 3 ) );
+			queries[ row ] = "--" + new String( word );
+		}
+		
+		// How long each lookup takes is measured by ArgumentLookupBenchmark.
+		
+		String [][] found = new String [ queries.length ][];
+		
+		for( int row = 0 ; row < queries.length ; row++ )
+			found[ row ] = spec.getSuggestions( queries[ row ] );
+		
+		for( int row = 0 ; row < queries.length ; row++ )
+			if( ! queries[ row ].equals( "--" + expected[ row ] ) )
+				assertTrue( "The misspelled switch should be suggested for '" + queries[ row ] + "'.", Arrays.asList( found[ row ] ).contains( "--" + expected[ row ] ) );
+	}
+}
@@ -0,0 +1,231 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  JUnit Test Case for CLArgumentTable
+ */
+
+package com.kfs.bsd.common.util.junit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import junit.framework.*;
+import com.kfs.bsd.common.util.CLArgumentResult;
+import com.kfs.bsd.common.util.CLArgumentSpec;
+import com.kfs.bsd.common.util.CLArgumentTable;
+import com.kfs.bsd.common.util.CLParsedArguments;
+import com.kfs.bsd.common.util.LinearArgDesequencer;
+
+public class TestCLArgumentTable extends TestCase {
+	
+	// A CLArgumentTable needs a spec, which is compiled from a
+	// subclass of LinearArgDesequencer.
+	
+	protected class LADsJobs extends LinearArgDesequencer {
+		
+		// This is a subclass of LinearArgDesequencer with the
+		// arguments of a made-up batch job.
+		
+		public LADsJobs() {
+			
+			// Java requires that this be here.
+			
+			// Forward the request to super.
+			
+			super();
+		}
+		
+		protected void populateArgSet() {
+			
+			// Start with the default argument set.
+			
+			super.populateArgSet();
+			
+			// Add some more of our own arguments:
+			
+			argSet.addArgumentInfo( "queue", 'q', "queue", 1, false, "Queue" );
+			argSet.addArgumentInfo( "tags", 't', "tag", 1, true, "Tags" );
+			argSet.addArgumentInfo( "range", 'r', "range", 2, false, "Range" );
+			argSet.setArgumentParcelCount( "input", 1 );
+			
+			requiredArgumentKeys.add( "input" );
+		}
+	}
+	
+	// Common testing code
+	
+	protected static final String [] kKeys = { "Help", "Verbose", "queue", "tags", "range", "input", "missing" };
+	
+	protected static final String [][] kJobs = {
+		{ "a.dat", "-v", "--queue", "fast" },
+		{ "b.dat" },
+		{ "c.dat", "-t", "x", "-t", "y", "-vv" },
+		{ "d.dat", "-q", "slow", "-q", "fast", "--range", "1", "9" },
+		{ "e.dat", "--bogus", "-v" },
+		{},
+		{ "f.dat", "-r", "1", "2", "-r", "3", "4", "-t", "fast" }
+	};
+	
+	protected CLArgumentTable makeTable( CLArgumentSpec spec ) {
+		
+		// Returns a table with a row for each of kJobs.
+		
+		CLArgumentTable result = new CLArgumentTable( spec );
+		
+		for( String [] cmdl_args : kJobs )
+			result.add( cmdl_args );
+		
+		return result;
+	}
+	
+	protected static List<Integer> toList( int [] values ) {
+		
+		// Returns the given values as a List, for comparisons.
+		
+		List<Integer> result = new ArrayList<Integer>();
+		
+		for( int value : values )
+			result.add( value );
+		
+		return result;
+	}
+	
+	// Test cases
+	
+	public void testAgreesWithParse() {
+		
+		CLArgumentSpec spec = new LADsJobs().compileArgSpec();
+		CLArgumentTable table = makeTable( spec );
+		
+		assertEquals( "Each job should be a row.", kJobs.length, table.getRowCount() );
+		
+		for( int row = 0 ; row < kJobs.length ; row++ ) {
+			
+			CLArgumentResult expected = spec.parse( kJobs[ row ] );
+			CLParsedArguments actual = table.getRow( row );
+			
+			assertEquals( "The error codes of row " + row + " should agree.", expected.sequenceErrorCode(), actual.sequenceErrorCode() );
+			assertEquals( "The error messages of row " + row + " should agree.", expected.sequenceErrorMsg(), actual.sequenceErrorMsg() );
+			assertEquals( "The verbosity of row " + row + " should agree.", expected.verbosity(), actual.verbosity() );
+			assertEquals( "Row " + row + " should print the same.", expected.toString(), actual.toString() );
+			
+			for( String key : kKeys ) {
+				
+				assertEquals( "The parcels of '" + key + "' in row " + row + " should agree.", Arrays.asList( expected.getParcelArrayFromKey( key ) ), Arrays.asList( actual.getParcelArrayFromKey( key ) ) );
+				assertEquals( "The last parcel of '" + key + "' in row " + row + " should agree.", expected.getParcelFromKey( key ), actual.getParcelFromKey( key ) );
+				assertEquals( "The parcel count of '" + key + "' in row " + row + " should agree.", expected.getParcelCountForKey( key ), actual.getParcelCountForKey( key ) );
+				assertEquals( "The pruned count of '" + key + "' in row " + row + " should agree.", expected.getParcelCountForKey( key, true ), actual.getParcelCountForKey( key, true ) );
+			}
+		}
+	}
+	
+	public void testRowsWithKey() {
+		
+		CLArgumentTable table = makeTable( new LADsJobs().compileArgSpec() );
+		
+		assertEquals( "Rows that set --verbose should be found.", Arrays.asList( 0, 2 ), toList( table.getRowsWithKey( "Verbose" ) ) );
+		assertEquals( "Rows should be counted.", 2, table.countRowsWithKey( "tags" ) );
+		assertEquals( "Unknown keys are never found.", 0, table.getRowsWithKey( "missing" ).length );
+		
+		BitSet queued = BitSet.valueOf( table.getRowSetForKey( "queue" ) );
+		BitSet tagged = BitSet.valueOf( table.getRowSetForKey( "tags" ) );
+		
+		queued.or( tagged );
+		
+		assertEquals( "Row sets should combine.", "{0, 2, 3, 6}", queued.toString() );
+	}
+	
+	public void testValuesForKey() {
+		
+		CLArgumentTable table = makeTable( new LADsJobs().compileArgSpec() );
+		
+		assertEquals( "Every value should be listed, in order.", Arrays.asList( "fast", "slow", "fast" ), Arrays.asList( table.getValuesForKey( "queue" ) ) );
+		assertEquals( "Positional values are a column too.", Arrays.asList( "a.dat", "b.dat", "c.dat", "d.dat", "e.dat", "f.dat" ), Arrays.asList( table.getValuesForKey( "input" ) ) );
+		assertEquals( "Options without parcels have no values.", 0, table.getValuesForKey( "Verbose" ).length );
+	}
+	
+	public void testRowsWithValue() {
+		
+		CLArgumentTable table = makeTable( new LADsJobs().compileArgSpec() );
+		
+		assertEquals( "Rows should be listed once each.", Arrays.asList( 0, 3 ), toList( table.getRowsWithValue( "queue", "fast" ) ) );
+		assertEquals( "Only the given column should be searched.", Arrays.asList( 6 ), toList( table.getRowsWithValue( "tags", "fast" ) ) );
+		assertEquals( "Unknown values are never found.", 0, table.getRowsWithValue( "queue", "medium" ).length );
+		assertEquals( "Parcels should be stored once.", 15, table.getDistinctParcelCount() );
+	}
+	
+	public void testRowsWithErrors() {
+		
+		CLArgumentTable table = makeTable( new LADsJobs().compileArgSpec() );
+		
+		assertEquals( "Rows with errors should be found.", Arrays.asList( 4, 5 ), toList( table.getRowsWithErrors() ) );
+		assertEquals( "The error code should be kept.", LinearArgDesequencer.kErrorCodeUnknownArgument, table.getRow( 4 ).sequenceErrorCode() );
+		assertEquals( "A missing input is an error.", LinearArgDesequencer.kErrorCodeMissingArgument, table.getRow( 5 ).sequenceErrorCode() );
+		
+		try {
+			table.getRow( kJobs.length ).sequenceErrorCode();
+			fail( "There is no such row." );
+		}
+		catch( IndexOutOfBoundsException e ) {
+			
+			// Expected.
+		}
+	}
+	
+	public void testFreeze() {
+		
+		CLArgumentSpec spec = new LADsJobs().compileArgSpec();
+		CLArgumentTable table = makeTable( spec );
+		
+		table.freeze();
+		
+		// A frozen table answers the same questions the same way.
+		
+		for( int row = 0 ; row < kJobs.length ; row++ )
+			assertEquals( "Row " + row + " should survive freezing.", spec.parse( kJobs[ row ] ).toString(), table.getRow( row ).toString() );
+		
+		assertEquals( "Values should keep their order.", Arrays.asList( "fast", "slow", "fast" ), Arrays.asList( table.getValuesForKey( "queue" ) ) );
+		assertEquals( "Values should still be found.", Arrays.asList( 0, 3 ), toList( table.getRowsWithValue( "queue", "fast" ) ) );
+		assertEquals( "Unknown values are never found.", 0, table.getRowsWithValue( "queue", "medium" ).length );
+		assertEquals( "Errors should be kept.", LinearArgDesequencer.kErrorCodeUnknownArgument, table.getRow( 4 ).sequenceErrorCode() );
+		assertEquals( "Parcels should be stored once.", 15, table.getDistinctParcelCount() );
+		
+		// A frozen table can still grow, with old and new parcels.
+		
+		assertEquals( "Rows should be added after freezing.", kJobs.length, table.add( new String [] { "g.dat", "-q", "fast", "-q", "medium" } ) );
+		assertEquals( "Old parcels should keep their code.", Arrays.asList( 0, 3, kJobs.length ), toList( table.getRowsWithValue( "queue", "fast" ) ) );
+		assertEquals( "New parcels should be found.", Arrays.asList( kJobs.length ), toList( table.getRowsWithValue( "queue", "medium" ) ) );
+		assertEquals( "Only the new parcels should be added.", 17, table.getDistinctParcelCount() );
+		
+		table.freeze();
+		
+		assertEquals( "Freezing again should keep every value.", Arrays.asList( "fast", "slow", "fast", "fast", "medium" ), Arrays.asList( table.getValuesForKey( "queue" ) ) );
+		assertEquals( "Errors should survive freezing again.", LinearArgDesequencer.kErrorCodeMissingArgument, table.getRow( 5 ).sequenceErrorCode() );
+	}
+	
+	public void testManyRows() {
+		
+		CLArgumentSpec spec = new LADsJobs().compileArgSpec();
+		String [][] batch = new String [ 10000 ][];
+		
+		for( int row = 0 ; row < batch.length ; row++ )
+			batch[ row ] = row % 3 == 0 ? new String [] { "job" + row, "-v", "-q", row % 2 == 0 ? "even" : "odd" } : new String [] { "job" + row };
+		
+		CLArgumentTable table = spec.parseTable( batch );
+		
+		assertEquals( "Every row should be added.", batch.length, table.getRowCount() );
+		assertEquals( "Every third row is verbose.", ( batch.length + 2 ) / 3, table.countRowsWithKey( "Verbose" ) );
+		assertEquals( "The row set should agree.", ( batch.length + 2 ) / 3, BitSet.valueOf( table.getRowSetForKey( "Verbose" ) ).cardinality() );
+		assertEquals( "Every sixth row is even.", ( batch.length + 5 ) / 6, table.getRowsWithValue( "queue", "even" ).length );
+		assertEquals( "Late rows should be found.", "odd", table.getRow( 9999 ).getParcelFromKey( "queue" ) );
+		assertNull( "Rows without the option should be skipped.", table.getRow( 9998 ).getParcelFromKey( "queue" ) );
+		
+		// A trimmed table can still grow.
+		
+		assertEquals( "Rows should be added after trimming.", batch.length, table.add( new String [] { "last", "-v" } ) );
+		assertEquals( "The new row should be found.", batch.length, table.getRowsWithKey( "Verbose" )[ table.countRowsWithKey( "Verbose" ) -1 ] );
+	}
+}
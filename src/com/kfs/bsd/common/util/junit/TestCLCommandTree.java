@@ -0,0 +1,293 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  JUnit Test Case for CLCommandTree
+ */
+
+package com.kfs.bsd.common.util.junit;
+
+import java.util.Arrays;
+
+import junit.framework.*;
+import com.kfs.bsd.common.util.CLArgumentResult;
+import com.kfs.bsd.common.util.CLArgumentSpec;
+import com.kfs.bsd.common.util.CLCommand;
+import com.kfs.bsd.common.util.CLCommandTree;
+import com.kfs.bsd.common.util.LinearArgDesequencer;
+
+public class TestCLCommandTree extends TestCase {
+	
+	// The commands of a small git-style tool.  These classes are
+	// static, so that commands can be registered by class name,
+	// and each counts how many times its arguments were defined
+	// (and 'add' how many times it parsed an argument array).
+	
+	public static class LADsAdd extends LinearArgDesequencer {
+		
+		// This is a subclass of LinearArgDesequencer
+		// with the arguments of the 'add' command.
+		
+		public static int populated = 0;
+		public static int parsed = 0;
+		
+		public LADsAdd( String [] args ) {
+			
+			// Java requires that this be here.
+			
+			// Forward the request to super.
+			
+			super( args );
+		}
+		
+		protected void desequenceArgs( String [] args ) {
+			
+			// Counts the argument arrays that are parsed.
+			
+			if( args != kDefinitionOnly ) parsed++;
+			
+			super.desequenceArgs( args );
+		}
+		
+		protected void populateArgSet() {
+			
+			// Start with the default argument set.
+			
+			super.populateArgSet();
+			
+			// Add some more of our own arguments:
+			
+			populated++;
+			
+			argSet.addArgumentInfo( "force", 'f', "force", 0, false, "Force" );
+			argSet.setArgumentParcelCount( "paths", 1 );
+			argSet.setArgumentIsArray( "paths", true );
+			argSet.setArgumentIsUnbounded( "paths", true );
+			requiredArgumentKeys.add( "paths" );
+		}
+		
+		public String [] parcelsForKey( String id ) {
+			
+			// Exposes the argument set to the test cases.
+			
+			return argSet.getParcelArrayFromKey( id );
+		}
+	}
+	
+	public static class LADsRemoteAdd extends LinearArgDesequencer {
+		
+		// This is a subclass of LinearArgDesequencer
+		// with the arguments of the 'remote add' command.
+		
+		public static int populated = 0;
+		
+		public LADsRemoteAdd( String [] args ) {
+			
+			// Java requires that this be here.
+			
+			// Forward the request to super.
+			
+			super( args );
+		}
+		
+		protected void populateArgSet() {
+			
+			// Start with the default argument set.
+			
+			super.populateArgSet();
+			
+			// Add some more of our own arguments:
+			
+			populated++;
+			
+			argSet.addArgumentInfo( "track", 't', "track", 1, true, "Tracked branches" );
+			argSet.setArgumentParcelCount( "name", 1 );
+			argSet.setArgumentParcelCount( "url", 1 );
+			requiredArgumentKeys.add( "name" );
+			requiredArgumentKeys.add( "url" );
+		}
+		
+		public String parcelForKey( String id ) {
+			
+			// Exposes the argument set to the test cases.
+			
+			return argSet.getParcelFromKey( id );
+		}
+	}
+	
+	// Common testing code
+	
+	protected CLCommandTree makeTree() {
+		
+		// Returns a tree with an 'add' command, a 'remote' group with
+		// 'add' and 'remove' commands, and a root command of its own.
+		
+		LADsAdd.populated = 0;
+		LADsAdd.parsed = 0;
+		LADsRemoteAdd.populated = 0;
+		
+		CLCommandTree tree = new CLCommandTree();
+		
+		tree.setCommand( new CLCommand() {
+			
+			public CLArgumentSpec compile() {
+				
+				return new LinearArgDesequencer( LinearArgDesequencer.kDefinitionOnly ).compileArgSpec();
+			}
+			
+			public LinearArgDesequencer create( String [] args ) {
+				
+				return new LinearArgDesequencer( args );
+			}
+		} );
+		
+		tree.addCommand( "add", LADsAdd.class.getName() );
+		tree.addCommand( "remote add", LADsRemoteAdd.class.getName() );
+		tree.addCommand( "remote  remove", new CLCommand() {
+			
+			public CLArgumentSpec compile() {
+				
+				return new LADsRemoteAdd( LinearArgDesequencer.kDefinitionOnly ).compileArgSpec();
+			}
+			
+			public LinearArgDesequencer create( String [] args ) {
+				
+				return new LADsRemoteAdd( args );
+			}
+		} );
+		
+		return tree;
+	}
+	
+	// Test cases
+	
+	public void testStructure() {
+		
+		CLCommandTree tree = makeTree();
+		
+		assertEquals( "The commands should be kept in order.", Arrays.asList( "", "add", "remote add", "remote remove" ), Arrays.asList( tree.getCommandPaths() ) );
+		assertEquals( "The root should list its subcommands.", Arrays.asList( "add", "remote" ), Arrays.asList( tree.getSubcommands() ) );
+		assertFalse( "A group is not runnable.", tree.getCommand( "remote" ).isRunnable() );
+		assertTrue( "A command is runnable.", tree.getCommand( "remote add" ).isRunnable() );
+		assertEquals( "A node should know its depth.", 2, tree.getCommand( "remote add" ).getDepth() );
+		assertEquals( "A node should know its name.", "add", tree.getCommand( "remote add" ).getName() );
+		assertSame( "A node should know its parent.", tree.getCommand( "remote" ), tree.getCommand( "remote add" ).getParent() );
+		assertNull( "There is no such command.", tree.getCommand( "remote rename" ) );
+		assertEquals( "Nothing should be populated by building the tree.", 0, LADsAdd.populated + LADsRemoteAdd.populated );
+	}
+	
+	public void testDispatch() {
+		
+		CLCommandTree tree = makeTree();
+		String [] cmdl_args = { "remote", "add", "origin", "http://example.com/", "-t", "main" };
+		
+		assertSame( "The leading tokens should select the node.", tree.getCommand( "remote add" ), tree.select( cmdl_args ) );
+		
+		LADsRemoteAdd args = (LADsRemoteAdd) tree.dispatch( cmdl_args );
+		
+		assertFalse( "The arguments should parse.", args.sequenceError() );
+		assertEquals( "The first required argument should be found.", "origin", args.parcelForKey( "name" ) );
+		assertEquals( "The second required argument should be found.", "http://example.com/", args.parcelForKey( "url" ) );
+		assertEquals( "The selected command should be populated once.", 1, LADsRemoteAdd.populated );
+		assertEquals( "Other commands should not be populated.", 0, LADsAdd.populated );
+	}
+	
+	public void testCommandNamesAfterOptions() {
+		
+		CLCommandTree tree = makeTree();
+		String [] cmdl_args = { "add", "-f", "remote", "add" };
+		
+		assertSame( "Only leading tokens should select nodes.", tree.getCommand( "add" ), tree.select( cmdl_args ) );
+		
+		LADsAdd args = (LADsAdd) tree.dispatch( cmdl_args );
+		
+		assertFalse( "The arguments should parse.", args.sequenceError() );
+		assertEquals( "Later command names are arguments.", Arrays.asList( "remote", "add" ), Arrays.asList( args.parcelsForKey( "paths" ) ) );
+	}
+	
+	public void testRootAndGroups() {
+		
+		CLCommandTree tree = makeTree();
+		
+		LinearArgDesequencer root = tree.dispatch( new String [] { "-v", "status" } );
+		
+		assertEquals( "The root should run its own command.", LinearArgDesequencer.class, root.getClass() );
+		assertEquals( "The root's arguments should be parsed.", 1, root.verbosity() );
+		assertTrue( "An unknown command is an unexpected argument.", root.sequenceError() );
+		assertNull( "A group has nothing to run.", tree.dispatch( new String [] { "remote" } ) );
+		assertNull( "A group has nothing to parse.", tree.parse( new String [] { "remote", "-v" } ) );
+		assertEquals( "Nothing else should be populated.", 0, LADsAdd.populated + LADsRemoteAdd.populated );
+	}
+	
+	public void testParseWithSpecs() {
+		
+		CLCommandTree tree = makeTree();
+		
+		CLArgumentResult first = tree.parse( new String [] { "add", "-f", "a.txt" } );
+		CLArgumentResult second = tree.parse( new String [] { "add", "b.txt", "c.txt" } );
+		
+		assertFalse( "The arguments should parse.", first.sequenceError() );
+		assertEquals( "The force flag should be found.", 1, first.getParcelCountForKey( "force" ) );
+		assertEquals( "The paths should be found.", Arrays.asList( "b.txt", "c.txt" ), Arrays.asList( second.getParcelArrayFromKey( "paths" ) ) );
+		assertEquals( "The spec should be compiled once.", 1, LADsAdd.populated );
+		assertEquals( "Compiling the spec should not parse anything.", 0, LADsAdd.parsed );
+		
+		CLArgumentSpec spec = tree.getCommand( "add" ).getSpec();
+		
+		assertSame( "The spec should be kept.", spec, first.getSpec() );
+		assertSame( "The spec should be shared.", spec, second.getSpec() );
+		assertEquals( "Other commands should not be populated.", 0, LADsRemoteAdd.populated );
+	}
+	
+	public void testSpecsOnlyDefine() {
+		
+		CLCommandTree tree = makeTree();
+		
+		CLArgumentSpec spec = tree.getCommand( "add" ).getSpec();
+		
+		assertEquals( "The arguments should be defined once.", 1, LADsAdd.populated );
+		assertEquals( "Nothing should be parsed.", 0, LADsAdd.parsed );
+		assertTrue( "The spec should know the command's options.", spec.parse( new String [] { "-f", "a.txt" } ).getParcelCountForKey( "force" ) > 0 );
+		assertTrue( "A required argument is still required.", spec.parse( new String [0] ).sequenceError() );
+		
+		LADsAdd args = (LADsAdd) tree.dispatch( new String [] { "add", "a.txt" } );
+		
+		assertFalse( "Running the command should still parse.", args.sequenceError() );
+		assertEquals( "The command should parse once.", 1, LADsAdd.parsed );
+		assertFalse( "A definition-only instance has no error.", new LADsAdd( LinearArgDesequencer.kDefinitionOnly ).sequenceError() );
+	}
+	
+	public void testBadDefinitions() {
+		
+		CLCommandTree tree = makeTree();
+		
+		try {
+			tree.addCommand( "add", LADsAdd.class.getName() );
+			fail( "A command should not be defined twice." );
+		}
+		catch( IllegalArgumentException e ) {
+			
+			assertEquals( "The message should name the command.", "Duplicate command: 'add'", e.getMessage() );
+		}
+		
+		try {
+			tree.addCommand( "  ", LADsAdd.class.getName() );
+			fail( "A command needs a name." );
+		}
+		catch( IllegalArgumentException e ) {
+			
+			// Expected.
+		}
+		
+		tree.addCommand( "missing", "com.example.NoSuchCommand" );
+		
+		try {
+			tree.dispatch( new String [] { "missing" } );
+			fail( "A missing class cannot be run." );
+		}
+		catch( IllegalArgumentException e ) {
+			
+			assertEquals( "The message should name the class.", "Cannot run command com.example.NoSuchCommand", e.getMessage() );
+		}
+	}
+}
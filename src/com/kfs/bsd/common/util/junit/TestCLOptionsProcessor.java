@@ -0,0 +1,485 @@
+/*  Written by Andrew Keller
+ *
+ *  This file is licensed as BSD.  Copyright 2010 Andrew Keller.
+ *
+ *  JUnit Test Case for CLOptionsProcessor
+ */
+
+package com.kfs.bsd.common.util.junit;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import junit.framework.*;
+import com.kfs.bsd.common.util.CLArgumentError;
+import com.kfs.bsd.common.util.CLOption;
+import com.kfs.bsd.common.util.CLOptions;
+import com.kfs.bsd.common.util.CLOptionsProcessor;
+import com.kfs.bsd.common.util.LinearArgDesequencer;
+
+public class TestCLOptionsProcessor extends TestCase {
+	
+	// The options classes.  Their parsers are generated
+	// when this file is compiled.
+	
+	public enum Colour { RED, GREEN, BLUE }
+	
+	@CLOptions
+	public static class Options {
+		
+		// An options class with one field of each kind.
+		
+		@CLOption( key = "Help", flags = 'h', switches = "help" )
+		boolean help;
+		
+		@CLOption( key = "Verbose", flags = 'v', switches = { "verbose", "loud" }, parcels = 0 )
+		int verbosity;
+		
+		@CLOption( flags = 'p', switches = "port" )
+		int port = 80;
+		
+		@CLOption( flags = 'r', switches = "ratio" )
+		double ratio;
+		
+		@CLOption( switches = "force", parcels = 1 )
+		boolean force;
+		
+		@CLOption( flags = { 'c', 'C' }, switches = "colour" )
+		Colour colour = Colour.RED;
+		
+		@CLOption( flags = 'n' )
+		String name;
+		
+		@CLOption( flags = 's', switches = "size", parcels = 2 )
+		long [] sizes;
+		
+		@CLOption( flags = 'f', switches = "file", unbounded = true )
+		String [] files;
+		
+		@CLOption( switches = "tint" )
+		Colour [] tints = { Colour.BLUE };
+	}
+	
+	@CLOptions( parser = "RequiredOptionsParser" )
+	static class Required {
+		
+		// An options class with a required option.
+		
+		@CLOption( key = "output", flags = 'o', switches = "output", required = true )
+		String output;
+		
+		@CLOption( flags = 'q' )
+		boolean quiet;
+	}
+	
+	// The same options, defined the usual way
+	
+	protected class LADsOptions extends LinearArgDesequencer {
+		
+		// This is a subclass of LinearArgDesequencer that
+		// defines the same arguments as Options.
+		
+		public LADsOptions( String [] args ) {
+			
+			// Java requires that this be here.
+			
+			// Forward the request to super.
+			
+			super( args );
+		}
+		
+		protected void populateArgSet() {
+			
+			// For simplicity, do not add the default argument set.
+			
+			argSet.addArgumentInfo( "Help", 'h', "help", 0, false, "Help" );
+			argSet.addArgumentInfo( "Verbose", 'v', "verbose", 0, false, "Verbose" );
+			argSet.addArgumentSwitch( "Verbose", "loud" );
+			argSet.addArgumentInfo( "port", 'p', "port", 1, false, false, "Port", int.class );
+			argSet.addArgumentInfo( "ratio", 'r', "ratio", 1, false, false, "Ratio", double.class );
+			argSet.addArgumentInfo( "force", "force", 1, false, "Force" );
+			argSet.setArgumentValueType( "force", boolean.class );
+			argSet.addArgumentInfo( "colour", 'c', "colour", 1, false, false, "Colour", Colour.class );
+			argSet.addArgumentFlag( "colour", 'C' );
+			argSet.addArgumentInfo( "name", 'n', 1, false, "Name" );
+			argSet.addArgumentInfo( "sizes", 's', "size", 2, true, false, "Sizes", long.class );
+			argSet.addArgumentInfo( "files", 'f', "file", 1, true, true, "Files", String.class );
+			argSet.addArgumentInfo( "tints", "tint", 1, true, "Tints" );
+			argSet.setArgumentValueType( "tints", Colour.class );
+		}
+	}
+	
+	protected class LADsRequired extends LinearArgDesequencer {
+		
+		// This is a subclass of LinearArgDesequencer that
+		// defines the same arguments as Required.
+		
+		public LADsRequired( String [] args ) {
+			
+			// Java requires that this be here.
+			
+			// Forward the request to super.
+			
+			super( args );
+		}
+		
+		protected void populateArgSet() {
+			
+			// For simplicity, do not add the default argument set.
+			
+			argSet.addArgumentInfo( "output", 'o', "output", 1, false, "Output" );
+			argSet.addArgumentInfo( "quiet", 'q', 0, false, "Quiet" );
+			requiredArgumentKeys.add( "output" );
+		}
+	}
+	
+	// Utility functions
+	
+	private static void assertSameError( String [] args, LinearArgDesequencer expected, CLArgumentError actual ) {
+		
+		// Makes sure that a generated parser found the same
+		// error as a LinearArgDesequencer, if any.
+		
+		String message = Arrays.toString( args );
+		
+		if( expected.sequenceErrorDetail() == null ) {
+			
+			assertNull( message + " should parse.", actual );
+			return;
+		}
+		
+		assertNotNull( message + " should not parse.", actual );
+		assertEquals( message + " should have the same error code.", expected.sequenceErrorCode(), actual.getCode() );
+		assertEquals( message + " should have the same message.", expected.sequenceErrorMsg(), actual.getMessage() );
+		assertEquals( message + " should have the same token index.", expected.sequenceErrorDetail().getTokenIndex(), actual.getTokenIndex() );
+	}
+	
+	private static List<Diagnostic<? extends JavaFileObject>> compile( File directory, String name, String source ) throws IOException {
+		
+		// Compiles the given source with CLOptionsProcessor,
+		// and returns the errors.
+		
+		File file = new File( directory, name + ".java" );
+		FileOutputStream out = new FileOutputStream( file );
+		
+		try {
+			out.write( source.getBytes( "UTF-8" ) );
+		}
+		finally {
+			out.close();
+		}
+		
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+		StandardJavaFileManager files = compiler.getStandardFileManager( diagnostics, null, null );
+		
+		try {
+			
+			List<String> options = Arrays.asList( "-classpath", System.getProperty( "java.class.path" ), "-encoding", "UTF-8", "-d", directory.getPath(), "-s", directory.getPath() );
+			JavaCompiler.CompilationTask task = compiler.getTask( null, files, diagnostics, options, null, files.getJavaFileObjects( file ) );
+			
+			task.setProcessors( Arrays.asList( new CLOptionsProcessor() ) );
+			task.call();
+		}
+		finally {
+			files.close();
+		}
+		
+		List<Diagnostic<? extends JavaFileObject>> result = new ArrayList<Diagnostic<? extends JavaFileObject>>();
+		
+		for( Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics() )
+			if( diagnostic.getKind() == Diagnostic.Kind.ERROR )
+				result.add( diagnostic );
+		
+		return result;
+	}
+	
+	private static File makeDirectory() throws IOException {
+		
+		// Returns a new, empty temporary directory.
+		
+		File result = File.createTempFile( "clopt", "" );
+		
+		assertTrue( result.delete() );
+		assertTrue( result.mkdir() );
+		
+		return result;
+	}
+	
+	private static void delete( File file ) {
+		
+		// Deletes the given file or directory.
+		
+		File [] children = file.listFiles();
+		
+		if( children != null )
+			for( File child : children )
+				delete( child );
+		
+		file.delete();
+	}
+	
+	// Test cases
+	
+	public void testGeneratedValues() {
+		
+		String [] args = { "-vv", "--loud", "-p", "8080", "--ratio", "0.5", "--force", "on", "-C", "blue", "-n", "x", "-s", "1", "2", "--size", "3", "4", "--tint", "green", "--tint", "RED", "-f", "a", "b", "c" };
+		Options options = new Options();
+		
+		assertNull( "The arguments should parse.", new TestCLOptionsProcessor_OptionsParser().parse( args, options ) );
+		
+		assertFalse( "Help was not given.", options.help );
+		assertEquals( "Every verbose flag should be counted.", 3, options.verbosity );
+		assertEquals( "The port should be converted.", 8080, options.port );
+		assertEquals( "The ratio should be converted.", 0.5, options.ratio, 0.0 );
+		assertTrue( "'on' should be true.", options.force );
+		assertEquals( "Enums should ignore case.", Colour.BLUE, options.colour );
+		assertEquals( "The name should be kept.", "x", options.name );
+		assertTrue( "Every size should be kept.", Arrays.equals( new long [] { 1, 2, 3, 4 }, options.sizes ) );
+		assertTrue( "Every tint should be kept.", Arrays.equals( new Colour [] { Colour.GREEN, Colour.RED }, options.tints ) );
+		assertTrue( "Files should be unbounded.", Arrays.equals( new String [] { "a", "b", "c" }, options.files ) );
+	}
+	
+	public void testGeneratedDefaults() {
+		
+		Options options = new Options();
+		
+		assertNull( "Nothing should parse.", new TestCLOptionsProcessor_OptionsParser().parse( new String [0], options ) );
+		
+		assertEquals( "Fields should keep their defaults.", 80, options.port );
+		assertEquals( "Fields should keep their defaults.", Colour.RED, options.colour );
+		assertNull( "Arrays should stay null.", options.files );
+		assertTrue( "Arrays should keep their defaults.", Arrays.equals( new Colour [] { Colour.BLUE }, options.tints ) );
+	}
+	
+	public void testGeneratedArrays() {
+		
+		// Parcels replace the default, rather than being added to it.
+		
+		String [] args = new String [ 100001 ];
+		Options options = new Options();
+		
+		args[ 0 ] = "-f";
+		
+		for( int row = 1 ; row < args.length ; row++ )
+			args[ row ] = "file" + row;
+		
+		options.files = new String [] { "default" };
+		
+		assertNull( "The arguments should parse.", new TestCLOptionsProcessor_OptionsParser().parse( args, options ) );
+		assertEquals( "Every file should be kept, and the default replaced.", args.length -1, options.files.length );
+		assertEquals( "Files should be in order.", "file1", options.files[ 0 ] );
+		assertEquals( "Files should be in order.", "file100000", options.files[ args.length -2 ] );
+		
+		// A reused parser starts each array over.
+		
+		TestCLOptionsProcessor_OptionsParser parser = new TestCLOptionsProcessor_OptionsParser();
+		
+		parser.parse( new String [] { "--tint", "red", "-f", "a" }, new Options() );
+		options = new Options();
+		
+		assertNull( "The arguments should parse.", parser.parse( new String [] { "--tint", "green" }, options ) );
+		assertTrue( "Only this parse's tints should be kept.", Arrays.equals( new Colour [] { Colour.GREEN }, options.tints ) );
+		assertNull( "Options not given this time should be left alone.", options.files );
+	}
+	
+	public void testGeneratedNegativeNumbers() {
+		
+		String [] args = { "-p", "-5", "-r", "-.5", "-s", "-1", "-2" };
+		Options options = new Options();
+		
+		assertNull( "The arguments should parse.", new TestCLOptionsProcessor_OptionsParser().parse( args, options ) );
+		
+		assertEquals( "A negative int should be a parcel.", -5, options.port );
+		assertEquals( "A negative double should be a parcel.", -0.5, options.ratio, 0.0 );
+		assertTrue( "Negative sizes should be kept.", Arrays.equals( new long [] { -1, -2 }, options.sizes ) );
+	}
+	
+	public void testGeneratedParserIsReusable() {
+		
+		TestCLOptionsProcessor_OptionsParser parser = new TestCLOptionsProcessor_OptionsParser();
+		
+		assertNotNull( "The first parse should fail.", parser.parse( new String [] { "-p" }, new Options() ) );
+		
+		Options options = new Options();
+		
+		assertNull( "The second parse should start over.", parser.parse( new String [] { "-h" }, options ) );
+		assertTrue( "Help was given.", options.help );
+		assertEquals( "The parser should know its options.", 10, parser.getOptionCount() );
+		assertEquals( "The parser should know its keys.", "Verbose", parser.getKey( 1 ) );
+	}
+	
+	public void testSameErrorsAsLinearArgDesequencer() {
+		
+		String [][] cases = {
+			{},
+			{ "-h", "", "-" },
+			{ "-x" },
+			{ "-hvx" },
+			{ "--bogus" },
+			{ "--" },
+			{ "--help", "stray" },
+			{ "-p" },
+			{ "-p", "eighty" },
+			{ "-pr", "1", "x" },
+			{ "--force", "maybe" },
+			{ "-c", "purple" },
+			{ "-s", "1" },
+			{ "-s", "1", "two" },
+			{ "-f", "a", "b", "-p", "1", "c" },
+			{ "-f", "a", "-x" },
+			{ "--tint", "RED", "--tint" },
+			{ "-p", "-5" },
+			{ "-n", "-5" },
+			{ "-s", "-1", "-2", "-h" },
+			{ "-r", "-Infinity" }
+		};
+		
+		for( String [] args : cases )
+			assertSameError( args, new LADsOptions( args ), new TestCLOptionsProcessor_OptionsParser().parse( args, new Options() ) );
+	}
+	
+	public void testRequiredOptions() {
+		
+		String [][] cases = {
+			{},
+			{ "-q" },
+			{ "out" },
+			{ "-q", "out" },
+			{ "out", "more" },
+			{ "-o", "out" }
+		};
+		
+		for( String [] args : cases )
+			assertSameError( args, new LADsRequired( args ), new RequiredOptionsParser().parse( args, new Required() ) );
+		
+		Required required = new Required();
+		
+		new RequiredOptionsParser().parse( new String [] { "-q", "out" }, required );
+		
+		assertEquals( "The required parcel should be stored.", "out", required.output );
+	}
+	
+	public void testEscapedLiterals() throws Exception {
+		
+		File directory = makeDirectory();
+		
+		try {
+			
+			String source =
+				"import com.kfs.bsd.common.util.CLOption;\n" +
+				"import com.kfs.bsd.common.util.CLOptions;\n" +
+				"@CLOptions\n" +
+				"public class Odd {\n" +
+				"	@CLOption( flags = { '\\'', '\\\\', '\\u00e9', '\\n' }, switches = { \"qu\\\"ote\", \"caf\\u00e9\" }, parcels = 0 )\n" +
+				"	public int count;\n" +
+				"}\n";
+			
+			assertEquals( "The odd characters should compile.", "[]", compile( directory, "Odd", source ).toString() );
+			
+			URLClassLoader loader = new URLClassLoader( new URL [] { directory.toURI().toURL() }, getClass().getClassLoader() );
+			
+			try {
+				
+				Class<?> odd = loader.loadClass( "Odd" );
+				Class<?> parser = loader.loadClass( "OddParser" );
+				Object target = odd.getConstructor().newInstance();
+				Method parse = parser.getMethod( "parse", String [].class, odd );
+				
+				String [] args = { "-'\\\u00e9\n", "--qu\"ote", "--caf\u00e9" };
+				
+				assertNull( "Every odd option should be found.", parse.invoke( parser.getConstructor().newInstance(), args, target ) );
+				
+				Field count = odd.getField( "count" );
+				
+				assertEquals( "Every odd option should be counted.", 6, count.getInt( target ) );
+			}
+			finally {
+				loader.close();
+			}
+		}
+		finally {
+			delete( directory );
+		}
+	}
+	
+	public void testDeclarationErrors() throws Exception {
+		
+		String [][] cases = {
+			{ "@CLOption( flags = 'a' ) private boolean a;", "cannot be private, static or final" },
+			{ "@CLOption( flags = 'a' ) final boolean a = false;", "cannot be private, static or final" },
+			{ "@CLOption() boolean a;", "needs at least one flag or switch" },
+			{ "@CLOption( flags = '-' ) boolean a;", "'-' cannot be a flag" },
+			{ "@CLOption( switches = \"\" ) boolean a;", "A switch cannot be empty" },
+			{ "@CLOption( flags = 'a' ) Object a;", "Unsupported CLOption type" },
+			{ "@CLOption( flags = 'a', parcels = 0 ) String a;", "Only boolean, int and long fields can take no parcels" },
+			{ "@CLOption( flags = 'a', parcels = 2 ) String a;", "Only arrays can take more than one parcel" },
+			{ "@CLOption( flags = 'a', unbounded = true ) String a;", "Only arrays can be unbounded" },
+			{ "@CLOption( flags = 'a', required = true ) boolean a;", "cannot be required" },
+			{ "@CLOption( flags = 'a' ) boolean a; @CLOption( flags = 'a' ) boolean b;", "Flag 'a' is also used by field 'a'" },
+			{ "@CLOption( switches = \"x\" ) boolean a; @CLOption( switches = \"x\" ) boolean b;", "Switch 'x' is also used by field 'a'" },
+			{ "@CLOption( key = \"k\", flags = 'a' ) boolean a; @CLOption( key = \"k\", flags = 'b' ) boolean b;", "Key 'k' is also used by field 'a'" }
+		};
+		
+		File directory = makeDirectory();
+		
+		try {
+			
+			for( String [] row : cases ) {
+				
+				String source =
+					"import com.kfs.bsd.common.util.CLOption;\n" +
+					"import com.kfs.bsd.common.util.CLOptions;\n" +
+					"@CLOptions\n" +
+					"public class Bad {\n" +
+					"	" + row[ 0 ] + "\n" +
+					"}\n";
+				
+				List<Diagnostic<? extends JavaFileObject>> errors = compile( directory, "Bad", source );
+				
+				assertEquals( row[ 0 ] + " should be one error.", 1, errors.size() );
+				assertTrue( row[ 0 ] + " should report '" + row[ 1 ] + "', not: " + errors.get( 0 ).getMessage( null ), errors.get( 0 ).getMessage( null ).contains( row[ 1 ] ) );
+				assertFalse( row[ 0 ] + " should not generate a parser.", new File( directory, "BadParser.java" ).exists() );
+			}
+		}
+		finally {
+			delete( directory );
+		}
+	}
+	
+	public void testOptionOutsideOptionsClass() throws Exception {
+		
+		String source =
+			"import com.kfs.bsd.common.util.CLOption;\n" +
+			"public class Stray {\n" +
+			"	@CLOption( flags = 'a' ) boolean a;\n" +
+			"}\n";
+		
+		File directory = makeDirectory();
+		
+		try {
+			
+			List<Diagnostic<? extends JavaFileObject>> errors = compile( directory, "Stray", source );
+			
+			assertEquals( "A stray option should be one error.", 1, errors.size() );
+			assertTrue( "The error should say why, not: " + errors.get( 0 ).getMessage( null ), errors.get( 0 ).getMessage( null ).contains( "only be used in a CLOptions class" ) );
+		}
+		finally {
+			delete( directory );
+		}
+	}
+}
@@ -7,7 +7,22 @@
 
 package com.kfs.bsd.common.util.junit;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
 import junit.framework.*;
+import com.kfs.bsd.common.util.CLArgumentError;
+import com.kfs.bsd.common.util.CLArgumentResult;
+import com.kfs.bsd.common.util.CLArgumentSpec;
 import com.kfs.bsd.common.util.LinearArgDesequencer;
 
 public class TestLinearArgDesequencer extends TestCase {
@@ -321,324 +336,804 @@ public class TestLinearArgDesequencer extends TestCase {
 		}
 	}
 	
-	// Common testing code
-	
-	public void verifyBasics( LinearArgDesequencer lad, boolean help, int verbosity, boolean error, int errorCode ) {
+	protected class LADsAbbreviations extends LADsEmpty {
 		
-		// Make sure the error flag is correct.
+		// This is a subclass of LinearArgDesequencer that
+		// has arguments applicable for testing abbreviations.
 		
-		if( error ) {
+		public LADsAbbreviations( String [] args ) {
 			
-			assertTrue( "The given arguments should have caused an error.", lad.sequenceError() );
-			assertEquals( "The error code should have been "+errorCode+".", errorCode, lad.sequenceErrorCode() );
-		}
-		else {
+			// Java requires that this be here.
 			
-			assertFalse( "The given arguments should not have caused an error.", lad.sequenceError() );
-			assertEquals( "'No Error' should imply that the error code is zero.", 0, lad.sequenceErrorCode() );
+			// Forward the request to super.
+			
+			super( args );
 		}
 		
-		// Make sure the help flag is correct.
-		
-		if( help )
-			assertTrue( "LinearArgDesequencer did not find the help flag.", lad.foundHelpFlag() );
-		
-		else
-			assertFalse( "LinearArgDesequencer found a help flag when one was not passed.", lad.foundHelpFlag() );
+		protected void populateArgSet() {
+			
+			// For simplicity, do not add the default argument set.
+			
+			// Add some more of our own arguments:
+			
+			argSet.setAllowsAbbreviations( true );
+			
+			argSet.addArgumentInfo( "verbose", "verbose", 0, false, "Verbose" );
+			argSet.addArgumentInfo( "verbatim", "verbatim", 0, false, "Verbatim" );
+			argSet.addArgumentInfo( "colour", "colour", 0, false, "Colour" );
+			argSet.addArgumentSwitch( "colour", "color" );
+			argSet.addArgumentInfo( "in", "in", 0, false, "In" );
+			argSet.addArgumentInfo( "input", "input", 1, false, "Input" );
+		}
 		
-		// Make sure the verbosity level is correct.
+		public void verifyFound( String id, int count ) {
+			
+			// Verify that the given argument was found <count> times.
+			
+			assertEquals( "LinearArgDesequencer did not find '" + id + "' " + count + " time(s).", count, argSet.getParcelCountForKey( id ) );
+		}
 		
-		String msg = "LinearArgDesequencer did not find exactly "+verbosity+" verbose flag"+(verbosity==1?"":"s")+".";
-		assertEquals( msg, verbosity, lad.verbosity() );
+		public String [] switchesWithPrefix( String prefix ) {
+			
+			// Exposes the trie to the test cases.
+			
+			return argSet.getSwitchesWithPrefix( prefix );
+		}
 	}
 	
-	// Test cases on LinearArgDesequencer directly
-	
-	public void testNoSubclassNoArgs() {
+	protected class LADsResponseFiles extends LADsEmpty {
 		
-		LinearArgDesequencer args = new LinearArgDesequencer();
-		
-		verifyBasics( args, false, 0, false, 0 );
-	}
-	
-	public void testNoSubclassWithArgs_h() {
+		// This is a subclass of LinearArgDesequencer that
+		// reads response files, and collects file names.
 		
-		String [] cmdl_args = { "-h" };
-		LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
+		public LADsResponseFiles( String [] args ) {
+			
+			// Java requires that this be here.
+			
+			// Forward the request to super.
+			
+			super( args );
+		}
 		
-		verifyBasics( args, true, 0, false, 0 );
-	}
-	
-	public void testNoSubclassWithArgs_hh() {
+		protected void populateArgSet() {
+			
+			// For simplicity, do not add the default argument set.
+			
+			// Add some more of our own arguments:
+			
+			argSet.setAllowsResponseFiles( true );
+			
+			argSet.addArgumentInfo( "verbose", 'v', "verbose", 0, true, "Verbose" );
+			argSet.addArgumentInfo( "files", 'f', "files", 1, true, true, "Files" );
+		}
 		
-		String [] cmdl_args = { "-hh" };
-		LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
+		public String [] files() {
+			
+			// Exposes the argument set to the test cases.
+			
+			return argSet.getParcelArrayFromKey( "files" );
+		}
 		
-		verifyBasics( args, true, 0, false, 0 );
+		public int verboseCount() {
+			
+			// Exposes the argument set to the test cases.
+			
+			return argSet.getParcelCountForKey( "verbose" );
+		}
 	}
 	
-	public void testNoSubclassWithArgs_h_h() {
+	protected File writeResponseFile( String contents ) throws IOException {
 		
-		String [] cmdl_args = { "-h", "-h" };
-		LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
+		// Writes the given contents to a temporary file, and returns it.
 		
-		verifyBasics( args, true, 0, false, 0 );
-	}
-	
-	public void testNoSubclassWithArgs_Help() {
+		File result = File.createTempFile( "args", ".rsp" );
+		result.deleteOnExit();
 		
-		String [] cmdl_args = { "--help" };
-		LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
+		FileOutputStream out = new FileOutputStream( result );
 		
-		verifyBasics( args, true, 0, false, 0 );
+		try {
+			out.write( contents.getBytes( "UTF-8" ) );
+		}
+		finally {
+			out.close();
+		}
+		
+		return result;
 	}
 	
-	public void testNoSubclassWithArgs_Help_Help() {
+	protected enum Colour { RED, GREEN, BLUE }
+	
+	protected class LADsTyped extends LADsEmpty {
 		
-		String [] cmdl_args = { "--help", "--help" };
-		LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
+		// This is a subclass of LinearArgDesequencer that
+		// has arguments with typed values.
 		
-		verifyBasics( args, true, 0, false, 0 );
-	}
-	
-	public void testNoSubclassWithArgs_v() {
+		public LADsTyped( String [] args ) {
+			
+			// Java requires that this be here.
+			
+			// Forward the request to super.
+			
+			super( args );
+		}
 		
-		String [] cmdl_args = { "-v" };
-		LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
+		protected void populateArgSet() {
+			
+			// For simplicity, do not add the default argument set.
+			
+			// Add some more of our own arguments:
+			
+			argSet.addArgumentInfo( "port", 'p', "port", 1, false, false, "Port", int.class );
+			argSet.addArgumentInfo( "sizes", 's', "size", 1, true, true, "Sizes", long.class );
+			argSet.addArgumentInfo( "ratio", 'r', "ratio", 1, false, false, "Ratio", double.class );
+			argSet.addArgumentInfo( "force", 'f', "force", 1, false, false, "Force", boolean.class );
+			argSet.addArgumentInfo( "colour", 'c', "colour", 2, false, false, "Colour", Colour.class );
+			argSet.addArgumentInfo( "name", 'n', "name", 1, false, "Name" );
+		}
 		
-		verifyBasics( args, false, 1, false, 0 );
-	}
-	
-	public void testNoSubclassWithArgs_vv() {
+		public int getIntFromKey( String id, int defaultValue ) {
+			
+			// Exposes the argument set to the test cases.
+			
+			return argSet.getIntFromKey( id, defaultValue );
+		}
 		
-		String [] cmdl_args = { "-vv" };
-		LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
+		public long getLongFromKey( String id, long defaultValue ) {
+			
+			// Exposes the argument set to the test cases.
+			
+			return argSet.getLongFromKey( id, defaultValue );
+		}
 		
-		verifyBasics( args, false, 2, false, 0 );
-	}
-	
-	public void testNoSubclassWithArgs_v_v() {
+		public double getDoubleFromKey( String id, double defaultValue ) {
+			
+			// Exposes the argument set to the test cases.
+			
+			return argSet.getDoubleFromKey( id, defaultValue );
+		}
 		
-		String [] cmdl_args = { "-v", "-v" };
-		LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
+		public boolean getBooleanFromKey( String id, boolean defaultValue ) {
+			
+			// Exposes the argument set to the test cases.
+			
+			return argSet.getBooleanFromKey( id, defaultValue );
+		}
 		
-		verifyBasics( args, false, 2, false, 0 );
-	}
-	
-	public void testNoSubclassWithArgs_Verbose() {
+		public Colour getEnumFromKey( String id ) {
+			
+			// Exposes the argument set to the test cases.
+			
+			return argSet.getEnumFromKey( id, Colour.class );
+		}
 		
-		String [] cmdl_args = { "--verbose" };
-		LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
+		public int [] getIntArrayFromKey( String id ) {
+			
+			// Exposes the argument set to the test cases.
+			
+			return argSet.getIntArrayFromKey( id );
+		}
 		
-		verifyBasics( args, false, 1, false, 0 );
-	}
-	
-	public void testNoSubclassWithArgs_Verbose_Verbose() {
+		public long [] getLongArrayFromKey( String id ) {
+			
+			// Exposes the argument set to the test cases.
+			
+			return argSet.getLongArrayFromKey( id );
+		}
 		
-		String [] cmdl_args = { "--verbose", "--verbose" };
-		LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
+		public double [] getDoubleArrayFromKey( String id ) {
+			
+			// Exposes the argument set to the test cases.
+			
+			return argSet.getDoubleArrayFromKey( id );
+		}
 		
-		verifyBasics( args, false, 2, false, 0 );
-	}
-	
-	public void testNoSubclassInvalidArgs1() {
+		public Colour [] getEnumArrayFromKey( String id ) {
+			
+			// Exposes the argument set to the test cases.
+			
+			return argSet.getEnumArrayFromKey( id, Colour.class );
+		}
 		
-		String [] cmdl_args = { "--foo" };
-		LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
+		public String getParcelFromKey( String id ) {
+			
+			// Exposes the argument set to the test cases.
+			
+			return argSet.getParcelFromKey( id );
+		}
 		
-		verifyBasics( args, false, 0, true, args.kErrorCodeUnknownArgument );
+		public int getParcelCountForKey( String id ) {
+			
+			// Exposes the argument set to the test cases.
+			
+			return argSet.getParcelCountForKey( id );
+		}
+		
+		public boolean foundParcel( String id, String parcel ) {
+			
+			// Exposes the argument set to the test cases.
+			
+			return argSet.foundParcel( id, parcel );
+		}
 	}
 	
-	public void testNoSubclassInvalidArgs2() {
+	protected class LADsReusable extends LADsUnbounded {
 		
-		String [] cmdl_args = { "--foo", "--bar" };
-		LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
+		// This is a subclass of LinearArgDesequencer that can
+		// parse again after it has been constructed, reusing the
+		// storage it already has.  Used to measure allocations.
 		
-		verifyBasics( args, false, 0, true, args.kErrorCodeUnknownArgument );
-	}
-	
-	public void testNoSubclassInvalidArgs3() {
+		protected final String [] keys = { "arg0", "arg1", "arg2", "ary0", "ary1", "ary2", "fish" };
 		
-		String [] cmdl_args = { "-a" };
-		LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
+		public LADsReusable() {
+			
+			// Java requires that this be here.
+			
+			// Forward the request to super.
+			
+			super();
+		}
 		
-		verifyBasics( args, false, 0, true, args.kErrorCodeUnknownArgument );
-	}
-	
-	public void testNoSubclassInvalidArgs4() {
+		public void reparse( String [] args ) {
+			
+			// Empties the parcels found so far (keeping their
+			// storage), and parses the given arguments.
+			
+			for( String key : keys )
+				argSet.get( key ).parcels.clear();
+			
+			desequenceArgs( args );
+		}
 		
-		String [] cmdl_args = { "-ab" };
-		LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
+		public int readEverything() {
+			
+			// Reads every argument through the cached accessors,
+			// and returns a total so that nothing is optimized away.
+			
+			int total = verbosity() + ( foundHelpFlag() ? 1 : 0 );
+			
+			for( String key : keys ) {
+				
+				String parcel = argSet.getParcelFromKey( key );
+				List<String> view = argSet.getParcelListFromKey( key );
+				
+				total += parcel == null ? 0 : parcel.length();
+				total += view.size() + argSet.getParcelCountForKey( key, true );
+				
+				if( ! view.isEmpty() )
+					total += view.get( 0 ).length();
+			}
+			
+			return total;
+		}
 		
-		verifyBasics( args, false, 0, true, args.kErrorCodeUnknownArgument );
-	}
-	
-	public void testNoSubclassInvalidArgs5() {
+		public List<String> parcelView( String key ) {
+			
+			// Exposes the argument set to the test cases.
+			
+			return argSet.getParcelListFromKey( key );
+		}
 		
-		String [] cmdl_args = { "-ab", "--foo" };
-		LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
+		public String mostRelevantParcel( String key ) {
+			
+			// Exposes the argument set to the test cases.
+			
+			return argSet.get( key ).getMostRelevantParcel();
+		}
 		
-		verifyBasics( args, false, 0, true, args.kErrorCodeUnknownArgument );
-	}
-	
-	// Test cases on LADsEmpty (a subclass of LinearArgDesequencer)
-	
-	public void testLADsEmptyNoArgs() {
+		public ArrayList<String> rawParcels( String key ) {
+			
+			// Exposes the argument set to the test cases.
+			
+			return argSet.get( key ).parcels;
+		}
 		
-		LADsEmpty args = new LADsEmpty();
+		public void replaceParcels( String key, ArrayList<String> parcels ) {
+			
+			// Replaces the parcel list of the given argument outright.
+			
+			argSet.get( key ).parcels = parcels;
+		}
 		
-		args.verifyOutcome( false, 0 );
+		public boolean mapContains( String key ) {
+			
+			// Exposes the argument set to the test cases.
+			
+			return argSet.get( key ) != null;
+		}
 	}
 	
-	public void testLADsEmptyInvalidArgs1() {
+	protected class LADsDuplicates extends LADsEmpty {
 		
-		String [] cmdl_args = { "--help" };
-		LADsEmpty args = new LADsEmpty( cmdl_args );
+		// This is a subclass of LinearArgDesequencer that has
+		// arguments applicable for testing the flag and switch index.
 		
-		args.verifyOutcome( true, args.kErrorCodeUnknownArgument );
+		public LADsDuplicates() {
+			
+			// Java requires that this be here.
+			
+			// Forward the request to super.
+			
+			super();
+		}
+		
+		public LADsDuplicates( String [] args ) {
+			
+			// Java requires that this be here.
+			
+			// Forward the request to super.
+			
+			super( args );
+		}
+		
+		protected void populateArgSet() {
+			
+			// For simplicity, do not add the default argument set.
+			
+			// Add some more of our own arguments:
+			
+			argSet.addArgumentInfo( "arg1", '1', "one", 0, false, "Argument 1" );
+			argSet.addArgumentInfo( "arg2", '\u00e9', "two", 0, false, "Argument 2" );
+			
+			// Registering the same flag twice on the same
+			// argument is not a duplicate.
+			
+			argSet.addArgumentFlag( "arg1", '1' );
+			argSet.addArgumentSwitch( "arg2", "two" );
+		}
+		
+		public String keyForFlag( char flag ) {
+			
+			// Exposes the index to the test cases.
+			
+			return argSet.getArgKeyForFlag( flag );
+		}
+		
+		public String keyForSwitch( String sswitch ) {
+			
+			// Exposes the index to the test cases.
+			
+			return argSet.getArgKeyForSwitch( sswitch );
+		}
+		
+		public void addFlag( String id, char flag ) {
+			
+			// Exposes the mutators to the test cases.
+			
+			argSet.addArgumentFlag( id, flag );
+		}
+		
+		public void addSwitch( String id, String sswitch ) {
+			
+			// Exposes the mutators to the test cases.
+			
+			argSet.addArgumentSwitch( id, sswitch );
+		}
+		
+		public void remove( String id ) {
+			
+			// Exposes the mutators to the test cases.
+			
+			argSet.removeArgument( id );
+		}
+		
+		public void clear() {
+			
+			// Exposes the mutators to the test cases.
+			
+			argSet.clearArgumentSet();
+		}
+		
+		public boolean hasDuplicates() {
+			
+			// Exposes the index to the test cases.
+			
+			return argSet.hasDuplicateRegistrations();
+		}
 	}
 	
-	public void testLADsEmptyInvalidArgs2() {
+	protected class LADsCollecting extends LinearArgDesequencer {
 		
-		String [] cmdl_args = { "--verbose", "--verbose" };
-		LADsEmpty args = new LADsEmpty( cmdl_args );
+		// This is a subclass of LinearArgDesequencer
+		// that collects every error it finds.
 		
-		args.verifyOutcome( true, args.kErrorCodeUnknownArgument );
+		public LADsCollecting( String [] args ) {
+			
+			// Java requires that this be here.
+			
+			// Forward the request to super.
+			
+			super( args );
+		}
+		
+		protected void populateArgSet() {
+			
+			// Start with the default argument set.
+			
+			super.populateArgSet();
+			
+			// Add some more of our own arguments:
+			
+			argSet.addArgumentInfo( "file", 'f', "file", 1, false, "File" );
+			argSet.setCollectsAllErrors( true );
+		}
+		
+		public void setCollects( boolean collects ) {
+			
+			// Exposes the mutators to the test cases.
+			
+			argSet.setCollectsAllErrors( collects );
+		}
+		
+		public void reparse( String [] args ) {
+			
+			// Exposes the parser to the test cases.
+			
+			desequenceArgs( args );
+		}
 	}
 	
-	// Test cases on LADsFlags (a subclass of LinearArgDesequencer)
-	
-	public void testLADsFlagsNoArgs() {
+	protected class LADsDuplicateFlags extends LADsDuplicates {
 		
-		LADsFlags args = new LADsFlags();
+		// This is a subclass of LinearArgDesequencer
+		// that registers the same flag twice.
 		
-		args.verifyOutcome( 0, 0, 0, false, 0 );
+		public LADsDuplicateFlags( String [] args ) {
+			
+			// Java requires that this be here.
+			
+			// Forward the request to super.
+			
+			super( args );
+		}
+		
+		protected void populateArgSet() {
+			
+			super.populateArgSet();
+			
+			argSet.addArgumentInfo( "arg3", '1', 0, false, "Argument 3" );
+		}
 	}
 	
-	public void testLADsFlags_1() {
+	protected class LADsDuplicateSwitches extends LADsDuplicates {
 		
-		String [] cmdl_args = { "-1" };
-		LADsFlags args = new LADsFlags( cmdl_args );
+		// This is a subclass of LinearArgDesequencer
+		// that registers the same switch twice.
 		
-		args.verifyOutcome( 1, 0, 0, false, 0 );
+		public LADsDuplicateSwitches( String [] args ) {
+			
+			// Java requires that this be here.
+			
+			// Forward the request to super.
+			
+			super( args );
+		}
+		
+		protected void populateArgSet() {
+			
+			super.populateArgSet();
+			
+			argSet.addArgumentInfo( "arg3", "two", 0, false, "Argument 3" );
+		}
 	}
 	
-	public void testLADsFlags_2() {
+	// Common testing code
+	
+	public void verifyBasics( LinearArgDesequencer lad, boolean help, int verbosity, boolean error, int errorCode ) {
 		
-		String [] cmdl_args = { "-2" };
-		LADsFlags args = new LADsFlags( cmdl_args );
+		// Make sure the error flag is correct.
 		
-		args.verifyOutcome( 0, 1, 0, false, 0 );
+		if( error ) {
+			
+			assertTrue( "The given arguments should have caused an error.", lad.sequenceError() );
+			assertEquals( "The error code should have been "+errorCode+".", errorCode, lad.sequenceErrorCode() );
+		}
+		else {
+			
+			assertFalse( "The given arguments should not have caused an error.", lad.sequenceError() );
+			assertEquals( "'No Error' should imply that the error code is zero.", 0, lad.sequenceErrorCode() );
+		}
+		
+		// Make sure the help flag is correct.
+		
+		if( help )
+			assertTrue( "LinearArgDesequencer did not find the help flag.", lad.foundHelpFlag() );
+		
+		else
+			assertFalse( "LinearArgDesequencer found a help flag when one was not passed.", lad.foundHelpFlag() );
+		
+		// Make sure the verbosity level is correct.
+		
+		String msg = "LinearArgDesequencer did not find exactly "+verbosity+" verbose flag"+(verbosity==1?"":"s")+".";
+		assertEquals( msg, verbosity, lad.verbosity() );
 	}
 	
-	public void testLADsFlags_3() {
+	// Test cases on LinearArgDesequencer directly
+	
+	public void testNoSubclassNoArgs() {
 		
-		String [] cmdl_args = { "-3" };
-		LADsFlags args = new LADsFlags( cmdl_args );
+		LinearArgDesequencer args = new LinearArgDesequencer();
 		
-		args.verifyOutcome( 0, 0, 1, false, 0 );
+		verifyBasics( args, false, 0, false, 0 );
 	}
 	
-	public void testLADsFlags_12() {
+	public void testNoSubclassWithArgs_h() {
 		
-		String [] cmdl_args = { "-12" };
-		LADsFlags args = new LADsFlags( cmdl_args );
+		String [] cmdl_args = { "-h" };
+		LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
 		
-		args.verifyOutcome( 1, 1, 0, false, 0 );
+		verifyBasics( args, true, 0, false, 0 );
 	}
 	
-	public void testLADsFlags_1_2() {
+	public void testNoSubclassWithArgs_hh() {
 		
-		String [] cmdl_args = { "-1", "-2" };
-		LADsFlags args = new LADsFlags( cmdl_args );
+		String [] cmdl_args = { "-hh" };
+		LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
 		
-		args.verifyOutcome( 1, 1, 0, false, 0 );
+		verifyBasics( args, true, 0, false, 0 );
 	}
 	
-	public void testLADsFlags_23() {
+	public void testNoSubclassWithArgs_h_h() {
 		
-		String [] cmdl_args = { "-23" };
-		LADsFlags args = new LADsFlags( cmdl_args );
+		String [] cmdl_args = { "-h", "-h" };
+		LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
 		
-		args.verifyOutcome( 0, 1, 1, false, 0 );
+		verifyBasics( args, true, 0, false, 0 );
 	}
 	
-	public void testLADsFlags_2_3() {
+	public void testNoSubclassWithArgs_Help() {
 		
-		String [] cmdl_args = { "-2", "-3" };
-		LADsFlags args = new LADsFlags( cmdl_args );
+		String [] cmdl_args = { "--help" };
+		LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
 		
-		args.verifyOutcome( 0, 1, 1, false, 0 );
+		verifyBasics( args, true, 0, false, 0 );
 	}
 	
-	public void testLADsFlags_13() {
+	public void testNoSubclassWithArgs_Help_Help() {
 		
-		String [] cmdl_args = { "-13" };
-		LADsFlags args = new LADsFlags( cmdl_args );
+		String [] cmdl_args = { "--help", "--help" };
+		LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
 		
-		args.verifyOutcome( 1, 0, 1, false, 0 );
+		verifyBasics( args, true, 0, false, 0 );
 	}
 	
-	public void testLADsFlags_1_3() {
+	public void testNoSubclassWithArgs_v() {
 		
-		String [] cmdl_args = { "-1", "-3" };
-		LADsFlags args = new LADsFlags( cmdl_args );
+		String [] cmdl_args = { "-v" };
+		LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
 		
-		args.verifyOutcome( 1, 0, 1, false, 0 );
+		verifyBasics( args, false, 1, false, 0 );
 	}
 	
-	public void testLADsFlags_123() {
+	public void testNoSubclassWithArgs_vv() {
 		
-		String [] cmdl_args = { "-123" };
-		LADsFlags args = new LADsFlags( cmdl_args );
+		String [] cmdl_args = { "-vv" };
+		LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
 		
-		args.verifyOutcome( 1, 1, 1, false, 0 );
+		verifyBasics( args, false, 2, false, 0 );
 	}
 	
-	public void testLADsFlags_1_23() {
+	public void testNoSubclassWithArgs_v_v() {
 		
-		String [] cmdl_args = { "-1", "-23" };
-		LADsFlags args = new LADsFlags( cmdl_args );
+		String [] cmdl_args = { "-v", "-v" };
+		LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
 		
-		args.verifyOutcome( 1, 1, 1, false, 0 );
+		verifyBasics( args, false, 2, false, 0 );
 	}
 	
-	public void testLADsFlags_12_3() {
+	public void testNoSubclassWithArgs_Verbose() {
 		
-		String [] cmdl_args = { "-12", "-3" };
-		LADsFlags args = new LADsFlags( cmdl_args );
+		String [] cmdl_args = { "--verbose" };
+		LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
 		
-		args.verifyOutcome( 1, 1, 1, false, 0 );
+		verifyBasics( args, false, 1, false, 0 );
 	}
 	
-	public void testLADsFlags_1_2_3() {
+	public void testNoSubclassWithArgs_Verbose_Verbose() {
 		
-		String [] cmdl_args = { "-1", "-2", "-3" };
-		LADsFlags args = new LADsFlags( cmdl_args );
+		String [] cmdl_args = { "--verbose", "--verbose" };
+		LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
 		
-		args.verifyOutcome( 1, 1, 1, false, 0 );
+		verifyBasics( args, false, 2, false, 0 );
 	}
 	
-	public void testLADsFlags_Invalid_14() {
+	public void testNoSubclassInvalidArgs1() {
 		
-		String [] cmdl_args = { "-14" };
-		LADsFlags args = new LADsFlags( cmdl_args );
+		String [] cmdl_args = { "--foo" };
+		LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
 		
-		args.verifyOutcome( 1, 0, 0, true, args.kErrorCodeUnknownArgument );
+		verifyBasics( args, false, 0, true, args.kErrorCodeUnknownArgument );
 	}
 	
-	public void testLADsFlags_Invalid_1_4() {
+	public void testNoSubclassInvalidArgs2() {
 		
-		String [] cmdl_args = { "-1", "4" };
-		LADsFlags args = new LADsFlags( cmdl_args );
+		String [] cmdl_args = { "--foo", "--bar" };
+		LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
 		
-		args.verifyOutcome( 1, 0, 0, true, args.kErrorCodeUnknownArgument );
+		verifyBasics( args, false, 0, true, args.kErrorCodeUnknownArgument );
 	}
 	
-	public void testLADsFlags_Invalid_41() {
+	public void testNoSubclassInvalidArgs3() {
 		
-		String [] cmdl_args = { "-41" };
-		LADsFlags args = new LADsFlags( cmdl_args );
+		String [] cmdl_args = { "-a" };
+		LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
+		
+		verifyBasics( args, false, 0, true, args.kErrorCodeUnknownArgument );
+	}
+	
+	public void testNoSubclassInvalidArgs4() {
+		
+		String [] cmdl_args = { "-ab" };
+		LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
+		
+		verifyBasics( args, false, 0, true, args.kErrorCodeUnknownArgument );
+	}
+	
+	public void testNoSubclassInvalidArgs5() {
+		
+		String [] cmdl_args = { "-ab", "--foo" };
+		LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
+		
+		verifyBasics( args, false, 0, true, args.kErrorCodeUnknownArgument );
+	}
+	
+	// Test cases on LADsEmpty (a subclass of LinearArgDesequencer)
+	
+	public void testLADsEmptyNoArgs() {
+		
+		LADsEmpty args = new LADsEmpty();
+		
+		args.verifyOutcome( false, 0 );
+	}
+	
+	public void testLADsEmptyInvalidArgs1() {
+		
+		String [] cmdl_args = { "--help" };
+		LADsEmpty args = new LADsEmpty( cmdl_args );
+		
+		args.verifyOutcome( true, args.kErrorCodeUnknownArgument );
+	}
+	
+	public void testLADsEmptyInvalidArgs2() {
+		
+		String [] cmdl_args = { "--verbose", "--verbose" };
+		LADsEmpty args = new LADsEmpty( cmdl_args );
+		
+		args.verifyOutcome( true, args.kErrorCodeUnknownArgument );
+	}
+	
+	// Test cases on LADsFlags (a subclass of LinearArgDesequencer)
+	
+	public void testLADsFlagsNoArgs() {
+		
+		LADsFlags args = new LADsFlags();
+		
+		args.verifyOutcome( 0, 0, 0, false, 0 );
+	}
+	
+	public void testLADsFlags_1() {
+		
+		String [] cmdl_args = { "-1" };
+		LADsFlags args = new LADsFlags( cmdl_args );
+		
+		args.verifyOutcome( 1, 0, 0, false, 0 );
+	}
+	
+	public void testLADsFlags_2() {
+		
+		String [] cmdl_args = { "-2" };
+		LADsFlags args = new LADsFlags( cmdl_args );
+		
+		args.verifyOutcome( 0, 1, 0, false, 0 );
+	}
+	
+	public void testLADsFlags_3() {
+		
+		String [] cmdl_args = { "-3" };
+		LADsFlags args = new LADsFlags( cmdl_args );
+		
+		args.verifyOutcome( 0, 0, 1, false, 0 );
+	}
+	
+	public void testLADsFlags_12() {
+		
+		String [] cmdl_args = { "-12" };
+		LADsFlags args = new LADsFlags( cmdl_args );
+		
+		args.verifyOutcome( 1, 1, 0, false, 0 );
+	}
+	
+	public void testLADsFlags_1_2() {
+		
+		String [] cmdl_args = { "-1", "-2" };
+		LADsFlags args = new LADsFlags( cmdl_args );
+		
+		args.verifyOutcome( 1, 1, 0, false, 0 );
+	}
+	
+	public void testLADsFlags_23() {
+		
+		String [] cmdl_args = { "-23" };
+		LADsFlags args = new LADsFlags( cmdl_args );
+		
+		args.verifyOutcome( 0, 1, 1, false, 0 );
+	}
+	
+	public void testLADsFlags_2_3() {
+		
+		String [] cmdl_args = { "-2", "-3" };
+		LADsFlags args = new LADsFlags( cmdl_args );
+		
+		args.verifyOutcome( 0, 1, 1, false, 0 );
+	}
+	
+	public void testLADsFlags_13() {
+		
+		String [] cmdl_args = { "-13" };
+		LADsFlags args = new LADsFlags( cmdl_args );
+		
+		args.verifyOutcome( 1, 0, 1, false, 0 );
+	}
+	
+	public void testLADsFlags_1_3() {
+		
+		String [] cmdl_args = { "-1", "-3" };
+		LADsFlags args = new LADsFlags( cmdl_args );
+		
+		args.verifyOutcome( 1, 0, 1, false, 0 );
+	}
+	
+	public void testLADsFlags_123() {
+		
+		String [] cmdl_args = { "-123" };
+		LADsFlags args = new LADsFlags( cmdl_args );
+		
+		args.verifyOutcome( 1, 1, 1, false, 0 );
+	}
+	
+	public void testLADsFlags_1_23() {
+		
+		String [] cmdl_args = { "-1", "-23" };
+		LADsFlags args = new LADsFlags( cmdl_args );
+		
+		args.verifyOutcome( 1, 1, 1, false, 0 );
+	}
+	
+	public void testLADsFlags_12_3() {
+		
+		String [] cmdl_args = { "-12", "-3" };
+		LADsFlags args = new LADsFlags( cmdl_args );
+		
+		args.verifyOutcome( 1, 1, 1, false, 0 );
+	}
+	
+	public void testLADsFlags_1_2_3() {
+		
+		String [] cmdl_args = { "-1", "-2", "-3" };
+		LADsFlags args = new LADsFlags( cmdl_args );
+		
+		args.verifyOutcome( 1, 1, 1, false, 0 );
+	}
+	
+	public void testLADsFlags_Invalid_14() {
+		
+		String [] cmdl_args = { "-14" };
+		LADsFlags args = new LADsFlags( cmdl_args );
+		
+		args.verifyOutcome( 1, 0, 0, true, args.kErrorCodeUnknownArgument );
+	}
+	
+	public void testLADsFlags_Invalid_1_4() {
+		
+		String [] cmdl_args = { "-1", "4" };
+		LADsFlags args = new LADsFlags( cmdl_args );
+		
+		args.verifyOutcome( 1, 0, 0, true, args.kErrorCodeUnknownArgument );
+	}
+	
+	public void testLADsFlags_Invalid_41() {
+		
+		String [] cmdl_args = { "-41" };
+		LADsFlags args = new LADsFlags( cmdl_args );
 		
 		// Since parsing stops when an invalid argument
 		// is found, the '-1' won't be found.
@@ -668,583 +1163,1393 @@ public class TestLinearArgDesequencer extends TestCase {
 	
 	public void testLADsSwitches_1() {
 		
-		String [] cmdl_args = { "--arg1" };
-		LADsSwitches args = new LADsSwitches( cmdl_args );
+		String [] cmdl_args = { "--arg1" };
+		LADsSwitches args = new LADsSwitches( cmdl_args );
+		
+		args.verifyOutcome( 1, 0, 0, false, 0 );
+	}
+	
+	public void testLADsSwitches_2() {
+		
+		String [] cmdl_args = { "--arg2" };
+		LADsSwitches args = new LADsSwitches( cmdl_args );
+		
+		args.verifyOutcome( 0, 1, 0, false, 0 );
+	}
+	
+	public void testLADsSwitches_3() {
+		
+		String [] cmdl_args = { "--arg3" };
+		LADsSwitches args = new LADsSwitches( cmdl_args );
+		
+		args.verifyOutcome( 0, 0, 1, false, 0 );
+	}
+	
+	public void testLADsSwitches_1_2() {
+		
+		String [] cmdl_args = { "--arg1", "--arg2" };
+		LADsSwitches args = new LADsSwitches( cmdl_args );
+		
+		args.verifyOutcome( 1, 1, 0, false, 0 );
+	}
+	
+	public void testLADsSwitches_2_3() {
+		
+		String [] cmdl_args = { "--arg2", "--arg3" };
+		LADsSwitches args = new LADsSwitches( cmdl_args );
+		
+		args.verifyOutcome( 0, 1, 1, false, 0 );
+	}
+	
+	public void testLADsSwitches_1_3() {
+		
+		String [] cmdl_args = { "--arg1", "--arg3" };
+		LADsSwitches args = new LADsSwitches( cmdl_args );
+		
+		args.verifyOutcome( 1, 0, 1, false, 0 );
+	}
+	
+	public void testLADsSwitches_1_2_3() {
+		
+		String [] cmdl_args = { "--arg1", "--arg2", "--arg3" };
+		LADsSwitches args = new LADsSwitches( cmdl_args );
+		
+		args.verifyOutcome( 1, 1, 1, false, 0 );
+	}
+	
+	public void testLADsSwitches_Invalid_1_4() {
+		
+		String [] cmdl_args = { "--arg1", "--arg4" };
+		LADsSwitches args = new LADsSwitches( cmdl_args );
+		
+		args.verifyOutcome( 1, 0, 0, true, args.kErrorCodeUnknownArgument );
+	}
+	
+	public void testLADsSwitches_Invalid_4_2() {
+		
+		String [] cmdl_args = { "--arg4", "--arg2" };
+		LADsSwitches args = new LADsSwitches( cmdl_args );
+		
+		// Since parsing stops when an invalid argument
+		// is found, the '--arg2' won't be found.
+		
+		args.verifyOutcome( 0, 0, 0, true, args.kErrorCodeUnknownArgument );
+	}
+	
+	// Test cases on LADsParcels (a subclass of LinearArgDesequencer)
+	
+	public void testLADsParcelsNoArgs() {
+		
+		LADsParcels args = new LADsParcels();
+		
+		args.verifyOutcome( 0, 0, false, 0 );
+	}
+	
+	public void testLADsParcels_1x0() {
+		
+		String [] cmdl_args = { "-1" };
+		LADsParcels args = new LADsParcels( cmdl_args );
+		
+		args.verifyOutcome( 0, 0, true, args.kErrorCodeMissingArgument );
+	}
+	
+	public void testLADsParcels_1x1() {
+		
+		String [] cmdl_args = { "-1", "foo" };
+		LADsParcels args = new LADsParcels( cmdl_args );
+		
+		args.verifyOutcome( 1, 0, false, 0 );
+		args.verifyParcel( "arg1", 0, "foo" );
+	}
+	
+	public void testLADsParcels_1x2() {
+		
+		String [] cmdl_args = { "-1", "foo", "bar" };
+		LADsParcels args = new LADsParcels( cmdl_args );
+		
+		args.verifyOutcome( 1, 0, true, args.kErrorCodeUnknownArgument );
+		args.verifyParcel( "arg1", 0, "foo" );
+	}
+	
+	public void testLADsParcels_2x1() {
+		
+		String [] cmdl_args = { "-2", "foo" };
+		LADsParcels args = new LADsParcels( cmdl_args );
+		
+		args.verifyOutcome( 0, 1, true, args.kErrorCodeMissingArgument );
+		args.verifyParcel( "arg2", 0, "foo" );
+	}
+	
+	public void testLADsParcels_2x2() {
+		
+		String [] cmdl_args = { "-2", "foo", "bar" };
+		LADsParcels args = new LADsParcels( cmdl_args );
+		
+		args.verifyOutcome( 0, 2, false, 0 );
+		args.verifyParcel( "arg2", 0, "foo" );
+		args.verifyParcel( "arg2", 1, "bar" );
+	}
+	
+	public void testLADsParcels_2x3() {
+		
+		String [] cmdl_args = { "-2", "foo", "bar", "fish" };
+		LADsParcels args = new LADsParcels( cmdl_args );
+		
+		args.verifyOutcome( 0, 2, true, args.kErrorCodeUnknownArgument );
+		args.verifyParcel( "arg2", 0, "foo" );
+		args.verifyParcel( "arg2", 1, "bar" );
+	}
+	
+	public void testLADsParcels_1x1_2x2() {
+		
+		String [] cmdl_args = { "-1", "foo", "-2", "foo", "bar" };
+		LADsParcels args = new LADsParcels( cmdl_args );
+		
+		args.verifyOutcome( 1, 2, false, 0 );
+		args.verifyParcel( "arg1", 0, "foo" );
+		args.verifyParcel( "arg2", 0, "foo" );
+		args.verifyParcel( "arg2", 1, "bar" );
+	}
+	
+	public void testLADsParcels_1x1_2x3() {
+		
+		String [] cmdl_args = { "-1", "foo", "-2", "foo", "bar", "fish" };
+		LADsParcels args = new LADsParcels( cmdl_args );
+		
+		args.verifyOutcome( 1, 2, true, args.kErrorCodeUnknownArgument );
+		args.verifyParcel( "arg1", 0, "foo" );
+		args.verifyParcel( "arg2", 0, "foo" );
+		args.verifyParcel( "arg2", 1, "bar" );
+	}
+	
+	public void testLADsParcels_12x2() {
+		
+		String [] cmdl_args = { "-12", "foo", "bar" };
+		LADsParcels args = new LADsParcels( cmdl_args );
+		
+		args.verifyOutcome( 1, 1, true, args.kErrorCodeMissingArgument );
+		args.verifyParcel( "arg1", 0, "foo" );
+		args.verifyParcel( "arg2", 0, "bar" );
+	}
+	
+	public void testLADsParcels_12x3() {
+		
+		String [] cmdl_args = { "-12", "foo", "bar", "fish" };
+		LADsParcels args = new LADsParcels( cmdl_args );
+		
+		args.verifyOutcome( 1, 2, false, 0 );
+		args.verifyParcel( "arg1", 0, "foo" );
+		args.verifyParcel( "arg2", 0, "bar" );
+		args.verifyParcel( "arg2", 1, "fish" );
+	}
+	
+	public void testLADsParcels_12x4() {
+		
+		String [] cmdl_args = { "-12", "foo", "bar", "fish", "cat" };
+		LADsParcels args = new LADsParcels( cmdl_args );
+		
+		args.verifyOutcome( 1, 2, true, args.kErrorCodeUnknownArgument );
+		args.verifyParcel( "arg1", 0, "foo" );
+		args.verifyParcel( "arg2", 0, "bar" );
+		args.verifyParcel( "arg2", 1, "fish" );
+	}
+	
+	public void testLADsParcels_21x3() {
+		
+		String [] cmdl_args = { "-21", "foo", "bar", "fish" };
+		LADsParcels args = new LADsParcels( cmdl_args );
+		
+		args.verifyOutcome( 1, 2, false, 0 );
+		args.verifyParcel( "arg2", 0, "foo" );
+		args.verifyParcel( "arg2", 1, "bar" );
+		args.verifyParcel( "arg1", 0, "fish" );
+	}
+	
+	public void testLADsParcels_2x1_1x2() {
+		
+		String [] cmdl_args = { "-2", "foo", "-1", "bar", "fish" };
+		LADsParcels args = new LADsParcels( cmdl_args );
+		
+		args.verifyOutcome( 1, 2, false, 0 );
+		args.verifyParcel( "arg2", 0, "foo" );
+		args.verifyParcel( "arg2", 1, "bar" );
+		args.verifyParcel( "arg1", 0, "fish" );
+	}
+	
+	public void testLADsParcels_11x2() {
+		
+		String [] cmdl_args = { "-11", "foo", "bar" };
+		LADsParcels args = new LADsParcels( cmdl_args );
+		
+		// Argument '-1' is NOT an array, so any
+		// extra values override existing values.
+		
+		args.verifyOutcome( 1, 0, false, 0 );
+		args.verifyParcel( "arg1", 0, "bar" );
+	}
+	
+	public void testLADsParcels_22x4() {
+		
+		String [] cmdl_args = { "-22", "foo", "bar", "fish", "cat" };
+		LADsParcels args = new LADsParcels( cmdl_args );
+		
+		// Argument '-2' is NOT an array, so any
+		// extra values override existing values.
+		
+		args.verifyOutcome( 0, 2, false, 0 );
+		args.verifyParcel( "arg2", 0, "fish" );
+		args.verifyParcel( "arg2", 1, "cat" );
+	}
+	
+	// Test cases on LADsArrays (a subclass of LinearArgDesequencer)
+	
+	public void testLADsArrays_1x0() {
+		
+		String [] cmdl_args = { "-1" };
+		LADsArrays args = new LADsArrays( cmdl_args );
+		
+		args.verifyOutcome( 0, 0, true, args.kErrorCodeMissingArgument );
+	}
+	
+	public void testLADsArrays_1x1() {
+		
+		String [] cmdl_args = { "-1", "foo" };
+		LADsArrays args = new LADsArrays( cmdl_args );
+		
+		args.verifyOutcome( 1, 0, false, 0 );
+		args.verifyParcel( "arg1", 0, "foo" );
+	}
+	
+	public void testLADsArrays_1x2() {
+		
+		String [] cmdl_args = { "-1", "foo", "bar" };
+		LADsArrays args = new LADsArrays( cmdl_args );
+		
+		args.verifyOutcome( 1, 0, true, args.kErrorCodeUnknownArgument );
+		args.verifyParcel( "arg1", 0, "foo" );
+	}
+	
+	public void testLADsArrays_1x1_2x2() {
+		
+		String [] cmdl_args = { "-1", "foo", "-2", "foo", "bar" };
+		LADsArrays args = new LADsArrays( cmdl_args );
+		
+		args.verifyOutcome( 1, 2, false, 0 );
+		args.verifyParcel( "arg1", 0, "foo" );
+		args.verifyParcel( "arg2", 0, "foo" );
+		args.verifyParcel( "arg2", 1, "bar" );
+	}
+	
+	public void testLADsArrays_1x1_2x3() {
+		
+		String [] cmdl_args = { "-1", "foo", "-2", "foo", "bar", "fish" };
+		LADsArrays args = new LADsArrays( cmdl_args );
+		
+		args.verifyOutcome( 1, 2, true, args.kErrorCodeUnknownArgument );
+		args.verifyParcel( "arg1", 0, "foo" );
+		args.verifyParcel( "arg2", 0, "foo" );
+		args.verifyParcel( "arg2", 1, "bar" );
+	}
+	
+	public void testLADsArrays_12x2() {
+		
+		String [] cmdl_args = { "-12", "foo", "bar" };
+		LADsArrays args = new LADsArrays( cmdl_args );
+		
+		args.verifyOutcome( 1, 1, true, args.kErrorCodeMissingArgument );
+		args.verifyParcel( "arg1", 0, "foo" );
+		args.verifyParcel( "arg2", 0, "bar" );
+	}
+	
+	public void testLADsArrays_12x3() {
+		
+		String [] cmdl_args = { "-12", "foo", "bar", "fish" };
+		LADsArrays args = new LADsArrays( cmdl_args );
+		
+		args.verifyOutcome( 1, 2, false, 0 );
+		args.verifyParcel( "arg1", 0, "foo" );
+		args.verifyParcel( "arg2", 0, "bar" );
+		args.verifyParcel( "arg2", 1, "fish" );
+	}
+	
+	public void testLADsArrays_12x4() {
+		
+		String [] cmdl_args = { "-12", "foo", "bar", "fish", "cat" };
+		LADsArrays args = new LADsArrays( cmdl_args );
+		
+		args.verifyOutcome( 1, 2, true, args.kErrorCodeUnknownArgument );
+		args.verifyParcel( "arg1", 0, "foo" );
+		args.verifyParcel( "arg2", 0, "bar" );
+		args.verifyParcel( "arg2", 1, "fish" );
+	}
+	
+	public void testLADsArrays_11x2() {
+		
+		String [] cmdl_args = { "-11", "foo", "bar" };
+		LADsArrays args = new LADsArrays( cmdl_args );
+		
+		args.verifyOutcome( 2, 0, false, 0 );
+		args.verifyParcel( "arg1", 0, "foo" );
+		args.verifyParcel( "arg1", 1, "bar" );
+	}
+	
+	public void testLADsArrays_22x4() {
+		
+		String [] cmdl_args = { "-22", "foo", "bar", "fish", "cat" };
+		LADsArrays args = new LADsArrays( cmdl_args );
+		
+		args.verifyOutcome( 0, 4, false, 0 );
+		args.verifyParcel( "arg2", 0, "foo" );
+		args.verifyParcel( "arg2", 1, "bar" );
+		args.verifyParcel( "arg2", 2, "fish" );
+		args.verifyParcel( "arg2", 3, "cat" );
+	}
+	
+	public void testLADsArrays_121x4() {
+		
+		String [] cmdl_args = { "-121", "foo", "bar", "fish", "cat" };
+		LADsArrays args = new LADsArrays( cmdl_args );
+		
+		args.verifyOutcome( 2, 2, false, 0 );
+		args.verifyParcel( "arg1", 0, "foo" );
+		args.verifyParcel( "arg2", 0, "bar" );
+		args.verifyParcel( "arg2", 1, "fish" );
+		args.verifyParcel( "arg1", 1, "cat" );
+	}
+	
+	// Test cases on LADsUnbounded (a subclass of LinearArgDesequencer)
+	
+	public void testLADsUnbounded_0x0() {
+		
+		// Zero parcels (zero expected, no error):
+		
+		String [] cmdl_args = { "-0" };
+		LADsUnbounded args = new LADsUnbounded( cmdl_args );
+		args.verifyOutcome( 0, 0, 0, 0, 0, false, 0 );
+	}
+	public void testLADsUnbounded_px0() {
+		
+		// Same thing, except treated as an array:
+		
+		String [] cmdl_args = { "-p" };
+		LADsUnbounded args = new LADsUnbounded( cmdl_args );
+		args.verifyOutcome( 0, 0, 0, 0, 0, false, 0 );
+	}
+	public void testLADsUnbounded_0x1() {
+		
+		// One parcel (zero expected, should cause an error)
+		//   Arguments with parcelCount = 0 cannot receive
+		//   any parcels, even when unbounded = true.
+		
+		String [] cmdl_args = { "-0", "foo" };
+		LADsUnbounded args = new LADsUnbounded( cmdl_args );
+		args.verifyOutcome( 0, 0, 0, 0, 0, true, args.kErrorCodeUnknownArgument );
+	}
+	public void testLADsUnbounded_px1() {
+		
+		// Same thing, except treated as an array:
+		
+		String [] cmdl_args = { "-p", "foo" };
+		LADsUnbounded args = new LADsUnbounded( cmdl_args );
+		args.verifyOutcome( 0, 0, 0, 0, 0, true, args.kErrorCodeUnknownArgument );
+	}
+	
+	public void testLADsUnbounded_1x0() {
+		
+		// Zero parcels (one expected, should cause an error):
+		
+		String [] cmdl_args = { "-1" };
+		LADsUnbounded args = new LADsUnbounded( cmdl_args );
+		args.verifyOutcome( 0, 0, 0, 0, 0, true, args.kErrorCodeMissingArgument );
+	}
+	public void testLADsUnbounded_qx0() {
+		
+		// Same thing, except treated as an array:
+		
+		String [] cmdl_args = { "-q" };
+		LADsUnbounded args = new LADsUnbounded( cmdl_args );
+		args.verifyOutcome( 0, 0, 0, 0, 0, true, args.kErrorCodeMissingArgument );
+	}
+	public void testLADsUnbounded_1x1() {
+		
+		// One parcel (one expected, no error)
+		
+		String [] cmdl_args = { "-1", "foo" };
+		LADsUnbounded args = new LADsUnbounded( cmdl_args );
+		args.verifyOutcome( 0, 1, 0, 0, 0, false, 0 );
+		args.verifyParcel( "arg1", 0, "foo" );
+	}
+	public void testLADsUnbounded_qx1() {
+		
+		// Same thing, except treated as an array:
+		
+		String [] cmdl_args = { "-q", "foo" };
+		LADsUnbounded args = new LADsUnbounded( cmdl_args );
+		args.verifyOutcome( 0, 0, 1, 0, 0, false, 0 );
+		args.verifyParcel( "ary1", 0, "foo" );
+	}
+	public void testLADsUnbounded_1x2() {
+		
+		// Two parcels (one expected, no error)
+		
+		String [] cmdl_args = { "-1", "foo", "bar" };
+		LADsUnbounded args = new LADsUnbounded( cmdl_args );
+		args.verifyOutcome( 0, 1, 0, 0, 0, false, 0 );
+		args.verifyParcel( "arg1", 0, "bar" );
+	}
+	public void testLADsUnbounded_qx2() {
+		
+		// Same thing, except treated as an array:
+		
+		String [] cmdl_args = { "-q", "foo", "bar" };
+		LADsUnbounded args = new LADsUnbounded( cmdl_args );
+		args.verifyOutcome( 0, 0, 2, 0, 0, false, 0 );
+		args.verifyParcel( "ary1", 0, "foo" );
+		args.verifyParcel( "ary1", 1, "bar" );
+	}
+	
+	public void testLADsUnbounded_2x0() {
+		
+		// Zero parcels (two expected, should cause an error):
+		
+		String [] cmdl_args = { "-2" };
+		LADsUnbounded args = new LADsUnbounded( cmdl_args );
+		args.verifyOutcome( 0, 0, 0, 0, 0, true, args.kErrorCodeMissingArgument );
+	}
+	public void testLADsUnbounded_wx0() {
+		
+		// Same thing, except treated as an array:
+		
+		String [] cmdl_args = { "-w" };
+		LADsUnbounded args = new LADsUnbounded( cmdl_args );
+		args.verifyOutcome( 0, 0, 0, 0, 0, true, args.kErrorCodeMissingArgument );
+	}
+	public void testLADsUnbounded_2x1() {
+		
+		// One parcel (two expected, should cause an error):
+		
+		String [] cmdl_args = { "-2", "foo" };
+		LADsUnbounded args = new LADsUnbounded( cmdl_args );
+		args.verifyOutcome( 0, 0, 0, 1, 0, true, args.kErrorCodeMissingArgument );
+		args.verifyParcel( "arg2", 0, "foo" );
+	}
+	public void testLADsUnbounded_wx1() {
+		
+		// Same thing, except treated as an array:
+		
+		String [] cmdl_args = { "-w", "foo" };
+		LADsUnbounded args = new LADsUnbounded( cmdl_args );
+		args.verifyOutcome( 0, 0, 0, 0, 1, true, args.kErrorCodeMissingArgument );
+		args.verifyParcel( "ary2", 0, "foo" );
+	}
+	public void testLADsUnbounded_2x2() {
+		
+		// Two parcels (two expected, no error)
+		
+		String [] cmdl_args = { "-2", "foo", "bar" };
+		LADsUnbounded args = new LADsUnbounded( cmdl_args );
+		args.verifyOutcome( 0, 0, 0, 2, 0, false, 0 );
+		args.verifyParcel( "arg2", 0, "foo" );
+		args.verifyParcel( "arg2", 1, "bar" );
+	}
+	public void testLADsUnbounded_wx2() {
+		
+		// Same thing, except treated as an array:
+		
+		String [] cmdl_args = { "-w", "foo", "bar" };
+		LADsUnbounded args = new LADsUnbounded( cmdl_args );
+		args.verifyOutcome( 0, 0, 0, 0, 2, false, 0 );
+		args.verifyParcel( "ary2", 0, "foo" );
+		args.verifyParcel( "ary2", 1, "bar" );
+	}
+	public void testLADsUnbounded_2x3() {
+		
+		// Three parcels (two expected, no error)
+		
+		String [] cmdl_args = { "-2", "foo", "bar", "fish" };
+		LADsUnbounded args = new LADsUnbounded( cmdl_args );
+		args.verifyOutcome( 0, 0, 0, 2, 0, false, 0 );
+		args.verifyParcel( "arg2", 0, "bar" );
+		args.verifyParcel( "arg2", 1, "fish" );
+	}
+	public void testLADsUnbounded_wx3() {
+		
+		// Same thing, except treated as an array:
+		
+		String [] cmdl_args = { "-w", "foo", "bar", "fish" };
+		LADsUnbounded args = new LADsUnbounded( cmdl_args );
+		args.verifyOutcome( 0, 0, 0, 0, 3, false, 0 );
+		args.verifyParcel( "ary2", 0, "foo" );
+		args.verifyParcel( "ary2", 1, "bar" );
+		args.verifyParcel( "ary2", 2, "fish" );
+	}
+	public void testLADsUnbounded_2x4() {
+		
+		// Four parcels (two expected, no error)
+		
+		String [] cmdl_args = { "-2", "foo", "bar", "fish", "cat" };
+		LADsUnbounded args = new LADsUnbounded( cmdl_args );
+		args.verifyOutcome( 0, 0, 0, 2, 0, false, 0 );
+		args.verifyParcel( "arg2", 0, "fish" );
+		args.verifyParcel( "arg2", 1, "cat" );
+	}
+	public void testLADsUnbounded_wx4() {
+		
+		// Same thing, except treated as an array:
+		
+		String [] cmdl_args = { "-w", "foo", "bar", "fish", "cat" };
+		LADsUnbounded args = new LADsUnbounded( cmdl_args );
+		args.verifyOutcome( 0, 0, 0, 0, 4, false, 0 );
+		args.verifyParcel( "ary2", 0, "foo" );
+		args.verifyParcel( "ary2", 1, "bar" );
+		args.verifyParcel( "ary2", 2, "fish" );
+		args.verifyParcel( "ary2", 3, "cat" );
+	}
+	
+	public void testLADsUnbounded_Mixed1() {
+		
+		String [] cmdl_args = { "-f2", "foo", "bar", "fish", "cat", "dog" };
+		LADsUnbounded args = new LADsUnbounded( cmdl_args );
+		
+		args.verifyOutcome( 2, 0, 0, 2, 0, false, 0 );
+		args.verifyParcel( "fish", 0, "foo" );
+		args.verifyParcel( "fish", 1, "bar" );
+		args.verifyParcel( "arg2", 0, "cat" );
+		args.verifyParcel( "arg2", 1, "dog" );
+	}
+	
+	public void testLADsUnbounded_Mixed2() {
+		
+		String [] cmdl_args = { "-2f", "foo", "bar", "fish", "cat", "dog" };
+		LADsUnbounded args = new LADsUnbounded( cmdl_args );
+		
+		args.verifyOutcome( 2, 0, 0, 2, 0, false, 0 );
+		args.verifyParcel( "arg2", 0, "bar" );
+		args.verifyParcel( "arg2", 1, "dog" );
+		args.verifyParcel( "fish", 0, "fish" );
+		args.verifyParcel( "fish", 1, "cat" );
+	}
+	
+	public void testLADsUnbounded_Mixed3() {
+		
+		String [] cmdl_args = { "-wf", "foo", "bar", "fish", "cat", "dog" };
+		LADsUnbounded args = new LADsUnbounded( cmdl_args );
+		
+		args.verifyOutcome( 2, 0, 0, 0, 3, false, 0 );
+		args.verifyParcel( "ary2", 0, "foo" );
+		args.verifyParcel( "ary2", 1, "bar" );
+		args.verifyParcel( "fish", 0, "fish" );
+		args.verifyParcel( "fish", 1, "cat" );
+		args.verifyParcel( "ary2", 2, "dog" );
+	}
+	
+	// Test cases on LADsDuplicates (a subclass of LinearArgDesequencer)
+	
+	public void testLADsDuplicatesIndex() {
+		
+		LADsDuplicates args = new LADsDuplicates();
+		
+		args.verifyOutcome( false, 0 );
+		assertFalse( "Re-registering a flag on the same argument is not a duplicate.", args.hasDuplicates() );
+		
+		assertEquals( "The flag '-1' should belong to 'arg1'.", "arg1", args.keyForFlag( '1' ) );
+		assertEquals( "The flag '-\u00e9' should belong to 'arg2'.", "arg2", args.keyForFlag( '\u00e9' ) );
+		assertNull( "The flag '-2' should not belong to anything.", args.keyForFlag( '2' ) );
+		assertNull( "The flag '-\u00e8' should not belong to anything.", args.keyForFlag( '\u00e8' ) );
+		
+		assertEquals( "The switch '--one' should belong to 'arg1'.", "arg1", args.keyForSwitch( "one" ) );
+		assertEquals( "The switch '--two' should belong to 'arg2'.", "arg2", args.keyForSwitch( "two" ) );
+		assertNull( "The switch '--three' should not belong to anything.", args.keyForSwitch( "three" ) );
+	}
+	
+	public void testLADsDuplicatesIndexMutators() {
+		
+		LADsDuplicates args = new LADsDuplicates();
+		
+		args.addFlag( "arg3", '3' );
+		args.addSwitch( "arg3", "three" );
+		
+		assertEquals( "The flag '-3' should belong to 'arg3'.", "arg3", args.keyForFlag( '3' ) );
+		assertEquals( "The switch '--three' should belong to 'arg3'.", "arg3", args.keyForSwitch( "three" ) );
+		
+		args.remove( "arg1" );
+		
+		assertNull( "The flag '-1' should have been removed.", args.keyForFlag( '1' ) );
+		assertNull( "The switch '--one' should have been removed.", args.keyForSwitch( "one" ) );
+		assertEquals( "The flag '-3' should still belong to 'arg3'.", "arg3", args.keyForFlag( '3' ) );
 		
-		args.verifyOutcome( 1, 0, 0, false, 0 );
+		args.clear();
+		
+		assertNull( "The flag '-3' should have been cleared.", args.keyForFlag( '3' ) );
+		assertNull( "The switch '--two' should have been cleared.", args.keyForSwitch( "two" ) );
 	}
 	
-	public void testLADsSwitches_2() {
+	public void testLADsDuplicatesRemoveResolves() {
 		
-		String [] cmdl_args = { "--arg2" };
-		LADsSwitches args = new LADsSwitches( cmdl_args );
+		LADsDuplicates args = new LADsDuplicates();
 		
-		args.verifyOutcome( 0, 1, 0, false, 0 );
+		args.addFlag( "arg3", '1' );
+		
+		assertTrue( "Registering '-1' on 'arg3' should be reported as a duplicate.", args.hasDuplicates() );
+		assertEquals( "The first registration of '-1' should win.", "arg1", args.keyForFlag( '1' ) );
+		
+		args.remove( "arg1" );
+		
+		assertFalse( "Removing 'arg1' should resolve the duplicate.", args.hasDuplicates() );
+		assertEquals( "The flag '-1' should now belong to 'arg3'.", "arg3", args.keyForFlag( '1' ) );
 	}
 	
-	public void testLADsSwitches_3() {
+	public void testLADsDuplicates_1() {
 		
-		String [] cmdl_args = { "--arg3" };
-		LADsSwitches args = new LADsSwitches( cmdl_args );
+		String [] cmdl_args = { "-1", "--two" };
+		LADsDuplicates args = new LADsDuplicates( cmdl_args );
 		
-		args.verifyOutcome( 0, 0, 1, false, 0 );
+		args.verifyOutcome( false, 0 );
 	}
 	
-	public void testLADsSwitches_1_2() {
+	public void testLADsDuplicateFlags() {
 		
-		String [] cmdl_args = { "--arg1", "--arg2" };
-		LADsSwitches args = new LADsSwitches( cmdl_args );
+		String [] cmdl_args = { "-1" };
+		LADsDuplicateFlags args = new LADsDuplicateFlags( cmdl_args );
 		
-		args.verifyOutcome( 1, 1, 0, false, 0 );
+		args.verifyOutcome( true, args.kErrorCodeDuplicateArgument );
 	}
 	
-	public void testLADsSwitches_2_3() {
+	public void testLADsDuplicateSwitches() {
 		
-		String [] cmdl_args = { "--arg2", "--arg3" };
-		LADsSwitches args = new LADsSwitches( cmdl_args );
+		String [] cmdl_args = {};
+		LADsDuplicateSwitches args = new LADsDuplicateSwitches( cmdl_args );
 		
-		args.verifyOutcome( 0, 1, 1, false, 0 );
+		args.verifyOutcome( true, args.kErrorCodeDuplicateArgument );
 	}
 	
-	public void testLADsSwitches_1_3() {
+	// Concurrency tests using a shared CLArgumentSpec
+	
+	protected static final String [][] kStressArgs = {
+		{ "-f2", "foo", "bar", "fish", "cat", "dog" },
+		{ "-2f", "foo", "bar", "fish", "cat", "dog" },
+		{ "-wf", "foo", "bar", "fish", "cat", "dog" },
+		{ "--arrayTwo", "a", "b", "c", "d", "e", "f", "g" },
+		{ "-q", "foo", "-1", "bar", "baz" },
+		{ "-1" },
+		{ "-x" },
+		{}
+	};
+	
+	public void parseConcurrently( final CLArgumentSpec spec, final String [] expected, int threads, final int iterations ) throws Throwable {
 		
-		String [] cmdl_args = { "--arg1", "--arg3" };
-		LADsSwitches args = new LADsSwitches( cmdl_args );
+		// Parses kStressArgs <iterations> times on each of <threads>
+		// threads at once, all sharing the given spec.  Each result
+		// is checked against the expected toString() output.
 		
-		args.verifyOutcome( 1, 0, 1, false, 0 );
+		final CountDownLatch start = new CountDownLatch( 1 );
+		final CountDownLatch done = new CountDownLatch( threads );
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		
+		for( int t = 0 ; t < threads ; t++ ) {
+			
+			new Thread( new Runnable() {
+				
+				public void run() {
+					
+					try {
+						
+						start.await();
+						
+						for( int i = 0 ; i < iterations ; i++ ) {
+							
+							int row = i % kStressArgs.length;
+							CLArgumentResult result = spec.parse( kStressArgs[ row ] );
+							
+							if( ! expected[ row ].equals( result.toString() ) )
+								throw new AssertionFailedError( "A concurrent parse of argument vector " + row + " produced a different result." );
+						}
+					}
+					catch( Throwable e ) {
+						
+						failure.compareAndSet( null, e );
+					}
+					finally {
+						
+						done.countDown();
+					}
+				}
+			} ).start();
+		}
+		
+		start.countDown();
+		done.await();
+		
+		if( failure.get() != null ) throw failure.get();
 	}
 	
-	public void testLADsSwitches_1_2_3() {
+	public void testSharedSpecConcurrentParsing() throws Throwable {
 		
-		String [] cmdl_args = { "--arg1", "--arg2", "--arg3" };
-		LADsSwitches args = new LADsSwitches( cmdl_args );
+		CLArgumentSpec spec = new LADsUnbounded().compileArgSpec();
 		
-		args.verifyOutcome( 1, 1, 1, false, 0 );
+		// Figure out the correct answers on this thread first.
+		
+		String [] expected = new String [ kStressArgs.length ];
+		
+		for( int row = 0 ; row < kStressArgs.length ; row++ )
+			expected[ row ] = spec.parse( kStressArgs[ row ] ).toString();
+		
+		// Parse on one thread per core, and always at least two,
+		// so that the spec really is shared even on a single core.
+		// How well this scales is measured by SharedSpecBenchmark.
+		
+		parseConcurrently( spec, expected, Math.max( 2, Runtime.getRuntime().availableProcessors() ), 20000 );
 	}
 	
-	public void testLADsSwitches_Invalid_1_4() {
+	public void testSharedDesequencerConcurrentReads() throws Throwable {
 		
-		String [] cmdl_args = { "--arg1", "--arg4" };
-		LADsSwitches args = new LADsSwitches( cmdl_args );
+		// A LinearArgDesequencer that has finished parsing is only read
+		// from afterwards, so it may be shared by many threads as well.
 		
-		args.verifyOutcome( 1, 0, 0, true, args.kErrorCodeUnknownArgument );
+		String [] cmdl_args = { "-vv", "--help" };
+		final LinearArgDesequencer args = new LinearArgDesequencer( cmdl_args );
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		
+		Thread [] threads = new Thread [ 4 ];
+		
+		for( int t = 0 ; t < threads.length ; t++ ) {
+			
+			threads[ t ] = new Thread( new Runnable() {
+				
+				public void run() {
+					
+					try {
+						
+						for( int i = 0 ; i < 100000 ; i++ )
+							verifyBasics( args, true, 2, false, 0 );
+					}
+					catch( Throwable e ) {
+						
+						failure.compareAndSet( null, e );
+					}
+				}
+			} );
+			threads[ t ].start();
+		}
+		
+		for( Thread thread : threads )
+			thread.join();
+		
+		if( failure.get() != null ) throw failure.get();
 	}
 	
-	public void testLADsSwitches_Invalid_4_2() {
+	public void testSharedDesequencerConcurrentUsage() throws Throwable {
 		
-		String [] cmdl_args = { "--arg4", "--arg2" };
-		LADsSwitches args = new LADsSwitches( cmdl_args );
+		// The usage is rendered by whichever thread asks for it first,
+		// so threads that ask at once must each get all of it.
 		
-		// Since parsing stops when an invalid argument
-		// is found, the '--arg2' won't be found.
+		final String expected = new LADsUnbounded().argsUsage()[ 0 ];
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
 		
-		args.verifyOutcome( 0, 0, 0, true, args.kErrorCodeUnknownArgument );
+		for( int round = 0 ; round < 200 && failure.get() == null ; round++ ) {
+			
+			final LinearArgDesequencer args = new LADsUnbounded();
+			final CountDownLatch start = new CountDownLatch( 1 );
+			Thread [] threads = new Thread [ 4 ];
+			
+			for( int t = 0 ; t < threads.length ; t++ ) {
+				
+				threads[ t ] = new Thread( new Runnable() {
+					
+					public void run() {
+						
+						try {
+							
+							start.await();
+							
+							if( ! expected.equals( args.argsUsage()[ 0 ] ) )
+								throw new AssertionFailedError( "A concurrent reader saw different usage." );
+						}
+						catch( Throwable e ) {
+							
+							failure.compareAndSet( null, e );
+						}
+					}
+				} );
+				threads[ t ].start();
+			}
+			
+			start.countDown();
+			
+			for( Thread thread : threads )
+				thread.join();
+		}
+		
+		if( failure.get() != null ) throw failure.get();
 	}
 	
-	// Test cases on LADsParcels (a subclass of LinearArgDesequencer)
+	// Allocation tests
 	
-	public void testLADsParcelsNoArgs() {
+	public static long allocatedBytes() {
 		
-		LADsParcels args = new LADsParcels();
+		// Returns the number of bytes allocated so far by the current
+		// thread, or -1 if this JVM cannot measure that.
 		
-		args.verifyOutcome( 0, 0, false, 0 );
-	}
-	
-	public void testLADsParcels_1x0() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
 		
-		String [] cmdl_args = { "-1" };
-		LADsParcels args = new LADsParcels( cmdl_args );
+		if( ! ( bean instanceof com.sun.management.ThreadMXBean ) )
+			return -1;
 		
-		args.verifyOutcome( 0, 0, true, args.kErrorCodeMissingArgument );
-	}
-	
-	public void testLADsParcels_1x1() {
+		com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
 		
-		String [] cmdl_args = { "-1", "foo" };
-		LADsParcels args = new LADsParcels( cmdl_args );
+		if( ! sunBean.isThreadAllocatedMemorySupported() || ! sunBean.isThreadAllocatedMemoryEnabled() )
+			return -1;
 		
-		args.verifyOutcome( 1, 0, false, 0 );
-		args.verifyParcel( "arg1", 0, "foo" );
+		return sunBean.getThreadAllocatedBytes( Thread.currentThread().getId() );
 	}
 	
-	public void testLADsParcels_1x2() {
+	public static double allocatedBytesPerParse( LADsReusable lad, String [] args, int iterations ) {
 		
-		String [] cmdl_args = { "-1", "foo", "bar" };
-		LADsParcels args = new LADsParcels( cmdl_args );
+		// Returns the average number of bytes allocated by one
+		// call to reparse(), or -1 if this JVM cannot measure that.
 		
-		args.verifyOutcome( 1, 0, true, args.kErrorCodeUnknownArgument );
-		args.verifyParcel( "arg1", 0, "foo" );
-	}
-	
-	public void testLADsParcels_2x1() {
+		// Warm up first, so that the storage in the argument set has
+		// grown to fit and the scan has been compiled.
 		
-		String [] cmdl_args = { "-2", "foo" };
-		LADsParcels args = new LADsParcels( cmdl_args );
+		for( int i = 0 ; i < iterations ; i++ )
+			lad.reparse( args );
 		
-		args.verifyOutcome( 0, 1, true, args.kErrorCodeMissingArgument );
-		args.verifyParcel( "arg2", 0, "foo" );
-	}
-	
-	public void testLADsParcels_2x2() {
+		long before = allocatedBytes();
 		
-		String [] cmdl_args = { "-2", "foo", "bar" };
-		LADsParcels args = new LADsParcels( cmdl_args );
+		for( int i = 0 ; i < iterations ; i++ )
+			lad.reparse( args );
 		
-		args.verifyOutcome( 0, 2, false, 0 );
-		args.verifyParcel( "arg2", 0, "foo" );
-		args.verifyParcel( "arg2", 1, "bar" );
-	}
-	
-	public void testLADsParcels_2x3() {
+		long after = allocatedBytes();
 		
-		String [] cmdl_args = { "-2", "foo", "bar", "fish" };
-		LADsParcels args = new LADsParcels( cmdl_args );
+		if( before < 0 || after < 0 ) return -1;
 		
-		args.verifyOutcome( 0, 2, true, args.kErrorCodeUnknownArgument );
-		args.verifyParcel( "arg2", 0, "foo" );
-		args.verifyParcel( "arg2", 1, "bar" );
+		return ( after - before ) / (double) iterations;
 	}
 	
-	public void testLADsParcels_1x1_2x2() {
+	public void testSuccessfulParseAllocatesNothing() {
 		
-		String [] cmdl_args = { "-1", "foo", "-2", "foo", "bar" };
-		LADsParcels args = new LADsParcels( cmdl_args );
+		LADsReusable args = new LADsReusable();
 		
-		args.verifyOutcome( 1, 2, false, 0 );
-		args.verifyParcel( "arg1", 0, "foo" );
-		args.verifyParcel( "arg2", 0, "foo" );
-		args.verifyParcel( "arg2", 1, "bar" );
+		String [][] vectors = {
+			{ "-f2", "foo", "bar", "fish", "cat", "dog" },
+			{ "--arrayTwo", "foo", "bar", "fish", "--fish", "cat", "dog", "--argZero" },
+			{ "-qw1", "a", "b", "c", "d", "e", "f", "g", "h" }
+		};
+		
+		for( String [] cmdl_args : vectors ) {
+			
+			double perParse = allocatedBytesPerParse( args, cmdl_args, 20000 );
+			
+			if( perParse < 0 ) return;
+			
+			args.verifyOutcome( false, 0 );
+			
+			// Allow for a stray allocation or two made by the JVM itself.
+			
+			assertTrue( "A successful parse should not allocate; measured " + perParse + " bytes per parse.", perParse < 1.0 );
+		}
 	}
 	
-	public void testLADsParcels_1x1_2x3() {
+	// Test cases on LADsAbbreviations (a subclass of LinearArgDesequencer)
+	
+	public void testLADsAbbreviationsExact() {
 		
-		String [] cmdl_args = { "-1", "foo", "-2", "foo", "bar", "fish" };
-		LADsParcels args = new LADsParcels( cmdl_args );
+		String [] cmdl_args = { "--verbose", "--in" };
+		LADsAbbreviations args = new LADsAbbreviations( cmdl_args );
 		
-		args.verifyOutcome( 1, 2, true, args.kErrorCodeUnknownArgument );
-		args.verifyParcel( "arg1", 0, "foo" );
-		args.verifyParcel( "arg2", 0, "foo" );
-		args.verifyParcel( "arg2", 1, "bar" );
+		// '--in' is also a prefix of '--input', but exact matches win.
+		
+		args.verifyOutcome( false, 0 );
+		args.verifyFound( "verbose", 1 );
+		args.verifyFound( "in", 1 );
+		args.verifyFound( "input", 0 );
 	}
 	
-	public void testLADsParcels_12x2() {
+	public void testLADsAbbreviationsUnique() {
 		
-		String [] cmdl_args = { "-12", "foo", "bar" };
-		LADsParcels args = new LADsParcels( cmdl_args );
+		String [] cmdl_args = { "--verbo", "--verba", "--inp", "foo" };
+		LADsAbbreviations args = new LADsAbbreviations( cmdl_args );
 		
-		args.verifyOutcome( 1, 1, true, args.kErrorCodeMissingArgument );
-		args.verifyParcel( "arg1", 0, "foo" );
-		args.verifyParcel( "arg2", 0, "bar" );
+		args.verifyOutcome( false, 0 );
+		args.verifyFound( "verbose", 1 );
+		args.verifyFound( "verbatim", 1 );
+		args.verifyFound( "input", 2 );
 	}
 	
-	public void testLADsParcels_12x3() {
+	public void testLADsAbbreviationsSameArgument() {
 		
-		String [] cmdl_args = { "-12", "foo", "bar", "fish" };
-		LADsParcels args = new LADsParcels( cmdl_args );
+		String [] cmdl_args = { "--col", "--colo" };
+		LADsAbbreviations args = new LADsAbbreviations( cmdl_args );
 		
-		args.verifyOutcome( 1, 2, false, 0 );
-		args.verifyParcel( "arg1", 0, "foo" );
-		args.verifyParcel( "arg2", 0, "bar" );
-		args.verifyParcel( "arg2", 1, "fish" );
+		// Both '--colour' and '--color' belong to the same
+		// argument, so the prefix is not ambiguous.
+		
+		args.verifyOutcome( false, 0 );
+		args.verifyFound( "colour", 2 );
 	}
 	
-	public void testLADsParcels_12x4() {
+	public void testLADsAbbreviationsAmbiguous() {
 		
-		String [] cmdl_args = { "-12", "foo", "bar", "fish", "cat" };
-		LADsParcels args = new LADsParcels( cmdl_args );
+		String [] cmdl_args = { "--verb" };
+		LADsAbbreviations args = new LADsAbbreviations( cmdl_args );
 		
-		args.verifyOutcome( 1, 2, true, args.kErrorCodeUnknownArgument );
-		args.verifyParcel( "arg1", 0, "foo" );
-		args.verifyParcel( "arg2", 0, "bar" );
-		args.verifyParcel( "arg2", 1, "fish" );
-	}
-	
-	public void testLADsParcels_21x3() {
+		args.verifyOutcome( true, args.kErrorCodeAmbiguousArgument );
 		
-		String [] cmdl_args = { "-21", "foo", "bar", "fish" };
-		LADsParcels args = new LADsParcels( cmdl_args );
+		String [] candidates = args.sequenceErrorDetail().getCandidates();
 		
-		args.verifyOutcome( 1, 2, false, 0 );
-		args.verifyParcel( "arg2", 0, "foo" );
-		args.verifyParcel( "arg2", 1, "bar" );
-		args.verifyParcel( "arg1", 0, "fish" );
+		assertEquals( "There should be two candidates.", 2, candidates.length );
+		assertEquals( "The candidates should be in order.", "verbatim", candidates[ 0 ] );
+		assertEquals( "The candidates should be in order.", "verbose", candidates[ 1 ] );
+		assertEquals( "The message should name the candidates.", "Ambiguous option: '--verb' could be '--verbatim' or '--verbose'", args.sequenceErrorMsg() );
 	}
 	
-	public void testLADsParcels_2x1_1x2() {
+	public void testLADsAbbreviationsUnknown() {
 		
-		String [] cmdl_args = { "-2", "foo", "-1", "bar", "fish" };
-		LADsParcels args = new LADsParcels( cmdl_args );
+		String [] cmdl_args = { "--verbosity" };
+		LADsAbbreviations args = new LADsAbbreviations( cmdl_args );
 		
-		args.verifyOutcome( 1, 2, false, 0 );
-		args.verifyParcel( "arg2", 0, "foo" );
-		args.verifyParcel( "arg2", 1, "bar" );
-		args.verifyParcel( "arg1", 0, "fish" );
+		args.verifyOutcome( true, args.kErrorCodeUnknownArgument );
 	}
 	
-	public void testLADsParcels_11x2() {
+	public void testLADsAbbreviationsPrefixes() {
 		
-		String [] cmdl_args = { "-11", "foo", "bar" };
-		LADsParcels args = new LADsParcels( cmdl_args );
-		
-		// Argument '-1' is NOT an array, so any
-		// extra values override existing values.
+		String [] cmdl_args = {};
+		LADsAbbreviations args = new LADsAbbreviations( cmdl_args );
 		
-		args.verifyOutcome( 1, 0, false, 0 );
-		args.verifyParcel( "arg1", 0, "bar" );
+		assertEquals( "There should be six switches in all.", 6, args.switchesWithPrefix( "" ).length );
+		assertEquals( "There should be two switches beginning with 'in'.", 2, args.switchesWithPrefix( "in" ).length );
+		assertEquals( "There should be no switches beginning with 'x'.", 0, args.switchesWithPrefix( "x" ).length );
 	}
 	
-	public void testLADsParcels_22x4() {
+	public void testLADsSwitchesNoAbbreviations() {
 		
-		String [] cmdl_args = { "-22", "foo", "bar", "fish", "cat" };
-		LADsParcels args = new LADsParcels( cmdl_args );
+		String [] cmdl_args = { "--arg" };
+		LADsSwitches args = new LADsSwitches( cmdl_args );
 		
-		// Argument '-2' is NOT an array, so any
-		// extra values override existing values.
+		// Abbreviations are off by default.
 		
-		args.verifyOutcome( 0, 2, false, 0 );
-		args.verifyParcel( "arg2", 0, "fish" );
-		args.verifyParcel( "arg2", 1, "cat" );
+		args.verifyOutcome( 0, 0, 0, true, args.kErrorCodeUnknownArgument );
 	}
 	
-	// Test cases on LADsArrays (a subclass of LinearArgDesequencer)
+	// Test cases on LADsResponseFiles (a subclass of LinearArgDesequencer)
 	
-	public void testLADsArrays_1x0() {
+	public void testLADsResponseFilesExpand() throws IOException {
 		
-		String [] cmdl_args = { "-1" };
-		LADsArrays args = new LADsArrays( cmdl_args );
+		File rsp = writeResponseFile( "-v\n  a.txt\t\"my file.txt\" 'don\"t.txt'\r\nz\u00e9.txt" );
 		
-		args.verifyOutcome( 0, 0, true, args.kErrorCodeMissingArgument );
-	}
-	
-	public void testLADsArrays_1x1() {
+		String [] cmdl_args = { "-f", "first.txt", "@" + rsp.getPath(), "last.txt", "-v" };
+		LADsResponseFiles args = new LADsResponseFiles( cmdl_args );
 		
-		String [] cmdl_args = { "-1", "foo" };
-		LADsArrays args = new LADsArrays( cmdl_args );
+		args.verifyOutcome( false, 0 );
 		
-		args.verifyOutcome( 1, 0, false, 0 );
-		args.verifyParcel( "arg1", 0, "foo" );
-	}
-	
-	public void testLADsArrays_1x2() {
+		String [] files = args.files();
+		String [] expected = { "first.txt", "a.txt", "my file.txt", "don\"t.txt", "z\u00e9.txt", "last.txt" };
 		
-		String [] cmdl_args = { "-1", "foo", "bar" };
-		LADsArrays args = new LADsArrays( cmdl_args );
+		assertEquals( "Every file name should be found.", expected.length, files.length );
 		
-		args.verifyOutcome( 1, 0, true, args.kErrorCodeUnknownArgument );
-		args.verifyParcel( "arg1", 0, "foo" );
+		for( int row = 0 ; row < expected.length ; row++ )
+			assertEquals( "File[ " + row + " ] should be in order.", expected[ row ], files[ row ] );
+		
+		assertEquals( "Options in the response file should count.", 2, args.verboseCount() );
 	}
 	
-	public void testLADsArrays_1x1_2x2() {
+	public void testLADsResponseFilesNested() throws IOException {
 		
-		String [] cmdl_args = { "-1", "foo", "-2", "foo", "bar" };
-		LADsArrays args = new LADsArrays( cmdl_args );
+		File inner = writeResponseFile( "b.txt c.txt" );
+		File outer = writeResponseFile( "-f a.txt @" + inner.getPath() + " d.txt" );
 		
-		args.verifyOutcome( 1, 2, false, 0 );
-		args.verifyParcel( "arg1", 0, "foo" );
-		args.verifyParcel( "arg2", 0, "foo" );
-		args.verifyParcel( "arg2", 1, "bar" );
+		String [] cmdl_args = { "@" + outer.getPath() };
+		LADsResponseFiles args = new LADsResponseFiles( cmdl_args );
+		
+		args.verifyOutcome( false, 0 );
+		assertEquals( "Nested response files should be expanded in place.", 4, args.files().length );
+		assertEquals( "Nested response files should be expanded in place.", "d.txt", args.files()[ 3 ] );
 	}
 	
-	public void testLADsArrays_1x1_2x3() {
+	public void testLADsResponseFilesSameFileTwice() throws IOException {
 		
-		String [] cmdl_args = { "-1", "foo", "-2", "foo", "bar", "fish" };
-		LADsArrays args = new LADsArrays( cmdl_args );
+		File rsp = writeResponseFile( "-v" );
 		
-		args.verifyOutcome( 1, 2, true, args.kErrorCodeUnknownArgument );
-		args.verifyParcel( "arg1", 0, "foo" );
-		args.verifyParcel( "arg2", 0, "foo" );
-		args.verifyParcel( "arg2", 1, "bar" );
+		// Reading the same file twice in a row is not a cycle.
+		
+		String [] cmdl_args = { "@" + rsp.getPath(), "@" + rsp.getPath() };
+		LADsResponseFiles args = new LADsResponseFiles( cmdl_args );
+		
+		args.verifyOutcome( false, 0 );
+		assertEquals( "Both copies of the file should count.", 2, args.verboseCount() );
 	}
 	
-	public void testLADsArrays_12x2() {
+	public void testLADsResponseFilesCycle() throws IOException {
 		
-		String [] cmdl_args = { "-12", "foo", "bar" };
-		LADsArrays args = new LADsArrays( cmdl_args );
+		File first = writeResponseFile( "" );
+		File second = writeResponseFile( "-v @" + first.getPath() );
 		
-		args.verifyOutcome( 1, 1, true, args.kErrorCodeMissingArgument );
-		args.verifyParcel( "arg1", 0, "foo" );
-		args.verifyParcel( "arg2", 0, "bar" );
+		FileOutputStream out = new FileOutputStream( first );
+		
+		try {
+			out.write( ( "-v @" + second.getPath() ).getBytes( "UTF-8" ) );
+		}
+		finally {
+			out.close();
+		}
+		
+		String [] cmdl_args = { "@" + first.getPath() };
+		LADsResponseFiles args = new LADsResponseFiles( cmdl_args );
+		
+		args.verifyOutcome( true, args.kErrorCodeRecursiveResponseFile );
+		assertEquals( "The message should name the file.", "Response file includes itself: '" + first.getPath() + "'", args.sequenceErrorMsg() );
 	}
 	
-	public void testLADsArrays_12x3() {
-		
-		String [] cmdl_args = { "-12", "foo", "bar", "fish" };
-		LADsArrays args = new LADsArrays( cmdl_args );
+	public void testLADsResponseFilesMissing() throws IOException {
 		
-		args.verifyOutcome( 1, 2, false, 0 );
-		args.verifyParcel( "arg1", 0, "foo" );
-		args.verifyParcel( "arg2", 0, "bar" );
-		args.verifyParcel( "arg2", 1, "fish" );
+		File rsp = writeResponseFile( "" );
+		rsp.delete();
+		
+		String [] cmdl_args = { "-f", "@" + rsp.getPath() };
+		LADsResponseFiles args = new LADsResponseFiles( cmdl_args );
+		
+		args.verifyOutcome( true, args.kErrorCodeUnreadableResponseFile );
+		assertEquals( "The message should name the file.", "Cannot read response file: '" + rsp.getPath() + "'", args.sequenceErrorMsg() );
 	}
 	
-	public void testLADsArrays_12x4() {
+	public void testLADsResponseFilesEscaped() {
 		
-		String [] cmdl_args = { "-12", "foo", "bar", "fish", "cat" };
-		LADsArrays args = new LADsArrays( cmdl_args );
+		String [] cmdl_args = { "-f", "@@home", "@" };
+		LADsResponseFiles args = new LADsResponseFiles( cmdl_args );
 		
-		args.verifyOutcome( 1, 2, true, args.kErrorCodeUnknownArgument );
-		args.verifyParcel( "arg1", 0, "foo" );
-		args.verifyParcel( "arg2", 0, "bar" );
-		args.verifyParcel( "arg2", 1, "fish" );
+		args.verifyOutcome( false, 0 );
+		assertEquals( "'@@' should stand for a plain '@'.", "@home", args.files()[ 0 ] );
+		assertEquals( "A lone '@' is a plain argument.", "@", args.files()[ 1 ] );
 	}
 	
-	public void testLADsArrays_11x2() {
+	public void testLADsResponseFilesErrorIndex() throws IOException {
 		
-		String [] cmdl_args = { "-11", "foo", "bar" };
-		LADsArrays args = new LADsArrays( cmdl_args );
+		File rsp = writeResponseFile( "-v\n-v\n-v\n" );
 		
-		args.verifyOutcome( 2, 0, false, 0 );
-		args.verifyParcel( "arg1", 0, "foo" );
-		args.verifyParcel( "arg1", 1, "bar" );
+		// The tokens read from the file do not move the
+		// arguments after it.
+		
+		String [] cmdl_args = { "@" + rsp.getPath(), "--bogus" };
+		LADsResponseFiles args = new LADsResponseFiles( cmdl_args );
+		
+		args.verifyOutcome( true, args.kErrorCodeUnknownArgument );
+		assertEquals( "The error should be at its position in argv.", 1, args.sequenceErrorDetail().getTokenIndex() );
 	}
 	
-	public void testLADsArrays_22x4() {
+	public void testLADsResponseFilesErrorInFile() throws IOException {
 		
-		String [] cmdl_args = { "-22", "foo", "bar", "fish", "cat" };
-		LADsArrays args = new LADsArrays( cmdl_args );
+		File inner = writeResponseFile( "-v --bogus" );
+		File outer = writeResponseFile( "-v -v @" + inner.getPath() );
 		
-		args.verifyOutcome( 0, 4, false, 0 );
-		args.verifyParcel( "arg2", 0, "foo" );
-		args.verifyParcel( "arg2", 1, "bar" );
-		args.verifyParcel( "arg2", 2, "fish" );
-		args.verifyParcel( "arg2", 3, "cat" );
+		// An error inside a (nested) response file is reported
+		// at the '@file' argument that named the outermost file.
+		
+		String [] cmdl_args = { "-v", "@" + outer.getPath(), "-v" };
+		LADsResponseFiles args = new LADsResponseFiles( cmdl_args );
+		
+		args.verifyOutcome( true, args.kErrorCodeUnknownArgument );
+		assertEquals( "The error should be at the '@file' argument.", 1, args.sequenceErrorDetail().getTokenIndex() );
+		assertEquals( "The error should still name the token.", "--bogus", args.sequenceErrorDetail().getToken() );
 	}
 	
-	public void testLADsArrays_121x4() {
+	public void testLADsParcelsNoResponseFiles() {
 		
-		String [] cmdl_args = { "-121", "foo", "bar", "fish", "cat" };
-		LADsArrays args = new LADsArrays( cmdl_args );
+		String [] cmdl_args = { "-1", "@foo" };
+		LADsParcels args = new LADsParcels( cmdl_args );
 		
-		args.verifyOutcome( 2, 2, false, 0 );
-		args.verifyParcel( "arg1", 0, "foo" );
-		args.verifyParcel( "arg2", 0, "bar" );
-		args.verifyParcel( "arg2", 1, "fish" );
-		args.verifyParcel( "arg1", 1, "cat" );
+		// Response files are off by default.
+		
+		args.verifyOutcome( 1, 0, false, 0 );
+		args.verifyParcel( "arg1", 0, "@foo" );
 	}
 	
-	// Test cases on LADsUnbounded (a subclass of LinearArgDesequencer)
+	// Test cases on LADsTyped (a subclass of LinearArgDesequencer)
 	
-	public void testLADsUnbounded_0x0() {
+	public void testLADsTypedValues() {
 		
-		// Zero parcels (zero expected, no error):
+		String [] cmdl_args = { "-p", "80", "--port", "8080", "-srf", "1", "0.5", "yes", "20000000000", "-c", "red", "BLUE", "-n", "x" };
+		LADsTyped args = new LADsTyped( cmdl_args );
 		
-		String [] cmdl_args = { "-0" };
-		LADsUnbounded args = new LADsUnbounded( cmdl_args );
-		args.verifyOutcome( 0, 0, 0, 0, 0, false, 0 );
-	}
-	public void testLADsUnbounded_px0() {
+		args.verifyOutcome( false, 0 );
 		
-		// Same thing, except treated as an array:
+		assertEquals( "The last port should win.", 8080, args.getIntFromKey( "port", 0 ) );
+		assertEquals( "Both ports are kept as values.", 1, args.getIntArrayFromKey( "port" ).length );
+		assertEquals( "The ratio should be converted.", 0.5, args.getDoubleFromKey( "ratio", 0 ), 0.0 );
+		assertTrue( "'yes' should be true.", args.getBooleanFromKey( "force", false ) );
+		assertEquals( "The most relevant colour is the last one.", Colour.BLUE, args.getEnumFromKey( "colour" ) );
+		assertEquals( "The string parcel should be unaffected.", "x", args.getParcelFromKey( "name" ) );
 		
-		String [] cmdl_args = { "-p" };
-		LADsUnbounded args = new LADsUnbounded( cmdl_args );
-		args.verifyOutcome( 0, 0, 0, 0, 0, false, 0 );
-	}
-	public void testLADsUnbounded_0x1() {
+		long [] sizes = args.getLongArrayFromKey( "sizes" );
 		
-		// One parcel (zero expected, should cause an error)
-		//   Arguments with parcelCount = 0 cannot receive
-		//   any parcels, even when unbounded = true.
+		assertEquals( "Every size should be kept.", 2, sizes.length );
+		assertEquals( "Sizes should be in order.", 1L, sizes[ 0 ] );
+		assertEquals( "Sizes should fit in a long.", 20000000000L, sizes[ 1 ] );
 		
-		String [] cmdl_args = { "-0", "foo" };
-		LADsUnbounded args = new LADsUnbounded( cmdl_args );
-		args.verifyOutcome( 0, 0, 0, 0, 0, true, args.kErrorCodeUnknownArgument );
+		Colour [] colours = args.getEnumArrayFromKey( "colour" );
+		
+		assertEquals( "Both colours should be relevant.", 2, colours.length );
+		assertEquals( "Colours should be in order.", Colour.RED, colours[ 0 ] );
 	}
-	public void testLADsUnbounded_px1() {
+	
+	public void testLADsTypedDefaults() {
 		
-		// Same thing, except treated as an array:
+		String [] cmdl_args = {};
+		LADsTyped args = new LADsTyped( cmdl_args );
 		
-		String [] cmdl_args = { "-p", "foo" };
-		LADsUnbounded args = new LADsUnbounded( cmdl_args );
-		args.verifyOutcome( 0, 0, 0, 0, 0, true, args.kErrorCodeUnknownArgument );
+		args.verifyOutcome( false, 0 );
+		assertEquals( "A missing int should use the default.", 42, args.getIntFromKey( "port", 42 ) );
+		assertEquals( "A missing long should use the default.", 7L, args.getLongFromKey( "sizes", 7L ) );
+		assertNull( "A missing enum should be null.", args.getEnumFromKey( "colour" ) );
+		assertEquals( "A missing array should be empty.", 0, args.getDoubleArrayFromKey( "ratio" ).length );
+		assertEquals( "An undefined argument should use the default.", 3, args.getIntFromKey( "missing", 3 ) );
 	}
 	
-	public void testLADsUnbounded_1x0() {
+	public void testLADsTypedInvalid() {
 		
-		// Zero parcels (one expected, should cause an error):
+		String [] cmdl_args = { "-p", "eighty" };
+		LADsTyped args = new LADsTyped( cmdl_args );
 		
-		String [] cmdl_args = { "-1" };
-		LADsUnbounded args = new LADsUnbounded( cmdl_args );
-		args.verifyOutcome( 0, 0, 0, 0, 0, true, args.kErrorCodeMissingArgument );
-	}
-	public void testLADsUnbounded_qx0() {
+		args.verifyOutcome( true, args.kErrorCodeInvalidValue );
+		assertEquals( "The message should name the argument.", "Invalid value for 'port': 'eighty'", args.sequenceErrorMsg() );
 		
-		// Same thing, except treated as an array:
+		String [] more_args = { "-fc", "maybe", "RED", "GREEN" };
+		args = new LADsTyped( more_args );
 		
-		String [] cmdl_args = { "-q" };
-		LADsUnbounded args = new LADsUnbounded( cmdl_args );
-		args.verifyOutcome( 0, 0, 0, 0, 0, true, args.kErrorCodeMissingArgument );
-	}
-	public void testLADsUnbounded_1x1() {
+		args.verifyOutcome( true, args.kErrorCodeInvalidValue );
 		
-		// One parcel (one expected, no error)
+		String [] colour_args = { "-c", "RED", "MAUVE" };
+		args = new LADsTyped( colour_args );
 		
-		String [] cmdl_args = { "-1", "foo" };
-		LADsUnbounded args = new LADsUnbounded( cmdl_args );
-		args.verifyOutcome( 0, 1, 0, 0, 0, false, 0 );
-		args.verifyParcel( "arg1", 0, "foo" );
+		args.verifyOutcome( true, args.kErrorCodeInvalidValue );
 	}
-	public void testLADsUnbounded_qx1() {
+	
+	public void testLADsTypedNegativeNumbers() {
 		
-		// Same thing, except treated as an array:
+		String [] cmdl_args = { "-p", "-5", "--ratio", "-.5", "-s", "-1", "2", "-30000000000" };
+		LADsTyped args = new LADsTyped( cmdl_args );
 		
-		String [] cmdl_args = { "-q", "foo" };
-		LADsUnbounded args = new LADsUnbounded( cmdl_args );
-		args.verifyOutcome( 0, 0, 1, 0, 0, false, 0 );
-		args.verifyParcel( "ary1", 0, "foo" );
-	}
-	public void testLADsUnbounded_1x2() {
+		args.verifyOutcome( false, 0 );
+		assertEquals( "A negative int should be a parcel.", -5, args.getIntFromKey( "port", 0 ) );
+		assertEquals( "A negative double should be a parcel.", -0.5, args.getDoubleFromKey( "ratio", 0 ), 0.0 );
 		
-		// Two parcels (one expected, no error)
+		long [] sizes = args.getLongArrayFromKey( "sizes" );
 		
-		String [] cmdl_args = { "-1", "foo", "bar" };
-		LADsUnbounded args = new LADsUnbounded( cmdl_args );
-		args.verifyOutcome( 0, 1, 0, 0, 0, false, 0 );
-		args.verifyParcel( "arg1", 0, "bar" );
-	}
-	public void testLADsUnbounded_qx2() {
+		assertEquals( "Unbounded numbers can be negative too.", 3, sizes.length );
+		assertEquals( "Sizes should be in order.", -1L, sizes[ 0 ] );
+		assertEquals( "Negative sizes should fit in a long.", -30000000000L, sizes[ 2 ] );
 		
-		// Same thing, except treated as an array:
+		String [] flag_args = { "-s", "1", "-f", "on" };
+		args = new LADsTyped( flag_args );
 		
-		String [] cmdl_args = { "-q", "foo", "bar" };
-		LADsUnbounded args = new LADsUnbounded( cmdl_args );
-		args.verifyOutcome( 0, 0, 2, 0, 0, false, 0 );
-		args.verifyParcel( "ary1", 0, "foo" );
-		args.verifyParcel( "ary1", 1, "bar" );
+		args.verifyOutcome( false, 0 );
+		assertEquals( "Flags should still end an unbounded option.", 1, args.getLongArrayFromKey( "sizes" ).length );
+		assertTrue( "The flag should be found.", args.getBooleanFromKey( "force", false ) );
+		
+		String [] string_args = { "-n", "-5" };
+		args = new LADsTyped( string_args );
+		
+		args.verifyOutcome( true, args.kErrorCodeUnknownArgument );
+		
+		String [] overflow_args = { "-p", "-30000000000" };
+		args = new LADsTyped( overflow_args );
+		
+		args.verifyOutcome( true, args.kErrorCodeUnknownArgument );
 	}
 	
-	public void testLADsUnbounded_2x0() {
+	public void testLADsTypedWrongAccessor() {
 		
-		// Zero parcels (two expected, should cause an error):
+		String [] cmdl_args = { "-p", "80" };
+		LADsTyped args = new LADsTyped( cmdl_args );
 		
-		String [] cmdl_args = { "-2" };
-		LADsUnbounded args = new LADsUnbounded( cmdl_args );
-		args.verifyOutcome( 0, 0, 0, 0, 0, true, args.kErrorCodeMissingArgument );
+		try {
+			
+			args.getLongFromKey( "port", 0 );
+			fail( "An int argument should not be read as a long." );
+		}
+		catch( IllegalArgumentException e ) {
+			
+			// This is expected.
+		}
 	}
-	public void testLADsUnbounded_wx0() {
+	
+	public void testLADsTypedFoundParcel() {
 		
-		// Same thing, except treated as an array:
+		String [] cmdl_args = {};
+		LADsTyped args = new LADsTyped( cmdl_args );
 		
-		String [] cmdl_args = { "-w" };
-		LADsUnbounded args = new LADsUnbounded( cmdl_args );
-		args.verifyOutcome( 0, 0, 0, 0, 0, true, args.kErrorCodeMissingArgument );
+		assertTrue( "A valid parcel should be added.", args.foundParcel( "port", "443" ) );
+		assertFalse( "An invalid parcel should be refused.", args.foundParcel( "port", "https" ) );
+		assertEquals( "The valid parcel should be the value.", 443, args.getIntFromKey( "port", 0 ) );
+		assertEquals( "The invalid parcel should not be kept.", 1, args.getParcelCountForKey( "port" ) );
 	}
-	public void testLADsUnbounded_2x1() {
+	
+	// Test cases on the cached parcel accessors
+	
+	public void testCachedAccessorsAllocateNothing() {
 		
-		// One parcel (two expected, should cause an error):
+		LADsReusable args = new LADsReusable();
+		String [] cmdl_args = { "-qw1", "a", "b", "c", "d", "e", "f", "g", "h" };
 		
-		String [] cmdl_args = { "-2", "foo" };
-		LADsUnbounded args = new LADsUnbounded( cmdl_args );
-		args.verifyOutcome( 0, 0, 0, 1, 0, true, args.kErrorCodeMissingArgument );
-		args.verifyParcel( "arg2", 0, "foo" );
-	}
-	public void testLADsUnbounded_wx1() {
+		args.reparse( cmdl_args );
+		args.verifyOutcome( false, 0 );
 		
-		// Same thing, except treated as an array:
+		int total = 0;
 		
-		String [] cmdl_args = { "-w", "foo" };
-		LADsUnbounded args = new LADsUnbounded( cmdl_args );
-		args.verifyOutcome( 0, 0, 0, 0, 1, true, args.kErrorCodeMissingArgument );
-		args.verifyParcel( "ary2", 0, "foo" );
-	}
-	public void testLADsUnbounded_2x2() {
+		for( int i = 0 ; i < 20000 ; i++ )
+			total += args.readEverything();
 		
-		// Two parcels (two expected, no error)
+		long before = allocatedBytes();
 		
-		String [] cmdl_args = { "-2", "foo", "bar" };
-		LADsUnbounded args = new LADsUnbounded( cmdl_args );
-		args.verifyOutcome( 0, 0, 0, 2, 0, false, 0 );
-		args.verifyParcel( "arg2", 0, "foo" );
-		args.verifyParcel( "arg2", 1, "bar" );
-	}
-	public void testLADsUnbounded_wx2() {
+		for( int i = 0 ; i < 20000 ; i++ )
+			total += args.readEverything();
 		
-		// Same thing, except treated as an array:
+		long after = allocatedBytes();
 		
-		String [] cmdl_args = { "-w", "foo", "bar" };
-		LADsUnbounded args = new LADsUnbounded( cmdl_args );
-		args.verifyOutcome( 0, 0, 0, 0, 2, false, 0 );
-		args.verifyParcel( "ary2", 0, "foo" );
-		args.verifyParcel( "ary2", 1, "bar" );
-	}
-	public void testLADsUnbounded_2x3() {
+		assertTrue( "The reads should have seen something.", total > 0 );
 		
-		// Three parcels (two expected, no error)
+		if( before < 0 || after < 0 ) return;
 		
-		String [] cmdl_args = { "-2", "foo", "bar", "fish" };
-		LADsUnbounded args = new LADsUnbounded( cmdl_args );
-		args.verifyOutcome( 0, 0, 0, 2, 0, false, 0 );
-		args.verifyParcel( "arg2", 0, "bar" );
-		args.verifyParcel( "arg2", 1, "fish" );
+		double perRead = ( after - before ) / 20000.0;
+		
+		assertTrue( "Reading parcels should not allocate; measured " + perRead + " bytes per read.", perRead < 1.0 );
 	}
-	public void testLADsUnbounded_wx3() {
+	
+	public void testCachedViewIsLiveAndReadOnly() {
 		
-		// Same thing, except treated as an array:
+		LADsReusable args = new LADsReusable();
+		String [] cmdl_args = { "-2", "a", "b", "c" };
 		
-		String [] cmdl_args = { "-w", "foo", "bar", "fish" };
-		LADsUnbounded args = new LADsUnbounded( cmdl_args );
-		args.verifyOutcome( 0, 0, 0, 0, 3, false, 0 );
-		args.verifyParcel( "ary2", 0, "foo" );
-		args.verifyParcel( "ary2", 1, "bar" );
-		args.verifyParcel( "ary2", 2, "fish" );
+		args.reparse( cmdl_args );
+		
+		List<String> view = args.parcelView( "arg2" );
+		
+		assertEquals( "Only the last two parcels are relevant.", Arrays.asList( "b", "c" ), view );
+		assertSame( "The view should be cached.", view, args.parcelView( "arg2" ) );
+		assertEquals( "The most relevant parcel is the last one.", "c", args.mostRelevantParcel( "arg2" ) );
+		
+		try {
+			
+			view.add( "d" );
+			fail( "The view should be read-only." );
+		}
+		catch( UnsupportedOperationException e ) {
+			
+			// This is expected.
+		}
+		
+		String [] more_args = { "-2", "x", "y" };
+		args.reparse( more_args );
+		
+		assertEquals( "The view should follow a new parse.", Arrays.asList( "x", "y" ), view );
 	}
-	public void testLADsUnbounded_2x4() {
+	
+	public void testCachedAccessorsNoticeDirectChanges() {
 		
-		// Four parcels (two expected, no error)
+		LADsReusable args = new LADsReusable();
+		String [] cmdl_args = { "-1", "a" };
 		
-		String [] cmdl_args = { "-2", "foo", "bar", "fish", "cat" };
-		LADsUnbounded args = new LADsUnbounded( cmdl_args );
-		args.verifyOutcome( 0, 0, 0, 2, 0, false, 0 );
-		args.verifyParcel( "arg2", 0, "fish" );
-		args.verifyParcel( "arg2", 1, "cat" );
+		args.reparse( cmdl_args );
+		assertEquals( "The parcel should be found.", "a", args.mostRelevantParcel( "arg1" ) );
+		
+		args.rawParcels( "arg1" ).set( 1, "b" );
+		assertEquals( "A replaced parcel should be noticed.", "b", args.mostRelevantParcel( "arg1" ) );
+		
+		args.rawParcels( "arg1" ).add( "c" );
+		assertEquals( "An added parcel should be noticed.", "c", args.mostRelevantParcel( "arg1" ) );
+		
+		ArrayList<String> replacement = new ArrayList<String>();
+		replacement.add( null );
+		replacement.add( "d" );
+		
+		args.replaceParcels( "arg1", replacement );
+		assertEquals( "A replaced list should be noticed.", "d", args.mostRelevantParcel( "arg1" ) );
+		
+		replacement.add( "e" );
+		assertEquals( "Changes to a plain list should be noticed.", "e", args.mostRelevantParcel( "arg1" ) );
 	}
-	public void testLADsUnbounded_wx4() {
+	
+	public void testReadsDoNotCreateArguments() {
 		
-		// Same thing, except treated as an array:
+		LADsReusable args = new LADsReusable();
 		
-		String [] cmdl_args = { "-w", "foo", "bar", "fish", "cat" };
-		LADsUnbounded args = new LADsUnbounded( cmdl_args );
-		args.verifyOutcome( 0, 0, 0, 0, 4, false, 0 );
-		args.verifyParcel( "ary2", 0, "foo" );
-		args.verifyParcel( "ary2", 1, "bar" );
-		args.verifyParcel( "ary2", 2, "fish" );
-		args.verifyParcel( "ary2", 3, "cat" );
+		args.foundHelpFlag();
+		args.verbosity();
+		args.parcelView( "nothing" );
+		
+		assertFalse( "Reading should not add arguments.", args.mapContains( "Help" ) );
+		assertFalse( "Reading should not add arguments.", args.mapContains( "nothing" ) );
 	}
 	
-	public void testLADsUnbounded_Mixed1() {
+	public void testUsageIsRenderedInOrder() throws IOException {
 		
-		String [] cmdl_args = { "-f2", "foo", "bar", "fish", "cat", "dog" };
-		LADsUnbounded args = new LADsUnbounded( cmdl_args );
+		LADsDuplicates args = new LADsDuplicates();
 		
-		args.verifyOutcome( 2, 0, 0, 2, 0, false, 0 );
-		args.verifyParcel( "fish", 0, "foo" );
-		args.verifyParcel( "fish", 1, "bar" );
-		args.verifyParcel( "arg2", 0, "cat" );
-		args.verifyParcel( "arg2", 1, "dog" );
+		String [] usage = args.argsUsage();
+		
+		assertEquals( "The usage should be in the order of definition.", Arrays.asList( "-1, --one : Argument 1", "-\u00e9, --two : Argument 2" ), Arrays.asList( usage ) );
+		
+		usage[ 0 ] = "changed";
+		assertEquals( "The cached usage should not be exposed.", "-1, --one : Argument 1", args.argsUsage()[ 0 ] );
+		
+		StringWriter out = new StringWriter();
+		args.writeUsage( out );
+		assertEquals( "The usage should be written line by line.", "-1, --one : Argument 1\n-\u00e9, --two : Argument 2\n", out.toString() );
+		
+		args.addSwitch( "arg1", "uno" );
+		assertEquals( "A new switch should be rendered.", "-1, --one, --uno : Argument 1", args.argsUsage()[ 0 ] );
+		
+		args.addSwitch( "arg3", "three" );
+		assertEquals( "A new argument should be rendered.", "--three : null", args.argsUsage()[ 2 ] );
+		
+		args.remove( "arg2" );
+		out = new StringWriter();
+		args.writeUsage( out );
+		assertEquals( "A removed argument should not be rendered.", "-1, --one, --uno : Argument 1\n--three : null\n", out.toString() );
+		
+		args.clear();
+		assertEquals( "An empty set has no usage.", 0, args.argsUsage().length );
 	}
 	
-	public void testLADsUnbounded_Mixed2() {
+	public void testToStringIsWritten() throws IOException {
 		
-		String [] cmdl_args = { "-2f", "foo", "bar", "fish", "cat", "dog" };
-		LADsUnbounded args = new LADsUnbounded( cmdl_args );
+		String [] cmdl_args = { "-1" };
+		LADsDuplicates args = new LADsDuplicates( cmdl_args );
 		
-		args.verifyOutcome( 2, 0, 0, 2, 0, false, 0 );
-		args.verifyParcel( "arg2", 0, "bar" );
-		args.verifyParcel( "arg2", 1, "dog" );
-		args.verifyParcel( "fish", 0, "fish" );
-		args.verifyParcel( "fish", 1, "cat" );
+		StringWriter out = new StringWriter();
+		args.writeTo( out );
+		
+		assertEquals( "The dump should be in the order of definition.", "Argument 1: 'null'\nArgument 2: [empty]\nSequence Error: false\n    Error Code: 0\n Error Message: null", out.toString() );
+		assertEquals( "toString() should match.", out.toString(), args.toString() );
+		
+		args.clear();
+		assertEquals( "An empty set has no dump.", "", args.toString() );
 	}
 	
-	public void testLADsUnbounded_Mixed3() {
+	public void testCollectAllErrors() {
 		
-		String [] cmdl_args = { "-wf", "foo", "bar", "fish", "cat", "dog" };
-		LADsUnbounded args = new LADsUnbounded( cmdl_args );
+		String [] cmdl_args = { "-vxv", "--nope", "-f" };
+		LADsCollecting args = new LADsCollecting( cmdl_args );
 		
-		args.verifyOutcome( 2, 0, 0, 0, 3, false, 0 );
-		args.verifyParcel( "ary2", 0, "foo" );
-		args.verifyParcel( "ary2", 1, "bar" );
-		args.verifyParcel( "fish", 0, "fish" );
-		args.verifyParcel( "fish", 1, "cat" );
-		args.verifyParcel( "ary2", 2, "dog" );
+		CLArgumentError [] errors = args.sequenceErrors();
+		
+		assertEquals( "Every error should be found.", 3, args.sequenceErrorCount() );
+		assertEquals( "The unknown flag should be found.", 2, errors[ 0 ].getOffset() );
+		assertEquals( "The unknown switch should be found.", 1, errors[ 1 ].getTokenIndex() );
+		assertEquals( "The missing parcel should be found.", "file", errors[ 2 ].getKey() );
+		assertEquals( "The first error should be reported.", args.kErrorCodeUnknownArgument, args.sequenceErrorCode() );
+		assertEquals( "The first message should be reported.", "Unknown option: 'x'", args.sequenceErrorMsg() );
+		assertEquals( "The flags around the error should be kept.", 2, args.verbosity() );
+		
+		args.setCollects( false );
+		args.reparse( cmdl_args );
+		
+		assertEquals( "Only the first error should be found.", 1, args.sequenceErrorCount() );
+		assertEquals( "The first message should be reported.", "Unknown option: 'x'", args.sequenceErrorMsg() );
+		
+		args.setCollects( true );
+		args.reparse( new String [] { "-v" } );
+		
+		assertFalse( "There should be no error.", args.sequenceError() );
+		assertEquals( "There should be no records.", 0, args.sequenceErrors().length );
 	}
 }